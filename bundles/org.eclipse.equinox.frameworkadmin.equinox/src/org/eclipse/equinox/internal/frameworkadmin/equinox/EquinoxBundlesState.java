@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2010 IBM Corporation and others.
+ * Copyright (c) 2007, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -147,10 +147,12 @@ public class EquinoxBundlesState implements BundlesState {
 			return null;
 		URI bundleLocation = bundleInfo.getLocation();
 		try {
-			String[] clauses = Utils.getClausesManifestMainAttributes(bundleLocation, Constants.BUNDLE_SYMBOLICNAME);
-			if (bundleLocation.getPath().indexOf(EquinoxConstants.FW_SYMBOLIC_NAME) > 0)
+			// the manifest is only read for the bundles whose location names the framework
+			if (bundleLocation.getPath().indexOf(EquinoxConstants.FW_SYMBOLIC_NAME) > 0) {
+				String[] clauses = Utils.getClausesManifestMainAttributes(bundleLocation, Constants.BUNDLE_SYMBOLICNAME);
 				if (EquinoxConstants.PERSISTENT_DIR_NAME.equals(Utils.getPathFromClause(clauses[0])))
 					return new File(bundleLocation);
+			}
 		} catch (RuntimeException e) {
 			e.printStackTrace();
 		}
@@ -214,6 +216,13 @@ public class EquinoxBundlesState implements BundlesState {
 	private HashMap nameVersionStateIndex = new HashMap();
 	private final PlatformAdmin platformAdmin;
 
+	/**
+	 * The cache of the state, or <code>null</code> if the state is not cached.
+	 */
+	private StateCache stateCache = null;
+	// whether the state differs from the cached state
+	private boolean stateChanged = false;
+
 	/**
 	 * If useFwPersistentData flag equals false, this constructor will not take
 	 * a framework persistent data into account. Otherwise, it will.
@@ -314,14 +323,34 @@ public class EquinoxBundlesState implements BundlesState {
 			this.manipulator.getConfigData().setBundles(infos);
 			return false;
 		}
-		state = soFactory.createState(true);
-		createStateIndexes();
-		flagNewState = true;
 		if (props == null) {
+			state = soFactory.createState(true);
+			createStateIndexes();
 			this.manipulator.getConfigData().setBundles(infos);
 			return false;
 		}
-		setPlatformPropertiesToState(props);
+		Properties platformProperties = computePlatformProperties(props);
+		stateCache = StateCache.create(context, manipulator.getLauncherData().getFwConfigLocation(), platformProperties);
+		if (stateCache != null)
+			state = stateCache.read(soFactory);
+		boolean cached = state != null;
+		if (cached) {
+			createStateIndexes();
+			// the cached bundles that are no longer in the configuration or whose files changed are read again
+			cached = removeChangedBundles(bInfos);
+			if (!cached) {
+				// the system bundle must keep the id 0, the state is composed again when the framework changed
+				locationStateIndex.clear();
+				nameVersionStateIndex.clear();
+				stateCache.clear();
+			}
+		}
+		if (!cached) {
+			state = soFactory.createState(true);
+			createStateIndexes();
+		}
+		flagNewState = true;
+		state.setPlatformProperties(platformProperties);
 		setPlatformProperties(state);
 
 		try {
@@ -350,9 +379,16 @@ public class EquinoxBundlesState implements BundlesState {
 				bInfos = newBundleInfos;
 			}
 		}
+		Set reused = new HashSet();
 		for (int j = 0; j < bInfos.length; j++) {
 			if (DEBUG)
 				Log.log(LogService.LOG_DEBUG, this, "composeExpectedState()", "bInfos[" + j + "]=" + bInfos[j]); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			BundleDescription cachedBundle = cached ? getBundleByLocation(bInfos[j].getLocation()) : null;
+			if (cachedBundle != null && reused.add(cachedBundle)) {
+				bInfos[j].setBundleId(cachedBundle.getBundleId());
+				manipulator.getConfigData().addBundle(bInfos[j]);
+				continue;
+			}
 			try {
 				this.installBundle(bInfos[j]);
 				// System.out.println("install bInfos[" + j + "]=" + bInfos[j]);
@@ -364,6 +400,31 @@ public class EquinoxBundlesState implements BundlesState {
 		return true;
 	}
 
+	/**
+	 * Removes the cached bundles that are not in the given bundle infos or whose files changed
+	 * since they were cached. Returns <code>false</code> without removing any bundle if the
+	 * system bundle changed, as the bundle installed in its place would not get the id 0.
+	 */
+	private boolean removeChangedBundles(BundleInfo[] bInfos) {
+		Set locations = new HashSet();
+		for (int i = 0; i < bInfos.length; i++)
+			if (bInfos[i].getLocation() != null)
+				locations.add(bInfos[i].getLocation());
+		BundleDescription[] bundles = state.getBundles();
+		List changed = new ArrayList();
+		for (int i = 0; i < bundles.length; i++) {
+			URI location = FileUtils.getRealLocation(manipulator, bundles[i].getLocation());
+			if (!locations.contains(location) || !stateCache.isUnchanged(bundles[i], location)) {
+				if (bundles[i].getBundleId() == 0)
+					return false;
+				changed.add(bundles[i]);
+			}
+		}
+		for (Iterator iter = changed.iterator(); iter.hasNext();)
+			removeBundleFromState((BundleDescription) iter.next());
+		return true;
+	}
+
 	private BundleInfo convertSystemBundle(BundleDescription toConvert) {
 		// Converting the System Bundle
 		boolean markedAsStarted = false;
@@ -585,6 +646,11 @@ public class EquinoxBundlesState implements BundlesState {
 
 	public void resolve(boolean increment) {
 		state.resolve(increment);
+		// the cache is updated with the bundles installed and uninstalled since it was written
+		if (stateChanged && stateCache != null) {
+			stateCache.write(soFactory, state);
+			stateChanged = false;
+		}
 	}
 
 	void setFwJar(File fwJar) {
@@ -611,12 +677,13 @@ public class EquinoxBundlesState implements BundlesState {
 	}
 
 	/**
-	 * set platfromProperties required to compose state object into
-	 * platformProperties of this state.
+	 * get platfromProperties required to compose state object from the
+	 * given properties.
 	 * 
 	 * @param props
+	 * @return the platform properties of the state
 	 */
-	private void setPlatformPropertiesToState(Dictionary props) {
+	private Properties computePlatformProperties(Dictionary props) {
 		Properties platformProperties = setDefaultPlatformProperties();
 
 		for (Enumeration enumeration = props.keys(); enumeration.hasMoreElements();) {
@@ -628,7 +695,7 @@ public class EquinoxBundlesState implements BundlesState {
 				}
 			}
 		}
-		state.setPlatformProperties(platformProperties);
+		return platformProperties;
 	}
 
 	private void setStateObjectFactory() {
@@ -719,6 +786,9 @@ public class EquinoxBundlesState implements BundlesState {
 		URI location = FileUtils.getRealLocation(manipulator, bundleDescription.getLocation());
 		locationStateIndex.put(location, bundleDescription);
 		nameVersionStateIndex.put(getKey(bundleDescription), bundleDescription);
+		if (stateCache != null)
+			stateCache.added(bundleDescription, location);
+		stateChanged = true;
 	}
 
 	private void removeBundleFromState(BundleDescription bundleDescription) {
@@ -726,5 +796,8 @@ public class EquinoxBundlesState implements BundlesState {
 		locationStateIndex.remove(location);
 		nameVersionStateIndex.remove(getKey(bundleDescription));
 		state.removeBundle(bundleDescription);
+		if (stateCache != null)
+			stateCache.removed(bundleDescription);
+		stateChanged = true;
 	}
 }
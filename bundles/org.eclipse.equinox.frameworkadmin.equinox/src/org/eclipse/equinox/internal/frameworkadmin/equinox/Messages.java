@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2010 IBM Corporation and others.
+ * Copyright (c) 2008, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -39,6 +39,8 @@ public class Messages extends NLS {
 	public static String log_failed_reading_properties;
 	public static String log_failed_make_absolute;
 	public static String log_failed_make_relative;
+	public static String log_failed_reading_state_cache;
+	public static String log_failed_writing_state_cache;
 
 	public static String exception_unexpectedfwConfigLocation;
 	public static String exception_persistantLocationNotEqualConfigLocation;
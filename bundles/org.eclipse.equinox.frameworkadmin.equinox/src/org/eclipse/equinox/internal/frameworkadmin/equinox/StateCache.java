@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.frameworkadmin.equinox;
+
+import java.io.*;
+import java.net.URI;
+import java.util.*;
+import org.eclipse.osgi.service.resolver.*;
+import org.eclipse.osgi.util.NLS;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.log.LogService;
+
+/**
+ * A copy of the state composed for a configuration, saved in the data area of this bundle so that
+ * the manifests of the bundles of the configuration are not read each time its state is composed.
+ * The cache of a configuration is identified by the configuration location and the platform properties
+ * of the state. It records the modification time and size of the file of each bundle in the state,
+ * a bundle whose file changed since it was cached is read again. The caches of the configurations
+ * that were not used for {@link #MAX_AGE} are deleted when a cache is written.
+ */
+class StateCache {
+	/**
+	 * The system property that disables the cache when set to <code>false</code>.
+	 */
+	static final String PROP_STATE_CACHE = "org.eclipse.equinox.frameworkadmin.equinox.stateCache"; //$NON-NLS-1$
+
+	private static final String CACHE_DIR = "stateCache"; //$NON-NLS-1$
+	private static final String BUNDLES_FILE = "bundles.properties"; //$NON-NLS-1$
+	private static final String KEY = "cache.key"; //$NON-NLS-1$
+	private static final String VERSION = "cache.version"; //$NON-NLS-1$
+	private static final String BUNDLE_PREFIX = "bundle."; //$NON-NLS-1$
+	// the version of the cache layout
+	private static final String CACHE_VERSION = "1"; //$NON-NLS-1$
+	private static final String MANIFEST = "META-INF/MANIFEST.MF"; //$NON-NLS-1$
+	// the time after which the cache of a configuration that was not used is deleted
+	private static final long MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	/**
+	 * Returns the cache of the state of the given configuration, or <code>null</code> if the state cannot be cached.
+	 */
+	static StateCache create(BundleContext context, File configLocation, Dictionary platformProperties) {
+		if (context == null || "false".equalsIgnoreCase(context.getProperty(PROP_STATE_CACHE))) //$NON-NLS-1$
+			return null;
+		File root = context.getDataFile(CACHE_DIR);
+		if (root == null)
+			return null;
+		StringBuffer key = new StringBuffer();
+		key.append(configLocation == null ? "" : configLocation.getAbsolutePath()).append('\n'); //$NON-NLS-1$
+		List names = new ArrayList();
+		for (Enumeration enumeration = platformProperties.keys(); enumeration.hasMoreElements();)
+			names.add(enumeration.nextElement());
+		Collections.sort(names);
+		for (Iterator iter = names.iterator(); iter.hasNext();) {
+			Object name = iter.next();
+			key.append(name).append('=').append(platformProperties.get(name)).append('\n');
+		}
+		return new StateCache(root, key.toString());
+	}
+
+	/**
+	 * Returns the modification time and size of the file of the bundle at the given location,
+	 * or <code>null</code> if the bundle is not a local file.
+	 */
+	static String getStamp(URI location) {
+		if (location == null || !"file".equals(location.getScheme())) //$NON-NLS-1$
+			return null;
+		File file;
+		try {
+			file = new File(location);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		// the manifest of a directory bundle can change without changing the directory
+		if (file.isDirectory())
+			file = new File(file, MANIFEST);
+		if (!file.isFile())
+			return null;
+		return file.lastModified() + "," + file.length(); //$NON-NLS-1$
+	}
+
+	private final File directory;
+	private final String key;
+	// the stamp of each bundle in the state, by the location of its bundle description
+	private final Map stamps = new HashMap();
+	private final Map cachedStamps = new HashMap();
+
+	private StateCache(File root, String key) {
+		this.key = key;
+		this.directory = new File(root, Integer.toHexString(key.hashCode()));
+	}
+
+	/**
+	 * Reads the cached state, returns <code>null</code> if the configuration has no cached state.
+	 */
+	State read(StateObjectFactory factory) {
+		if (!directory.isDirectory())
+			return null;
+		Properties properties = new Properties();
+		InputStream input = null;
+		try {
+			input = new BufferedInputStream(new FileInputStream(new File(directory, BUNDLES_FILE)));
+			properties.load(input);
+		} catch (IOException e) {
+			return null;
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		// another configuration can have a key with the same hash code
+		if (!CACHE_VERSION.equals(properties.getProperty(VERSION)) || !key.equals(properties.getProperty(KEY)))
+			return null;
+		State state;
+		try {
+			state = factory.readState(directory);
+		} catch (IOException e) {
+			Log.log(LogService.LOG_WARNING, this, "read(StateObjectFactory)", NLS.bind(Messages.log_failed_reading_state_cache, directory), e); //$NON-NLS-1$
+			return null;
+		} catch (RuntimeException e) {
+			Log.log(LogService.LOG_WARNING, this, "read(StateObjectFactory)", NLS.bind(Messages.log_failed_reading_state_cache, directory), e); //$NON-NLS-1$
+			return null;
+		}
+		if (state == null)
+			return null;
+		// the cache is kept as long as it is used
+		directory.setLastModified(System.currentTimeMillis());
+		for (Enumeration enumeration = properties.propertyNames(); enumeration.hasMoreElements();) {
+			String name = (String) enumeration.nextElement();
+			if (name.startsWith(BUNDLE_PREFIX))
+				cachedStamps.put(name.substring(BUNDLE_PREFIX.length()), properties.getProperty(name));
+		}
+		stamps.putAll(cachedStamps);
+		return state;
+	}
+
+	/**
+	 * Returns whether the file of the given cached bundle is unchanged since it was cached.
+	 */
+	boolean isUnchanged(BundleDescription bundle, URI location) {
+		String cached = (String) cachedStamps.get(bundle.getLocation());
+		return cached != null && cached.equals(getStamp(location));
+	}
+
+	/**
+	 * Records the stamp of a bundle added to the state.
+	 */
+	void added(BundleDescription bundle, URI location) {
+		String stamp = getStamp(location);
+		if (stamp == null)
+			stamps.remove(bundle.getLocation());
+		else
+			stamps.put(bundle.getLocation(), stamp);
+	}
+
+	/**
+	 * Forgets the stamp of a bundle removed from the state.
+	 */
+	void removed(BundleDescription bundle) {
+		stamps.remove(bundle.getLocation());
+	}
+
+	/**
+	 * Forgets the stamps of the cached state, when the state is composed again from scratch.
+	 */
+	void clear() {
+		cachedStamps.clear();
+		stamps.clear();
+	}
+
+	/**
+	 * Replaces the cached state with the given state.
+	 */
+	void write(StateObjectFactory factory, State state) {
+		File root = directory.getParentFile();
+		if (!root.isDirectory() && !root.mkdirs())
+			return;
+		Properties properties = new Properties();
+		properties.setProperty(VERSION, CACHE_VERSION);
+		properties.setProperty(KEY, key);
+		for (Iterator iter = stamps.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			properties.setProperty(BUNDLE_PREFIX + entry.getKey(), (String) entry.getValue());
+		}
+		File temp = null;
+		try {
+			// the state is written to a new directory first so that other processes never read a partial state
+			temp = File.createTempFile(directory.getName(), ".tmp", root); //$NON-NLS-1$
+			if (!temp.delete() || !temp.mkdir())
+				return;
+			factory.writeState(state, temp);
+			OutputStream output = new BufferedOutputStream(new FileOutputStream(new File(temp, BUNDLES_FILE)));
+			try {
+				properties.store(output, null);
+			} finally {
+				output.close();
+			}
+			File old = null;
+			if (directory.exists()) {
+				old = File.createTempFile(directory.getName(), ".old", root); //$NON-NLS-1$
+				if (!old.delete() || !directory.renameTo(old))
+					return;
+			}
+			if (temp.renameTo(directory))
+				temp = null;
+			if (old != null)
+				delete(old);
+			cachedStamps.clear();
+			cachedStamps.putAll(stamps);
+			deleteUnused(root);
+		} catch (IOException e) {
+			Log.log(LogService.LOG_WARNING, this, "write(StateObjectFactory, State)", NLS.bind(Messages.log_failed_writing_state_cache, directory), e); //$NON-NLS-1$
+		} finally {
+			if (temp != null)
+				delete(temp);
+		}
+	}
+
+	/**
+	 * Deletes the caches of the other configurations that were not used for {@link #MAX_AGE}, along with
+	 * the files left by writes that did not complete.
+	 */
+	private void deleteUnused(File root) {
+		File[] children = root.listFiles();
+		if (children == null)
+			return;
+		long oldest = System.currentTimeMillis() - MAX_AGE;
+		for (int i = 0; i < children.length; i++)
+			if (!children[i].equals(directory) && children[i].lastModified() < oldest)
+				delete(children[i]);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null)
+			for (int i = 0; i < children.length; i++)
+				delete(children[i]);
+		file.delete();
+	}
+}
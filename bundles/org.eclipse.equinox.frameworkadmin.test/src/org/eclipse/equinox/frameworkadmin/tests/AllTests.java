@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2008, 2010 IBM Corporation and others.
+ *  Copyright (c) 2008, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -45,6 +45,7 @@ public class AllTests extends TestCase {
 		suite.addTestSuite(SharedConfigurationTest.class);
 		suite.addTestSuite(SimpleConfiguratorComingAndGoing.class);
 		suite.addTestSuite(SimpleConfiguratorTest.class);
+		suite.addTestSuite(StateCacheTest.class);
 		suite.addTestSuite(TestEclipseDataArea.class);
 		suite.addTestSuite(TestRunningInstance.class);
 		suite.addTestSuite(TestVMArg.class);
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ *  Copyright (c) 2012 IBM Corporation and others.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.frameworkadmin.tests;
+
+import java.io.*;
+import java.util.Properties;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.equinox.frameworkadmin.BundleInfo;
+import org.eclipse.equinox.internal.provisional.frameworkadmin.BundlesState;
+import org.eclipse.equinox.internal.provisional.frameworkadmin.Manipulator;
+
+/**
+ * Tests the cache of the bundles state of a configuration.
+ */
+public class StateCacheTest extends FwkAdminAndSimpleConfiguratorTest {
+	private static final String PROP_STATE_CACHE = "org.eclipse.equinox.frameworkadmin.equinox.stateCache";
+	private Manipulator manipulator;
+	private File framework;
+	private File bundle;
+
+	public StateCacheTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		manipulator = getNewManipulator(StateCacheTest.class.getName());
+		// the cache of the configuration may be left by an earlier run
+		File cache = getCacheDirectory();
+		if (cache != null)
+			delete(cache);
+		framework = new File(getInstallFolder(), "org.eclipse.osgi.jar");
+		copy("Copying the framework", getTestData("Getting the framework", "dataFile/org.eclipse.osgi.jar"), framework);
+		bundle = new File(getInstallFolder(), "plugins/bundle_1");
+		copy("Copying bundle_1", getTestData("Getting bundle_1", "dataFile/bundle_1"), bundle);
+		manipulator.getConfigData().addBundle(new BundleInfo("org.eclipse.osgi", "3.3.1", framework.toURI(), 0, true));
+		manipulator.getConfigData().addBundle(new BundleInfo("bundle_1", "1.0.0", bundle.toURI(), 4, false));
+	}
+
+	public void testCacheHit() throws IOException {
+		BundlesState state = manipulator.getBundlesState();
+		assertBundle(state, "bundle_1", "1.0.0");
+		File cache = getCacheDirectory();
+		assertNotNull("The state is not cached", cache);
+
+		// the cache is not written again when nothing changed
+		File marker = new File(cache, "marker");
+		assertTrue(marker.createNewFile());
+		state = manipulator.getBundlesState();
+		assertTrue("The cache was written again", marker.exists());
+		assertBundle(state, "bundle_1", "1.0.0");
+		assertEquals(0, state.getSystemBundle().getBundleId());
+	}
+
+	public void testChangedBundle() throws IOException {
+		manipulator.getBundlesState();
+		File manifest = new File(bundle, "META-INF/MANIFEST.MF");
+		long lastModified = manifest.lastModified();
+		writeManifest(manifest, "bundle_1", "2.0.0");
+		// the size of the manifest is unchanged
+		assertTrue(manifest.setLastModified(lastModified + 10000));
+
+		BundlesState state = manipulator.getBundlesState();
+		assertBundle(state, "bundle_1", "2.0.0");
+		// the changed bundle is also read again from the cache
+		assertBundle(manipulator.getBundlesState(), "bundle_1", "2.0.0");
+	}
+
+	public void testRemovedBundle() {
+		manipulator.getBundlesState();
+		delete(bundle);
+
+		BundlesState state = manipulator.getBundlesState();
+		assertNull("bundle_1 is in the state", getBundle(state, "bundle_1"));
+		assertEquals(0, state.getSystemBundle().getBundleId());
+	}
+
+	public void testFrameworkUpdate() {
+		BundlesState state = manipulator.getBundlesState();
+		assertEquals("3.3.1.R33x_v20070828", state.getSystemBundle().getVersion());
+
+		copy("Updating the framework", getTestData("Getting the framework", "dataFile/org.eclipse.osgi_3.4.0.jar"), framework);
+		state = manipulator.getBundlesState();
+		BundleInfo systemBundle = state.getSystemBundle();
+		assertNotNull("The system bundle is not in the state", systemBundle);
+		assertEquals(0, systemBundle.getBundleId());
+		assertEquals("3.4.0.v20071105", systemBundle.getVersion());
+		assertBundle(state, "bundle_1", "1.0.0");
+	}
+
+	public void testCacheDisabled() {
+		System.setProperty(PROP_STATE_CACHE, "false");
+		try {
+			BundlesState state = manipulator.getBundlesState();
+			assertBundle(state, "bundle_1", "1.0.0");
+			assertNull("The state is cached", getCacheDirectory());
+		} finally {
+			System.getProperties().remove(PROP_STATE_CACHE);
+		}
+	}
+
+	public void testUnusedCacheDeleted() {
+		File unused = new File(getCacheRoot(), "unused");
+		unused.mkdirs();
+		assertTrue(unused.setLastModified(System.currentTimeMillis() - 31L * 24 * 60 * 60 * 1000));
+
+		manipulator.getBundlesState();
+		assertNotNull("The state is not cached", getCacheDirectory());
+		assertFalse("The unused cache was not deleted", unused.exists());
+	}
+
+	private void assertBundle(BundlesState state, String symbolicName, String version) {
+		BundleInfo info = getBundle(state, symbolicName);
+		assertNotNull(symbolicName + " is not in the state", info);
+		assertEquals(version, info.getVersion());
+	}
+
+	private BundleInfo getBundle(BundlesState state, String symbolicName) {
+		BundleInfo[] infos = state.getExpectedState();
+		for (int i = 0; i < infos.length; i++)
+			if (symbolicName.equals(infos[i].getSymbolicName()))
+				return infos[i];
+		return null;
+	}
+
+	private void writeManifest(File manifest, String symbolicName, String version) throws IOException {
+		Writer writer = new FileWriter(manifest);
+		try {
+			writer.write("Manifest-Version: 1.0\nBundle-ManifestVersion: 2\nBundle-Name: Bundle 1\nBundle-SymbolicName: " + symbolicName + "\nBundle-Version: " + version + "\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private File getCacheRoot() {
+		return Platform.getBundle("org.eclipse.equinox.frameworkadmin.equinox").getBundleContext().getDataFile("stateCache");
+	}
+
+	/*
+	 * Returns the directory of the cached state of the configuration, or null if the state is not cached.
+	 */
+	private File getCacheDirectory() {
+		File[] children = getCacheRoot().listFiles();
+		if (children == null)
+			return null;
+		String key = getConfigurationFolder().getAbsolutePath() + '\n';
+		for (int i = 0; i < children.length; i++) {
+			File file = new File(children[i], "bundles.properties");
+			if (!file.isFile())
+				continue;
+			Properties properties = new Properties();
+			try {
+				InputStream input = new FileInputStream(file);
+				try {
+					properties.load(input);
+				} finally {
+					input.close();
+				}
+			} catch (IOException e) {
+				fail("Reading " + file + ": " + e);
+			}
+			String cacheKey = properties.getProperty("cache.key");
+			if (cacheKey != null && cacheKey.startsWith(key))
+				return children[i];
+		}
+		return null;
+	}
+}
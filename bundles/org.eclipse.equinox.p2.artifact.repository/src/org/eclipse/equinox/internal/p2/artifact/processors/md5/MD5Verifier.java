@@ -17,6 +17,7 @@ import java.security.NoSuchAlgorithmException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.equinox.internal.p2.artifact.repository.Activator;
+import org.eclipse.equinox.internal.p2.artifact.repository.DigestHelper;
 import org.eclipse.equinox.internal.provisional.p2.artifact.repository.processing.ProcessingStep;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.core.ProvisionException;
@@ -57,7 +58,7 @@ public class MD5Verifier extends ProcessingStep {
 		if (expectedMD5 == null || expectedMD5.length() != 32)
 			setStatus(new Status(code, Activator.ID, NLS.bind(Messages.Error_invalid_hash, expectedMD5)));
 		try {
-			md5 = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+			md5 = MessageDigest.getInstance(DigestHelper.MD5);
 		} catch (NoSuchAlgorithmException e) {
 			setStatus(new Status(code, Activator.ID, Messages.Error_MD5_unavailable, e));
 		}
@@ -68,17 +69,16 @@ public class MD5Verifier extends ProcessingStep {
 		getDestination().write(b);
 	}
 
+	public void write(byte[] b, int off, int len) throws IOException {
+		md5.update(b, off, len);
+		getDestination().write(b, off, len);
+	}
+
 	public void close() throws IOException {
-		byte[] digest = md5.digest();
-		StringBuffer buf = new StringBuffer();
-		for (int i = 0; i < digest.length; i++) {
-			if ((digest[i] & 0xFF) < 0x10)
-				buf.append('0');
-			buf.append(Integer.toHexString(digest[i] & 0xFF));
-		}
+		String buf = DigestHelper.toHexString(md5.digest());
 
 		// if the hashes don't line up set the status to error.
-		if (!buf.toString().equals(expectedMD5))
+		if (!buf.equals(expectedMD5))
 			setStatus(new Status(IStatus.ERROR, Activator.ID, ProvisionException.ARTIFACT_MD5_NOT_MATCH, NLS.bind(Messages.Error_unexpected_hash, expectedMD5, buf), null));
 		super.close();
 	}
@@ -21,6 +21,9 @@ import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.internal.p2.persistence.CompositeRepositoryIO;
 import org.eclipse.equinox.internal.p2.persistence.CompositeRepositoryState;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader.IChildLoader;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader.Result;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
@@ -88,11 +91,7 @@ public class CompositeArtifactRepository extends AbstractArtifactRepository impl
 	CompositeArtifactRepository(IArtifactRepositoryManager manager, CompositeRepositoryState state, IProgressMonitor monitor) throws ProvisionException {
 		super(manager.getAgent(), state.getName(), state.getType(), state.getVersion(), state.getLocation(), state.getDescription(), state.getProvider(), state.getProperties());
 		this.manager = manager;
-		SubMonitor sub = SubMonitor.convert(monitor, 100 * state.getChildren().length);
-		List<URI> repositoriesToBeRemovedOnFailure = new ArrayList<URI>();
-		boolean failOnChildFailure = shouldFailOnChildFailure(state);
-		for (URI child : state.getChildren())
-			addChild(child, false, sub.newChild(100), failOnChildFailure, repositoriesToBeRemovedOnFailure);
+		addChildren(state.getChildren(), false, monitor, shouldFailOnChildFailure(state));
 	}
 
 	/**
@@ -149,37 +148,54 @@ public class CompositeArtifactRepository extends AbstractArtifactRepository impl
 
 	public void addChild(URI childURI) {
 		try {
-			addChild(childURI, true, null, false, null);
+			addChildren(new URI[] {childURI}, true, null, false);
 		} catch (ProvisionException e) {
 			//already logged
 		}
 	}
 
-	//successfully loaded repo will be added to the list repositoriesToBeRemovedOnFailure if the list is not null and the repo wasn't previously loaded
-	private void addChild(URI childURI, boolean save, IProgressMonitor monitor, boolean propagateException, List<URI> repositoriesToBeRemovedOnFailure) throws ProvisionException {
-		SubMonitor sub = SubMonitor.convert(monitor);
-		URI absolute = URIUtil.makeAbsolute(childURI, getLocation());
-		if (childrenURIs.contains(childURI) || childrenURIs.contains(absolute)) {
-			sub.done();
+	//children are loaded concurrently; loaded repositories are kept in the order of the children
+	private void addChildren(URI[] children, boolean save, IProgressMonitor monitor, boolean propagateException) throws ProvisionException {
+		List<URI> toLoad = new ArrayList<URI>(children.length);
+		for (URI childURI : children) {
+			URI absolute = URIUtil.makeAbsolute(childURI, getLocation());
+			if (childrenURIs.contains(childURI) || childrenURIs.contains(absolute))
+				continue;
+			childrenURIs.add(childURI);
+			toLoad.add(absolute);
+		}
+		if (toLoad.isEmpty()) {
+			if (monitor != null)
+				monitor.done();
 			return;
 		}
-		childrenURIs.add(childURI);
 		if (save)
 			save();
-		try {
-			boolean currentLoaded = getManager().contains(absolute);
-			IArtifactRepository repo = load(childURI, sub);
-			if (!currentLoaded && propagateException)
-				repositoriesToBeRemovedOnFailure.add(absolute);
-			loadedRepos.add(new ChildInfo(repo));
-		} catch (ProvisionException e) {
-			//repository failed to load. fall through
-			LogHelper.log(e);
-			if (propagateException) {
-				removeFromRepoManager(repositoriesToBeRemovedOnFailure);
-				String msg = NLS.bind(Messages.io_failedRead, getLocation());
-				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, msg, e));
+
+		// repositories loaded by this composite, to be removed from the manager if the composite fails to load
+		final List<URI> repositoriesToBeRemovedOnFailure = Collections.synchronizedList(new ArrayList<URI>());
+		List<Result<IArtifactRepository>> results = CompositeChildLoader.load(toLoad, new IChildLoader<IArtifactRepository>() {
+			public IArtifactRepository load(URI absolute, IProgressMonitor childMonitor) throws ProvisionException {
+				boolean currentLoaded = getManager().contains(absolute);
+				IArtifactRepository repo = CompositeArtifactRepository.this.load(absolute, childMonitor);
+				if (!currentLoaded)
+					repositoriesToBeRemovedOnFailure.add(absolute);
+				return repo;
+			}
+		}, monitor);
+
+		for (Result<IArtifactRepository> result : results) {
+			if (result.getRepository() == null) {
+				//repository failed to load. fall through
+				LogHelper.log(result.getFailure());
+				if (propagateException) {
+					removeFromRepoManager(repositoriesToBeRemovedOnFailure);
+					String msg = NLS.bind(Messages.io_failedRead, getLocation());
+					throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, msg, result.getFailure()));
+				}
+				continue;
 			}
+			loadedRepos.add(new ChildInfo(result.getRepository()));
 		}
 	}
 
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.artifact.repository;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.eclipse.core.runtime.*;
+
+/**
+ * Computes the digests of artifact files. Files are read in large chunks, several algorithms
+ * can be computed in a single pass over a file, and the digests of many files can be computed in parallel.
+ */
+public class DigestHelper {
+	public static final String MD5 = "MD5"; //$NON-NLS-1$
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	// the buffers are reused by each thread instead of being allocated for every file
+	private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * The state shared by the threads computing the digests of several files, guarded by itself.
+	 */
+	private static class Progress {
+		int next; //index of the next file
+		int completed; //number of digests computed
+		boolean stopped;
+	}
+
+	/**
+	 * Computes the digests of the given file for each of the given algorithms, reading the file once.
+	 * @return the digests as hexadecimal strings, in the order of the algorithms
+	 */
+	public static String[] computeDigests(File file, String[] algorithms) throws IOException, NoSuchAlgorithmException {
+		MessageDigest[] digests = new MessageDigest[algorithms.length];
+		for (int i = 0; i < algorithms.length; i++)
+			digests[i] = MessageDigest.getInstance(algorithms[i]);
+
+		byte[] buffer = buffers.get();
+		InputStream input = new FileInputStream(file);
+		try {
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				for (int i = 0; i < digests.length; i++)
+					digests[i].update(buffer, 0, read);
+			}
+		} finally {
+			input.close();
+		}
+
+		String[] result = new String[digests.length];
+		for (int i = 0; i < digests.length; i++)
+			result[i] = toHexString(digests[i].digest());
+		return result;
+	}
+
+	/**
+	 * Returns the MD5 digest of the given file as an hexadecimal string, or <code>null</code> if
+	 * the file is not a regular file or cannot be read.
+	 */
+	public static String computeMD5(File file) {
+		if (file == null || file.isDirectory() || !file.exists())
+			return null;
+		try {
+			return computeDigests(file, new String[] {MD5})[0];
+		} catch (IOException e) {
+			return null;
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Computes the MD5 digests of the given files, using one thread per available processor.
+	 * @return the digest of each file, in the order of the files, <code>null</code> for the files whose digest could not be computed
+	 * @throws OperationCanceledException if the monitor is canceled before all the digests are computed
+	 */
+	public static String[] computeMD5(final File[] files, IProgressMonitor monitor) {
+		SubMonitor sub = SubMonitor.convert(monitor, files.length);
+		final String[] result = new String[files.length];
+		int threads = Math.min(files.length, Runtime.getRuntime().availableProcessors());
+		if (threads <= 1) {
+			for (int i = 0; i < files.length; i++) {
+				if (sub.isCanceled())
+					throw new OperationCanceledException();
+				result[i] = computeMD5(files[i]);
+				sub.worked(1);
+			}
+			return result;
+		}
+
+		final Progress progress = new Progress();
+		Runnable task = new Runnable() {
+			public void run() {
+				while (true) {
+					int index;
+					synchronized (progress) {
+						if (progress.stopped || progress.next == files.length)
+							return;
+						index = progress.next++;
+					}
+					String digest = computeMD5(files[index]);
+					synchronized (progress) {
+						result[index] = digest;
+						progress.completed++;
+						progress.notifyAll();
+					}
+				}
+			}
+		};
+		for (int i = 0; i < threads; i++) {
+			Thread thread = new Thread(task, "Artifact digest computation"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.start();
+		}
+		int reported = 0;
+		try {
+			synchronized (progress) {
+				while (progress.completed < files.length) {
+					if (sub.isCanceled())
+						throw new OperationCanceledException();
+					try {
+						progress.wait(CANCEL_POLL_INTERVAL);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new OperationCanceledException();
+					}
+					sub.worked(progress.completed - reported);
+					reported = progress.completed;
+				}
+			}
+		} finally {
+			synchronized (progress) {
+				progress.stopped = true;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the given digest as a string of lower case hexadecimal digits.
+	 */
+	public static String toHexString(byte[] digest) {
+		StringBuffer buf = new StringBuffer(digest.length * 2);
+		for (int i = 0; i < digest.length; i++) {
+			if ((digest[i] & 0xFF) < 0x10)
+				buf.append('0');
+			buf.append(Integer.toHexString(digest[i] & 0xFF));
+		}
+		return buf.toString();
+	}
+}
@@ -766,7 +766,8 @@ public class SimpleArtifactRepository extends AbstractArtifactRepository impleme
 			return Status.CANCEL_STATUS;
 
 		final MultiStatus overallStatus = new MultiStatus(Activator.ID, IStatus.OK, null, null);
-		LinkedList<IArtifactRequest> requestsPending = new LinkedList<IArtifactRequest>(Arrays.asList(requests));
+		// start the largest downloads first so that the last ones to complete are small
+		LinkedList<IArtifactRequest> requestsPending = new LinkedList<IArtifactRequest>(sortBySize(requests));
 
 		int numberOfJobs = Math.min(requests.length, getMaximumThreads());
 		if (numberOfJobs <= 1 || (!isForceThreading() && isLocal())) {
@@ -805,6 +806,34 @@ public class SimpleArtifactRepository extends AbstractArtifactRepository impleme
 		return (monitor.isCanceled() ? Status.CANCEL_STATUS : overallStatus);
 	}
 
+	private List<IArtifactRequest> sortBySize(IArtifactRequest[] requests) {
+		final Map<IArtifactRequest, Long> sizes = new HashMap<IArtifactRequest, Long>(requests.length);
+		for (int i = 0; i < requests.length; i++)
+			sizes.put(requests[i], new Long(getDownloadSize(requests[i].getArtifactKey())));
+		List<IArtifactRequest> result = new ArrayList<IArtifactRequest>(Arrays.asList(requests));
+		Collections.sort(result, new Comparator<IArtifactRequest>() {
+			public int compare(IArtifactRequest r1, IArtifactRequest r2) {
+				return sizes.get(r2).compareTo(sizes.get(r1));
+			}
+		});
+		return result;
+	}
+
+	private long getDownloadSize(IArtifactKey key) {
+		IArtifactDescriptor[] descriptors = getArtifactDescriptors(key);
+		for (int i = 0; i < descriptors.length; i++) {
+			String size = descriptors[i].getProperty(IArtifactDescriptor.DOWNLOAD_SIZE);
+			if (size != null) {
+				try {
+					return Long.parseLong(size);
+				} catch (NumberFormatException e) {
+					//try the next descriptor
+				}
+			}
+		}
+		return 0;
+	}
+
 	public synchronized IArtifactDescriptor getCompleteArtifactDescriptor(IArtifactKey key) {
 		if (!holdsLock() && URIUtil.isFileURI(getLocation())) {
 			load(new NullProgressMonitor());
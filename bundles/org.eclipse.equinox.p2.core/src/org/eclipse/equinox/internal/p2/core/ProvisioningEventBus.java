@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2010 IBM Corporation and others.
+ * Copyright (c) 2007, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,10 +10,11 @@
  *******************************************************************************/
 package org.eclipse.equinox.internal.p2.core;
 
-import java.util.EventObject;
+import java.util.*;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
+import org.eclipse.equinox.internal.p2.core.helpers.Tracing;
 import org.eclipse.equinox.internal.provisional.p2.core.eventbus.*;
 import org.eclipse.equinox.p2.core.spi.IAgentService;
 import org.eclipse.osgi.framework.eventmgr.*;
@@ -22,6 +23,12 @@ import org.eclipse.osgi.framework.eventmgr.*;
  * Default implementation of the {@link IProvisioningEventBus} service.
  */
 public class ProvisioningEventBus implements EventDispatcher<ProvisioningListener, ProvisioningListener, EventObject>, IProvisioningEventBus, IAgentService {
+	/**
+	 * The time in milliseconds during which the events published after a first event
+	 * are collected in the same batch for the {@link BatchedProvisioningListener}s.
+	 */
+	static final long BATCH_WINDOW = 50;
+
 	private final CopyOnWriteIdentityMap<ProvisioningListener, ProvisioningListener> syncListeners = new CopyOnWriteIdentityMap<ProvisioningListener, ProvisioningListener>();
 	private final CopyOnWriteIdentityMap<ProvisioningListener, ProvisioningListener> asyncListeners = new CopyOnWriteIdentityMap<ProvisioningListener, ProvisioningListener>();
 	private EventManager eventManager = new EventManager("Provisioning Event Dispatcher"); //$NON-NLS-1$
@@ -31,6 +38,64 @@ public class ProvisioningEventBus implements EventDispatcher<ProvisioningListene
 	private boolean closed = false;
 	/* @GuardedBy("dispatchEventLock") */
 	private int dispatchingEvents = 0;
+	/* @GuardedBy("dispatchEventLock") */
+	private final Map<ProvisioningListener, BatchQueue> batchQueues = new IdentityHashMap<ProvisioningListener, BatchQueue>();
+	/* @GuardedBy("dispatchEventLock") */
+	private boolean batchPending = false;
+	/* @GuardedBy("dispatchEventLock") */
+	private Thread batchDispatcher;
+
+	/**
+	 * The events published for a batched listener and not delivered yet.
+	 */
+	private static class BatchQueue {
+		final BatchedProvisioningListener listener;
+		private List<EventObject> events = new ArrayList<EventObject>();
+		// the position in the batch of the event of each class that can be coalesced
+		private final Map<Class<?>, Integer> positions = new HashMap<Class<?>, Integer>();
+		int maximumDepth = 0;
+		int published = 0;
+		int coalesced = 0;
+		int batches = 0;
+
+		BatchQueue(BatchedProvisioningListener listener) {
+			this.listener = listener;
+		}
+
+		void add(EventObject event) {
+			published++;
+			if (listener.canCoalesce(event)) {
+				Integer position = positions.get(event.getClass());
+				if (position != null) {
+					events.set(position.intValue(), event);
+					coalesced++;
+					return;
+				}
+				positions.put(event.getClass(), new Integer(events.size()));
+			}
+			events.add(event);
+			if (events.size() > maximumDepth)
+				maximumDepth = events.size();
+		}
+
+		int getDepth() {
+			return events.size();
+		}
+
+		EventObject[] take() {
+			if (events.isEmpty())
+				return null;
+			EventObject[] batch = events.toArray(new EventObject[events.size()]);
+			events.clear();
+			positions.clear();
+			batches++;
+			return batch;
+		}
+
+		public String toString() {
+			return listener + ": published " + published + " events, coalesced " + coalesced + ", delivered " + batches + " batches, maximum queue depth " + maximumDepth; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		}
+	}
 
 	public ProvisioningEventBus() {
 		super();
@@ -40,7 +105,14 @@ public class ProvisioningEventBus implements EventDispatcher<ProvisioningListene
 	 * @see org.eclipse.equinox.internal.provisional.p2.core.eventbus.IProvisioningEventBus#addListener(org.eclipse.equinox.internal.provisional.p2.core.eventbus.ProvisioningListener)
 	 */
 	public void addListener(ProvisioningListener toAdd) {
-		if (toAdd instanceof SynchronousProvisioningListener) {
+		if (toAdd instanceof BatchedProvisioningListener) {
+			synchronized (dispatchEventLock) {
+				if (closed || batchQueues.containsKey(toAdd))
+					return;
+				batchQueues.put(toAdd, new BatchQueue((BatchedProvisioningListener) toAdd));
+				startBatchDispatcher();
+			}
+		} else if (toAdd instanceof SynchronousProvisioningListener) {
 			synchronized (syncListeners) {
 				syncListeners.put(toAdd, toAdd);
 			}
@@ -55,7 +127,13 @@ public class ProvisioningEventBus implements EventDispatcher<ProvisioningListene
 	 * @see org.eclipse.equinox.internal.provisional.p2.core.eventbus.IProvisioningEventBus#removeListener(org.eclipse.equinox.internal.provisional.p2.core.eventbus.ProvisioningListener)
 	 */
 	public void removeListener(ProvisioningListener toRemove) {
-		if (toRemove instanceof SynchronousProvisioningListener) {
+		if (toRemove instanceof BatchedProvisioningListener) {
+			synchronized (dispatchEventLock) {
+				BatchQueue queue = batchQueues.remove(toRemove);
+				if (queue != null && Tracing.DEBUG_EVENTS_CLIENT)
+					Tracing.debug(queue.toString());
+			}
+		} else if (toRemove instanceof SynchronousProvisioningListener) {
 			synchronized (syncListeners) {
 				syncListeners.remove(toRemove);
 			}
@@ -93,6 +171,107 @@ public class ProvisioningEventBus implements EventDispatcher<ProvisioningListene
 					listeners.dispatchEventAsynchronous(0, event);
 			}
 		}
+
+		synchronized (dispatchEventLock) {
+			if (closed || batchQueues.isEmpty())
+				return;
+			for (BatchQueue queue : batchQueues.values())
+				queue.add(event);
+			if (!batchPending) {
+				batchPending = true;
+				dispatchEventLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of events waiting to be delivered to the given batched listener,
+	 * or <code>-1</code> if the listener is not a batched listener of this bus.
+	 */
+	public int getQueueDepth(ProvisioningListener listener) {
+		synchronized (dispatchEventLock) {
+			BatchQueue queue = batchQueues.get(listener);
+			return queue == null ? -1 : queue.getDepth();
+		}
+	}
+
+	/**
+	 * Returns the largest number of events that waited to be delivered to the given batched
+	 * listener, or <code>-1</code> if the listener is not a batched listener of this bus.
+	 */
+	public int getMaximumQueueDepth(ProvisioningListener listener) {
+		synchronized (dispatchEventLock) {
+			BatchQueue queue = batchQueues.get(listener);
+			return queue == null ? -1 : queue.maximumDepth;
+		}
+	}
+
+	/* @GuardedBy("dispatchEventLock") */
+	private void startBatchDispatcher() {
+		if (batchDispatcher != null)
+			return;
+		batchDispatcher = new Thread("Provisioning Event Batch Dispatcher") { //$NON-NLS-1$
+			public void run() {
+				dispatchBatches();
+			}
+		};
+		batchDispatcher.setDaemon(true);
+		batchDispatcher.start();
+	}
+
+	void dispatchBatches() {
+		try {
+			while (true) {
+				synchronized (dispatchEventLock) {
+					while (!closed && !batchPending)
+						dispatchEventLock.wait();
+					if (closed)
+						return;
+				}
+				// let the events published right after the first one join its batch
+				Thread.sleep(BATCH_WINDOW);
+
+				List<BatchQueue> queues;
+				List<EventObject[]> batches;
+				synchronized (dispatchEventLock) {
+					if (closed)
+						return;
+					batchPending = false;
+					queues = new ArrayList<BatchQueue>(batchQueues.size());
+					batches = new ArrayList<EventObject[]>(batchQueues.size());
+					for (BatchQueue queue : batchQueues.values()) {
+						EventObject[] batch = queue.take();
+						if (batch != null) {
+							queues.add(queue);
+							batches.add(batch);
+						}
+					}
+				}
+				for (int i = 0; i < queues.size(); i++)
+					dispatchBatch(queues.get(i).listener, batches.get(i));
+			}
+		} catch (InterruptedException e) {
+			// the bus is being closed
+		}
+	}
+
+	private void dispatchBatch(BatchedProvisioningListener listener, EventObject[] events) {
+		synchronized (dispatchEventLock) {
+			if (closed)
+				return;
+			dispatchingEvents++;
+		}
+		try {
+			listener.notify(events);
+		} catch (Exception e) {
+			LogHelper.log(new Status(IStatus.ERROR, Activator.ID, "Exception during event notification", e)); //$NON-NLS-1$
+		} finally {
+			synchronized (dispatchEventLock) {
+				dispatchingEvents--;
+				if (dispatchingEvents == 0)
+					dispatchEventLock.notifyAll();
+			}
+		}
 	}
 
 	/* (non-Javadoc)
@@ -125,6 +304,11 @@ public class ProvisioningEventBus implements EventDispatcher<ProvisioningListene
 		synchronized (dispatchEventLock) {
 			eventManager.close();
 			closed = true;
+			// wakes up the batch dispatcher
+			dispatchEventLock.notifyAll();
+			if (Tracing.DEBUG_EVENTS_CLIENT)
+				for (BatchQueue queue : batchQueues.values())
+					Tracing.debug(queue.toString());
 			while (dispatchingEvents != 0) {
 				try {
 					dispatchEventLock.wait(30000); // we're going to cap waiting time at 30s
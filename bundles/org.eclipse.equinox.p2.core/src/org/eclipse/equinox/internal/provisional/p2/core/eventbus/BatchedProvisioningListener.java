@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.provisional.p2.core.eventbus;
+
+import java.util.EventObject;
+import org.eclipse.equinox.internal.p2.core.ProvisioningEventBus;
+
+/**
+ * A provisioning listener that is notified asynchronously about the events published
+ * during a short window, in batches. Events that the listener does not need to see one
+ * by one, such as progress events, can be coalesced so that only the latest event of
+ * their class in a batch is delivered.
+ * <p>
+ * The event bus never calls {@link #notify(EventObject)} on a batched listener.
+ * </p>
+ * @see ProvisioningEventBus
+ */
+public interface BatchedProvisioningListener extends ProvisioningListener {
+
+	/**
+	 * Notifies the listener about the events published since the previous batch, in the
+	 * order they were published. A coalesced event takes the place of the first event of
+	 * its class in the batch.
+	 */
+	public void notify(EventObject[] events);
+
+	/**
+	 * Returns whether an event can replace the earlier events of the same class in a batch.
+	 * This method is called when the event is published and must return quickly.
+	 */
+	public boolean canCoalesce(EventObject event);
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others. All rights reserved. This
+ * program and the accompanying materials are made available under the terms of
+ * the Eclipse Public License v1.0 which accompanies this distribution, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   IBM Corporation - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.util.*;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.internal.p2.core.helpers.CollectionUtils;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.IQueryable;
+
+/**
+ * A planning session keeps the SAT encoding of a set of IUs alive across planner invocations.
+ * Requests planned against the same available IUs only encode their roots and optimization
+ * function, as long as their slice is part of the IUs encoded by the session.
+ */
+public class PlanningSession {
+	/**
+	 * The number of requests after which the session is discarded. The constraints of previous
+	 * requests are deactivated but not removed from the solver, so they accumulate over time.
+	 */
+	private static final int MAX_REQUESTS = 100;
+
+	private final Set<IInstallableUnit> availableIUs;
+	private final Map<String, String> selectionContext;
+	private final boolean considerMetaRequirements;
+	private final Set<IInstallableUnit> encodedIUs;
+	private final Projector projector;
+	private int requests;
+
+	public PlanningSession(Set<IInstallableUnit> availableIUs, Map<String, String> selectionContext, boolean considerMetaRequirements, Set<IInstallableUnit> ius, IProgressMonitor monitor) {
+		this.availableIUs = availableIUs;
+		this.selectionContext = selectionContext;
+		this.considerMetaRequirements = considerMetaRequirements;
+		this.encodedIUs = ius;
+		projector = new Projector(new QueryableArray(ius.toArray(new IInstallableUnit[ius.size()])), selectionContext, CollectionUtils.<IInstallableUnit> emptySet(), considerMetaRequirements);
+		projector.encodeSession(monitor);
+	}
+
+	/**
+	 * Returns whether this session has been encoded from the given inputs.
+	 */
+	public boolean isFor(Set<IInstallableUnit> available, Map<String, String> context, boolean metaRequirements) {
+		return considerMetaRequirements == metaRequirements && selectionContext.equals(context) && availableIUs.equals(available);
+	}
+
+	/**
+	 * Returns whether a request whose slice is made of the given IUs can be planned by this session.
+	 */
+	public boolean canPlan(Set<IInstallableUnit> requestSlice) {
+		return requests < MAX_REQUESTS && encodedIUs.containsAll(requestSlice);
+	}
+
+	/**
+	 * Returns whether the encoding of the session succeeded. Requests must not be planned against a session that failed.
+	 */
+	public boolean isValid() {
+		return projector.encodingStatus().getSeverity() != IStatus.ERROR;
+	}
+
+	public Set<IInstallableUnit> getEncodedIUs() {
+		return encodedIUs;
+	}
+
+	public Projector plan(IInstallableUnit entryPointIU, IInstallableUnit[] alreadyExistingRoots, IQueryable<IInstallableUnit> installedIUs, Collection<IInstallableUnit> newRoots, Set<IInstallableUnit> requestSlice, IProgressMonitor monitor) {
+		requests++;
+		projector.encodeRequest(entryPointIU, alreadyExistingRoots, installedIUs, newRoots, requestSlice, monitor);
+		return projector;
+	}
+}
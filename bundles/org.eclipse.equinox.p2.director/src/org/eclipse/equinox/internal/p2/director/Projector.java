@@ -27,6 +27,7 @@ import org.eclipse.equinox.p2.metadata.*;
 import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
 import org.eclipse.equinox.p2.query.*;
 import org.eclipse.osgi.util.NLS;
+import org.osgi.framework.BundleContext;
 import org.sat4j.pb.*;
 import org.sat4j.pb.tools.DependencyHelper;
 import org.sat4j.pb.tools.WeightedObject;
@@ -78,7 +79,21 @@ public class Projector {
 	//Non greedy things
 	private Set<IInstallableUnit> nonGreedyIUs; //All the IUs that would satisfy non greedy dependencies
 	private Map<IInstallableUnit, AbstractVariable> nonGreedyVariables = new HashMap<IInstallableUnit, AbstractVariable>();
-	private Map<AbstractVariable, List<Object>> nonGreedyProvider = new HashMap<AbstractVariable, List<Object>>(); //Keeps track of all the "object" that provide an IU that is non greedly requested  
+	private Map<AbstractVariable, List<Object>> nonGreedyProvider = new HashMap<AbstractVariable, List<Object>>(); //Keeps track of all the "object" that provide an IU that is non greedly requested
+
+	//Incremental planning. When a session has been encoded, the constraints of the slice are kept and each request
+	//only contributes constraints that are guarded by an activation variable assumed to be true for that request only.
+	private boolean sessionEncoded;
+	private AbstractVariable activation; //The activation variable of the request being encoded, null when encoding the slice
+	private Set<IInstallableUnit> requestIUs; //The IUs that are part of the slice of the request being planned
+	private IInstallableUnit processedIU; //The IU being encoded, used to associate the abstract variables to their IU
+	private Map<IInstallableUnit, List<AbstractVariable>> abstractVariablesByIU;
+	private List<AbstractVariable> requestAbstractVariables;
+	private Map<AbstractVariable, AbstractVariable> rootNonGreedySupport; //key NG variable of the slice, value variable standing for the providers brought by the request
+	private Map<AbstractVariable, List<Object>> requestNonGreedyProvider;
+	private Set<AbstractVariable> sessionNonGreedyVariables;
+	private MultiStatus sessionResult;
+	private Map<IInstallableUnitFragment, List<IInstallableUnit>> fragmentAssociation;
 
 	static class AbstractVariable {
 		//		private String name;
@@ -166,11 +181,27 @@ public class Projector {
 		this.considerMetaRequirements = considerMetaRequirements;
 	}
 
+	//Create a projector that only carries the result of a request solved by a session, see detachSolution()
+	private Projector(Projector solved) {
+		picker = solved.picker;
+		selectionContext = solved.selectionContext;
+		result = solved.result;
+		entryPoint = solved.entryPoint;
+		solution = solved.solution;
+		fragmentAssociation = solved.getFragmentAssociation();
+	}
+
+	//Create a projector that only carries a solution read from the planner cache, see SolutionCache
+	Projector(Collection<IInstallableUnit> solution, Map<IInstallableUnitFragment, List<IInstallableUnit>> fragmentAssociation) {
+		result = new MultiStatus(DirectorActivator.PI_DIRECTOR, IStatus.OK, Messages.Planner_Problems_resolving_plan, null);
+		this.solution = solution;
+		this.fragmentAssociation = fragmentAssociation;
+	}
+
 	protected boolean isInstalled(IInstallableUnit iu) {
 		return !lastState.query(QueryUtil.createIUQuery(iu), null).isEmpty();
 	}
 
-	@SuppressWarnings("unchecked")
 	public void encode(IInstallableUnit entryPointIU, IInstallableUnit[] alreadyExistingRoots, IQueryable<IInstallableUnit> installedIUs, Collection<IInstallableUnit> newRoots, IProgressMonitor monitor) {
 		alreadyInstalledIUs = Arrays.asList(alreadyExistingRoots);
 		numberOfInstalledIUs = sizeOf(installedIUs);
@@ -182,47 +213,8 @@ public class Projector {
 				start = System.currentTimeMillis();
 				Tracing.debug("Start projection: " + start); //$NON-NLS-1$
 			}
-			IPBSolver solver;
-			if (DEBUG_ENCODING) {
-				solver = new UserFriendlyPBStringSolver<Object>();
-			} else {
-				solver = SolverFactory.newEclipseP2();
-			}
-			int timeout = DEFAULT_SOLVER_TIMEOUT;
-			String timeoutString = null;
-			try {
-				// allow the user to specify a longer timeout. 
-				// only set the value if it is a positive integer larger than the default.
-				// see https://bugs.eclipse.org/336967
-				timeoutString = DirectorActivator.context.getProperty(PROP_PROJECTOR_TIMEOUT);
-				if (timeoutString != null)
-					timeout = Math.max(timeout, Integer.parseInt(timeoutString));
-			} catch (Exception e) {
-				// intentionally catch all errors (npe, number format, etc)
-				// print out to syserr and fall through
-				System.err.println("Ignoring user-specified 'eclipse.p2.projector.timeout' value of: " + timeoutString); //$NON-NLS-1$
-				e.printStackTrace();
-			}
-			solver.setTimeoutOnConflicts(timeout);
-			IQueryResult<IInstallableUnit> queryResult = picker.query(QueryUtil.createIUAnyQuery(), null);
-			if (DEBUG_ENCODING) {
-				dependencyHelper = new DependencyHelper<Object, Explanation>(solver, false);
-				((UserFriendlyPBStringSolver<Object>) solver).setMapping(dependencyHelper.getMappingToDomain());
-			} else {
-				dependencyHelper = new DependencyHelper<Object, Explanation>(solver);
-			}
-			List<IInstallableUnit> iusToOrder = new ArrayList<IInstallableUnit>(queryResult.toSet());
-			Collections.sort(iusToOrder);
-			for (Iterator<IInstallableUnit> iusToEncode = iusToOrder.iterator(); iusToEncode.hasNext();) {
-				if (monitor.isCanceled()) {
-					result.merge(Status.CANCEL_STATUS);
-					throw new OperationCanceledException();
-				}
-				IInstallableUnit iuToEncode = iusToEncode.next();
-				if (iuToEncode != entryPointIU) {
-					processIU(iuToEncode, false);
-				}
-			}
+			IPBSolver solver = createDependencyHelper();
+			encodeSlice(entryPointIU, monitor);
 			createMustHave(entryPointIU, alreadyExistingRoots);
 
 			createConstraintsForSingleton();
@@ -244,6 +236,149 @@ public class Projector {
 		}
 	}
 
+	/**
+	 * Encodes all the IUs available to this projector without any root. The resulting constraints
+	 * are kept so that subsequent requests over the same IUs only have to be encoded through
+	 * {@link #encodeRequest(IInstallableUnit, IInstallableUnit[], IQueryable, Collection, Set, IProgressMonitor)}.
+	 */
+	public void encodeSession(IProgressMonitor monitor) {
+		abstractVariablesByIU = new HashMap<IInstallableUnit, List<AbstractVariable>>();
+		rootNonGreedySupport = new HashMap<AbstractVariable, AbstractVariable>();
+		try {
+			long start = 0;
+			if (DEBUG) {
+				start = System.currentTimeMillis();
+				Tracing.debug("Start session projection: " + start); //$NON-NLS-1$
+			}
+			createDependencyHelper();
+			encodeSlice(null, monitor);
+
+			createConstraintsForSingleton();
+
+			createSessionConstraintsForNonGreedy();
+			if (DEBUG) {
+				long stop = System.currentTimeMillis();
+				Tracing.debug("Session projection complete: " + (stop - start)); //$NON-NLS-1$
+			}
+		} catch (IllegalStateException e) {
+			result.add(new Status(IStatus.ERROR, DirectorActivator.PI_DIRECTOR, e.getMessage(), e));
+		} catch (ContradictionException e) {
+			result.add(new Status(IStatus.ERROR, DirectorActivator.PI_DIRECTOR, Messages.Planner_Unsatisfiable_problem));
+		}
+		sessionResult = result;
+		sessionNonGreedyVariables = new HashSet<AbstractVariable>(nonGreedyVariables.values());
+		sessionEncoded = true;
+	}
+
+	/**
+	 * Encodes a request against the constraints created by {@link #encodeSession(IProgressMonitor)}.
+	 * Only the entry point, the exclusion of the IUs that are not part of the request slice and the
+	 * optimization function are encoded. Every constraint added here is guarded by a variable that is
+	 * only assumed for this request, so the constraints of previous requests no longer apply.
+	 * 
+	 * @param requestSlice the IUs that would have been given to a fresh projector for this request.
+	 * They must all have been encoded by the session.
+	 */
+	public void encodeRequest(IInstallableUnit entryPointIU, IInstallableUnit[] alreadyExistingRoots, IQueryable<IInstallableUnit> installedIUs, Collection<IInstallableUnit> newRoots, Set<IInstallableUnit> requestSlice, IProgressMonitor monitor) {
+		Assert.isTrue(sessionEncoded);
+		if (entryPoint != null) {
+			//Forget about the entry point of the previous request, its constraints are no longer activated
+			slice.remove(entryPoint.getId());
+			noopVariables.remove(entryPoint);
+		}
+		alreadyInstalledIUs = Arrays.asList(alreadyExistingRoots);
+		numberOfInstalledIUs = sizeOf(installedIUs);
+		lastState = installedIUs;
+		this.entryPoint = entryPointIU;
+		requestIUs = requestSlice;
+		result = new MultiStatus(DirectorActivator.PI_DIRECTOR, IStatus.OK, Messages.Planner_Problems_resolving_plan, null);
+		result.addAll(sessionResult);
+		assumptions = new ArrayList<Object>();
+		solution = null;
+		fragmentAssociation = null;
+		requestAbstractVariables = new ArrayList<AbstractVariable>();
+		requestNonGreedyProvider = new HashMap<AbstractVariable, List<Object>>();
+		activation = DEBUG_ENCODING ? new AbstractVariable("Request_" + entryPointIU.toString()) : new AbstractVariable(); //$NON-NLS-1$
+		try {
+			long start = 0;
+			if (DEBUG) {
+				start = System.currentTimeMillis();
+				Tracing.debug("Start request projection: " + start); //$NON-NLS-1$
+			}
+			if (monitor.isCanceled()) {
+				result.merge(Status.CANCEL_STATUS);
+				throw new OperationCanceledException();
+			}
+			createMustHave(entryPointIU, alreadyExistingRoots);
+			assumptions.add(activation);
+
+			createConstraintsForExcludedIUs();
+
+			createRequestConstraintsForNonGreedy();
+
+			createOptimizationFunction(entryPointIU, newRoots);
+			if (DEBUG) {
+				long stop = System.currentTimeMillis();
+				Tracing.debug("Request projection complete: " + (stop - start)); //$NON-NLS-1$
+			}
+		} catch (IllegalStateException e) {
+			result.add(new Status(IStatus.ERROR, DirectorActivator.PI_DIRECTOR, e.getMessage(), e));
+		} catch (ContradictionException e) {
+			result.add(new Status(IStatus.ERROR, DirectorActivator.PI_DIRECTOR, Messages.Planner_Unsatisfiable_problem));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private IPBSolver createDependencyHelper() {
+		IPBSolver solver;
+		if (DEBUG_ENCODING) {
+			solver = new UserFriendlyPBStringSolver<Object>();
+		} else {
+			solver = SolverFactory.newEclipseP2();
+		}
+		int timeout = DEFAULT_SOLVER_TIMEOUT;
+		String timeoutString = null;
+		try {
+			// allow the user to specify a longer timeout. 
+			// only set the value if it is a positive integer larger than the default.
+			// see https://bugs.eclipse.org/336967
+			// the director can be used outside of a running framework, e.g. by benchmarks
+			BundleContext context = DirectorActivator.context;
+			timeoutString = context == null ? null : context.getProperty(PROP_PROJECTOR_TIMEOUT);
+			if (timeoutString != null)
+				timeout = Math.max(timeout, Integer.parseInt(timeoutString));
+		} catch (Exception e) {
+			// intentionally catch all errors (npe, number format, etc)
+			// print out to syserr and fall through
+			System.err.println("Ignoring user-specified 'eclipse.p2.projector.timeout' value of: " + timeoutString); //$NON-NLS-1$
+			e.printStackTrace();
+		}
+		solver.setTimeoutOnConflicts(timeout);
+		if (DEBUG_ENCODING) {
+			dependencyHelper = new DependencyHelper<Object, Explanation>(solver, false);
+			((UserFriendlyPBStringSolver<Object>) solver).setMapping(dependencyHelper.getMappingToDomain());
+		} else {
+			dependencyHelper = new DependencyHelper<Object, Explanation>(solver);
+		}
+		return solver;
+	}
+
+	private void encodeSlice(IInstallableUnit entryPointIU, IProgressMonitor monitor) throws ContradictionException {
+		IQueryResult<IInstallableUnit> queryResult = picker.query(QueryUtil.createIUAnyQuery(), null);
+		List<IInstallableUnit> iusToOrder = new ArrayList<IInstallableUnit>(queryResult.toSet());
+		Collections.sort(iusToOrder);
+		for (Iterator<IInstallableUnit> iusToEncode = iusToOrder.iterator(); iusToEncode.hasNext();) {
+			if (monitor.isCanceled()) {
+				result.merge(Status.CANCEL_STATUS);
+				throw new OperationCanceledException();
+			}
+			IInstallableUnit iuToEncode = iusToEncode.next();
+			if (iuToEncode != entryPointIU) {
+				processIU(iuToEncode, false);
+			}
+		}
+	}
+
 	private void createConstraintsForNonGreedy() throws ContradictionException {
 		for (IInstallableUnit iu : nonGreedyIUs) {
 			AbstractVariable var = getNonGreedyVariable(iu);
@@ -257,6 +392,85 @@ public class Projector {
 
 	}
 
+	//The providers of a non greedy IU known to the session are completed by a variable that each request
+	//constrains with the providers it brings in, see createRequestConstraintsForNonGreedy()
+	private void createSessionConstraintsForNonGreedy() throws ContradictionException {
+		for (Entry<IInstallableUnit, AbstractVariable> entry : nonGreedyVariables.entrySet()) {
+			AbstractVariable var = entry.getValue();
+			AbstractVariable support = DEBUG_ENCODING ? new AbstractVariable("Support_" + entry.getKey().toString()) : new AbstractVariable(); //$NON-NLS-1$
+			rootNonGreedySupport.put(var, support);
+			List<Object> providers = new ArrayList<Object>();
+			List<Object> sliceProviders = nonGreedyProvider.get(var);
+			if (sliceProviders != null)
+				providers.addAll(sliceProviders);
+			providers.add(support);
+			createImplication(var, providers, Explanation.OPTIONAL_REQUIREMENT);
+		}
+	}
+
+	private void createRequestConstraintsForNonGreedy() throws ContradictionException {
+		for (Entry<IInstallableUnit, AbstractVariable> entry : nonGreedyVariables.entrySet()) {
+			AbstractVariable var = entry.getValue();
+			List<Object> requestProviders = requestNonGreedyProvider.get(var);
+			if (sessionNonGreedyVariables.contains(var)) {
+				AbstractVariable support = rootNonGreedySupport.get(var);
+				if (requestProviders == null)
+					setFalse(support, new Explanation.MissingGreedyIU(entry.getKey()));
+				else
+					createImplication(support, requestProviders, Explanation.OPTIONAL_REQUIREMENT);
+				continue;
+			}
+			//The variable has been introduced by a request, its providers are not covered by the session constraints
+			List<Object> providers = new ArrayList<Object>();
+			List<Object> sliceProviders = nonGreedyProvider.get(var);
+			if (sliceProviders != null)
+				providers.addAll(sliceProviders);
+			if (requestProviders != null)
+				providers.addAll(requestProviders);
+			if (providers.isEmpty())
+				setFalse(var, new Explanation.MissingGreedyIU(entry.getKey()));
+			else
+				createImplication(var, providers, Explanation.OPTIONAL_REQUIREMENT);
+		}
+	}
+
+	//The IUs encoded by the session that are not part of the request slice would not have been seen by a fresh projector
+	private void createConstraintsForExcludedIUs() throws ContradictionException {
+		Set<Entry<String, Map<Version, IInstallableUnit>>> s = slice.entrySet();
+		for (Entry<String, Map<Version, IInstallableUnit>> entry : s) {
+			for (IInstallableUnit iu : entry.getValue().values()) {
+				if (iu == entryPoint || requestIUs.contains(iu))
+					continue;
+				setFalse(iu, Explanation.OPTIONAL_REQUIREMENT);
+				List<AbstractVariable> abstractVars = abstractVariablesByIU.get(iu);
+				if (abstractVars != null) {
+					for (AbstractVariable var : abstractVars)
+						setFalse(var, Explanation.OPTIONAL_REQUIREMENT);
+				}
+				AbstractVariable nonGreedyVar = nonGreedyVariables.get(iu);
+				if (nonGreedyVar != null)
+					setFalse(nonGreedyVar, Explanation.OPTIONAL_REQUIREMENT);
+			}
+		}
+	}
+
+	private boolean isNonGreedyCandidate(IInstallableUnit iu) {
+		//A session does not know which IUs will be requested non greedily, so it keeps track of all the providers
+		return abstractVariablesByIU != null || nonGreedyIUs.contains(iu);
+	}
+
+	/**
+	 * Returns a projector holding the solution and the fragment association of the last request solved
+	 * by this session, so that the session can be reused while the caller still consumes the solution.
+	 */
+	Projector detachSolution() {
+		return new Projector(this);
+	}
+
+	IStatus encodingStatus() {
+		return sessionEncoded ? sessionResult : result;
+	}
+
 	/**
 	 * Efficiently compute the size of a queryable
 	 */
@@ -284,7 +498,7 @@ public class Projector {
 			}
 		}
 
-		Set<Entry<String, Map<Version, IInstallableUnit>>> s = slice.entrySet();
+		Set<Entry<String, Map<Version, IInstallableUnit>>> s = getOptimizedSlice().entrySet();
 		final BigInteger POWER = BigInteger.valueOf(numberOfInstalledIUs > 0 ? numberOfInstalledIUs + 1 : 2);
 
 		BigInteger maxWeight = POWER;
@@ -326,7 +540,7 @@ public class Projector {
 
 		// Add the abstract variables
 		BigInteger abstractWeight = maxWeight.negate();
-		for (AbstractVariable var : abstractVariables) {
+		for (AbstractVariable var : getOptimizedAbstractVariables()) {
 			weightedObjects.add(WeightedObject.newWO(var, abstractWeight));
 		}
 
@@ -342,6 +556,8 @@ public class Projector {
 			IQueryResult<IInstallableUnit> matches = picker.query(QueryUtil.createMatchQuery(req.getMatches()), null);
 			for (Iterator<IInstallableUnit> iterator = matches.iterator(); iterator.hasNext();) {
 				IInstallableUnit match = iterator.next();
+				if (requestIUs != null && !requestIUs.contains(match))
+					continue;
 				if (match instanceof IInstallableUnitPatch) {
 					requestedPatches.add(match);
 					countOptional = countOptional + 1;
@@ -360,6 +576,38 @@ public class Projector {
 		}
 	}
 
+	//The IUs to weight, when planning a request of a session only the ones from the slice of the request are considered
+	private Map<String, Map<Version, IInstallableUnit>> getOptimizedSlice() {
+		if (requestIUs == null)
+			return slice;
+		Map<String, Map<Version, IInstallableUnit>> requestSlice = new HashMap<String, Map<Version, IInstallableUnit>>();
+		for (Entry<String, Map<Version, IInstallableUnit>> entry : slice.entrySet()) {
+			Map<Version, IInstallableUnit> versions = null;
+			for (IInstallableUnit iu : entry.getValue().values()) {
+				if (iu != entryPoint && !requestIUs.contains(iu))
+					continue;
+				if (versions == null) {
+					versions = new HashMap<Version, IInstallableUnit>();
+					requestSlice.put(entry.getKey(), versions);
+				}
+				versions.put(iu.getVersion(), iu);
+			}
+		}
+		return requestSlice;
+	}
+
+	private List<AbstractVariable> getOptimizedAbstractVariables() {
+		if (requestIUs == null)
+			return abstractVariables;
+		List<AbstractVariable> vars = new ArrayList<AbstractVariable>(requestAbstractVariables);
+		for (IInstallableUnit iu : requestIUs) {
+			List<AbstractVariable> iuVars = abstractVariablesByIU.get(iu);
+			if (iuVars != null)
+				vars.addAll(iuVars);
+		}
+		return vars;
+	}
+
 	private boolean isRoot(IInstallableUnit iu, Collection<IInstallableUnit> newRoots) {
 		return newRoots.contains(iu);
 	}
@@ -394,7 +642,14 @@ public class Projector {
 		if (DEBUG) {
 			Tracing.debug(iu + "=0"); //$NON-NLS-1$
 		}
-		dependencyHelper.setFalse(iu, new Explanation.MissingIU(iu, req, iu == this.entryPoint));
+		setFalse(iu, new Explanation.MissingIU(iu, req, iu == this.entryPoint));
+	}
+
+	private void setFalse(Object var, Explanation name) throws ContradictionException {
+		if (activation == null)
+			dependencyHelper.setFalse(var, name);
+		else
+			dependencyHelper.implication(new Object[] {activation}).impliesNot(var).named(name);
 	}
 
 	// Check whether the requirement is applicable
@@ -454,7 +709,7 @@ public class Projector {
 		if (req.getMin() > 0) {
 			if (matches.isEmpty()) {
 				if (iu == entryPoint && emptyBecauseFiltered) {
-					dependencyHelper.setFalse(iu, new NotInstallableRoot(req));
+					setFalse(iu, new NotInstallableRoot(req));
 				} else {
 					missingRequirement(iu, req);
 				}
@@ -475,7 +730,7 @@ public class Projector {
 					IInstallableUnit current;
 					for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 						current = it.next();
-						if (nonGreedyIUs.contains(current)) {
+						if (isNonGreedyCandidate(current)) {
 							addNonGreedyProvider(getNonGreedyVariable(current), iu);
 						}
 					}
@@ -498,7 +753,7 @@ public class Projector {
 					createImplication(new Object[] {abs, iu}, matches, Explanation.OPTIONAL_REQUIREMENT);
 					for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 						current = it.next();
-						if (nonGreedyIUs.contains(current)) {
+						if (isNonGreedyCandidate(current)) {
 							addNonGreedyProvider(getNonGreedyVariable(current), abs);
 						}
 					}
@@ -517,10 +772,11 @@ public class Projector {
 	}
 
 	private void addNonGreedyProvider(AbstractVariable nonGreedyVariable, Object o) {
-		List<Object> providers = nonGreedyProvider.get(nonGreedyVariable);
+		Map<AbstractVariable, List<Object>> providerMap = activation == null ? nonGreedyProvider : requestNonGreedyProvider;
+		List<Object> providers = providerMap.get(nonGreedyVariable);
 		if (providers == null) {
 			providers = new ArrayList<Object>();
-			nonGreedyProvider.put(nonGreedyVariable, providers);
+			providerMap.put(nonGreedyVariable, providers);
 		}
 		providers.add(o);
 	}
@@ -537,6 +793,7 @@ public class Projector {
 
 	public void processIU(IInstallableUnit iu, boolean isRootIU) throws ContradictionException {
 		iu = iu.unresolved();
+		processedIU = iu;
 		Map<Version, IInstallableUnit> iuSlice = slice.get(iu.getId());
 		if (iuSlice == null) {
 			iuSlice = new HashMap<Version, IInstallableUnit>();
@@ -645,7 +902,7 @@ public class Projector {
 								createImplication(new Object[] {patch, iu}, matches, explanation);
 								for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 									current = it.next();
-									if (nonGreedyIUs.contains(current)) {
+									if (isNonGreedyCandidate(current)) {
 										addNonGreedyProvider(getNonGreedyVariable(current), iu);
 									}
 								}
@@ -667,7 +924,7 @@ public class Projector {
 								createImplication(new Object[] {patch, abs, iu}, matches, Explanation.OPTIONAL_REQUIREMENT);
 								for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 									current = it.next();
-									if (nonGreedyIUs.contains(current)) {
+									if (isNonGreedyCandidate(current)) {
 										addNonGreedyProvider(getNonGreedyVariable(current), abs);
 									}
 								}
@@ -711,7 +968,7 @@ public class Projector {
 							List<Object> nonGreedys = new ArrayList<Object>();
 							for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 								current = it.next();
-								if (nonGreedyIUs.contains(current)) {
+								if (isNonGreedyCandidate(current)) {
 									nonGreedys.add(getNonGreedyVariable(current));
 								}
 							}
@@ -734,7 +991,7 @@ public class Projector {
 								pending.matches = matches;
 								for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 									current = it.next();
-									if (nonGreedyIUs.contains(current)) {
+									if (isNonGreedyCandidate(current)) {
 										addNonGreedyProvider(getNonGreedyVariable(current), iu);
 									}
 								}
@@ -765,7 +1022,7 @@ public class Projector {
 								pending.matches = matches;
 								for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 									current = it.next();
-									if (nonGreedyIUs.contains(current)) {
+									if (isNonGreedyCandidate(current)) {
 										addNonGreedyProvider(getNonGreedyVariable(current), abs);
 									}
 								}
@@ -820,7 +1077,7 @@ public class Projector {
 					List<Object> nonGreedys = new ArrayList<Object>(matches.size());
 					for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 						current = it.next();
-						if (nonGreedyIUs.contains(current)) {
+						if (isNonGreedyCandidate(current)) {
 							nonGreedys.add(getNonGreedyVariable(current));
 						}
 					}
@@ -841,7 +1098,7 @@ public class Projector {
 						createImplication(iu, matches, explanation);
 						for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 							current = it.next();
-							if (nonGreedyIUs.contains(current)) {
+							if (isNonGreedyCandidate(current)) {
 								addNonGreedyProvider(getNonGreedyVariable(current), iu);
 							}
 						}
@@ -865,7 +1122,7 @@ public class Projector {
 						createImplication(new Object[] {abs, iu}, matches, Explanation.OPTIONAL_REQUIREMENT);
 						for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
 							current = it.next();
-							if (nonGreedyIUs.contains(current)) {
+							if (isNonGreedyCandidate(current)) {
 								addNonGreedyProvider(getNonGreedyVariable(current), iu);
 							}
 						}
@@ -979,21 +1236,31 @@ public class Projector {
 			Tracing.debug(name + ": " + left + "->" + right); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 		for (Object r : right)
-			dependencyHelper.implication(new Object[] {left}).impliesNot(r).named(name);
+			dependencyHelper.implication(activate(new Object[] {left})).impliesNot(r).named(name);
 	}
 
 	private void createImplication(Object left, List<?> right, Explanation name) throws ContradictionException {
 		if (DEBUG) {
 			Tracing.debug(name + ": " + left + "->" + right); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-		dependencyHelper.implication(new Object[] {left}).implies(right.toArray()).named(name);
+		dependencyHelper.implication(activate(new Object[] {left})).implies(right.toArray()).named(name);
 	}
 
 	private void createImplication(Object[] left, List<?> right, Explanation name) throws ContradictionException {
 		if (DEBUG) {
 			Tracing.debug(name + ": " + Arrays.asList(left) + "->" + right); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-		dependencyHelper.implication(left).implies(right.toArray()).named(name);
+		dependencyHelper.implication(activate(left)).implies(right.toArray()).named(name);
+	}
+
+	//Guard the left hand side of an implication with the activation variable of the request being encoded, if any
+	private Object[] activate(Object[] left) {
+		if (activation == null)
+			return left;
+		Object[] guarded = new Object[left.length + 1];
+		guarded[0] = activation;
+		System.arraycopy(left, 0, guarded, 1, left.length);
+		return guarded;
 	}
 
 	//Return IUPatches that are applicable for the given iu
@@ -1070,7 +1337,18 @@ public class Projector {
 	private AbstractVariable getAbstractVariable(IRequirement req, boolean appearInOptFunction) {
 		AbstractVariable abstractVariable = DEBUG_ENCODING ? new AbstractVariable("Abs_" + req.toString()) : new AbstractVariable(); //$NON-NLS-1$
 		if (appearInOptFunction) {
-			abstractVariables.add(abstractVariable);
+			if (activation != null) {
+				requestAbstractVariables.add(abstractVariable);
+			} else if (abstractVariablesByIU != null) {
+				List<AbstractVariable> vars = abstractVariablesByIU.get(processedIU);
+				if (vars == null) {
+					vars = new ArrayList<AbstractVariable>(2);
+					abstractVariablesByIU.put(processedIU, vars);
+				}
+				vars.add(abstractVariable);
+			} else {
+				abstractVariables.add(abstractVariable);
+			}
 		}
 		return abstractVariable;
 	}
@@ -1108,6 +1386,8 @@ public class Projector {
 					Tracing.debug("Satisfiable !"); //$NON-NLS-1$
 				}
 				backToIU();
+				if (sessionEncoded)
+					fragmentAssociation = computeFragmentAssociation();
 				long stop = System.currentTimeMillis();
 				if (DEBUG)
 					Tracing.debug("Solver solution found: " + (stop - start)); //$NON-NLS-1$
@@ -1189,6 +1469,12 @@ public class Projector {
 	}
 
 	public Map<IInstallableUnitFragment, List<IInstallableUnit>> getFragmentAssociation() {
+		if (fragmentAssociation != null)
+			return fragmentAssociation;
+		return computeFragmentAssociation();
+	}
+
+	private Map<IInstallableUnitFragment, List<IInstallableUnit>> computeFragmentAssociation() {
 		Map<IInstallableUnitFragment, List<IInstallableUnit>> resolvedFragments = new HashMap<IInstallableUnitFragment, List<IInstallableUnit>>(fragments.size());
 		for (Entry<IInstallableUnitFragment, Set<IInstallableUnit>> fragment : fragments.entrySet()) {
 			if (!dependencyHelper.getBooleanValueFor(fragment.getKey()))
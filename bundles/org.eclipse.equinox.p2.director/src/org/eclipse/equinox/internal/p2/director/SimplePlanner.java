@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2010 IBM Corporation and others. All rights reserved. This
+ * Copyright (c) 2007, 2012 IBM Corporation and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -11,6 +11,7 @@
  ******************************************************************************/
 package org.eclipse.equinox.internal.p2.director;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.*;
@@ -42,12 +43,30 @@ public class SimplePlanner implements IPlanner {
 	private static final String ID_IU_FOR_ACTIONS = "org.eclipse.equinox.p2.engine.actions.root"; //$NON-NLS-1$
 	private static final String EXPLANATION = "org.eclipse.equinox.p2.director.explain"; //$NON-NLS-1$
 	private static final String CONSIDER_METAREQUIREMENTS = "org.eclipse.equinox.p2.planner.resolveMetaRequirements"; //$NON-NLS-1$
+	/**
+	 * Provisioning context property indicating that the encoding of the slice can be kept across requests,
+	 * see {@link PlanningSession}.
+	 */
+	public static final String INCREMENTAL_PLANNING = "org.eclipse.equinox.p2.planner.incremental"; //$NON-NLS-1$
+	private static final int MAX_PLANNING_SESSIONS = 2;
+	/**
+	 * Context property giving the number of threads used to compute the slice of a request.
+	 * The value "true" uses one thread per available processor. Slicing is done on the calling thread by default.
+	 */
+	public static final String SLICER_THREADS = "org.eclipse.equinox.p2.planner.slicer.threads"; //$NON-NLS-1$
+	/**
+	 * Provisioning context property indicating that the solutions of the requests can be kept on disk and
+	 * reused for identical requests over identical repositories, see {@link SolutionCache}.
+	 */
+	public static final String SOLUTION_CACHE = "org.eclipse.equinox.p2.planner.cache"; //$NON-NLS-1$
+	private static final String SOLUTION_CACHE_DIR = "plannerCache"; //$NON-NLS-1$
 
 	static final int UNSATISFIABLE = 1; //status code indicating that the problem is not satisfiable
 
 	private final IProvisioningAgent agent;
 	private final IProfileRegistry profileRegistry;
 	private final IEngine engine;
+	private final LinkedList<PlanningSession> planningSessions = new LinkedList<PlanningSession>();
 
 	private IProvisioningPlan generateProvisioningPlan(Collection<IInstallableUnit> fromState, Collection<IInstallableUnit> toState, ProfileChangeRequest changeRequest, IProvisioningPlan installerPlan, ProvisioningContext context) {
 		IProvisioningPlan plan = engine.createPlan(changeRequest.getProfile(), context);
@@ -305,6 +324,7 @@ public class SimplePlanner implements IPlanner {
 	private Object getSolutionFor(ProfileChangeRequest profileChangeRequest, ProvisioningContext context, IProgressMonitor monitor) {
 		SubMonitor sub = SubMonitor.convert(monitor, ExpandWork);
 		sub.setTaskName(Messages.Director_Task_Resolving_Dependencies);
+		PlanningSession session = null;
 		try {
 			IProfile profile = profileChangeRequest.getProfile();
 
@@ -322,18 +342,39 @@ public class SimplePlanner implements IPlanner {
 
 			IInstallableUnit[] availableIUs = gatherAvailableInstallableUnits(extraIUs.toArray(new IInstallableUnit[extraIUs.size()]), context, sub.newChild(ExpandWork / 4));
 
+			SolutionCache cache = getSolutionCache(context);
+			String fingerprint = null;
+			if (cache != null) {
+				Collection<IInstallableUnit> installed = profile.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+				fingerprint = SolutionCache.fingerprint((IInstallableUnit) updatedPlan[0], (IInstallableUnit[]) updatedPlan[1], installed, profileChangeRequest.getAdditions(), newSelectionContext, satisfyMetaRequirements(profileChangeRequest.getProfileProperties()), availableIUs);
+				Projector cached = fingerprint == null ? null : cache.read(fingerprint, availableIUs);
+				if (cached != null)
+					return cached;
+			}
+
 			Slicer slicer = new Slicer(new QueryableArray(availableIUs), newSelectionContext, satisfyMetaRequirements(profileChangeRequest.getProfileProperties()));
+			slicer.setParallelism(getSlicerThreads(context));
 			IQueryable<IInstallableUnit> slice = slicer.slice(new IInstallableUnit[] {(IInstallableUnit) updatedPlan[0]}, sub.newChild(ExpandWork / 4));
 			if (slice == null) {
 				IProvisioningPlan plan = engine.createPlan(profile, context);
 				plan.setStatus(slicer.getStatus());
 				return plan;
 			}
-			@SuppressWarnings("unchecked")
-			final IQueryable<IInstallableUnit>[] queryables = new IQueryable[] {slice, new QueryableArray(profileChangeRequest.getAdditions().toArray(new IInstallableUnit[profileChangeRequest.getAdditions().size()]))};
-			slice = new CompoundQueryable<IInstallableUnit>(queryables);
-			Projector projector = new Projector(slice, newSelectionContext, slicer.getNonGreedyIUs(), satisfyMetaRequirements(profileChangeRequest.getProfileProperties()));
-			projector.encode((IInstallableUnit) updatedPlan[0], (IInstallableUnit[]) updatedPlan[1], profile, profileChangeRequest.getAdditions(), sub.newChild(ExpandWork / 4));
+			Projector projector;
+			if (isIncrementalPlanning(context)) {
+				Set<IInstallableUnit> requestSlice = new HashSet<IInstallableUnit>(slice.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+				requestSlice.addAll(profileChangeRequest.getAdditions());
+				requestSlice.remove(updatedPlan[0]);
+				boolean considerMetaRequirements = satisfyMetaRequirements(profileChangeRequest.getProfileProperties());
+				session = checkoutPlanningSession(new HashSet<IInstallableUnit>(Arrays.asList(availableIUs)), newSelectionContext, considerMetaRequirements, requestSlice, sub.newChild(ExpandWork / 8));
+				projector = session.plan((IInstallableUnit) updatedPlan[0], (IInstallableUnit[]) updatedPlan[1], profile, profileChangeRequest.getAdditions(), requestSlice, sub.newChild(ExpandWork / 8));
+			} else {
+				@SuppressWarnings("unchecked")
+				final IQueryable<IInstallableUnit>[] queryables = new IQueryable[] {slice, new QueryableArray(profileChangeRequest.getAdditions().toArray(new IInstallableUnit[profileChangeRequest.getAdditions().size()]))};
+				slice = new CompoundQueryable<IInstallableUnit>(queryables);
+				projector = new Projector(slice, newSelectionContext, slicer.getNonGreedyIUs(), satisfyMetaRequirements(profileChangeRequest.getProfileProperties()));
+				projector.encode((IInstallableUnit) updatedPlan[0], (IInstallableUnit[]) updatedPlan[1], profile, profileChangeRequest.getAdditions(), sub.newChild(ExpandWork / 4));
+			}
 			IStatus s = projector.invokeSolver(sub.newChild(ExpandWork / 4));
 			if (s.getSeverity() == IStatus.CANCEL) {
 				IProvisioningPlan plan = engine.createPlan(profile, context);
@@ -366,12 +407,82 @@ public class SimplePlanner implements IPlanner {
 				LogHelper.log(s);
 			s = Status.OK_STATUS;
 
-			return projector;
+			//The session may be reused by another request once checked in, so only hand out the solution
+			Projector solution = session == null ? projector : projector.detachSolution();
+			if (fingerprint != null)
+				cache.write(fingerprint, solution.extractSolution(), solution.getFragmentAssociation());
+			return solution;
 		} finally {
+			if (session != null)
+				checkinPlanningSession(session);
 			sub.done();
 		}
 	}
 
+	private int getSlicerThreads(ProvisioningContext context) {
+		String value = context == null ? null : context.getProperty(SLICER_THREADS);
+		if (value == null)
+			return 1;
+		if (Boolean.TRUE.toString().equalsIgnoreCase(value))
+			return Runtime.getRuntime().availableProcessors();
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
+	//Return the cache of the solutions if the context allows it and the agent has a location
+	private SolutionCache getSolutionCache(ProvisioningContext context) {
+		if (context == null || !Boolean.TRUE.toString().equalsIgnoreCase(context.getProperty(SOLUTION_CACHE)))
+			return null;
+		IAgentLocation location = (IAgentLocation) agent.getService(IAgentLocation.SERVICE_NAME);
+		if (location == null)
+			return null;
+		URI dataArea = location.getDataArea(DirectorActivator.PI_DIRECTOR);
+		File directory = dataArea == null ? null : URIUtil.toFile(dataArea);
+		return directory == null ? null : new SolutionCache(new File(directory, SOLUTION_CACHE_DIR));
+	}
+
+	private boolean isIncrementalPlanning(ProvisioningContext context) {
+		return context != null && Boolean.TRUE.toString().equalsIgnoreCase(context.getProperty(INCREMENTAL_PLANNING));
+	}
+
+	//Return a session able to plan a request over the given slice. A session is used by only one request at a time.
+	private PlanningSession checkoutPlanningSession(Set<IInstallableUnit> availableIUs, Map<String, String> selectionContext, boolean considerMetaRequirements, Set<IInstallableUnit> requestSlice, IProgressMonitor monitor) {
+		Set<IInstallableUnit> toEncode = requestSlice;
+		synchronized (planningSessions) {
+			for (Iterator<PlanningSession> iter = planningSessions.iterator(); iter.hasNext();) {
+				PlanningSession candidate = iter.next();
+				if (!candidate.isFor(availableIUs, selectionContext, considerMetaRequirements))
+					continue;
+				iter.remove();
+				if (candidate.canPlan(requestSlice))
+					return candidate;
+				//Grow the encoding so that the requests seen so far can all be answered by the new session
+				if (candidate.getEncodedIUs().containsAll(requestSlice))
+					break;
+				toEncode = new HashSet<IInstallableUnit>(candidate.getEncodedIUs());
+				toEncode.addAll(requestSlice);
+				break;
+			}
+		}
+		PlanningSession session = new PlanningSession(availableIUs, selectionContext, considerMetaRequirements, toEncode, monitor);
+		if (!session.isValid())
+			session = new PlanningSession(availableIUs, selectionContext, considerMetaRequirements, requestSlice, monitor);
+		return session;
+	}
+
+	private void checkinPlanningSession(PlanningSession session) {
+		if (!session.isValid())
+			return;
+		synchronized (planningSessions) {
+			planningSessions.addFirst(session);
+			while (planningSessions.size() > MAX_PLANNING_SESSIONS)
+				planningSessions.removeLast();
+		}
+	}
+
 	public IProvisioningPlan getProvisioningPlan(IProfileChangeRequest request, ProvisioningContext context, IProgressMonitor monitor) {
 		ProfileChangeRequest pcr = (ProfileChangeRequest) request;
 		SubMonitor sub = SubMonitor.convert(monitor, ExpandWork);
@@ -602,7 +713,7 @@ public class SimplePlanner implements IPlanner {
 		agentState.remove(metaRequirementIU); //Remove the fake IU
 		agentState = AttachmentHelper.attachFragments(agentState.iterator(), ((Projector) agentSolution).getFragmentAssociation());
 
-		ProvisioningContext noRepoContext = createNoRepoContext(initialRequest);
+		ProvisioningContext noRepoContext = createNoRepoContext(initialRequest, initialContext);
 		//...This computes the attachment of what is currently in the profile 
 		Object initialSolution = getSolutionFor(new ProfileChangeRequest(new EverythingOptionalProfile(initialRequest.getProfile())), noRepoContext, new NullProgressMonitor());
 		if (initialSolution instanceof IProvisioningPlan) {
@@ -625,7 +736,7 @@ public class SimplePlanner implements IPlanner {
 			newState = newSolution.extractSolution();
 			newState = AttachmentHelper.attachFragments(newState.iterator(), newSolution.getFragmentAssociation());
 		}
-		ProvisioningContext noRepoContext = createNoRepoContext(request);
+		ProvisioningContext noRepoContext = createNoRepoContext(request, context);
 
 		//Compute the attachment of the previous state
 		Object initialSolution = getSolutionFor(new ProfileChangeRequest(new EverythingOptionalProfile(request.getProfile())), noRepoContext, new NullProgressMonitor());
@@ -640,8 +751,10 @@ public class SimplePlanner implements IPlanner {
 		return generateProvisioningPlan(initialState, newState, request, null, context);
 	}
 
-	private ProvisioningContext createNoRepoContext(ProfileChangeRequest request) {
+	private ProvisioningContext createNoRepoContext(ProfileChangeRequest request, ProvisioningContext context) {
 		ProvisioningContext noRepoContext = new ProvisioningContext(agent);
+		if (context != null && context.getProperty(SOLUTION_CACHE) != null)
+			noRepoContext.setProperty(SOLUTION_CACHE, context.getProperty(SOLUTION_CACHE));
 		noRepoContext.setMetadataRepositories(new URI[0]);
 		noRepoContext.setArtifactRepositories(new URI[0]);
 		noRepoContext.setProperty(INCLUDE_PROFILE_IUS, Boolean.FALSE.toString());
@@ -771,19 +884,40 @@ public class SimplePlanner implements IPlanner {
 	}
 
 	public IQueryResult<IInstallableUnit> updatesFor(IInstallableUnit toUpdate, ProvisioningContext context, IProgressMonitor monitor) {
-		Map<String, IInstallableUnit> resultsMap = new HashMap<String, IInstallableUnit>();
-
 		SubMonitor sub = SubMonitor.convert(monitor, 1000);
 		IQueryable<IInstallableUnit> queryable = context.getMetadata(sub.newChild(500));
 		IQueryResult<IInstallableUnit> matches = queryable.query(new UpdateQuery(toUpdate), sub.newChild(500));
-		for (Iterator<IInstallableUnit> it = matches.iterator(); it.hasNext();) {
-			IInstallableUnit iu = it.next();
+		sub.done();
+		return selectUpdates(matches.iterator());
+	}
+
+	public Map<IInstallableUnit, IQueryResult<IInstallableUnit>> updatesFor(Collection<IInstallableUnit> toUpdate, ProvisioningContext context, IProgressMonitor monitor) {
+		SubMonitor sub = SubMonitor.convert(monitor, 1000);
+		IQueryable<IInstallableUnit> queryable = context.getMetadata(sub.newChild(500));
+		// the metadata is scanned once, the updates of each unit are then found through the index
+		UpdateDescriptorIndex index = new UpdateDescriptorIndex(queryable.query(QueryUtil.ALL_UNITS, sub.newChild(300)).iterator());
+		SubMonitor lookups = sub.newChild(200).setWorkRemaining(toUpdate.size());
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> results = new HashMap<IInstallableUnit, IQueryResult<IInstallableUnit>>(toUpdate.size());
+		for (IInstallableUnit iu : toUpdate) {
+			results.put(iu, selectUpdates(index.getUpdates(iu)));
+			lookups.worked(1);
+		}
+		sub.done();
+		return results;
+	}
+
+	/*
+	 * Keeps the update with the highest fidelity of each id and version.
+	 */
+	private static IQueryResult<IInstallableUnit> selectUpdates(Iterator<IInstallableUnit> matches) {
+		Map<String, IInstallableUnit> resultsMap = new HashMap<String, IInstallableUnit>();
+		while (matches.hasNext()) {
+			IInstallableUnit iu = matches.next();
 			String key = iu.getId() + "_" + iu.getVersion().toString(); //$NON-NLS-1$
 			IInstallableUnit currentIU = resultsMap.get(key);
 			if (currentIU == null || hasHigherFidelity(iu, currentIU))
 				resultsMap.put(key, iu);
 		}
-		sub.done();
 		return new CollectionResult<IInstallableUnit>(resultsMap.values());
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -27,11 +27,18 @@ public class Slicer {
 	private final IQueryable<IInstallableUnit> possibilites;
 	private final boolean considerMetaRequirements;
 	protected final IInstallableUnit selectionContext;
-	private final Map<String, Map<Version, IInstallableUnit>> slice; //The IUs that have been considered to be part of the problem
+	private Map<String, Map<Version, IInstallableUnit>> slice; //The IUs that have been considered to be part of the problem
 	private final MultiStatus result;
+	private int parallelism = 1;
 
 	private LinkedList<IInstallableUnit> toProcess;
 	private Set<IInstallableUnit> considered; //IUs to add to the slice
+
+	//State used when slicing in parallel, guarded by toProcess
+	private boolean parallel;
+	private int inProcess; //IUs being processed
+	private boolean stopWorkers;
+	private RuntimeException workerFailure;
 	private Set<IInstallableUnit> nonGreedyIUs = new HashSet<IInstallableUnit>(); //IUs that are brought in by non greedy dependencies
 
 	public Slicer(IQueryable<IInstallableUnit> input, Map<String, String> context, boolean considerMetaRequirements) {
@@ -42,10 +49,18 @@ public class Slicer {
 		this.possibilites = possibilites;
 		this.selectionContext = selectionContext;
 		this.considerMetaRequirements = considerMetaRequirements;
-		slice = new HashMap<String, Map<Version, IInstallableUnit>>();
 		result = new MultiStatus(DirectorActivator.PI_DIRECTOR, IStatus.OK, Messages.Planner_Problems_resolving_plan, null);
 	}
 
+	/**
+	 * Sets the number of threads used to expand the requirements of the IUs being sliced.
+	 * By default the slicer runs on the calling thread only. When more than one thread is used,
+	 * the queryable given to the slicer and the methods overridden by subclasses must be thread safe.
+	 */
+	public void setParallelism(int threads) {
+		parallelism = Math.max(1, threads);
+	}
+
 	public IQueryable<IInstallableUnit> slice(IInstallableUnit[] ius, IProgressMonitor monitor) {
 		try {
 			long start = 0;
@@ -55,15 +70,10 @@ public class Slicer {
 			}
 
 			validateInput(ius);
-			considered = new HashSet<IInstallableUnit>(Arrays.asList(ius));
-			toProcess = new LinkedList<IInstallableUnit>(considered);
-			while (!toProcess.isEmpty()) {
-				if (monitor.isCanceled()) {
-					result.merge(Status.CANCEL_STATUS);
-					throw new OperationCanceledException();
-				}
-				processIU(toProcess.removeFirst());
-			}
+			if (parallelism > 1)
+				processInParallel(ius, monitor);
+			else
+				processSequentially(ius, monitor);
 			computeNonGreedyIUs();
 			if (DEBUG) {
 				long stop = System.currentTimeMillis();
@@ -79,6 +89,116 @@ public class Slicer {
 		return new QueryableArray(considered.toArray(new IInstallableUnit[considered.size()]));
 	}
 
+	private void processSequentially(IInstallableUnit[] ius, IProgressMonitor monitor) {
+		slice = new HashMap<String, Map<Version, IInstallableUnit>>();
+		considered = new HashSet<IInstallableUnit>(Arrays.asList(ius));
+		toProcess = new LinkedList<IInstallableUnit>(considered);
+		parallel = false;
+		while (!toProcess.isEmpty()) {
+			if (monitor.isCanceled()) {
+				result.merge(Status.CANCEL_STATUS);
+				throw new OperationCanceledException();
+			}
+			processIU(toProcess.removeFirst());
+		}
+	}
+
+	private void processInParallel(IInstallableUnit[] ius, final IProgressMonitor monitor) {
+		slice = new HashMap<String, Map<Version, IInstallableUnit>>();
+		considered = new HashSet<IInstallableUnit>(Arrays.asList(ius));
+		toProcess = new LinkedList<IInstallableUnit>(considered);
+		parallel = true;
+		inProcess = 0;
+		stopWorkers = false;
+		workerFailure = null;
+
+		Thread[] workers = new Thread[parallelism - 1];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread("Slicer worker " + i) { //$NON-NLS-1$
+				public void run() {
+					work(null);
+				}
+			};
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		boolean interrupted = false;
+		try {
+			//The calling thread takes part in the work and watches for cancellation
+			work(monitor);
+		} finally {
+			synchronized (toProcess) {
+				stopWorkers = true;
+				toProcess.notifyAll();
+			}
+			for (int i = 0; i < workers.length; i++) {
+				while (workers[i].isAlive()) {
+					try {
+						workers[i].join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			parallel = false;
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (workerFailure != null)
+			throw workerFailure;
+	}
+
+	private void work(IProgressMonitor monitor) {
+		while (true) {
+			IInstallableUnit iu;
+			synchronized (toProcess) {
+				//The queue only stays empty once no IU is left in process, since IUs are queued before their parent completes
+				while (toProcess.isEmpty() && inProcess > 0 && !stopWorkers && !isCanceled(monitor)) {
+					try {
+						//The calling thread wakes up regularly to check for cancellation
+						toProcess.wait(monitor == null ? 0 : 100);
+					} catch (InterruptedException e) {
+						stopWorkers = true;
+						toProcess.notifyAll();
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				if (isCanceled(monitor)) {
+					stopWorkers = true;
+					toProcess.notifyAll();
+					result.merge(Status.CANCEL_STATUS);
+					throw new OperationCanceledException();
+				}
+				if (stopWorkers || toProcess.isEmpty()) {
+					toProcess.notifyAll();
+					return;
+				}
+				iu = toProcess.removeFirst();
+				inProcess++;
+			}
+			try {
+				processIU(iu);
+			} catch (RuntimeException e) {
+				synchronized (toProcess) {
+					if (workerFailure == null)
+						workerFailure = e;
+					stopWorkers = true;
+				}
+			} finally {
+				synchronized (toProcess) {
+					inProcess--;
+					//Wakes the waiting threads up to take the queued IUs or to complete
+					toProcess.notifyAll();
+				}
+			}
+		}
+	}
+
+	private static boolean isCanceled(IProgressMonitor monitor) {
+		return monitor != null && monitor.isCanceled();
+	}
+
 	private void computeNonGreedyIUs() {
 		IQueryable<IInstallableUnit> queryable = new QueryableArray(considered.toArray(new IInstallableUnit[considered.size()]));
 		Iterator<IInstallableUnit> it = queryable.query(QueryUtil.ALL_UNITS, new NullProgressMonitor()).iterator();
@@ -121,13 +241,14 @@ public class Slicer {
 	protected void processIU(IInstallableUnit iu) {
 		iu = iu.unresolved();
 
-		Map<Version, IInstallableUnit> iuSlice = slice.get(iu.getId());
-		if (iuSlice == null) {
-
-			iuSlice = new HashMap<Version, IInstallableUnit>();
-			slice.put(iu.getId(), iuSlice);
+		synchronized (slice) {
+			Map<Version, IInstallableUnit> iuSlice = slice.get(iu.getId());
+			if (iuSlice == null) {
+				iuSlice = new HashMap<Version, IInstallableUnit>();
+				slice.put(iu.getId(), iuSlice);
+			}
+			iuSlice.put(iu.getVersion(), iu);
 		}
-		iuSlice.put(iu.getVersion(), iu);
 		if (!isApplicable(iu)) {
 			return;
 		}
@@ -187,8 +308,7 @@ public class Slicer {
 			if (!isApplicable(match))
 				continue;
 			validMatches++;
-			Map<Version, IInstallableUnit> iuSlice = slice.get(match.getId());
-			if (iuSlice == null || !iuSlice.containsKey(match.getVersion()))
+			if (!isSliced(match))
 				consider(match);
 		}
 
@@ -197,14 +317,28 @@ public class Slicer {
 				if (DEBUG)
 					System.out.println("No IU found to satisfy optional dependency of " + iu + " on req " + req); //$NON-NLS-1$//$NON-NLS-2$
 			} else {
-				result.add(new Status(IStatus.WARNING, DirectorActivator.PI_DIRECTOR, NLS.bind(Messages.Planner_Unsatisfied_dependency, iu, req)));
+				synchronized (result) {
+					result.add(new Status(IStatus.WARNING, DirectorActivator.PI_DIRECTOR, NLS.bind(Messages.Planner_Unsatisfied_dependency, iu, req)));
+				}
 			}
 		}
 	}
 
+	private boolean isSliced(IInstallableUnit iu) {
+		synchronized (slice) {
+			Map<Version, IInstallableUnit> iuSlice = slice.get(iu.getId());
+			return iuSlice != null && iuSlice.containsKey(iu.getVersion());
+		}
+	}
+
 	private void consider(IInstallableUnit match) {
-		if (considered.add(match))
-			toProcess.addLast(match);
+		synchronized (toProcess) {
+			if (considered.add(match)) {
+				toProcess.addLast(match);
+				if (parallel)
+					toProcess.notify();
+			}
+		}
 	}
 
 	Set<IInstallableUnit> getNonGreedyIUs() {
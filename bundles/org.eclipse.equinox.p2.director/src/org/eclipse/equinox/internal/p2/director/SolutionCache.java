@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.Map.Entry;
+import org.eclipse.equinox.internal.p2.core.helpers.Tracing;
+import org.eclipse.equinox.p2.metadata.*;
+
+/**
+ * Keeps the solutions of the requests solved by the planner on disk, keyed by a fingerprint of
+ * everything a solution depends on: the installable units available to the planner, the units
+ * installed in the profile, the request and the selection context. A solution is stored as the
+ * identifiers of its units, which are looked up among the available units when it is read again.
+ * Any change to the inputs changes the fingerprint, so stale solutions are never read; they are
+ * deleted once the cache holds more than {@link #MAX_ENTRIES} solutions.
+ */
+class SolutionCache {
+	private static final boolean DEBUG = Tracing.DEBUG_PLANNER_PROJECTOR;
+	private static final int FORMAT_VERSION = 1;
+	static final int MAX_ENTRIES = 64;
+	private static final String SUFFIX = ".solution"; //$NON-NLS-1$
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private final File directory;
+
+	SolutionCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Computes the fingerprint of a request. The order of the units does not matter.
+	 * @return the fingerprint, or <code>null</code> if it cannot be computed
+	 */
+	static String fingerprint(IInstallableUnit entryPoint, IInstallableUnit[] alreadyExistingRoots, Collection<IInstallableUnit> installed, Collection<IInstallableUnit> additions, Map<String, String> selectionContext, boolean considerMetaRequirements, IInstallableUnit[] available) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+		Fingerprint fingerprint = new Fingerprint(digest);
+		fingerprint.add(FORMAT_VERSION);
+		fingerprint.add(considerMetaRequirements);
+		for (Entry<String, String> entry : new TreeMap<String, String>(selectionContext).entrySet()) {
+			fingerprint.add(entry.getKey());
+			fingerprint.add(entry.getValue());
+		}
+		// the entry point has a generated identifier, only its requirements matter
+		fingerprint.addRequirements(entryPoint.getRequirements());
+		fingerprint.addKeys(Arrays.asList(alreadyExistingRoots));
+		fingerprint.addKeys(installed);
+		fingerprint.addKeys(additions);
+		IInstallableUnit[] sorted = available.clone();
+		Arrays.sort(sorted);
+		fingerprint.add(sorted.length);
+		for (int i = 0; i < sorted.length; i++)
+			fingerprint.addUnit(sorted[i]);
+		return fingerprint.toString();
+	}
+
+	/**
+	 * Returns the solution stored for the given fingerprint, with its units taken from the given
+	 * available units, or <code>null</code> if there is none.
+	 */
+	Projector read(String fingerprint, IInstallableUnit[] available) {
+		File file = new File(directory, fingerprint + SUFFIX);
+		if (!file.isFile())
+			return null;
+		Map<String, IInstallableUnit> units = new HashMap<String, IInstallableUnit>(available.length);
+		for (int i = 0; i < available.length; i++)
+			units.put(getKey(available[i]), available[i]);
+
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (input.readInt() != FORMAT_VERSION)
+				return null;
+			int size = input.readInt();
+			Collection<IInstallableUnit> solution = new ArrayList<IInstallableUnit>(size);
+			for (int i = 0; i < size; i++) {
+				IInstallableUnit unit = units.get(input.readUTF());
+				if (unit == null)
+					return null;
+				solution.add(unit);
+			}
+			size = input.readInt();
+			Map<IInstallableUnitFragment, List<IInstallableUnit>> fragments = new HashMap<IInstallableUnitFragment, List<IInstallableUnit>>(size);
+			for (int i = 0; i < size; i++) {
+				IInstallableUnit fragment = units.get(input.readUTF());
+				if (!(fragment instanceof IInstallableUnitFragment))
+					return null;
+				int hostCount = input.readInt();
+				List<IInstallableUnit> hosts = new ArrayList<IInstallableUnit>(hostCount);
+				for (int j = 0; j < hostCount; j++) {
+					IInstallableUnit host = units.get(input.readUTF());
+					if (host == null)
+						return null;
+					hosts.add(host);
+				}
+				fragments.put((IInstallableUnitFragment) fragment, hosts);
+			}
+			// the least recently used solutions are deleted first
+			file.setLastModified(System.currentTimeMillis());
+			if (DEBUG)
+				Tracing.debug("Read the solution of request " + fingerprint); //$NON-NLS-1$
+			return new Projector(solution, fragments);
+		} catch (IOException e) {
+			if (DEBUG)
+				Tracing.debug("Unable to read the solution of request " + fingerprint + ": " + e); //$NON-NLS-1$ //$NON-NLS-2$
+			return null;
+		} finally {
+			close(input);
+		}
+	}
+
+	/**
+	 * Stores the solution of the request with the given fingerprint.
+	 */
+	void write(String fingerprint, Collection<IInstallableUnit> solution, Map<IInstallableUnitFragment, List<IInstallableUnit>> fragments) {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			return;
+		File file = new File(directory, fingerprint + SUFFIX);
+		File temp = null;
+		DataOutputStream output = null;
+		try {
+			// the solution is written to a temporary file first so that readers never see a partial solution
+			temp = File.createTempFile(fingerprint, null, directory);
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			output.writeInt(FORMAT_VERSION);
+			output.writeInt(solution.size());
+			for (IInstallableUnit unit : solution)
+				output.writeUTF(getKey(unit));
+			output.writeInt(fragments.size());
+			for (Entry<IInstallableUnitFragment, List<IInstallableUnit>> entry : fragments.entrySet()) {
+				output.writeUTF(getKey(entry.getKey()));
+				output.writeInt(entry.getValue().size());
+				for (IInstallableUnit host : entry.getValue())
+					output.writeUTF(getKey(host));
+			}
+			output.close();
+			output = null;
+			if (!temp.renameTo(file)) {
+				file.delete();
+				if (!temp.renameTo(file))
+					return;
+			}
+			temp = null;
+			if (DEBUG)
+				Tracing.debug("Stored the solution of request " + fingerprint); //$NON-NLS-1$
+		} catch (IOException e) {
+			if (DEBUG)
+				Tracing.debug("Unable to store the solution of request " + fingerprint + ": " + e); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			close(output);
+			if (temp != null)
+				temp.delete();
+		}
+		prune();
+	}
+
+	private void prune() {
+		File[] files = directory.listFiles();
+		if (files == null || files.length <= MAX_ENTRIES)
+			return;
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File file1, File file2) {
+				long modified1 = file1.lastModified();
+				long modified2 = file2.lastModified();
+				return modified1 < modified2 ? 1 : (modified1 == modified2 ? 0 : -1);
+			}
+		});
+		for (int i = MAX_ENTRIES; i < files.length; i++)
+			files[i].delete();
+	}
+
+	private static String getKey(IInstallableUnit unit) {
+		return unit.getId() + '_' + unit.getVersion();
+	}
+
+	private static void close(InputStream input) {
+		if (input == null)
+			return;
+		try {
+			input.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private static void close(OutputStream output) {
+		if (output == null)
+			return;
+		try {
+			output.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	/**
+	 * Accumulates the content of the planner inputs in a message digest.
+	 */
+	private static class Fingerprint {
+		private final MessageDigest digest;
+
+		Fingerprint(MessageDigest digest) {
+			this.digest = digest;
+		}
+
+		void add(String value) {
+			if (value == null) {
+				digest.update((byte) 0);
+				return;
+			}
+			int length = value.length();
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+				digest.update((byte) (c >> 8));
+				digest.update((byte) c);
+			}
+			// separates the values
+			digest.update((byte) 0xff);
+			digest.update((byte) 0xff);
+		}
+
+		void add(int value) {
+			digest.update((byte) (value >> 24));
+			digest.update((byte) (value >> 16));
+			digest.update((byte) (value >> 8));
+			digest.update((byte) value);
+		}
+
+		void add(boolean value) {
+			digest.update((byte) (value ? 1 : 0));
+		}
+
+		void add(Object value) {
+			add(value == null ? null : value.toString());
+		}
+
+		void addKeys(Collection<IInstallableUnit> units) {
+			List<String> keys = new ArrayList<String>(units.size());
+			for (IInstallableUnit unit : units)
+				keys.add(getKey(unit));
+			Collections.sort(keys);
+			add(keys.size());
+			for (String key : keys)
+				add(key);
+		}
+
+		void addUnit(IInstallableUnit unit) {
+			add(unit.getId());
+			add(unit.getVersion());
+			add(unit.isSingleton());
+			add(unit.getFilter());
+			add(unit.getProperty(IInstallableUnit.PROP_PARTIAL_IU));
+			addRequirements(unit.getRequirements());
+			addRequirements(unit.getMetaRequirements());
+			Collection<IProvidedCapability> capabilities = unit.getProvidedCapabilities();
+			add(capabilities.size());
+			for (IProvidedCapability capability : capabilities) {
+				add(capability.getNamespace());
+				add(capability.getName());
+				add(capability.getVersion());
+			}
+			if (unit instanceof IInstallableUnitPatch) {
+				IInstallableUnitPatch patch = (IInstallableUnitPatch) unit;
+				IRequirement[][] scope = patch.getApplicabilityScope();
+				for (int i = 0; i < scope.length; i++)
+					addRequirements(Arrays.asList(scope[i]));
+				for (IRequirementChange change : patch.getRequirementsChange()) {
+					addRequirement(change.applyOn());
+					addRequirement(change.newValue());
+				}
+				addRequirement(patch.getLifeCycle());
+			}
+		}
+
+		void addRequirements(Collection<IRequirement> requirements) {
+			add(requirements.size());
+			for (IRequirement requirement : requirements)
+				addRequirement(requirement);
+		}
+
+		private void addRequirement(IRequirement requirement) {
+			if (requirement == null) {
+				add((String) null);
+				return;
+			}
+			add(requirement.getMatches());
+			Object[] parameters = requirement.getMatches().getParameters();
+			for (int i = 0; i < parameters.length; i++)
+				add(parameters[i]);
+			add(requirement.getFilter());
+			add(requirement.getMin());
+			add(requirement.getMax());
+			add(requirement.isGreedy());
+		}
+
+		public String toString() {
+			byte[] bytes = digest.digest();
+			char[] chars = new char[bytes.length * 2];
+			for (int i = 0; i < bytes.length; i++) {
+				chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+				chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+			}
+			return new String(chars);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.RequiredCapability;
+import org.eclipse.equinox.internal.p2.metadata.query.UpdateQuery;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+
+/**
+ * An index of the units that can be updates of other units, by the ids of the units they
+ * update. A unit is indexed under the ids named in its update descriptor and, for a patch,
+ * in its life cycle requirement. A unit that names the units it updates with any other
+ * expression is a candidate update of every unit.
+ * <p>
+ * The index only narrows down the candidates, the updates of a unit are the candidates
+ * that match the {@link UpdateQuery} of the unit.
+ * </p>
+ */
+class UpdateDescriptorIndex {
+	private final Map<String, List<IInstallableUnit>> candidatesById = new HashMap<String, List<IInstallableUnit>>();
+	private final List<IInstallableUnit> otherCandidates = new ArrayList<IInstallableUnit>();
+
+	UpdateDescriptorIndex(Iterator<IInstallableUnit> units) {
+		Set<String> ids = new HashSet<String>();
+		while (units.hasNext()) {
+			IInstallableUnit unit = units.next();
+			ids.clear();
+			boolean indexed = true;
+			IUpdateDescriptor descriptor = unit.getUpdateDescriptor();
+			if (descriptor != null)
+				indexed = addIds(descriptor.getIUsBeingUpdated(), ids);
+			if (indexed && unit instanceof IInstallableUnitPatch) {
+				IRequirement lifeCycle = ((IInstallableUnitPatch) unit).getLifeCycle();
+				if (lifeCycle != null)
+					indexed = addIds(Collections.singleton(lifeCycle.getMatches()), ids);
+			}
+			if (!indexed) {
+				otherCandidates.add(unit);
+				continue;
+			}
+			for (String id : ids) {
+				List<IInstallableUnit> candidates = candidatesById.get(id);
+				if (candidates == null) {
+					candidates = new ArrayList<IInstallableUnit>(1);
+					candidatesById.put(id, candidates);
+				}
+				candidates.add(unit);
+			}
+		}
+	}
+
+	/*
+	 * Adds the ids named by the given expressions and returns whether all of them name an id.
+	 */
+	private static boolean addIds(Collection<IMatchExpression<IInstallableUnit>> expressions, Set<String> ids) {
+		for (IMatchExpression<IInstallableUnit> expression : expressions) {
+			if (!RequiredCapability.isSimpleRequirement(expression) || !IInstallableUnit.NAMESPACE_IU_ID.equals(RequiredCapability.extractNamespace(expression)))
+				return false;
+			ids.add(RequiredCapability.extractName(expression));
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the indexed units that are updates of the given unit.
+	 */
+	Iterator<IInstallableUnit> getUpdates(IInstallableUnit unit) {
+		// the update expressions match the ids provided by the unit
+		Set<IInstallableUnit> candidates = new LinkedHashSet<IInstallableUnit>();
+		addCandidates(unit.getId(), candidates);
+		for (IProvidedCapability capability : unit.getProvidedCapabilities()) {
+			if (IInstallableUnit.NAMESPACE_IU_ID.equals(capability.getNamespace()) && !unit.getId().equals(capability.getName()))
+				addCandidates(capability.getName(), candidates);
+		}
+		candidates.addAll(otherCandidates);
+
+		UpdateQuery query = new UpdateQuery(unit);
+		List<IInstallableUnit> updates = new ArrayList<IInstallableUnit>();
+		for (IInstallableUnit candidate : candidates) {
+			if (query.isMatch(candidate))
+				updates.add(candidate);
+		}
+		return updates.iterator();
+	}
+
+	private void addCandidates(String id, Set<IInstallableUnit> candidates) {
+		List<IInstallableUnit> indexed = candidatesById.get(id);
+		if (indexed != null)
+			candidates.addAll(indexed);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.equinox.p2.planner;
 
+import java.util.Collection;
+import java.util.Map;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.equinox.p2.engine.*;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
@@ -53,4 +55,19 @@ public interface IPlanner {
 	 * You may want to consider using the org.eclipse.equinox.p2.operations.UpdateOperation class instead. 
 	 */
 	public IQueryResult<IInstallableUnit> updatesFor(IInstallableUnit iu, ProvisioningContext context, IProgressMonitor monitor);
+
+	/**
+	 * Returns the updates of each of the given installable units. The metadata of the context is
+	 * searched once for all the units, which is much faster than searching the updates of the units
+	 * one at a time.
+	 * 
+	 * @param ius the installable units whose updates are searched
+	 * @param context the context providing the metadata to search
+	 * @param monitor a progress monitor, or <code>null</code> if progress reporting is not desired
+	 * @return a map from each of the given units to its updates
+	 * @noreference This method is not intended to be referenced by clients. 
+	 * You may want to consider using the org.eclipse.equinox.p2.operations.UpdateOperation class instead. 
+	 * @since 2.2
+	 */
+	public Map<IInstallableUnit, IQueryResult<IInstallableUnit>> updatesFor(Collection<IInstallableUnit> ius, ProvisioningContext context, IProgressMonitor monitor);
 }
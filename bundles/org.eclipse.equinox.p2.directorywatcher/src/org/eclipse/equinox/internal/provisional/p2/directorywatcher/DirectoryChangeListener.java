@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,6 +26,20 @@ public abstract class DirectoryChangeListener {
 		// do nothing
 	}
 
+	/**
+	 * Returns whether this listener can be notified of the changed files only. A watcher
+	 * that knows which files were added, changed or removed since the previous poll then
+	 * calls {@link #startIncrementalPoll()} instead of {@link #startPoll()} and only notifies
+	 * this listener of these files. The files that are not notified did not change.
+	 */
+	public boolean supportsIncrementalPoll() {
+		return false;
+	}
+
+	public void startIncrementalPoll() {
+		startPoll();
+	}
+
 	public boolean isInterested(File file) {
 		return false;
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 aQute and others.
+ *  Copyright (c) 2007, 2012 aQute and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -22,19 +22,32 @@ public class DirectoryWatcher {
 	public class WatcherThread extends Thread {
 
 		private final long pollFrequency;
-		private boolean done = false;
+		// null when the directories are polled
+		private final WatchServiceMonitor monitor;
+		private volatile boolean done = false;
 
 		public WatcherThread(long pollFrequency) {
 			super("Directory Watcher"); //$NON-NLS-1$
 			this.pollFrequency = pollFrequency;
+			this.monitor = isWatchServiceEnabled() ? WatchServiceMonitor.create(directories) : null;
 		}
 
 		public void run() {
+			// the directories are scanned first, then only when the changes are unknown
+			Set<File> changes = null;
 			do {
 				try {
-					poll();
-					synchronized (this) {
-						wait(pollFrequency);
+					if (changes == null)
+						poll();
+					else if (!changes.isEmpty())
+						poll(changes);
+					if (monitor != null && monitor.isValid()) {
+						changes = monitor.waitForChanges(pollFrequency);
+					} else {
+						changes = null;
+						synchronized (this) {
+							wait(pollFrequency);
+						}
 					}
 				} catch (InterruptedException e) {
 					// ignore
@@ -43,22 +56,38 @@ public class DirectoryWatcher {
 					done = true;
 				}
 			} while (!done);
+			if (monitor != null)
+				monitor.close();
 		}
 
 		public synchronized void done() {
 			done = true;
 			notify();
+			// wakes up the thread waiting for changes
+			if (monitor != null)
+				monitor.close();
 		}
 	}
 
 	public final static String POLL = "eclipse.p2.directory.watcher.poll"; //$NON-NLS-1$
 	public final static String DIR = "eclipse.p2.directory.watcher.dir"; //$NON-NLS-1$
+	/**
+	 * Property which, when set to <code>false</code>, makes the watcher thread poll the directories
+	 * even when the platform can report the changes in the directories.
+	 */
+	public final static String WATCH_SERVICE = "eclipse.p2.directory.watcher.watchService"; //$NON-NLS-1$
 	private static final long DEFAULT_POLL_FREQUENCY = 2000;
 
 	public static void log(String string, Throwable e) {
 		System.err.println(string + ": " + e); //$NON-NLS-1$
 	}
 
+	private static boolean isWatchServiceEnabled() {
+		BundleContext context = Activator.getContext();
+		String value = context != null ? context.getProperty(WATCH_SERVICE) : System.getProperty(WATCH_SERVICE);
+		return !"false".equalsIgnoreCase(value); //$NON-NLS-1$
+	}
+
 	final File[] directories;
 
 	long poll = 2000;
@@ -109,6 +138,45 @@ public class DirectoryWatcher {
 		stopPoll();
 	}
 
+	/**
+	 * Notifies the listeners of the given files, which were created, modified or deleted since
+	 * the previous poll. The directories are scanned instead when one of the listeners does not
+	 * support incremental polls.
+	 */
+	synchronized void poll(Set<File> changes) {
+		for (DirectoryChangeListener listener : listeners) {
+			if (!listener.supportsIncrementalPoll()) {
+				poll();
+				return;
+			}
+		}
+		for (DirectoryChangeListener listener : listeners)
+			listener.startIncrementalPoll();
+		pendingDeletions = new HashSet<File>();
+		for (File file : changes) {
+			if (file.getPath().endsWith(DEL_EXT)) {
+				// a deletion marker is also reported when it is deleted along with its target
+				if (!file.exists())
+					continue;
+				File target = new File(file.getPath().substring(0, file.getPath().length() - 4));
+				pendingDeletions.add(target);
+				scannedFiles.remove(target);
+				notifyRemoval(target);
+			} else if (file.exists()) {
+				scannedFiles.add(file);
+				for (DirectoryChangeListener listener : listeners) {
+					if (isInterested(listener, file))
+						processFile(file, listener);
+				}
+			} else if (scannedFiles.remove(file)) {
+				notifyRemoval(file);
+			}
+		}
+		for (DirectoryChangeListener listener : listeners)
+			listener.stopPoll();
+		processPendingDeletions();
+	}
+
 	public synchronized void start(final long pollFrequency) {
 		if (watcher != null)
 			throw new IllegalStateException(Messages.thread_started);
@@ -189,6 +257,13 @@ public class DirectoryWatcher {
 		}
 	}
 
+	private void notifyRemoval(File file) {
+		for (DirectoryChangeListener listener : listeners) {
+			if (isInterested(listener, file))
+				listener.removed(file);
+		}
+	}
+
 	private void processFile(File file, DirectoryChangeListener listener) {
 		try {
 			Long oldTimestamp = listener.getSeenFile(file);
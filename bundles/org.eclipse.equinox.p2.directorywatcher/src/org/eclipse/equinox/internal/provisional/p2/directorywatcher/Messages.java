@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2008 IBM Corporation and others.
+ *  Copyright (c) 2008, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -17,6 +17,7 @@ public class Messages extends NLS {
 	public static String artifact_repo_manager_not_registered;
 	public static String error_main_loop;
 	public static String error_processing;
+	public static String error_watch_service;
 	public static String failed_create_artifact_repo;
 	public static String failed_create_metadata_repo;
 	public static String filename_missing;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -42,6 +42,9 @@ public class RepositoryListener extends DirectoryChangeListener {
 	// believes to be on disk.
 	private final Map<File, Long> currentFiles = new HashMap<File, Long>();
 	private final Collection<File> polledSeenFiles = new HashSet<File>();
+	// the files notified as removed during an incremental poll
+	private final Collection<File> removedFiles = new HashSet<File>();
+	private boolean incrementalPoll = false;
 
 	private EntryAdvice advice = new EntryAdvice();
 	private PublisherInfo info;
@@ -123,7 +126,10 @@ public class RepositoryListener extends DirectoryChangeListener {
 
 	public boolean removed(File file) {
 		// the IUs and artifacts associated with this file will get removed in stopPoll
-		return currentFiles.containsKey(file);
+		boolean known = currentFiles.containsKey(file);
+		if (known && incrementalPoll)
+			removedFiles.add(file);
+		return known;
 	}
 
 	private boolean process(File file, boolean isAddition) {
@@ -172,14 +178,31 @@ public class RepositoryListener extends DirectoryChangeListener {
 	}
 
 	public void startPoll() {
+		incrementalPoll = false;
 		iusToAdd = new PublisherResult();
 		iusToChange = new PublisherResult();
 		synchronizeCurrentFiles();
 	}
 
+	public boolean supportsIncrementalPoll() {
+		return true;
+	}
+
+	public void startIncrementalPoll() {
+		startPoll();
+		incrementalPoll = true;
+	}
+
 	public void stopPoll() {
-		final Set<File> filesToRemove = new HashSet<File>(currentFiles.keySet());
-		filesToRemove.removeAll(polledSeenFiles);
+		final Set<File> filesToRemove;
+		if (incrementalPoll) {
+			// only the files that were notified changed, the others are still on disk
+			filesToRemove = new HashSet<File>(removedFiles);
+		} else {
+			filesToRemove = new HashSet<File>(currentFiles.keySet());
+			filesToRemove.removeAll(polledSeenFiles);
+		}
+		removedFiles.clear();
 		polledSeenFiles.clear();
 
 		synchronizeMetadataRepository(filesToRemove);
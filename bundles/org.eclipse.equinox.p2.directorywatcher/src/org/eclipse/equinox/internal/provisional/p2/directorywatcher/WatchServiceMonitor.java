@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.provisional.p2.directorywatcher;
+
+import java.io.File;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Waits for the changes in a set of directories reported by the <code>java.nio.file.WatchService</code>
+ * of the platform. The watch service is only available from Java 7 on, while this bundle runs on
+ * older execution environments, so the service is accessed reflectively.
+ */
+class WatchServiceMonitor {
+	private final Object watchService;
+	// the watched directory of each watch key
+	private final Map<Object, File> directories = new HashMap<Object, File>();
+	private final Object overflow;
+	private final Object milliseconds;
+	private final Method poll;
+	private final Method pollNow;
+	private final Method pollEvents;
+	private final Method reset;
+	private final Method kind;
+	private final Method context;
+	private final Method close;
+	private volatile boolean valid = true;
+
+	/**
+	 * Returns a monitor of the given directories, or <code>null</code> if the directories must be polled.
+	 */
+	static WatchServiceMonitor create(File[] directories) {
+		// directories that do not exist yet are polled until they are created
+		for (int i = 0; i < directories.length; i++) {
+			if (!directories[i].isDirectory())
+				return null;
+		}
+		try {
+			return new WatchServiceMonitor(directories);
+		} catch (ClassNotFoundException e) {
+			// Java 6 or older
+		} catch (Exception e) {
+			DirectoryWatcher.log(Messages.error_watch_service, e);
+		}
+		return null;
+	}
+
+	private WatchServiceMonitor(File[] watched) throws Exception {
+		Class<?> fileSystemsClass = Class.forName("java.nio.file.FileSystems"); //$NON-NLS-1$
+		Class<?> fileSystemClass = Class.forName("java.nio.file.FileSystem"); //$NON-NLS-1$
+		Class<?> watchServiceClass = Class.forName("java.nio.file.WatchService"); //$NON-NLS-1$
+		Class<?> watchKeyClass = Class.forName("java.nio.file.WatchKey"); //$NON-NLS-1$
+		Class<?> watchEventClass = Class.forName("java.nio.file.WatchEvent"); //$NON-NLS-1$
+		Class<?> kindClass = Class.forName("java.nio.file.WatchEvent$Kind"); //$NON-NLS-1$
+		Class<?> kindsClass = Class.forName("java.nio.file.StandardWatchEventKinds"); //$NON-NLS-1$
+		Class<?> pathClass = Class.forName("java.nio.file.Path"); //$NON-NLS-1$
+		Class<?> timeUnitClass = Class.forName("java.util.concurrent.TimeUnit"); //$NON-NLS-1$
+
+		Object fileSystem = fileSystemsClass.getMethod("getDefault").invoke(null); //$NON-NLS-1$
+		overflow = kindsClass.getField("OVERFLOW").get(null); //$NON-NLS-1$
+		milliseconds = timeUnitClass.getField("MILLISECONDS").get(null); //$NON-NLS-1$
+		poll = watchServiceClass.getMethod("poll", new Class[] {long.class, timeUnitClass}); //$NON-NLS-1$
+		pollNow = watchServiceClass.getMethod("poll"); //$NON-NLS-1$
+		close = watchServiceClass.getMethod("close"); //$NON-NLS-1$
+		pollEvents = watchKeyClass.getMethod("pollEvents"); //$NON-NLS-1$
+		reset = watchKeyClass.getMethod("reset"); //$NON-NLS-1$
+		kind = watchEventClass.getMethod("kind"); //$NON-NLS-1$
+		context = watchEventClass.getMethod("context"); //$NON-NLS-1$
+
+		Object kinds = Array.newInstance(kindClass, 3);
+		Array.set(kinds, 0, kindsClass.getField("ENTRY_CREATE").get(null)); //$NON-NLS-1$
+		Array.set(kinds, 1, kindsClass.getField("ENTRY_DELETE").get(null)); //$NON-NLS-1$
+		Array.set(kinds, 2, kindsClass.getField("ENTRY_MODIFY").get(null)); //$NON-NLS-1$
+		Method toPath = File.class.getMethod("toPath"); //$NON-NLS-1$
+		Method register = pathClass.getMethod("register", new Class[] {watchServiceClass, kinds.getClass()}); //$NON-NLS-1$
+
+		watchService = fileSystemClass.getMethod("newWatchService").invoke(fileSystem); //$NON-NLS-1$
+		try {
+			for (int i = 0; i < watched.length; i++) {
+				Object key = register.invoke(toPath.invoke(watched[i]), new Object[] {watchService, kinds});
+				directories.put(key, watched[i]);
+			}
+		} catch (Exception e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for changes in the watched directories for at most the given time. Returns the files
+	 * that were created, modified or deleted, an empty set if no file changed, or <code>null</code>
+	 * if the changes are unknown and the directories must be scanned.
+	 */
+	Set<File> waitForChanges(long timeout) {
+		Set<File> changes = new HashSet<File>();
+		try {
+			Object key = poll.invoke(watchService, new Object[] {new Long(timeout), milliseconds});
+			while (key != null) {
+				File directory = directories.get(key);
+				for (Iterator<?> events = ((List<?>) pollEvents.invoke(key)).iterator(); events.hasNext();) {
+					Object event = events.next();
+					// events were lost
+					if (kind.invoke(event) == overflow)
+						changes = null;
+					else if (changes != null && directory != null)
+						changes.add(new File(directory, context.invoke(event).toString()));
+				}
+				// a key that is no longer valid belongs to a deleted directory
+				if (!((Boolean) reset.invoke(key)).booleanValue()) {
+					valid = false;
+					changes = null;
+				}
+				// the changes that happened meanwhile are handled at once
+				key = pollNow.invoke(watchService);
+			}
+		} catch (InvocationTargetException e) {
+			// the service was closed
+			return null;
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+		return changes;
+	}
+
+	/**
+	 * Returns whether all the directories are still watched. Directories that were deleted
+	 * are no longer watched, even when they are created again.
+	 */
+	boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * Stops watching the directories. A thread waiting for changes returns immediately.
+	 */
+	void close() {
+		valid = false;
+		try {
+			close.invoke(watchService);
+		} catch (Exception e) {
+			// ignore
+		}
+	}
+}
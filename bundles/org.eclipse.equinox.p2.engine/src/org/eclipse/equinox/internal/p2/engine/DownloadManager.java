@@ -105,34 +105,28 @@ public class DownloadManager {
 	}
 
 	private void fetch(IArtifactRepository[] repositories, IProgressMonitor mon) {
-		SubMonitor monitor = SubMonitor.convert(mon, requestsToProcess.size());
-		for (int i = 0; i < repositories.length && !requestsToProcess.isEmpty() && !monitor.isCanceled(); i++) {
-			IArtifactRequest[] requests = getRequestsForRepository(repositories[i]);
-			publishDownloadEvent(new CollectEvent(CollectEvent.TYPE_REPOSITORY_START, repositories[i], provContext, requests));
-			IStatus dlStatus = repositories[i].getArtifacts(requests, monitor.newChild(requests.length));
-			publishDownloadEvent(new CollectEvent(CollectEvent.TYPE_REPOSITORY_END, repositories[i], provContext, requests));
-			if (dlStatus.getSeverity() == IStatus.CANCEL)
-				return;
+		DownloadScheduler scheduler = new DownloadScheduler(repositories, requestsToProcess) {
+			protected void repositoryStarted(IArtifactRepository repository, IArtifactRequest[] requests) {
+				publishDownloadEvent(new CollectEvent(CollectEvent.TYPE_REPOSITORY_START, repository, provContext, requests));
+			}
+
+			protected void repositoryEnded(IArtifactRepository repository, IArtifactRequest[] requests) {
+				publishDownloadEvent(new CollectEvent(CollectEvent.TYPE_REPOSITORY_END, repository, provContext, requests));
+			}
+		};
+		try {
+			scheduler.run(mon);
+		} finally {
 			filterUnfetched();
-			monitor.setWorkRemaining(requestsToProcess.size());
 		}
 	}
 
-	private void publishDownloadEvent(CollectEvent event) {
+	void publishDownloadEvent(CollectEvent event) {
 		IProvisioningEventBus bus = (IProvisioningEventBus) agent.getService(IProvisioningEventBus.SERVICE_NAME);
 		if (bus != null)
 			bus.publishEvent(event);
 	}
 
-	private IArtifactRequest[] getRequestsForRepository(IArtifactRepository repository) {
-		ArrayList<IArtifactRequest> applicable = new ArrayList<IArtifactRequest>();
-		for (IArtifactRequest request : requestsToProcess) {
-			if (repository.contains(request.getArtifactKey()))
-				applicable.add(request);
-		}
-		return applicable.toArray(new IArtifactRequest[applicable.size()]);
-	}
-
 	//	private void notifyFetched() {
 	//		ProvisioningEventBus bus = (ProvisioningEventBus) ServiceHelper.getService(DownloadActivator.context, ProvisioningEventBus.class);
 	//		bus.publishEvent();
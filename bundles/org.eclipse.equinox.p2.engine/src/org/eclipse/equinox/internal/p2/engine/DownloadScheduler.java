@@ -0,0 +1,521 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.engine;
+
+import java.util.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.p2.repository.artifact.IArtifactDescriptor;
+import org.eclipse.equinox.p2.repository.artifact.IArtifactRepository;
+import org.eclipse.equinox.p2.repository.artifact.IArtifactRequest;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Downloads artifact requests from a set of repositories with a pool of workers shared by all the repositories.
+ * <ul>
+ * <li>Requests are started largest first, using the download size advertised by the repositories.</li>
+ * <li>Each request is preferably downloaded from the first repository (in the given order) containing it.
+ * When that repository fails to provide the artifact, the request is retried from the next one.</li>
+ * <li>The number of requests sent at the same time to a repository starts low and grows as long as
+ * the throughput observed from that repository improves. It shrinks when downloads fail.</li>
+ * <li>A worker that finds no request it can send to its preferred repository takes a request pending for a
+ * saturated remote repository and downloads it from another repository containing it.</li>
+ * </ul>
+ * {@link #repositoryStarted(IArtifactRepository, IArtifactRequest[])} and {@link #repositoryEnded(IArtifactRepository, IArtifactRequest[])}
+ * are called, in order and without the scheduler lock held, around each period during which downloads from a repository are in progress.
+ */
+public class DownloadScheduler {
+	/**
+	 * System property giving the total number of download workers.
+	 */
+	public static final String PROP_DOWNLOAD_THREADS = "eclipse.p2.download.threads"; //$NON-NLS-1$
+	/**
+	 * Repository or system property bounding the number of concurrent downloads from one repository.
+	 */
+	public static final String PROP_MAX_THREADS = "eclipse.p2.max.threads"; //$NON-NLS-1$
+	/**
+	 * Repository property allowing concurrent downloads from a local repository.
+	 */
+	public static final String PROP_FORCE_THREADING = "eclipse.p2.force.threading"; //$NON-NLS-1$
+
+	private static final int DEFAULT_DOWNLOAD_THREADS = 8;
+	private static final int DEFAULT_MAX_THREADS = 4;
+	private static final int INITIAL_REMOTE_CONCURRENCY = 2;
+	private static final long WAIT_INTERVAL = 100;
+	// the work reported for each request
+	private static final int REQUEST_WORK = 100;
+
+	static final Comparator<PendingRequest> LARGEST_FIRST = new Comparator<PendingRequest>() {
+		public int compare(PendingRequest r1, PendingRequest r2) {
+			if (r1.size != r2.size)
+				return r1.size > r2.size ? -1 : 1;
+			return r1.order - r2.order;
+		}
+	};
+
+	/**
+	 * A request and the repositories it can still be downloaded from, preferred first.
+	 */
+	static class PendingRequest {
+		final IArtifactRequest request;
+		final LinkedList<RepositoryState> candidates;
+		final long size;
+		final int order;
+		int reported; //work already reported for this request
+
+		PendingRequest(IArtifactRequest request, LinkedList<RepositoryState> candidates, long size, int order) {
+			this.request = request;
+			this.candidates = candidates;
+			this.size = size;
+			this.order = order;
+		}
+	}
+
+	/**
+	 * The concurrency allowed for a repository, adjusted from the throughput observed on its downloads.
+	 */
+	static class RepositoryState {
+		final IArtifactRepository repository;
+		final boolean local;
+		final int maxConcurrency;
+		int concurrency;
+		int active;
+		//the requests sent to the repository since it started, null when no download from it is in progress
+		List<IArtifactRequest> started;
+		//throughput measured over the downloads completed at the current concurrency
+		long bytes;
+		long time;
+		int samples;
+		double throughputBeforeIncrease;
+
+		RepositoryState(IArtifactRepository repository, int maxConcurrency, boolean local) {
+			this.repository = repository;
+			this.local = local;
+			this.maxConcurrency = maxConcurrency;
+			this.concurrency = Math.min(maxConcurrency, local ? 1 : INITIAL_REMOTE_CONCURRENCY);
+		}
+
+		boolean hasCapacity() {
+			return active < concurrency;
+		}
+
+		void succeeded(long size, long elapsed) {
+			bytes += size;
+			time += Math.max(1, elapsed);
+			if (++samples < concurrency)
+				return;
+			// one round of downloads at this concurrency is complete, compare with the previous round
+			double throughput = (double) bytes / time * concurrency;
+			if (throughput > throughputBeforeIncrease && concurrency < maxConcurrency) {
+				throughputBeforeIncrease = throughput;
+				concurrency++;
+			} else if (throughput < throughputBeforeIncrease && concurrency > 1) {
+				concurrency--;
+				throughputBeforeIncrease = 0;
+			}
+			bytes = 0;
+			time = 0;
+			samples = 0;
+		}
+
+		void failed() {
+			concurrency = Math.max(1, concurrency / 2);
+			throughputBeforeIncrease = 0;
+		}
+	}
+
+	/**
+	 * A repository starting or ending, to be notified outside of the scheduler lock.
+	 */
+	static class Notification {
+		final boolean start;
+		final IArtifactRepository repository;
+		final IArtifactRequest[] requests;
+
+		Notification(boolean start, IArtifactRepository repository, List<IArtifactRequest> requests) {
+			this.start = start;
+			this.repository = repository;
+			this.requests = requests.toArray(new IArtifactRequest[requests.size()]);
+		}
+	}
+
+	private final List<RepositoryState> repositories = new ArrayList<RepositoryState>();
+	private final List<PendingRequest> pending = new ArrayList<PendingRequest>();
+	private final Object lock = new Object();
+	private int inProgress;
+	private int work; //work reported by the downloads and not yet forwarded to the caller
+	private String subTask;
+	private volatile boolean canceled;
+	private RuntimeException failure;
+	//the repository start and end notifications not yet sent, guarded by lock
+	private final LinkedList<Notification> notifications = new LinkedList<Notification>();
+	private final Object notificationLock = new Object();
+
+	/**
+	 * Reports the progress of the download of one request to the thread running the scheduler.
+	 */
+	private class DownloadMonitor extends NullProgressMonitor {
+		private final PendingRequest request;
+		private final IProgressMonitor parent;
+		private double totalWork;
+		private double worked;
+
+		DownloadMonitor(PendingRequest request, IProgressMonitor parent) {
+			this.request = request;
+			this.parent = parent;
+		}
+
+		public void beginTask(String name, int total) {
+			totalWork = total;
+			subTask(name);
+		}
+
+		public void internalWorked(double amount) {
+			if (totalWork <= 0)
+				return;
+			worked += amount;
+			reportProgress(request, (int) Math.min(REQUEST_WORK, REQUEST_WORK * worked / totalWork));
+		}
+
+		public void worked(int amount) {
+			internalWorked(amount);
+		}
+
+		public void subTask(String name) {
+			if (name == null || name.length() == 0)
+				return;
+			synchronized (lock) {
+				subTask = name;
+			}
+		}
+
+		public boolean isCanceled() {
+			return canceled || (parent != null && parent.isCanceled());
+		}
+	}
+
+	/**
+	 * Creates a scheduler for the given requests. Repositories are given in order of preference.
+	 */
+	public DownloadScheduler(IArtifactRepository[] repositories, Collection<IArtifactRequest> requests) {
+		for (int i = 0; i < repositories.length; i++) {
+			boolean local = "file".equals(repositories[i].getLocation().getScheme()); //$NON-NLS-1$
+			int max = getMaximumConcurrency(repositories[i]);
+			if (local && !"true".equals(repositories[i].getProperty(PROP_FORCE_THREADING))) //$NON-NLS-1$
+				max = 1;
+			this.repositories.add(new RepositoryState(repositories[i], max, local));
+		}
+		int order = 0;
+		for (IArtifactRequest request : requests) {
+			LinkedList<RepositoryState> candidates = new LinkedList<RepositoryState>();
+			for (RepositoryState state : this.repositories) {
+				if (state.repository.contains(request.getArtifactKey()))
+					candidates.add(state);
+			}
+			if (!candidates.isEmpty())
+				pending.add(new PendingRequest(request, candidates, getDownloadSize(request, candidates.getFirst().repository), order++));
+		}
+		Collections.sort(pending, LARGEST_FIRST);
+	}
+
+	/**
+	 * Returns the requests that will be first tried from the given repository.
+	 */
+	public IArtifactRequest[] getRequestsFor(IArtifactRepository repository) {
+		List<IArtifactRequest> result = new ArrayList<IArtifactRequest>();
+		for (PendingRequest request : pending) {
+			if (request.candidates.getFirst().repository == repository)
+				result.add(request.request);
+		}
+		return result.toArray(new IArtifactRequest[result.size()]);
+	}
+
+	/**
+	 * Downloads all the requests and returns once every request has either been downloaded or
+	 * failed from all the repositories containing it. The result of each request is available from the request.
+	 * @return {@link Status#CANCEL_STATUS} if the download was canceled, {@link Status#OK_STATUS} otherwise
+	 */
+	public IStatus run(final IProgressMonitor monitor) {
+		int total = pending.size();
+		SubMonitor sub = SubMonitor.convert(monitor, total * REQUEST_WORK);
+		if (total == 0)
+			return Status.OK_STATUS;
+		int workers = Math.min(total, getDownloadThreads());
+		for (int i = 0; i < workers; i++) {
+			Thread worker = new Thread("Artifact download worker " + i) { //$NON-NLS-1$
+				public void run() {
+					work(monitor);
+				}
+			};
+			worker.setDaemon(true);
+			worker.start();
+		}
+
+		try {
+			while (true) {
+				int worked;
+				String task;
+				boolean done;
+				synchronized (lock) {
+					if (!canceled && sub.isCanceled()) {
+						canceled = true;
+						lock.notifyAll();
+					}
+					// once canceled, only wait for the downloads in progress to stop
+					done = (pending.isEmpty() || canceled) && inProgress == 0;
+					if (!done && work == 0 && subTask == null) {
+						try {
+							lock.wait(WAIT_INTERVAL);
+						} catch (InterruptedException e) {
+							canceled = true;
+							lock.notifyAll();
+							Thread.currentThread().interrupt();
+							done = true;
+						}
+					}
+					worked = work;
+					work = 0;
+					task = subTask;
+					subTask = null;
+				}
+				if (task != null)
+					sub.subTask(task);
+				if (worked > 0)
+					sub.worked(worked);
+				if (done)
+					break;
+			}
+		} finally {
+			synchronized (lock) {
+				// downloads interrupted by a cancellation end the repositories they were sent to
+				for (RepositoryState state : repositories)
+					if (state.started != null && state.active == 0)
+						end(state);
+			}
+			sendNotifications();
+		}
+		synchronized (lock) {
+			if (failure != null)
+				throw failure;
+		}
+		return canceled ? Status.CANCEL_STATUS : Status.OK_STATUS;
+	}
+
+	/**
+	 * Called before the first of the downloads sent to a repository while no other download
+	 * from it is in progress.
+	 * @param repository the repository
+	 * @param requests the requests that are going to be downloaded from the repository, as far as they are known
+	 */
+	protected void repositoryStarted(IArtifactRepository repository, IArtifactRequest[] requests) {
+		//nothing to do by default
+	}
+
+	/**
+	 * Called once the downloads sent to a repository are complete and no other request is
+	 * waiting for the repository. The repository can be started again later to retry a request
+	 * that failed from another repository.
+	 * @param repository the repository
+	 * @param requests the requests sent to the repository since it started
+	 */
+	protected void repositoryEnded(IArtifactRepository repository, IArtifactRequest[] requests) {
+		//nothing to do by default
+	}
+
+	void work(IProgressMonitor monitor) {
+		while (true) {
+			PendingRequest next;
+			RepositoryState source;
+			synchronized (lock) {
+				while (true) {
+					if (canceled || (pending.isEmpty() && inProgress == 0)) {
+						lock.notifyAll();
+						return;
+					}
+					next = null;
+					source = null;
+					for (PendingRequest candidate : pending) {
+						source = selectRepository(candidate);
+						if (source != null) {
+							next = candidate;
+							break;
+						}
+					}
+					if (next != null)
+						break;
+					try {
+						lock.wait(WAIT_INTERVAL);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				pending.remove(next);
+				start(source, next);
+				source.active++;
+				inProgress++;
+			}
+			// the repository is started before the download begins
+			sendNotifications();
+
+			boolean success = false;
+			long start = System.currentTimeMillis();
+			try {
+				IStatus status = source.repository.getArtifacts(new IArtifactRequest[] {next.request}, new DownloadMonitor(next, monitor));
+				IStatus result = next.request.getResult();
+				success = status.isOK() && result != null && result.isOK();
+			} catch (RuntimeException e) {
+				synchronized (lock) {
+					if (failure == null)
+						failure = e;
+					canceled = true;
+				}
+			} finally {
+				long elapsed = System.currentTimeMillis() - start;
+				synchronized (lock) {
+					source.active--;
+					inProgress--;
+					if (success) {
+						source.succeeded(next.size, elapsed);
+						reportProgress(next, REQUEST_WORK);
+					} else {
+						source.failed();
+						next.candidates.remove(source);
+						if (next.candidates.isEmpty() || canceled)
+							reportProgress(next, REQUEST_WORK);
+						else
+							insert(next);
+					}
+					if (source.active == 0 && (canceled || !hasRequestPreferring(source)))
+						end(source);
+					lock.notifyAll();
+				}
+				sendNotifications();
+			}
+		}
+	}
+
+	// Records the progress of a request and wakes the thread running the scheduler up
+	void reportProgress(PendingRequest request, int reported) {
+		synchronized (lock) {
+			if (reported <= request.reported)
+				return;
+			work += reported - request.reported;
+			request.reported = reported;
+			lock.notifyAll();
+		}
+	}
+
+	// Records that a request is sent to a repository, starting the repository if needed. Called with the lock held.
+	private void start(RepositoryState repository, PendingRequest request) {
+		if (repository.started == null) {
+			repository.started = new ArrayList<IArtifactRequest>();
+			List<IArtifactRequest> expected = new ArrayList<IArtifactRequest>();
+			expected.add(request.request);
+			for (PendingRequest other : pending) {
+				if (other.candidates.getFirst() == repository)
+					expected.add(other.request);
+			}
+			notifications.add(new Notification(true, repository.repository, expected));
+		}
+		repository.started.add(request.request);
+	}
+
+	// Ends a repository with no download in progress. Called with the lock held.
+	private void end(RepositoryState repository) {
+		notifications.add(new Notification(false, repository.repository, repository.started));
+		repository.started = null;
+	}
+
+	// Sends the queued notifications, in the order they were queued. Must not be called with the lock held.
+	private void sendNotifications() {
+		synchronized (notificationLock) {
+			while (true) {
+				Notification notification;
+				synchronized (lock) {
+					if (notifications.isEmpty())
+						return;
+					notification = notifications.removeFirst();
+				}
+				if (notification.start)
+					repositoryStarted(notification.repository, notification.requests);
+				else
+					repositoryEnded(notification.repository, notification.requests);
+			}
+		}
+	}
+
+	// Returns the repository the request should be downloaded from now, or null if it has to wait. Called with the lock held.
+	private RepositoryState selectRepository(PendingRequest request) {
+		RepositoryState preferred = request.candidates.getFirst();
+		if (preferred.hasCapacity())
+			return preferred;
+		// local copies are cheap to wait for, only requests waiting for a saturated remote repository are taken elsewhere
+		if (preferred.local)
+			return null;
+		for (RepositoryState other : request.candidates) {
+			if (other != preferred && !other.local && other.hasCapacity() && !hasRequestPreferring(other))
+				return other;
+		}
+		return null;
+	}
+
+	private boolean hasRequestPreferring(RepositoryState repository) {
+		for (PendingRequest request : pending) {
+			if (request.candidates.getFirst() == repository)
+				return true;
+		}
+		return false;
+	}
+
+	private void insert(PendingRequest request) {
+		int index = Collections.binarySearch(pending, request, LARGEST_FIRST);
+		pending.add(index < 0 ? -index - 1 : index, request);
+	}
+
+	private static long getDownloadSize(IArtifactRequest request, IArtifactRepository repository) {
+		IArtifactDescriptor[] descriptors = repository.getArtifactDescriptors(request.getArtifactKey());
+		for (int i = 0; i < descriptors.length; i++) {
+			String size = descriptors[i].getProperty(IArtifactDescriptor.DOWNLOAD_SIZE);
+			if (size != null) {
+				try {
+					return Long.parseLong(size);
+				} catch (NumberFormatException e) {
+					//try the next descriptor
+				}
+			}
+		}
+		return 0;
+	}
+
+	private static int getMaximumConcurrency(IArtifactRepository repository) {
+		int repositoryMax = parse(repository.getProperty(PROP_MAX_THREADS), DEFAULT_MAX_THREADS);
+		int userMax = parse(getSystemProperty(PROP_MAX_THREADS), DEFAULT_MAX_THREADS);
+		return Math.min(repositoryMax, userMax);
+	}
+
+	private static int getDownloadThreads() {
+		return parse(getSystemProperty(PROP_DOWNLOAD_THREADS), DEFAULT_DOWNLOAD_THREADS);
+	}
+
+	private static String getSystemProperty(String key) {
+		BundleContext context = EngineActivator.getContext();
+		return context == null ? null : context.getProperty(key);
+	}
+
+	private static int parse(String value, int defaultValue) {
+		if (value == null)
+			return defaultValue;
+		try {
+			return Math.max(1, Integer.parseInt(value));
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+}
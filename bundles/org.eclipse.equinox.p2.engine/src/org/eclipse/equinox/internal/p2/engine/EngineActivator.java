@@ -28,6 +28,18 @@ public class EngineActivator implements BundleActivator {
 	 */
 	public static final String PROFILE_FORMAT_UNCOMPRESSED = "uncompressed"; //$NON-NLS-1$
 
+	/**
+	 * System property describing how the profile registry stores the history of a profile.
+	 * If this property is undefined, every state of a profile is stored in full.
+	 */
+	public static final String PROP_PROFILE_HISTORY = "eclipse.p2.profileHistory"; //$NON-NLS-1$
+
+	/**
+	 * Value for the PROP_PROFILE_HISTORY system property specifying that the profile registry
+	 * stores the changes made to a profile, with a full copy of the profile at regular intervals.
+	 */
+	public static final String PROFILE_HISTORY_DELTA = "delta"; //$NON-NLS-1$
+
 	/**
 	 * System property specifying how the engine should handle unsigned artifacts.
 	 * If this property is undefined, the default value is assumed to be "prompt".
@@ -43,6 +43,8 @@ public class EngineSession {
 
 	private List<ActionsRecord> currentActionRecords;
 	private ActionsRecord currentRecord;
+	// the records of the operands whose actions are executed concurrently
+	private final Map<Operand, ActionsRecord> concurrentRecords = new HashMap<Operand, ActionsRecord>();
 
 	private IProfile profile;
 
@@ -166,6 +168,9 @@ public class EngineSession {
 			currentPhaseActive = false;
 			currentActionRecords = null;
 			currentRecord = null;
+			synchronized (concurrentRecords) {
+				concurrentRecords.clear();
+			}
 		}
 		currentPhase = null;
 
@@ -332,6 +337,60 @@ public class EngineSession {
 			debugActionExecute(action, parameters);
 	}
 
+	/**
+	 * Records the start of an operand whose actions are executed concurrently with the actions of
+	 * other operands. Operands are rolled back in the reverse order they were started in.
+	 */
+	void recordConcurrentOperandStart(Operand operand) {
+		if (operand == null)
+			throw new IllegalArgumentException(Messages.null_operand);
+
+		if (currentRecord != null)
+			throw new IllegalStateException(Messages.operand_started);
+
+		ActionsRecord record = new ActionsRecord(operand);
+		currentActionRecords.add(record);
+		synchronized (concurrentRecords) {
+			concurrentRecords.put(operand, record);
+		}
+
+		if (DebugHelper.DEBUG_ENGINE_SESSION)
+			debugOperandStart(operand);
+	}
+
+	void recordConcurrentOperandEnd(Operand operand) {
+		synchronized (concurrentRecords) {
+			if (concurrentRecords.remove(operand) == null)
+				throw new IllegalStateException(Messages.operand_not_started);
+		}
+
+		if (DebugHelper.DEBUG_ENGINE_SESSION)
+			debugOperandEnd(operand);
+	}
+
+	/**
+	 * Records the execution of an action for an operand started with {@link #recordConcurrentOperandStart(Operand)}.
+	 * This method can be called from several threads.
+	 */
+	void recordConcurrentActionExecute(Operand operand, ProvisioningAction action, Map<String, Object> parameters) {
+		if (action == null)
+			throw new IllegalArgumentException(Messages.null_action);
+
+		synchronized (concurrentRecords) {
+			ActionsRecord record = concurrentRecords.get(operand);
+			if (record == null)
+				throw new IllegalStateException(Messages.operand_not_started);
+			record.actions.add(action);
+
+			Touchpoint touchpoint = action.getTouchpoint();
+			if (touchpoint != null)
+				touchpoints.add(touchpoint);
+
+			if (DebugHelper.DEBUG_ENGINE_SESSION)
+				debugActionExecute(action, parameters);
+		}
+	}
+
 	public void recordActionUndo(ProvisioningAction action, Map<String, Object> parameters) {
 		if (DebugHelper.DEBUG_ENGINE_SESSION)
 			debugActionUndo(action, parameters);
@@ -99,4 +99,8 @@ public class ParameterizedProvisioningAction extends ProvisioningAction {
 	public void setTouchpoint(Touchpoint touchpoint) {
 		throw new UnsupportedOperationException();
 	}
+
+	public boolean isIndependent() {
+		return action.isIndependent();
+	}
 }
@@ -32,6 +32,135 @@ public abstract class Phase {
 	protected static final String PARM_AGENT = "agent"; //$NON-NLS-1$
 	protected static final String PARM_FORCED = "forced"; //$NON-NLS-1$
 	protected static final String PARM_TOUCHPOINT = "touchpoint"; //$NON-NLS-1$
+	/**
+	 * Provisioning context property giving the number of threads used to execute the independent actions
+	 * of the phases that support it. The value "true" uses one thread per available processor. Operands
+	 * are performed one after the other by default.
+	 * @see ProvisioningAction#isIndependent()
+	 * @see Touchpoint#isIndependent()
+	 */
+	public static final String OPERAND_THREADS = "org.eclipse.equinox.p2.engine.phase.threads"; //$NON-NLS-1$
+
+	/**
+	 * An operand whose actions are executed concurrently with the actions of other operands.
+	 */
+	private static class ConcurrentOperand {
+		final Operand operand;
+		final List<ProvisioningAction> actions;
+		final List<Map<String, Object>> actionParameters;
+		Map<String, Object> parameters;
+		Map<Touchpoint, Map<String, Object>> touchpointParameters;
+		IStatus status;
+
+		ConcurrentOperand(Operand operand, List<ProvisioningAction> actions) {
+			this.operand = operand;
+			this.actions = actions;
+			this.actionParameters = new ArrayList<Map<String, Object>>(actions.size());
+		}
+	}
+
+	/**
+	 * Executes the actions of a list of operands on several threads. An operand whose action fails stops
+	 * the execution of the operands that are not started yet.
+	 */
+	private class ConcurrentExecution {
+		private final EngineSession session;
+		private final List<ConcurrentOperand> operands;
+		private final Object lock = new Object();
+		private int next = 0;
+		private int running = 0;
+		private boolean stopped = false;
+		private Throwable failure;
+
+		ConcurrentExecution(EngineSession session, List<ConcurrentOperand> operands) {
+			this.session = session;
+			this.operands = operands;
+		}
+
+		void run(int threads, IProgressMonitor monitor) {
+			running = threads;
+			for (int i = 0; i < threads; i++) {
+				Thread worker = new Thread("Phase " + phaseId + " worker " + i) { //$NON-NLS-1$ //$NON-NLS-2$
+					public void run() {
+						work();
+					}
+				};
+				worker.setDaemon(true);
+				worker.start();
+			}
+			boolean interrupted = false;
+			synchronized (lock) {
+				while (running > 0) {
+					if (!stopped && monitor.isCanceled()) {
+						stopped = true;
+						lock.notifyAll();
+					}
+					try {
+						lock.wait(1000);
+					} catch (InterruptedException e) {
+						// the workers stop after their current operand, the interrupt is restored once they are done
+						interrupted = true;
+						stopped = true;
+					}
+				}
+				if (interrupted)
+					Thread.currentThread().interrupt();
+				if (failure instanceof RuntimeException)
+					throw (RuntimeException) failure;
+				if (failure instanceof Error)
+					throw (Error) failure;
+			}
+		}
+
+		void work() {
+			try {
+				while (true) {
+					ConcurrentOperand concurrentOperand;
+					synchronized (lock) {
+						if (stopped || next == operands.size())
+							return;
+						concurrentOperand = operands.get(next++);
+					}
+					IStatus result = execute(concurrentOperand);
+					synchronized (lock) {
+						concurrentOperand.status = result;
+						if (result.matches(IStatus.ERROR | IStatus.CANCEL))
+							stopped = true;
+					}
+				}
+			} catch (RuntimeException e) {
+				failed(e);
+			} catch (Error e) {
+				failed(e);
+			} finally {
+				synchronized (lock) {
+					running--;
+					lock.notifyAll();
+				}
+			}
+		}
+
+		private void failed(Throwable e) {
+			synchronized (lock) {
+				if (failure == null)
+					failure = e;
+				stopped = true;
+			}
+		}
+
+		private IStatus execute(ConcurrentOperand concurrentOperand) {
+			MultiStatus result = new MultiStatus(EngineActivator.ID, IStatus.OK, null, null);
+			for (int j = 0; j < concurrentOperand.actions.size(); j++) {
+				ProvisioningAction action = concurrentOperand.actions.get(j);
+				Map<String, Object> parameters = concurrentOperand.actionParameters.get(j);
+				session.recordConcurrentActionExecute(concurrentOperand.operand, action, parameters);
+				mergeStatus(result, Phase.this.execute(session, concurrentOperand.operand, action, parameters));
+				if (result.matches(IStatus.ERROR | IStatus.CANCEL))
+					break;
+			}
+			return result;
+		}
+	}
 
 	protected final String phaseId;
 	protected final int weight;
@@ -117,9 +246,11 @@ public abstract class Phase {
 
 	private void mainPerform(MultiStatus status, EngineSession session, Operand[] operands, SubMonitor subMonitor) {
 		IProfile profile = session.getProfile();
+		int threads = supportsConcurrentOperands() ? getOperandThreads(session.getProvisioningContext()) : 1;
+		List<ConcurrentOperand> concurrentOperands = new ArrayList<ConcurrentOperand>();
 		subMonitor.beginTask(null, operands.length);
 		for (int i = 0; i < operands.length; i++) {
-			subMonitor.setWorkRemaining(operands.length - i);
+			subMonitor.setWorkRemaining(operands.length - i + concurrentOperands.size());
 			if (subMonitor.isCanceled())
 				throw new OperationCanceledException();
 			while (isPaused) {
@@ -136,73 +267,209 @@ public abstract class Phase {
 			if (!isApplicable(operand))
 				continue;
 
-			session.recordOperandStart(operand);
 			List<ProvisioningAction> actions = getActions(operand);
-			operandParameters = new HashMap<String, Object>(phaseParameters);
-			operandParameters.put(PARM_OPERAND, operand);
-			mergeStatus(status, initializeOperand(profile, operand, operandParameters, subMonitor));
-			if (status.matches(IStatus.ERROR | IStatus.CANCEL)) {
-				operandParameters = null;
-				return;
+			if (threads > 1 && isIndependent(actions)) {
+				// independent operands are gathered and performed together
+				concurrentOperands.add(new ConcurrentOperand(operand, actions));
+				continue;
 			}
+			if (!performConcurrently(status, session, profile, concurrentOperands, threads, subMonitor))
+				return;
+			if (!performOperand(status, session, profile, operand, actions, subMonitor))
+				return;
+		}
+		performConcurrently(status, session, profile, concurrentOperands, threads, subMonitor);
+	}
 
-			Touchpoint operandTouchpoint = (Touchpoint) operandParameters.get(PARM_TOUCHPOINT);
-			if (operandTouchpoint != null) {
-				mergeStatus(status, initializeTouchpointParameters(profile, operand, operandTouchpoint, subMonitor));
-				if (status.matches(IStatus.ERROR | IStatus.CANCEL))
-					return;
+	// Performs one operand, returns false if the phase must stop.
+	private boolean performOperand(MultiStatus status, EngineSession session, IProfile profile, Operand operand, List<ProvisioningAction> actions, SubMonitor subMonitor) {
+		session.recordOperandStart(operand);
+		operandParameters = new HashMap<String, Object>(phaseParameters);
+		operandParameters.put(PARM_OPERAND, operand);
+		mergeStatus(status, initializeOperand(profile, operand, operandParameters, subMonitor));
+		if (status.matches(IStatus.ERROR | IStatus.CANCEL)) {
+			operandParameters = null;
+			return false;
+		}
 
-				operandParameters = touchpointToTouchpointOperandParameters.get(operandTouchpoint);
-			}
+		Touchpoint operandTouchpoint = (Touchpoint) operandParameters.get(PARM_TOUCHPOINT);
+		if (operandTouchpoint != null) {
+			mergeStatus(status, initializeTouchpointParameters(profile, operand, operandTouchpoint, subMonitor));
+			if (status.matches(IStatus.ERROR | IStatus.CANCEL))
+				return false;
 
-			operandParameters = Collections.unmodifiableMap(operandParameters);
-			if (actions != null) {
-				for (int j = 0; j < actions.size(); j++) {
-					ProvisioningAction action = actions.get(j);
-					Map<String, Object> parameters = operandParameters;
-					Touchpoint touchpoint = action.getTouchpoint();
-					if (touchpoint != null) {
-						mergeStatus(status, initializeTouchpointParameters(profile, operand, touchpoint, subMonitor));
-						if (status.matches(IStatus.ERROR | IStatus.CANCEL))
-							return;
+			operandParameters = touchpointToTouchpointOperandParameters.get(operandTouchpoint);
+		}
 
-						parameters = touchpointToTouchpointOperandParameters.get(touchpoint);
-					}
-					IStatus actionStatus = null;
-					try {
-						session.recordActionExecute(action, parameters);
-						actionStatus = action.execute(parameters);
-					} catch (RuntimeException e) {
-						if (!forced)
-							throw e;
-						// "action.execute" calls user code and might throw an unchecked exception
-						// we catch the error here to gather information on where the problem occurred.
-						actionStatus = new Status(IStatus.ERROR, EngineActivator.ID, NLS.bind(Messages.forced_action_execute_error, action.getClass().getName()), e);
-					} catch (LinkageError e) {
-						if (!forced)
-							throw e;
-						// Catch linkage errors as these are generally recoverable but let other Errors propagate (see bug 222001)
-						actionStatus = new Status(IStatus.ERROR, EngineActivator.ID, NLS.bind(Messages.forced_action_execute_error, action.getClass().getName()), e);
-					}
-					if (forced && actionStatus != null && actionStatus.matches(IStatus.ERROR)) {
-						MultiStatus result = new MultiStatus(EngineActivator.ID, IStatus.ERROR, getProblemMessage(), null);
-						result.add(new Status(IStatus.ERROR, EngineActivator.ID, session.getContextString(this, operand, action), null));
-						LogHelper.log(result);
-						actionStatus = Status.OK_STATUS;
-					}
-					mergeStatus(status, actionStatus);
+		operandParameters = Collections.unmodifiableMap(operandParameters);
+		if (actions != null) {
+			for (int j = 0; j < actions.size(); j++) {
+				ProvisioningAction action = actions.get(j);
+				Map<String, Object> parameters = operandParameters;
+				Touchpoint touchpoint = action.getTouchpoint();
+				if (touchpoint != null) {
+					mergeStatus(status, initializeTouchpointParameters(profile, operand, touchpoint, subMonitor));
 					if (status.matches(IStatus.ERROR | IStatus.CANCEL))
-						return;
+						return false;
+
+					parameters = touchpointToTouchpointOperandParameters.get(touchpoint);
 				}
+				session.recordActionExecute(action, parameters);
+				mergeStatus(status, execute(session, operand, action, parameters));
+				if (status.matches(IStatus.ERROR | IStatus.CANCEL))
+					return false;
 			}
-			mergeStatus(status, touchpointCompleteOperand(profile, operand, operandParameters, subMonitor));
-			mergeStatus(status, completeOperand(profile, operand, operandParameters, subMonitor));
-			if (status.matches(IStatus.ERROR | IStatus.CANCEL))
-				return;
+		}
+		mergeStatus(status, touchpointCompleteOperand(profile, operand, operandParameters, subMonitor));
+		mergeStatus(status, completeOperand(profile, operand, operandParameters, subMonitor));
+		if (status.matches(IStatus.ERROR | IStatus.CANCEL))
+			return false;
+		session.recordOperandEnd(operand);
+		subMonitor.worked(1);
+		return true;
+	}
+
+	private IStatus execute(EngineSession session, Operand operand, ProvisioningAction action, Map<String, Object> parameters) {
+		IStatus actionStatus = null;
+		try {
+			actionStatus = action.execute(parameters);
+		} catch (RuntimeException e) {
+			if (!forced)
+				throw e;
+			// "action.execute" calls user code and might throw an unchecked exception
+			// we catch the error here to gather information on where the problem occurred.
+			actionStatus = new Status(IStatus.ERROR, EngineActivator.ID, NLS.bind(Messages.forced_action_execute_error, action.getClass().getName()), e);
+		} catch (LinkageError e) {
+			if (!forced)
+				throw e;
+			// Catch linkage errors as these are generally recoverable but let other Errors propagate (see bug 222001)
+			actionStatus = new Status(IStatus.ERROR, EngineActivator.ID, NLS.bind(Messages.forced_action_execute_error, action.getClass().getName()), e);
+		}
+		if (forced && actionStatus != null && actionStatus.matches(IStatus.ERROR)) {
+			MultiStatus result = new MultiStatus(EngineActivator.ID, IStatus.ERROR, getProblemMessage(), null);
+			result.add(new Status(IStatus.ERROR, EngineActivator.ID, session.getContextString(this, operand, action), null));
+			LogHelper.log(result);
+			actionStatus = Status.OK_STATUS;
+		}
+		return actionStatus;
+	}
+
+	/**
+	 * Performs the given independent operands: they are initialized in order, their actions are executed
+	 * on several threads, the actions of one operand being executed in order on the same thread, and the
+	 * operands are then completed in order. Returns false if the phase must stop.
+	 */
+	private boolean performConcurrently(MultiStatus status, EngineSession session, IProfile profile, List<ConcurrentOperand> concurrentOperands, int threads, SubMonitor subMonitor) {
+		if (concurrentOperands.isEmpty())
+			return true;
+		try {
+			for (ConcurrentOperand concurrentOperand : concurrentOperands) {
+				if (!initializeConcurrently(status, session, profile, concurrentOperand, subMonitor))
+					return false;
+			}
+
+			ConcurrentExecution execution = new ConcurrentExecution(session, concurrentOperands);
+			execution.run(Math.min(threads, concurrentOperands.size()), subMonitor);
+
+			for (ConcurrentOperand concurrentOperand : concurrentOperands) {
+				if (concurrentOperand.status == null)
+					// not executed, the phase was canceled
+					throw new OperationCanceledException();
+				mergeStatus(status, concurrentOperand.status);
+				if (status.matches(IStatus.ERROR | IStatus.CANCEL))
+					return false;
+
+				Operand operand = concurrentOperand.operand;
+				touchpointToTouchpointOperandParameters.putAll(concurrentOperand.touchpointParameters);
+				mergeStatus(status, touchpointCompleteOperand(profile, operand, concurrentOperand.parameters, subMonitor));
+				mergeStatus(status, completeOperand(profile, operand, concurrentOperand.parameters, subMonitor));
+				if (status.matches(IStatus.ERROR | IStatus.CANCEL))
+					return false;
+				session.recordConcurrentOperandEnd(operand);
+				subMonitor.worked(1);
+			}
+			return true;
+		} finally {
+			// the parameters of the operands being rolled back must be computed again
 			operandParameters = null;
-			session.recordOperandEnd(operand);
-			subMonitor.worked(1);
+			touchpointToTouchpointOperandParameters.clear();
+			concurrentOperands.clear();
+		}
+	}
+
+	private boolean initializeConcurrently(MultiStatus status, EngineSession session, IProfile profile, ConcurrentOperand concurrentOperand, SubMonitor subMonitor) {
+		Operand operand = concurrentOperand.operand;
+		session.recordConcurrentOperandStart(operand);
+		operandParameters = new HashMap<String, Object>(phaseParameters);
+		operandParameters.put(PARM_OPERAND, operand);
+		mergeStatus(status, initializeOperand(profile, operand, operandParameters, subMonitor));
+		if (status.matches(IStatus.ERROR | IStatus.CANCEL))
+			return false;
+
+		Touchpoint operandTouchpoint = (Touchpoint) operandParameters.get(PARM_TOUCHPOINT);
+		if (operandTouchpoint != null) {
+			mergeStatus(status, initializeTouchpointParameters(profile, operand, operandTouchpoint, subMonitor));
+			if (status.matches(IStatus.ERROR | IStatus.CANCEL))
+				return false;
+
+			operandParameters = touchpointToTouchpointOperandParameters.get(operandTouchpoint);
 		}
+
+		operandParameters = Collections.unmodifiableMap(operandParameters);
+		concurrentOperand.parameters = operandParameters;
+		for (int j = 0; j < concurrentOperand.actions.size(); j++) {
+			Touchpoint touchpoint = concurrentOperand.actions.get(j).getTouchpoint();
+			Map<String, Object> parameters = operandParameters;
+			if (touchpoint != null) {
+				mergeStatus(status, initializeTouchpointParameters(profile, operand, touchpoint, subMonitor));
+				if (status.matches(IStatus.ERROR | IStatus.CANCEL))
+					return false;
+
+				parameters = touchpointToTouchpointOperandParameters.get(touchpoint);
+			}
+			concurrentOperand.actionParameters.add(parameters);
+		}
+		// the touchpoint parameters are restored to complete the operand
+		concurrentOperand.touchpointParameters = new HashMap<Touchpoint, Map<String, Object>>(touchpointToTouchpointOperandParameters);
+		touchpointToTouchpointOperandParameters.clear();
+		operandParameters = null;
+		return true;
+	}
+
+	/**
+	 * Returns whether the given actions can be executed concurrently with the actions of other operands.
+	 */
+	private static boolean isIndependent(List<ProvisioningAction> actions) {
+		if (actions == null || actions.isEmpty())
+			return false;
+		for (int i = 0; i < actions.size(); i++) {
+			ProvisioningAction action = actions.get(i);
+			Touchpoint touchpoint = action.getTouchpoint();
+			if (!action.isIndependent() || (touchpoint != null && !touchpoint.isIndependent()))
+				return false;
+		}
+		return true;
+	}
+
+	private static int getOperandThreads(ProvisioningContext context) {
+		String value = context == null ? null : context.getProperty(OPERAND_THREADS);
+		if (value == null)
+			return 1;
+		if (Boolean.TRUE.toString().equalsIgnoreCase(value))
+			return Runtime.getRuntime().availableProcessors();
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
+	/**
+	 * Returns whether the operands of this phase can be performed concurrently when their actions
+	 * and touchpoints are independent. Phases perform their operands one after the other by default.
+	 */
+	protected boolean supportsConcurrentOperands() {
+		return false;
 	}
 
 	private IStatus initializeTouchpointParameters(IProfile profile, Operand operand, Touchpoint touchpoint, IProgressMonitor monitor) {
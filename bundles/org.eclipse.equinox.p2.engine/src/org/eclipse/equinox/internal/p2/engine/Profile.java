@@ -235,7 +235,7 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 	/* (non-Javadoc)
 	 * @see org.eclipse.equinox.internal.provisional.p2.engine.IProfile#getInstallableUnitProperty(org.eclipse.equinox.internal.provisional.p2.metadata.IInstallableUnit, java.lang.String)
 	 */
-	public String getInstallableUnitProperty(IInstallableUnit iu, String key) {
+	public synchronized String getInstallableUnitProperty(IInstallableUnit iu, String key) {
 		OrderedProperties properties = iuProperties.get(iu);
 		if (properties == null)
 			return null;
@@ -243,7 +243,7 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 		return properties.getProperty(key);
 	}
 
-	public String setInstallableUnitProperty(IInstallableUnit iu, String key, String value) {
+	public synchronized String setInstallableUnitProperty(IInstallableUnit iu, String key, String value) {
 		//		String iuKey = createIUKey(iu);
 		OrderedProperties properties = iuProperties.get(iu);
 		if (properties == null) {
@@ -255,7 +255,7 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 		return (String) properties.setProperty(key, value);
 	}
 
-	public String removeInstallableUnitProperty(IInstallableUnit iu, String key) {
+	public synchronized String removeInstallableUnitProperty(IInstallableUnit iu, String key) {
 		//		String iuKey = createIUKey(iu);
 		OrderedProperties properties = iuProperties.get(iu);
 		if (properties == null)
@@ -305,7 +305,7 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 		changed = true;
 	}
 
-	public void addInstallableUnit(IInstallableUnit iu) {
+	public synchronized void addInstallableUnit(IInstallableUnit iu) {
 		iu = iu.unresolved();
 		if (ius.contains(iu))
 			return;
@@ -314,7 +314,7 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 		changed = true;
 	}
 
-	public void removeInstallableUnit(IInstallableUnit iu) {
+	public synchronized void removeInstallableUnit(IInstallableUnit iu) {
 		iu = iu.unresolved();
 		ius.remove(iu);
 		changed = true;
@@ -323,7 +323,7 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 	/* (non-Javadoc)
 	 * @see org.eclipse.equinox.internal.provisional.p2.engine.IProfile#getInstallableUnitProperties(org.eclipse.equinox.internal.provisional.p2.metadata.IInstallableUnit)
 	 */
-	public Map<String, String> getInstallableUnitProperties(IInstallableUnit iu) {
+	public synchronized Map<String, String> getInstallableUnitProperties(IInstallableUnit iu) {
 		OrderedProperties properties = iuProperties.get(iu);
 		if (properties == null)
 			properties = new OrderedProperties();
@@ -377,18 +377,18 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 		return snapshot;
 	}
 
-	public void addInstallableUnitProperties(IInstallableUnit iu, Map<String, String> properties) {
+	public synchronized void addInstallableUnitProperties(IInstallableUnit iu, Map<String, String> properties) {
 		for (Entry<String, String> entry : properties.entrySet()) {
 			setInstallableUnitProperty(iu, entry.getKey(), entry.getValue());
 		}
 	}
 
-	public void clearInstallableUnitProperties(IInstallableUnit iu) {
+	public synchronized void clearInstallableUnitProperties(IInstallableUnit iu) {
 		iuProperties.remove(iu);
 		changed = true;
 	}
 
-	public void clearOrphanedInstallableUnitProperties() {
+	public synchronized void clearOrphanedInstallableUnitProperties() {
 		Set<IInstallableUnit> keys = iuProperties.keySet();
 		//		Set orphans = new HashSet();
 		Collection<IInstallableUnit> toRemove = new ArrayList<IInstallableUnit>();
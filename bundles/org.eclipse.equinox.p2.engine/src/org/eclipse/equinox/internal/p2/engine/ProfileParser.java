@@ -10,8 +10,7 @@
  *******************************************************************************/
 package org.eclipse.equinox.internal.p2.engine;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
 import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataParser;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.metadata.Version;
@@ -34,9 +33,16 @@ public abstract class ProfileParser extends MetadataParser implements ProfileXML
 		private String profileId;
 		private String parentId;
 		private String timestamp;
+		private String baseTimestamp;
 		private PropertiesHandler propertiesHandler;
 		private InstallableUnitsHandler unitsHandler;
 		private IUsPropertiesHandler iusPropertiesHandler;
+		private RemovedUnitsHandler removedUnitsHandler;
+
+		// the state obtained by applying deltas to the parsed profile, null when no delta was applied
+		private Map<String, String> properties;
+		private Map<String, IInstallableUnit> units;
+		private Map<String, Map<String, String>> iusProperties;
 
 		public ProfileHandler() {
 			// default
@@ -50,7 +56,7 @@ public abstract class ProfileParser extends MetadataParser implements ProfileXML
 			profileId = parseRequiredAttributes(attributes, required)[0];
 			parentId = parseOptionalAttribute(attributes, PARENT_ID_ATTRIBUTE);
 			timestamp = parseOptionalAttribute(attributes, TIMESTAMP_ATTRIBUTE);
-
+			baseTimestamp = parseOptionalAttribute(attributes, BASE_TIMESTAMP_ATTRIBUTE);
 		}
 
 		public void startElement(String name, Attributes attributes) {
@@ -72,6 +78,12 @@ public abstract class ProfileParser extends MetadataParser implements ProfileXML
 				} else {
 					duplicateElement(this, name, attributes);
 				}
+			} else if (REMOVED_UNITS_ELEMENT.equals(name)) {
+				if (removedUnitsHandler == null) {
+					removedUnitsHandler = new RemovedUnitsHandler(this, attributes);
+				} else {
+					duplicateElement(this, name, attributes);
+				}
 			} else {
 				invalidElement(name, attributes);
 			}
@@ -96,28 +108,129 @@ public abstract class ProfileParser extends MetadataParser implements ProfileXML
 			return 0;
 		}
 
+		/**
+		 * Returns whether the parsed profile is a delta that has to be applied to the state at {@link #getBaseTimestamp()}.
+		 */
+		public boolean isDelta() {
+			return baseTimestamp != null;
+		}
+
+		public long getBaseTimestamp() {
+			if (baseTimestamp != null) {
+				try {
+					return Long.parseLong(baseTimestamp);
+				} catch (NumberFormatException e) {
+					// TODO: log
+				}
+			}
+			return 0;
+		}
+
 		public Map<String, String> getProperties() {
+			if (properties != null)
+				return properties;
 			if (propertiesHandler == null)
 				return null;
 			return propertiesHandler.getProperties();
 		}
 
 		public IInstallableUnit[] getInstallableUnits() {
+			if (units != null)
+				return units.values().toArray(new IInstallableUnit[units.size()]);
 			if (unitsHandler == null)
 				return null;
 			return unitsHandler.getUnits();
 		}
 
 		public Map<String, String> getIUProperties(IInstallableUnit iu) {
-			if (iusPropertiesHandler == null)
+			Map<String, Map<String, String>> iusPropertiesMap = getIUsPropertiesMap();
+			if (iusPropertiesMap == null)
 				return null;
 
-			Map<String, Map<String, String>> iusPropertiesMap = iusPropertiesHandler.getIUsPropertiesMap();
-			if (iusPropertiesMap == null)
+			return iusPropertiesMap.get(getIdentity(iu));
+		}
+
+		private Map<String, Map<String, String>> getIUsPropertiesMap() {
+			if (iusProperties != null)
+				return iusProperties;
+			if (iusPropertiesHandler == null)
 				return null;
+			return iusPropertiesHandler.getIUsPropertiesMap();
+		}
+
+		/**
+		 * Applies the given delta to the state held by this handler, which then represents the state recorded by the delta.
+		 */
+		public void applyDelta(ProfileHandler delta) {
+			if (units == null) {
+				IInstallableUnit[] parsedUnits = getInstallableUnits();
+				units = new LinkedHashMap<String, IInstallableUnit>();
+				if (parsedUnits != null)
+					for (int i = 0; i < parsedUnits.length; i++)
+						units.put(getIdentity(parsedUnits[i]), parsedUnits[i]);
+				Map<String, Map<String, String>> parsedIUsProperties = getIUsPropertiesMap();
+				iusProperties = parsedIUsProperties == null ? new HashMap<String, Map<String, String>>() : new HashMap<String, Map<String, String>>(parsedIUsProperties);
+			}
 
-			String iuIdentity = iu.getId() + "_" + iu.getVersion().toString(); //$NON-NLS-1$
-			return iusPropertiesMap.get(iuIdentity);
+			timestamp = delta.timestamp;
+			if (delta.parentId != null)
+				parentId = delta.parentId;
+			Map<String, String> deltaProperties = delta.getProperties();
+			properties = deltaProperties == null ? new LinkedHashMap<String, String>() : deltaProperties;
+
+			if (delta.removedUnitsHandler != null) {
+				for (String identity : delta.removedUnitsHandler.getIdentities()) {
+					units.remove(identity);
+					iusProperties.remove(identity);
+				}
+			}
+			IInstallableUnit[] added = delta.getInstallableUnits();
+			if (added != null)
+				for (int i = 0; i < added.length; i++)
+					units.put(getIdentity(added[i]), added[i]);
+			Map<String, Map<String, String>> changed = delta.getIUsPropertiesMap();
+			if (changed != null) {
+				for (Map.Entry<String, Map<String, String>> entry : changed.entrySet()) {
+					if (entry.getValue().isEmpty())
+						iusProperties.remove(entry.getKey());
+					else
+						iusProperties.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+	}
+
+	private static String getIdentity(IInstallableUnit iu) {
+		return iu.getId() + "_" + iu.getVersion().toString(); //$NON-NLS-1$
+	}
+
+	protected class RemovedUnitsHandler extends AbstractHandler {
+
+		private final String[] required = new String[] {ID_ATTRIBUTE, VERSION_ATTRIBUTE};
+
+		private List<String> identities;
+
+		public RemovedUnitsHandler(AbstractHandler parentHandler, Attributes attributes) {
+			super(parentHandler, REMOVED_UNITS_ELEMENT);
+			String sizeStr = parseOptionalAttribute(attributes, COLLECTION_SIZE_ATTRIBUTE);
+			int size = (sizeStr != null ? new Integer(sizeStr).intValue() : 4);
+			identities = new ArrayList<String>(size);
+		}
+
+		public List<String> getIdentities() {
+			return identities;
+		}
+
+		public void startElement(String name, Attributes attributes) {
+			if (name.equals(INSTALLABLE_UNIT_ELEMENT)) {
+				String values[] = parseRequiredAttributes(attributes, required);
+				Version version = checkVersion(INSTALLABLE_UNIT_ELEMENT, VERSION_ATTRIBUTE, values[1]);
+				if (values[0] != null && version != null)
+					identities.add(values[0] + "_" + version.toString()); //$NON-NLS-1$
+				new IgnoringHandler(this);
+			} else {
+				invalidElement(name, attributes);
+			}
 		}
 	}
 
@@ -21,6 +21,16 @@ import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 
 public class ProfileWriter extends MetadataWriter implements ProfileXMLConstants {
 
+	private static final Comparator<IInstallableUnit> IU_COMPARATOR = new Comparator<IInstallableUnit>() {
+		public int compare(IInstallableUnit iu1, IInstallableUnit iu2) {
+			int IdCompare = iu1.getId().compareTo(iu2.getId());
+			if (IdCompare != 0)
+				return IdCompare;
+
+			return iu1.getVersion().compareTo(iu2.getVersion());
+		}
+	};
+
 	public ProfileWriter(OutputStream output, ProcessingInstruction[] processingInstructions) throws IOException {
 		super(output, processingInstructions);
 	}
@@ -31,21 +41,91 @@ public class ProfileWriter extends MetadataWriter implements ProfileXMLConstants
 		attribute(TIMESTAMP_ATTRIBUTE, Long.toString(profile.getTimestamp()));
 		writeProperties(profile.getProperties());
 		ArrayList<IInstallableUnit> ius = new ArrayList<IInstallableUnit>(profile.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
-		Collections.sort(ius, new Comparator<IInstallableUnit>() {
-			public int compare(IInstallableUnit iu1, IInstallableUnit iu2) {
-				int IdCompare = iu1.getId().compareTo(iu2.getId());
-				if (IdCompare != 0)
-					return IdCompare;
-
-				return iu1.getVersion().compareTo(iu2.getVersion());
-			}
-		});
+		Collections.sort(ius, IU_COMPARATOR);
 		writeInstallableUnits(ius.iterator(), ius.size());
 		writeInstallableUnitsProperties(ius.iterator(), ius.size(), profile);
 		end(PROFILE_ELEMENT);
 		flush();
 	}
 
+	/**
+	 * Writes the changes made to the given base state to obtain the given profile.
+	 * The profile properties are always written in full. The installable units are limited to
+	 * the added ones, followed by the identity of the removed ones. The properties of an installable unit are
+	 * written in full when they differ from the ones in the base state.
+	 */
+	public void writeProfileDelta(IProfile profile, IProfile base) {
+		start(PROFILE_ELEMENT);
+		attribute(ID_ATTRIBUTE, profile.getProfileId());
+		attribute(TIMESTAMP_ATTRIBUTE, Long.toString(profile.getTimestamp()));
+		attribute(BASE_TIMESTAMP_ATTRIBUTE, Long.toString(base.getTimestamp()));
+		writeProperties(profile.getProperties());
+
+		Set<IInstallableUnit> ius = profile.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+		Set<IInstallableUnit> baseIUs = base.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+		ArrayList<IInstallableUnit> added = new ArrayList<IInstallableUnit>();
+		ArrayList<IInstallableUnit> changed = new ArrayList<IInstallableUnit>();
+		for (IInstallableUnit iu : ius) {
+			Map<String, String> properties = profile.getInstallableUnitProperties(iu);
+			if (!baseIUs.contains(iu)) {
+				added.add(iu);
+				if (!properties.isEmpty())
+					changed.add(iu);
+			} else if (!properties.equals(base.getInstallableUnitProperties(iu)))
+				changed.add(iu);
+		}
+		ArrayList<IInstallableUnit> removed = new ArrayList<IInstallableUnit>();
+		for (IInstallableUnit iu : baseIUs) {
+			if (!ius.contains(iu))
+				removed.add(iu);
+		}
+		Collections.sort(added, IU_COMPARATOR);
+		Collections.sort(removed, IU_COMPARATOR);
+		Collections.sort(changed, IU_COMPARATOR);
+
+		writeInstallableUnits(added.iterator(), added.size());
+		writeRemovedUnits(removed);
+		writeChangedInstallableUnitsProperties(changed, profile);
+		end(PROFILE_ELEMENT);
+		flush();
+	}
+
+	private void writeRemovedUnits(List<IInstallableUnit> removed) {
+		if (removed.isEmpty())
+			return;
+		start(REMOVED_UNITS_ELEMENT);
+		attribute(COLLECTION_SIZE_ATTRIBUTE, removed.size());
+		for (IInstallableUnit iu : removed) {
+			start(INSTALLABLE_UNIT_ELEMENT);
+			attribute(ID_ATTRIBUTE, iu.getId());
+			attribute(VERSION_ATTRIBUTE, iu.getVersion().toString());
+			end(INSTALLABLE_UNIT_ELEMENT);
+		}
+		end(REMOVED_UNITS_ELEMENT);
+	}
+
+	private void writeChangedInstallableUnitsProperties(List<IInstallableUnit> changed, IProfile profile) {
+		if (changed.isEmpty())
+			return;
+		start(IUS_PROPERTIES_ELEMENT);
+		attribute(COLLECTION_SIZE_ATTRIBUTE, changed.size());
+		for (IInstallableUnit iu : changed) {
+			Map<String, String> properties = profile.getInstallableUnitProperties(iu);
+			start(IU_PROPERTIES_ELEMENT);
+			attribute(ID_ATTRIBUTE, iu.getId());
+			attribute(VERSION_ATTRIBUTE, iu.getVersion().toString());
+			if (properties.isEmpty()) {
+				// an empty element records that all the properties of the unit were removed
+				start(PROPERTIES_ELEMENT);
+				attribute(COLLECTION_SIZE_ATTRIBUTE, 0);
+				end(PROPERTIES_ELEMENT);
+			} else
+				writeProperties(properties);
+			end(IU_PROPERTIES_ELEMENT);
+		}
+		end(IUS_PROPERTIES_ELEMENT);
+	}
+
 	private void writeInstallableUnitsProperties(Iterator<IInstallableUnit> it, int size, IProfile profile) {
 		if (size == 0)
 			return;
@@ -41,6 +41,9 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 
 	private static final String PROFILE_EXT = ".profile"; //$NON-NLS-1$
 	private static final String PROFILE_GZ_EXT = ".profile.gz"; //$NON-NLS-1$
+	private static final String PROFILE_DELTA_EXT = ".delta.gz"; //$NON-NLS-1$
+	// the maximum number of deltas written after a full profile when storing the profile history as deltas
+	private static final int CHECKPOINT_INTERVAL = 20;
 	public static final String DEFAULT_STORAGE_DIR = "profileRegistry"; //$NON-NLS-1$
 	private static final String DATA_EXT = ".data"; //$NON-NLS-1$
 
@@ -51,6 +54,11 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 	 */
 	private SoftReference<Map<String, Profile>> profiles;
 	private Map<String, ProfileLock> profileLocks = new HashMap<String, ProfileLock>();
+	/**
+	 * Map of String(Profile id)->SavedState, the last persisted state of the profiles
+	 * when the profile history is stored as deltas.
+	 */
+	private Map<String, SavedState> savedStates = new HashMap<String, SavedState>();
 
 	private String self;
 
@@ -185,16 +193,13 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		if (!profileDirectory.isDirectory())
 			return null;
 
-		File profileFile = new File(profileDirectory, Long.toString(timestamp) + PROFILE_GZ_EXT);
-		if (!profileFile.exists()) {
-			profileFile = new File(profileDirectory, Long.toString(timestamp) + PROFILE_EXT);
-			if (!profileFile.exists())
-				return null;
-		}
+		File profileFile = getStateFile(profileDirectory, timestamp);
+		if (profileFile == null)
+			return null;
 
 		Parser parser = new Parser(EngineActivator.getContext(), EngineActivator.ID);
 		try {
-			parser.parse(profileFile);
+			parser.parse(profileDirectory, timestamp);
 		} catch (IOException e) {
 			LogHelper.log(new Status(IStatus.ERROR, EngineActivator.ID, NLS.bind(Messages.error_parsing_profile, profileFile), e));
 		}
@@ -214,16 +219,15 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 
 		File[] profileFiles = profileDirectory.listFiles(new FileFilter() {
 			public boolean accept(File pathname) {
-				return (pathname.getName().endsWith(PROFILE_EXT) || pathname.getName().endsWith(PROFILE_GZ_EXT)) && pathname.isFile() && !pathname.getName().startsWith("._"); //$NON-NLS-1$
+				return isStateFile(pathname.getName()) && pathname.isFile() && !pathname.getName().startsWith("._"); //$NON-NLS-1$
 			}
 		});
 
 		long[] timestamps = new long[profileFiles.length];
 		for (int i = 0; i < profileFiles.length; i++) {
 			String filename = profileFiles[i].getName();
-			int extensionIndex = filename.lastIndexOf(PROFILE_EXT);
 			try {
-				timestamps[i] = Long.parseLong(filename.substring(0, extensionIndex));
+				timestamps[i] = getStateTimestamp(filename);
 			} catch (NumberFormatException e) {
 				throw new IllegalStateException("Incompatible profile file name. Expected format is {timestamp}" + PROFILE_GZ_EXT + " (or {timestamp}" + PROFILE_EXT + ") but was " + filename + "."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
 			}
@@ -372,6 +376,7 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		}
 		profileMap.remove(profileId);
 		profileLocks.remove(profileId);
+		savedStates.remove(profileId);
 		// deleting the profile removes the folder and subsequently all
 		// the profile state properties as well since they are stored in a file in the folder.
 		deleteProfile(profileId);
@@ -392,12 +397,10 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		if (!profileDirectory.isDirectory())
 			return;
 
-		File profileFile = new File(profileDirectory, Long.toString(timestamp) + PROFILE_GZ_EXT);
-		if (!profileFile.exists()) {
-			profileFile = new File(profileDirectory, Long.toString(timestamp) + PROFILE_EXT);
-			if (!profileFile.exists())
-				return;
-		}
+		File profileFile = getStateFile(profileDirectory, timestamp);
+		if (profileFile == null)
+			return;
+		checkpointNextState(id, profileDirectory, timestamp);
 		FileUtils.deleteAll(profileFile);
 		// Ignore the return value here. If there was a problem removing the profile state
 		// properties we don't want to fail the whole operation since the profile state itself 
@@ -405,6 +408,32 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		removeProfileStateProperties(id, timestamp, null);
 	}
 
+	/**
+	 * Rewrites the state following the given one as a full profile when it is a delta, so that
+	 * the given state can be removed.
+	 */
+	private void checkpointNextState(String id, File profileDirectory, long timestamp) throws ProvisionException {
+		long[] timestamps = listProfileTimestamps(id);
+		int index = Arrays.binarySearch(timestamps, timestamp);
+		if (index < 0 || index == timestamps.length - 1)
+			return;
+		long nextTimestamp = timestamps[index + 1];
+		File nextFile = getStateFile(profileDirectory, nextTimestamp);
+		if (nextFile == null || !nextFile.getName().endsWith(PROFILE_DELTA_EXT))
+			return;
+		Profile nextState = (Profile) getProfile(id, nextTimestamp);
+		if (nextState == null)
+			throw new ProvisionException(NLS.bind(Messages.error_parsing_profile, nextFile));
+		File checkpointFile = new File(profileDirectory, Long.toString(nextTimestamp) + PROFILE_GZ_EXT);
+		try {
+			writeState(checkpointFile, nextState, null);
+		} catch (IOException e) {
+			checkpointFile.delete();
+			throw new ProvisionException(new Status(IStatus.ERROR, EngineActivator.ID, NLS.bind(Messages.error_persisting_profile, id), e));
+		}
+		nextFile.delete();
+	}
+
 	private void broadcastChangeEvent(String profileId, int reason) {
 		if (eventBus != null)
 			eventBus.publishEvent(new ProfileEvent(profileId, reason));
@@ -428,6 +457,7 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		if (profileDirectories == null) {
 			parser.getProfileMap();
 		}
+		Map<String, Integer> appliedDeltas = new HashMap<String, Integer>();
 		for (int i = 0; i < profileDirectories.length; i++) {
 			String directoryName = profileDirectories[i].getName();
 			String profileId = unescape(directoryName.substring(0, directoryName.lastIndexOf(PROFILE_EXT)));
@@ -443,7 +473,8 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 					File profileFile = findLatestProfileFile(profileDirectories[i]);
 					if (profileFile != null) {
 						try {
-							parser.parse(profileFile);
+							int deltas = parser.parse(profileDirectories[i], getStateTimestamp(profileFile.getName()));
+							appliedDeltas.put(profileId, new Integer(deltas));
 						} catch (IOException e) {
 							LogHelper.log(new Status(IStatus.ERROR, EngineActivator.ID, NLS.bind(Messages.error_parsing_profile, profileFile), e));
 						}
@@ -457,7 +488,16 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 				parser.addProfilePlaceHolder(profileId);
 			}
 		}
-		return parser.getProfileMap();
+		Map<String, Profile> profileMap = parser.getProfileMap();
+		savedStates.clear();
+		if (isDeltaHistory()) {
+			for (Entry<String, Integer> entry : appliedDeltas.entrySet()) {
+				Profile profile = profileMap.get(entry.getKey());
+				if (profile != null)
+					savedStates.put(entry.getKey(), new SavedState(profile.snapshot(), entry.getValue().intValue()));
+			}
+		}
+		return profileMap;
 	}
 
 	private File findLatestProfileFile(File profileDirectory) {
@@ -465,7 +505,7 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		long latestTimestamp = 0;
 		File[] profileFiles = profileDirectory.listFiles(new FileFilter() {
 			public boolean accept(File pathname) {
-				return (pathname.getName().endsWith(PROFILE_GZ_EXT) || pathname.getName().endsWith(PROFILE_EXT)) && !pathname.isDirectory();
+				return isStateFile(pathname.getName()) && !pathname.isDirectory();
 			}
 		});
 		// protect against NPE
@@ -475,7 +515,7 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 			File profileFile = profileFiles[i];
 			String fileName = profileFile.getName();
 			try {
-				long timestamp = Long.parseLong(fileName.substring(0, fileName.indexOf(PROFILE_EXT)));
+				long timestamp = getStateTimestamp(fileName);
 				if (timestamp > latestTimestamp) {
 					latestTimestamp = timestamp;
 					latest = profileFile;
@@ -496,7 +536,13 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		if (currentTimestamp <= previousTimestamp)
 			currentTimestamp = previousTimestamp + 1;
 		boolean shouldGzipFile = shouldGzipFile(profile);
-		File profileFile = new File(profileDirectory, Long.toString(currentTimestamp) + (shouldGzipFile ? PROFILE_GZ_EXT : PROFILE_EXT));
+		boolean deltaHistory = shouldGzipFile && isDeltaHistory();
+		// a delta is only written against the latest state on disk, and a full profile is written at regular intervals
+		SavedState base = deltaHistory ? savedStates.get(profile.getProfileId()) : null;
+		if (base != null && (base.deltas >= CHECKPOINT_INTERVAL || base.profile.getTimestamp() != previousTimestamp || getStateFile(profileDirectory, previousTimestamp) == null))
+			base = null;
+		String extension = base != null ? PROFILE_DELTA_EXT : (shouldGzipFile ? PROFILE_GZ_EXT : PROFILE_EXT);
+		File profileFile = new File(profileDirectory, Long.toString(currentTimestamp) + extension);
 
 		// Log a stack trace to see who is writing the profile.
 		if (DebugHelper.DEBUG_PROFILE_REGISTRY)
@@ -504,18 +550,35 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 
 		profile.setTimestamp(currentTimestamp);
 		profile.setChanged(false);
-		OutputStream os = null;
 		try {
-			if (shouldGzipFile)
-				os = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(profileFile)));
-			else
-				os = new BufferedOutputStream(new FileOutputStream(profileFile));
-			Writer writer = new Writer(os);
-			writer.writeProfile(profile);
+			writeState(profileFile, profile, base == null ? null : base.profile);
 		} catch (IOException e) {
 			profile.setTimestamp(previousTimestamp);
 			profileFile.delete();
 			LogHelper.log(new Status(IStatus.ERROR, EngineActivator.ID, NLS.bind(Messages.error_persisting_profile, profile.getProfileId()), e));
+			return;
+		}
+		if (deltaHistory)
+			savedStates.put(profile.getProfileId(), new SavedState(profile.snapshot(), base == null ? 0 : base.deltas + 1));
+		else
+			savedStates.remove(profile.getProfileId());
+	}
+
+	/**
+	 * Writes the given profile to the given file, as a delta if a base state is given.
+	 */
+	private void writeState(File profileFile, Profile profile, IProfile base) throws IOException {
+		OutputStream os = null;
+		try {
+			if (profileFile.getName().endsWith(PROFILE_EXT))
+				os = new BufferedOutputStream(new FileOutputStream(profileFile));
+			else
+				os = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(profileFile)));
+			Writer writer = new Writer(os);
+			if (base != null)
+				writer.writeProfileDelta(profile, base);
+			else
+				writer.writeProfile(profile);
 		} finally {
 			try {
 				if (os != null)
@@ -543,6 +606,38 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		return profile.available(QueryUtil.createIUQuery("org.eclipse.equinox.p2.engine", new VersionRange("[0.0.0, 1.0.101)")), null).isEmpty(); //$NON-NLS-1$//$NON-NLS-2$
 	}
 
+	/**
+	 * Returns whether the history of the profiles should be stored as deltas.
+	 */
+	private boolean isDeltaHistory() {
+		String history = EngineActivator.getContext().getProperty(EngineActivator.PROP_PROFILE_HISTORY);
+		return EngineActivator.PROFILE_HISTORY_DELTA.equals(history);
+	}
+
+	/**
+	 * Returns the file storing the state of a profile at the given timestamp, or <code>null</code> if there is none.
+	 */
+	static File getStateFile(File profileDirectory, long timestamp) {
+		String prefix = Long.toString(timestamp);
+		File profileFile = new File(profileDirectory, prefix + PROFILE_GZ_EXT);
+		if (profileFile.exists())
+			return profileFile;
+		profileFile = new File(profileDirectory, prefix + PROFILE_EXT);
+		if (profileFile.exists())
+			return profileFile;
+		profileFile = new File(profileDirectory, prefix + PROFILE_DELTA_EXT);
+		return profileFile.exists() ? profileFile : null;
+	}
+
+	static boolean isStateFile(String fileName) {
+		return fileName.endsWith(PROFILE_GZ_EXT) || fileName.endsWith(PROFILE_EXT) || fileName.endsWith(PROFILE_DELTA_EXT);
+	}
+
+	static long getStateTimestamp(String fileName) throws NumberFormatException {
+		String extension = fileName.endsWith(PROFILE_DELTA_EXT) ? PROFILE_DELTA_EXT : (fileName.endsWith(PROFILE_GZ_EXT) ? PROFILE_GZ_EXT : PROFILE_EXT);
+		return Long.parseLong(fileName.substring(0, fileName.length() - extension.length()));
+	}
+
 	private void deleteProfile(String profileId) {
 		File profileDirectory = getProfileFolder(profileId);
 		FileUtils.deleteAll(profileDirectory);
@@ -619,16 +714,56 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 		}
 
 		public void parse(File file) throws IOException {
+			ProfileHandler profileHandler = parseHandler(file);
+			profileHandlers.put(profileHandler.getProfileId(), profileHandler);
+		}
+
+		/**
+		 * Parses the state of the profile stored in the given directory at the given timestamp.
+		 * When that state is stored as a delta, the deltas leading to it are applied to the closest full profile.
+		 * @return the number of deltas applied, or -1 if there is no state at the given timestamp
+		 */
+		public int parse(File profileDirectory, long timestamp) throws IOException {
+			LinkedList<ProfileHandler> states = new LinkedList<ProfileHandler>();
+			long current = timestamp;
+			while (true) {
+				File file = getStateFile(profileDirectory, current);
+				if (file == null) {
+					if (states.isEmpty())
+						return -1;
+					throw new IOException("Missing profile state " + current + " in " + profileDirectory + "."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+				ProfileHandler profileHandler = parseHandler(file);
+				states.addFirst(profileHandler);
+				if (!profileHandler.isDelta())
+					break;
+				if (profileHandler.getBaseTimestamp() >= current)
+					throw new IOException("Invalid base state " + profileHandler.getBaseTimestamp() + " for profile delta " + file + "."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				current = profileHandler.getBaseTimestamp();
+			}
+			ProfileHandler profileHandler = states.removeFirst();
+			for (ProfileHandler delta : states)
+				profileHandler.applyDelta(delta);
+			profileHandlers.put(profileHandler.getProfileId(), profileHandler);
+			return states.size();
+		}
+
+		private ProfileHandler parseHandler(File file) throws IOException {
 			InputStream is;
-			if (file.getName().endsWith(PROFILE_GZ_EXT)) {
+			if (file.getName().endsWith(PROFILE_GZ_EXT) || file.getName().endsWith(PROFILE_DELTA_EXT)) {
 				is = new BufferedInputStream(new GZIPInputStream(new FileInputStream(file)));
 			} else { // backward compatibility. SimpleProfileRegistry doesn't write non-gzipped profiles any more. 
 				is = new BufferedInputStream(new FileInputStream(file));
 			}
-			parse(is);
+			return parseHandler(is);
 		}
 
 		public synchronized void parse(InputStream stream) throws IOException {
+			ProfileHandler profileHandler = parseHandler(stream);
+			profileHandlers.put(profileHandler.getProfileId(), profileHandler);
+		}
+
+		private synchronized ProfileHandler parseHandler(InputStream stream) throws IOException {
 			this.status = null;
 			try {
 				// TODO: currently not caching the parser since we make no assumptions
@@ -637,7 +772,7 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 				ProfileHandler profileHandler = new ProfileHandler();
 				xmlReader.setContentHandler(new ProfileDocHandler(PROFILE_ELEMENT, profileHandler));
 				xmlReader.parse(new InputSource(stream));
-				profileHandlers.put(profileHandler.getProfileId(), profileHandler);
+				return profileHandler;
 			} catch (SAXException e) {
 				throw new IOException(e.getMessage());
 			} catch (ParserConfigurationException e) {
@@ -722,6 +857,19 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 
 	}
 
+	/**
+	 * The last persisted state of a profile, and the number of deltas written since the last full profile.
+	 */
+	static class SavedState {
+		final IProfile profile;
+		final int deltas;
+
+		SavedState(IProfile profile, int deltas) {
+			this.profile = profile;
+			this.deltas = deltas;
+		}
+	}
+
 	public synchronized boolean isCurrent(IProfile profile) {
 		Profile internalProfile = internalGetProfile(profile.getProfileId());
 		if (internalProfile == null)
@@ -815,7 +963,7 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 			return false;
 		File[] profileFiles = profileDirectory.listFiles(new FileFilter() {
 			public boolean accept(File pathname) {
-				return (pathname.getName().endsWith(PROFILE_GZ_EXT) || pathname.getName().endsWith(PROFILE_EXT)) && pathname.isFile();
+				return isStateFile(pathname.getName()) && pathname.isFile();
 			}
 		});
 		return profileFiles.length > 0;
@@ -823,6 +971,7 @@ public class SimpleProfileRegistry implements IProfileRegistry, IAgentService {
 
 	public synchronized void resetProfiles() {
 		profiles = null;
+		savedStates.clear();
 	}
 
 	public synchronized void unlockProfile(IProfile profile) {
@@ -34,6 +34,61 @@ import org.osgi.util.tracker.ServiceTracker;
 public class CertificateChecker {
 	private static final String DEBUG_PREFIX = "certificate checker"; //$NON-NLS-1$
 
+	/**
+	 * The system property giving the number of threads verifying the signed content of the
+	 * artifacts. The artifacts are verified one at a time by default.
+	 */
+	public static final String PROP_THREADS = "eclipse.p2.certificateChecker.threads"; //$NON-NLS-1$
+
+	/**
+	 * The signer certificate chains of an artifact and whether they are trusted.
+	 */
+	private static class Verification {
+		boolean signed;
+		Certificate[][] chains;
+		boolean[] trusted;
+		IStatus failure;
+	}
+
+	/**
+	 * Verifies the artifacts on several threads. A failure stops the verification of the artifacts
+	 * that are not started yet.
+	 */
+	private class Verifier implements Runnable {
+		private final SignedContentFactory verifierFactory;
+		final Verification[] verifications;
+		private int next = 0;
+		private boolean stopped = false;
+
+		Verifier(SignedContentFactory verifierFactory) {
+			this.verifierFactory = verifierFactory;
+			this.verifications = new Verification[artifacts.size()];
+		}
+
+		public void run() {
+			while (true) {
+				int index;
+				synchronized (this) {
+					if (stopped || next == verifications.length)
+						return;
+					index = next++;
+				}
+				Verification verification;
+				try {
+					verification = verify(verifierFactory, artifacts.get(index));
+				} catch (RuntimeException e) {
+					verification = new Verification();
+					verification.failure = new Status(IStatus.ERROR, EngineActivator.ID, Messages.CertificateChecker_SignedContentError, e);
+				}
+				synchronized (this) {
+					verifications[index] = verification;
+					if (verification.failure != null)
+						stopped = true;
+				}
+			}
+		}
+	}
+
 	private ArrayList<File> artifacts;
 	private final IProvisioningAgent agent;
 
@@ -57,10 +112,72 @@ public class CertificateChecker {
 		}
 	}
 
+	/**
+	 * Verifies the signed content of all the artifacts, on the number of threads given by {@link #PROP_THREADS}.
+	 */
+	private Verification[] verify(SignedContentFactory verifierFactory) {
+		Verifier verifier = new Verifier(verifierFactory);
+		Thread[] workers = new Thread[Math.min(getThreads(), artifacts.size()) - 1];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(verifier, "Certificate Checker " + i); //$NON-NLS-1$
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		// the calling thread verifies artifacts too
+		verifier.run();
+		boolean interrupted = false;
+		for (int i = 0; i < workers.length; i++) {
+			while (workers[i].isAlive()) {
+				try {
+					workers[i].join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		synchronized (verifier) {
+			return verifier.verifications;
+		}
+	}
+
+	private Verification verify(SignedContentFactory verifierFactory, File artifact) {
+		Verification result = new Verification();
+		try {
+			SignedContent content = verifierFactory.getSignedContent(artifact);
+			result.signed = content.isSigned();
+			if (result.signed) {
+				SignerInfo[] signerInfo = content.getSignerInfos();
+				result.chains = new Certificate[signerInfo.length][];
+				result.trusted = new boolean[signerInfo.length];
+				for (int i = 0; i < signerInfo.length; i++) {
+					result.chains[i] = signerInfo[i].getCertificateChain();
+					result.trusted[i] = signerInfo[i].isTrusted();
+				}
+			}
+		} catch (GeneralSecurityException e) {
+			result.failure = new Status(IStatus.ERROR, EngineActivator.ID, Messages.CertificateChecker_SignedContentError, e);
+		} catch (IOException e) {
+			result.failure = new Status(IStatus.ERROR, EngineActivator.ID, Messages.CertificateChecker_SignedContentIOError, e);
+		}
+		return result;
+	}
+
+	private static int getThreads() {
+		String value = EngineActivator.getContext().getProperty(PROP_THREADS);
+		if (value != null) {
+			try {
+				return Math.max(1, Integer.parseInt(value.trim()));
+			} catch (NumberFormatException e) {
+				// use the default
+			}
+		}
+		return 1;
+	}
+
 	private IStatus checkCertificates(SignedContentFactory verifierFactory) {
 		UIServices serviceUI = (UIServices) agent.getService(UIServices.SERVICE_NAME);
-		SignedContent content = null;
-		SignerInfo[] signerInfo = null;
 		ArrayList<Certificate> untrusted = new ArrayList<Certificate>();
 		ArrayList<File> unsigned = new ArrayList<File>();
 		ArrayList<Certificate[]> untrustedChain = new ArrayList<Certificate[]>();
@@ -68,22 +185,22 @@ public class CertificateChecker {
 		IStatus status = Status.OK_STATUS;
 		if (artifacts.size() == 0 || serviceUI == null)
 			return status;
-		for (File artifact : artifacts) {
-			try {
-				content = verifierFactory.getSignedContent(artifact);
-				if (!content.isSigned()) {
-					unsigned.add(artifact);
-					continue;
-				}
-				signerInfo = content.getSignerInfos();
-			} catch (GeneralSecurityException e) {
-				return new Status(IStatus.ERROR, EngineActivator.ID, Messages.CertificateChecker_SignedContentError, e);
-			} catch (IOException e) {
-				return new Status(IStatus.ERROR, EngineActivator.ID, Messages.CertificateChecker_SignedContentIOError, e);
+		Verification[] verifications = verify(verifierFactory);
+		for (int index = 0; index < verifications.length; index++) {
+			// the artifacts after a failure may not be verified
+			if (verifications[index] != null && verifications[index].failure != null)
+				return verifications[index].failure;
+		}
+		for (int index = 0; index < verifications.length; index++) {
+			File artifact = artifacts.get(index);
+			Verification verification = verifications[index];
+			if (!verification.signed) {
+				unsigned.add(artifact);
+				continue;
 			}
-			for (int i = 0; i < signerInfo.length; i++) {
-				if (!signerInfo[i].isTrusted()) {
-					Certificate[] certificateChain = signerInfo[i].getCertificateChain();
+			for (int i = 0; i < verification.chains.length; i++) {
+				if (!verification.trusted[i]) {
+					Certificate[] certificateChain = verification.chains[i];
 					if (!untrusted.contains(certificateChain[0])) {
 						untrusted.add(certificateChain[0]);
 						untrustedChain.add(certificateChain);
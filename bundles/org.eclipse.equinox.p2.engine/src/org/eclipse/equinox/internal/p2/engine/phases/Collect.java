@@ -62,6 +62,10 @@ public class Collect extends InstallableUnitPhase {
 		return Collections.singletonList(action);
 	}
 
+	protected boolean supportsConcurrentOperands() {
+		return true;
+	}
+
 	protected String getProblemMessage() {
 		return Messages.Phase_Collect_Error;
 	}
@@ -111,7 +115,8 @@ public class Collect extends InstallableUnitPhase {
 	}
 
 	protected IStatus initializePhase(IProgressMonitor monitor, IProfile profile, Map<String, Object> parameters) {
-		parameters.put(PARM_ARTIFACT_REQUESTS, new ArrayList<IArtifactRequest[]>());
+		// the collect actions of independent operands can add their requests concurrently
+		parameters.put(PARM_ARTIFACT_REQUESTS, Collections.synchronizedList(new ArrayList<IArtifactRequest[]>()));
 		return null;
 	}
 
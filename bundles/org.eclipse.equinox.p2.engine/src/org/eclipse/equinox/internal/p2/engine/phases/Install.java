@@ -28,6 +28,11 @@ public class Install extends InstallableUnitPhase {
 
 	final static class BeforeInstallEventAction extends ProvisioningAction {
 
+		public boolean isIndependent() {
+			// the profile is synchronized and the event bus dispatches events asynchronously
+			return true;
+		}
+
 		public IStatus execute(Map<String, Object> parameters) {
 			IProfile profile = (IProfile) parameters.get(PARM_PROFILE);
 			String phaseId = (String) parameters.get(PARM_PHASE_ID);
@@ -50,6 +55,11 @@ public class Install extends InstallableUnitPhase {
 
 	final static class AfterInstallEventAction extends ProvisioningAction {
 
+		public boolean isIndependent() {
+			// the profile is synchronized and the event bus dispatches events asynchronously
+			return true;
+		}
+
 		public IStatus execute(Map<String, Object> parameters) {
 			Profile profile = (Profile) parameters.get(PARM_PROFILE);
 			String phaseId = (String) parameters.get(PARM_PHASE_ID);
@@ -106,6 +116,10 @@ public class Install extends InstallableUnitPhase {
 		return actions;
 	}
 
+	protected boolean supportsConcurrentOperands() {
+		return true;
+	}
+
 	protected String getProblemMessage() {
 		return Messages.Phase_Install_Error;
 	}
@@ -26,6 +26,11 @@ import org.eclipse.equinox.p2.query.QueryUtil;
 public class Uninstall extends InstallableUnitPhase {
 
 	final static class BeforeUninstallEventAction extends ProvisioningAction {
+
+		public boolean isIndependent() {
+			// the profile is synchronized and the event bus dispatches events asynchronously
+			return true;
+		}
 		public IStatus execute(Map<String, Object> parameters) {
 			IProfile profile = (IProfile) parameters.get(PARM_PROFILE);
 			String phaseId = (String) parameters.get(PARM_PHASE_ID);
@@ -47,6 +52,11 @@ public class Uninstall extends InstallableUnitPhase {
 	}
 
 	final static class AfterUninstallEventAction extends ProvisioningAction {
+
+		public boolean isIndependent() {
+			// the profile is synchronized and the event bus dispatches events asynchronously
+			return true;
+		}
 		public IStatus execute(Map<String, Object> parameters) {
 			Profile profile = (Profile) parameters.get(PARM_PROFILE);
 			String phaseId = (String) parameters.get(PARM_PHASE_ID);
@@ -107,6 +117,10 @@ public class Uninstall extends InstallableUnitPhase {
 		return actions;
 	}
 
+	protected boolean supportsConcurrentOperands() {
+		return true;
+	}
+
 	protected String getProblemMessage() {
 		return Messages.Phase_Uninstall_Error;
 	}
@@ -37,4 +37,17 @@ public abstract class ProvisioningAction {
 	public Touchpoint getTouchpoint() {
 		return touchpoint;
 	}
+
+	/**
+	 * Returns whether this action only changes state that belongs to the operand it is executed for,
+	 * so that the engine may execute it concurrently with the actions of other operands. The parameters
+	 * of an independent action and the services it uses must support being used from several threads.
+	 * Actions are not independent unless they override this method.
+	 * 
+	 * @return <code>true</code> if this action can be executed concurrently with the actions of other operands
+	 * @since 2.2
+	 */
+	public boolean isIndependent() {
+		return false;
+	}
 }
@@ -112,6 +112,21 @@ public abstract class Touchpoint {
 		return Status.OK_STATUS;
 	}
 
+	/**
+	 * Returns whether the operands of this touchpoint can be processed concurrently. When this
+	 * method returns <code>true</code>, the engine may initialize several operands with
+	 * {@link #initializeOperand(IProfile, Map)} before executing their independent actions
+	 * concurrently, and complete them afterwards with {@link #completeOperand(IProfile, Map)}
+	 * in the original order. Touchpoints are not independent unless they override this method.
+	 * 
+	 * @return <code>true</code> if the operands of this touchpoint can be processed concurrently
+	 * @see ProvisioningAction#isIndependent()
+	 * @since 2.2
+	 */
+	public boolean isIndependent() {
+		return false;
+	}
+
 	/**
 	 * This method is called at the end of an engine operation after all phases have 
 	 * been executed but prior to the operation being formally committed/persisted. This is an opportunity to perform any final checks
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository;
+
+import java.util.Collection;
+import java.util.Iterator;
+import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
+import org.eclipse.equinox.internal.p2.metadata.index.CapabilityIndex;
+import org.eclipse.equinox.internal.p2.metadata.repository.BinaryMetadataRepositoryIO.BinaryUnits;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.metadata.expression.IEvaluationContext;
+import org.eclipse.equinox.p2.metadata.expression.IExpression;
+
+/**
+ * An index on the provided capabilities of the installable units of a binary repository, which only
+ * creates the units providing the queried capabilities.
+ */
+public class BinaryCapabilityIndex extends CapabilityIndex {
+	private final BinaryUnits units;
+
+	public BinaryCapabilityIndex(BinaryUnits units) {
+		this.units = units;
+	}
+
+	public Collection<IInstallableUnit> getProviders(String namespace, String name, VersionRange range) {
+		try {
+			return units.getProviders(namespace, name, range);
+		} catch (ProvisionException e) {
+			throw new UnitsNotCreatedException(e);
+		}
+	}
+
+	protected Collection<IInstallableUnit> getProviders(String name) {
+		try {
+			return units.getProviders(name);
+		} catch (ProvisionException e) {
+			throw new UnitsNotCreatedException(e);
+		}
+	}
+
+	public Iterator<IInstallableUnit> getCandidates(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
+		try {
+			return super.getCandidates(ctx, variable, booleanExpr);
+		} catch (UnitsNotCreatedException e) {
+			LogHelper.log(e.exception);
+			// let the query go through all the units instead
+			return null;
+		}
+	}
+
+	// carries the failure to create units out of the lookups of the superclass
+	private static class UnitsNotCreatedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		final ProvisionException exception;
+
+		UnitsNotCreatedException(ProvisionException exception) {
+			this.exception = exception;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.index.Index;
+import org.eclipse.equinox.internal.p2.metadata.repository.BinaryMetadataRepositoryIO.BinaryUnits;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.expression.IEvaluationContext;
+import org.eclipse.equinox.p2.metadata.expression.IExpression;
+
+/**
+ * An index on the identifier of the installable units of a binary repository, which only
+ * creates the units having the queried identifiers.
+ */
+public class BinaryIdIndex extends Index<IInstallableUnit> {
+	private final BinaryUnits units;
+
+	public BinaryIdIndex(BinaryUnits units) {
+		this.units = units;
+	}
+
+	public Iterator<IInstallableUnit> getCandidates(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
+		Object queriedKeys = getQueriedIDs(ctx, variable, InstallableUnit.MEMBER_ID, booleanExpr, null);
+		if (queriedKeys == null)
+			return null;
+
+		try {
+			if (queriedKeys instanceof Collection<?>) {
+				HashSet<IInstallableUnit> collector = new HashSet<IInstallableUnit>();
+				for (Object key : (Collection<?>) queriedKeys)
+					collector.addAll(units.getUnits((String) key));
+				return collector.iterator();
+			}
+			return units.getUnits((String) queriedKeys).iterator();
+		} catch (ProvisionException e) {
+			LogHelper.log(e);
+			// let the query go through all the units instead
+			return null;
+		}
+	}
+}
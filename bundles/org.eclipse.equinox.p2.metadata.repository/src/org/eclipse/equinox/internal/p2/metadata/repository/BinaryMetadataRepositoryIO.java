@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository;
+
+import java.io.*;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import javax.xml.parsers.ParserConfigurationException;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.internal.p2.core.helpers.CollectionUtils;
+import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataParser;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataWriter;
+import org.eclipse.equinox.p2.core.IProvisioningAgent;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.osgi.util.NLS;
+import org.osgi.framework.BundleContext;
+import org.xml.sax.*;
+
+/**
+ * Reads and writes the binary form of a local metadata repository, stored next to its <code>content.xml</code>
+ * or <code>content.jar</code>. The installable units of the binary form are only created when a query needs them.
+ * <p>
+ * The file starts with a header identifying the format and the content file it was written with, by its size,
+ * modification time and SHA-1 digest. The rest of the file is made of:
+ * <ul>
+ * <li>the repository without its installable units, in the XML format of the content file;</li>
+ * <li>a string table holding the identifier of every installable unit, and the namespace, name and
+ * version of every provided capability, once;</li>
+ * <li>one fixed size record per installable unit, sorted by identifier, giving the string table
+ * index of its identifier and the location of its definition;</li>
+ * <li>one fixed size record per provided capability, sorted by name, namespace and version, giving the
+ * string table index of its name, namespace and version and the record of the unit providing it;</li>
+ * <li>the definition of the installable units, each in the XML format of the content file.</li>
+ * </ul>
+ * The definitions are not encoded in a binary layout of their own, so that the format follows the
+ * changes of {@link MetadataWriter} and {@link MetadataParser}. The binary form saves the parsing of the
+ * units a query does not need, not the parsing of the units it creates.
+ * <p>
+ * A binary file that does not match the content file next to it is ignored. The content file is only read to
+ * compute its digest when its size is unchanged but its modification time changed.
+ */
+public class BinaryMetadataRepositoryIO {
+	private static final int MAGIC = 0x50324d42; // P2MB
+	private static final int FORMAT_VERSION = 3;
+	private static final String DIGEST_ALGORITHM = "SHA-1"; //$NON-NLS-1$
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+	private static final String UNITS_START = "<?xml version='1.0' encoding='UTF-8'?>\n<units>\n"; //$NON-NLS-1$
+	private static final String UNITS_END = "</units>\n"; //$NON-NLS-1$
+	// the number of units created at once when all the units are iterated
+	private static final int BATCH_SIZE = 100;
+
+	// orders the provided capabilities by name, namespace and version
+	static final Comparator<Object[]> CAPABILITY_COMPARATOR = new Comparator<Object[]>() {
+		public int compare(Object[] o1, Object[] o2) {
+			int result = ((String) o1[0]).compareTo((String) o2[0]);
+			if (result == 0)
+				result = ((String) o1[1]).compareTo((String) o2[1]);
+			if (result == 0)
+				result = ((Version) o1[2]).compareTo((Version) o2[2]);
+			return result;
+		}
+	};
+
+	protected final IProvisioningAgent agent;
+
+	public BinaryMetadataRepositoryIO(IProvisioningAgent agent) {
+		this.agent = agent;
+	}
+
+	/**
+	 * Writes the binary form of the given repository, whose content file has just been written to <code>contentFile</code>.
+	 */
+	public void write(IMetadataRepository repository, File contentFile, File binaryFile) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		new MetadataRepositoryIO(agent).write(repository, header, false);
+
+		List<IInstallableUnit> units = new ArrayList<IInstallableUnit>(repository.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+		Collections.sort(units);
+		List<String> strings = new ArrayList<String>();
+		Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+		int[] records = new int[units.size() * 3];
+		List<Object[]> capabilities = new ArrayList<Object[]>();
+		ByteArrayOutputStream definitions = new ByteArrayOutputStream();
+		UnitWriter unitWriter = new UnitWriter(definitions);
+		int start = definitions.size();
+		for (int i = 0; i < units.size(); i++) {
+			IInstallableUnit unit = units.get(i);
+			unitWriter.writeUnit(unit);
+			int end = definitions.size();
+			records[i * 3] = getStringIndex(unit.getId(), strings, stringIndexes);
+			records[i * 3 + 1] = start;
+			records[i * 3 + 2] = end - start;
+			start = end;
+			for (IProvidedCapability capability : unit.getProvidedCapabilities())
+				capabilities.add(new Object[] {capability.getName(), capability.getNamespace(), capability.getVersion(), new Integer(i)});
+		}
+		Collections.sort(capabilities, CAPABILITY_COMPARATOR);
+		int[] capabilityRecords = new int[capabilities.size() * 4];
+		for (int i = 0; i < capabilities.size(); i++) {
+			Object[] capability = capabilities.get(i);
+			capabilityRecords[i * 4] = getStringIndex((String) capability[0], strings, stringIndexes);
+			capabilityRecords[i * 4 + 1] = getStringIndex((String) capability[1], strings, stringIndexes);
+			capabilityRecords[i * 4 + 2] = getStringIndex(capability[2].toString(), strings, stringIndexes);
+			capabilityRecords[i * 4 + 3] = ((Integer) capability[3]).intValue();
+		}
+
+		byte[] digest = computeDigest(contentFile);
+		if (digest == null) {
+			binaryFile.delete();
+			return;
+		}
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binaryFile)));
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeLong(contentFile.length());
+			output.writeLong(contentFile.lastModified());
+			output.writeInt(digest.length);
+			output.write(digest);
+			output.writeInt(header.size());
+			header.writeTo(output);
+			output.writeInt(strings.size());
+			for (String string : strings) {
+				byte[] bytes = string.getBytes(UTF_8);
+				output.writeInt(bytes.length);
+				output.write(bytes);
+			}
+			output.writeInt(units.size());
+			for (int i = 0; i < records.length; i++)
+				output.writeInt(records[i]);
+			output.writeInt(capabilities.size());
+			for (int i = 0; i < capabilityRecords.length; i++)
+				output.writeInt(capabilityRecords[i]);
+			output.writeInt(definitions.size());
+			definitions.writeTo(output);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Reads the binary form of a repository. Returns <code>null</code> if the binary file does not exist,
+	 * is not in a supported format or does not match the given content file.
+	 */
+	public IMetadataRepository read(URL location, File contentFile, File binaryFile, IProgressMonitor monitor) throws ProvisionException {
+		if (!binaryFile.isFile())
+			return null;
+		try {
+			BinaryUnits units;
+			byte[] header;
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(binaryFile)));
+			try {
+				if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION)
+					return null;
+				if (input.readLong() != contentFile.length())
+					return null;
+				boolean touched = input.readLong() != contentFile.lastModified();
+				byte[] digest = new byte[input.readInt()];
+				input.readFully(digest);
+				// a content file copied or saved again without changes keeps its size but not its modification time
+				if (touched && !MessageDigest.isEqual(digest, computeDigest(contentFile)))
+					return null;
+				header = new byte[input.readInt()];
+				input.readFully(header);
+				units = new BinaryUnits(input);
+				if (input.read() != -1)
+					throw new IOException("Unexpected binary repository size."); //$NON-NLS-1$
+			} finally {
+				input.close();
+			}
+			IMetadataRepository repository = new MetadataRepositoryIO(agent).read(location, new ByteArrayInputStream(header), monitor);
+			if (!(repository instanceof LocalMetadataRepository))
+				return null;
+			((LocalMetadataRepository) repository).setBinaryUnits(units);
+			return repository;
+		} catch (IOException e) {
+			LogHelper.log(new Status(IStatus.WARNING, Activator.ID, NLS.bind(Messages.io_failedRead, binaryFile), e));
+			return null;
+		} catch (RuntimeException e) {
+			// a corrupted file, the content file is read instead
+			LogHelper.log(new Status(IStatus.WARNING, Activator.ID, NLS.bind(Messages.io_failedRead, binaryFile), e));
+			return null;
+		}
+	}
+
+	// returns the index of the given string in the string table, adding it to the table if needed
+	private static int getStringIndex(String string, List<String> strings, Map<String, Integer> stringIndexes) {
+		Integer index = stringIndexes.get(string);
+		if (index == null) {
+			index = new Integer(strings.size());
+			stringIndexes.put(string, index);
+			strings.add(string);
+		}
+		return index.intValue();
+	}
+
+	// returns the digest of the given file, or null if the digest algorithm is not available
+	private static byte[] computeDigest(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+		InputStream input = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1)
+				digest.update(buffer, 0, read);
+		} finally {
+			input.close();
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * The installable units of a binary repository, read in memory. Units are created the first time
+	 * they are requested, and the same instances are returned afterwards.
+	 */
+	public static class BinaryUnits {
+		private final String[] strings;
+		// the string index of the identifier, the offset and the length of the definition of each unit
+		private final int[] records;
+		// the string index of the name, namespace and version, and the unit record of each provided capability
+		private final int[] capabilities;
+		private final byte[] definitions;
+		private final IInstallableUnit[] units;
+		private int created;
+
+		BinaryUnits(DataInputStream input) throws IOException {
+			strings = new String[input.readInt()];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[input.readInt()];
+				input.readFully(bytes);
+				strings[i] = new String(bytes, UTF_8);
+			}
+			units = new IInstallableUnit[input.readInt()];
+			records = new int[units.length * 3];
+			for (int i = 0; i < records.length; i++)
+				records[i] = input.readInt();
+			capabilities = new int[input.readInt() * 4];
+			for (int i = 0; i < capabilities.length; i++)
+				capabilities[i] = input.readInt();
+			definitions = new byte[input.readInt()];
+			input.readFully(definitions);
+		}
+
+		public int size() {
+			return units.length;
+		}
+
+		/**
+		 * Returns the installable units with the given identifier.
+		 */
+		public synchronized Collection<IInstallableUnit> getUnits(String id) throws ProvisionException {
+			int low = 0;
+			int high = units.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (getId(middle).compareTo(id) < 0)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			int end = low;
+			while (end < units.length && getId(end).equals(id))
+				end++;
+			if (low == end)
+				return CollectionUtils.emptyList();
+			create(low, end);
+			return new ArrayList<IInstallableUnit>(Arrays.asList(units).subList(low, end));
+		}
+
+		/**
+		 * Returns the installable units providing a capability with the given name, in any namespace.
+		 */
+		public synchronized Collection<IInstallableUnit> getProviders(String name) throws ProvisionException {
+			return getProviders(null, name, null);
+		}
+
+		/**
+		 * Returns the installable units providing a capability with the given namespace and name, and a version
+		 * within the given range. The bounds of the range are treated as inclusive, and a <code>null</code>
+		 * namespace matches any namespace.
+		 */
+		public synchronized Collection<IInstallableUnit> getProviders(String namespace, String name, VersionRange range) throws ProvisionException {
+			int low = 0;
+			int high = capabilities.length / 4;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (compareCapability(middle, name, namespace) < 0)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			boolean allVersions = range == null || VersionRange.emptyRange.equals(range);
+			// an installable unit may provide several versions of the same capability
+			Set<Integer> providers = new LinkedHashSet<Integer>();
+			for (int i = low; i < capabilities.length / 4 && compareCapability(i, name, namespace) == 0; i++) {
+				if (allVersions || isInRange(Version.create(strings[capabilities[i * 4 + 2]]), range))
+					providers.add(new Integer(capabilities[i * 4 + 3]));
+			}
+			if (providers.isEmpty())
+				return CollectionUtils.emptySet();
+			create(providers);
+			Set<IInstallableUnit> result = new LinkedHashSet<IInstallableUnit>(providers.size());
+			for (Integer record : providers)
+				result.add(units[record.intValue()]);
+			return result;
+		}
+
+		/**
+		 * Returns all the installable units.
+		 */
+		public synchronized IInstallableUnit[] getAllUnits() throws ProvisionException {
+			if (created < units.length)
+				create(0, units.length);
+			return units.clone();
+		}
+
+		/**
+		 * Returns an iterator on all the installable units, which creates the units in batches as it goes.
+		 * The iteration ends early if units cannot be created.
+		 */
+		public Iterator<IInstallableUnit> iterator() {
+			return new Iterator<IInstallableUnit>() {
+				private int next = 0;
+				private IInstallableUnit unit;
+
+				public boolean hasNext() {
+					if (unit == null && next < units.length)
+						unit = getUnit(next++);
+					return unit != null;
+				}
+
+				public IInstallableUnit next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					IInstallableUnit result = unit;
+					unit = null;
+					return result;
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		// returns the unit of the given record, creating the units of the following records along with it
+		synchronized IInstallableUnit getUnit(int record) {
+			if (units[record] == null) {
+				try {
+					create(record, Math.min(record + BATCH_SIZE, units.length));
+				} catch (ProvisionException e) {
+					LogHelper.log(e);
+				}
+			}
+			return units[record];
+		}
+
+		private String getId(int record) {
+			return strings[records[record * 3]];
+		}
+
+		private int compareCapability(int capability, String name, String namespace) {
+			int result = strings[capabilities[capability * 4]].compareTo(name);
+			if (result != 0 || namespace == null)
+				return result;
+			return strings[capabilities[capability * 4 + 1]].compareTo(namespace);
+		}
+
+		private static boolean isInRange(Version version, VersionRange range) {
+			if (version.compareTo(range.getMinimum()) < 0)
+				return false;
+			Version max = range.getMaximum();
+			return Version.MAX_VERSION.equals(max) || version.compareTo(max) <= 0;
+		}
+
+		private void create(int start, int end) throws ProvisionException {
+			List<Integer> range = new ArrayList<Integer>(end - start);
+			for (int i = start; i < end; i++)
+				range.add(new Integer(i));
+			create(range);
+		}
+
+		// creates the units of the given records, parsing all the missing definitions at once
+		private void create(Collection<Integer> unitRecords) throws ProvisionException {
+			List<Integer> missingRecords = new ArrayList<Integer>();
+			List<InputStream> missing = new ArrayList<InputStream>();
+			for (Integer record : unitRecords) {
+				int i = record.intValue();
+				if (units[i] == null) {
+					missingRecords.add(record);
+					missing.add(new ByteArrayInputStream(definitions, records[i * 3 + 1], records[i * 3 + 2]));
+				}
+			}
+			if (missing.isEmpty())
+				return;
+			IInstallableUnit[] parsed = new UnitsParser(Activator.getContext(), Activator.ID).parse(missing);
+			for (int i = 0; i < parsed.length; i++)
+				units[missingRecords.get(i).intValue()] = parsed[i];
+			created += parsed.length;
+		}
+	}
+
+	// writes installable units one after the other, without an enclosing element
+	private static class UnitWriter extends MetadataWriter {
+		public UnitWriter(OutputStream output) throws IOException {
+			super(output, null);
+			flush();
+		}
+
+		public void writeUnit(IInstallableUnit unit) {
+			writeInstallableUnit(unit);
+			flush();
+		}
+	}
+
+	// parses definitions written by the UnitWriter
+	private static class UnitsParser extends MetadataParser {
+		List<InstallableUnitDescription> descriptions = new ArrayList<InstallableUnitDescription>();
+
+		public UnitsParser(BundleContext context, String bundleId) {
+			super(context, bundleId);
+		}
+
+		public IInstallableUnit[] parse(List<InputStream> definitions) throws ProvisionException {
+			Vector<InputStream> streams = new Vector<InputStream>(definitions.size() + 2);
+			try {
+				streams.add(new ByteArrayInputStream(UNITS_START.getBytes(UTF_8)));
+				streams.addAll(definitions);
+				streams.add(new ByteArrayInputStream(UNITS_END.getBytes(UTF_8)));
+				getParser();
+				xmlReader.setContentHandler(new DocHandler(INSTALLABLE_UNITS_ELEMENT, new UnitsHandler()));
+				xmlReader.parse(new InputSource(new SequenceInputStream(streams.elements())));
+			} catch (SAXException e) {
+				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, getErrorMessage(), e));
+			} catch (ParserConfigurationException e) {
+				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, getErrorMessage(), e));
+			} catch (IOException e) {
+				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, getErrorMessage(), e));
+			}
+			if (!isValidXML() || descriptions.size() != definitions.size())
+				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, getErrorMessage(), null));
+			IInstallableUnit[] result = new IInstallableUnit[descriptions.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = MetadataFactory.createInstallableUnit(descriptions.get(i));
+			return result;
+		}
+
+		protected Object getRootObject() {
+			return descriptions;
+		}
+
+		protected String getErrorMessage() {
+			return Messages.io_parseError;
+		}
+
+		private final class UnitsHandler extends RootHandler {
+			protected void handleRootAttributes(Attributes attributes) {
+				// no attributes
+			}
+
+			public void startElement(String name, Attributes attributes) {
+				if (name.equals(INSTALLABLE_UNIT_ELEMENT))
+					new InstallableUnitHandler(this, attributes, descriptions);
+				else
+					invalidElement(name, attributes);
+			}
+		}
+	}
+}
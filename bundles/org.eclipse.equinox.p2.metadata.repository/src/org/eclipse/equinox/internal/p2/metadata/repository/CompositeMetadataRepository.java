@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2011 IBM Corporation and others.
+ * Copyright (c) 2008, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,8 +19,13 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
+import org.eclipse.equinox.internal.p2.core.helpers.Tracing;
+import org.eclipse.equinox.internal.p2.metadata.CompactingPool;
 import org.eclipse.equinox.internal.p2.persistence.CompositeRepositoryIO;
 import org.eclipse.equinox.internal.p2.persistence.CompositeRepositoryState;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader.IChildLoader;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader.Result;
 import org.eclipse.equinox.p2.core.*;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.metadata.index.IIndex;
@@ -49,7 +54,7 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 	// keep a list of the repositories that we have successfully loaded
 	private List<IMetadataRepository> loadedRepos = new ArrayList<IMetadataRepository>();
 	private IMetadataRepositoryManager manager;
-	private IPool<IInstallableUnit> iuPool = new WeakPool<IInstallableUnit>();
+	private CompactingPool iuPool = new CompactingPool();
 
 	/**
 	 * Create a Composite repository in memory.
@@ -98,12 +103,7 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 	CompositeMetadataRepository(IMetadataRepositoryManager manager, CompositeRepositoryState state, IProgressMonitor monitor) throws ProvisionException {
 		super(manager.getAgent(), state.getName(), state.getType(), state.getVersion(), state.getLocation(), state.getDescription(), state.getProvider(), state.getProperties());
 		this.manager = manager;
-		SubMonitor sub = SubMonitor.convert(monitor, 100 * state.getChildren().length);
-		List<URI> repositoriesToBeRemovedOnFailure = new ArrayList<URI>();
-		boolean failOnChildFailure = shouldFailOnChildFailure(state);
-		for (URI child : state.getChildren())
-			addChild(child, false, sub.newChild(100), failOnChildFailure, repositoriesToBeRemovedOnFailure);
-
+		addChildren(state.getChildren(), false, monitor, shouldFailOnChildFailure(state));
 	}
 
 	CompositeMetadataRepository(IMetadataRepositoryManager manager, URI location, String name, Map<String, String> properties) {
@@ -147,43 +147,60 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 		}
 	}
 
-	//successfully loaded repo will be added to the list repositoriesToBeRemovedOnFailure if the list is not null and the repo wasn't previously loaded
-	private void addChild(URI childURI, boolean save, IProgressMonitor monitor, boolean propagateException, List<URI> repositoriesToBeRemovedOnFailure) throws ProvisionException {
-		SubMonitor sub = SubMonitor.convert(monitor);
-		URI absolute = URIUtil.makeAbsolute(childURI, getLocation());
-		if (childrenURIs.contains(childURI) || childrenURIs.contains(absolute)) {
-			sub.done();
+	//children are loaded concurrently; loaded repositories are kept in the order of the children
+	private void addChildren(URI[] children, boolean save, IProgressMonitor monitor, boolean propagateException) throws ProvisionException {
+		List<URI> toLoad = new ArrayList<URI>(children.length);
+		for (URI childURI : children) {
+			URI absolute = URIUtil.makeAbsolute(childURI, getLocation());
+			if (childrenURIs.contains(childURI) || childrenURIs.contains(absolute))
+				continue;
+			// always add the URI to the list of child URIs (even if we can't load it later)
+			childrenURIs.add(childURI);
+			toLoad.add(absolute);
+		}
+		if (toLoad.isEmpty()) {
+			if (monitor != null)
+				monitor.done();
 			return;
-
 		}
-		// always add the URI to the list of child URIs (even if we can't load it later)
-		childrenURIs.add(childURI);
 		if (save)
 			save();
-		try {
-			boolean currentLoaded = getManager().contains(absolute);
-			IMetadataRepository currentRepo = getManager().loadRepository(absolute, sub);
-			if (!currentLoaded) {
-				//set enabled to false so repositories do not polled twice
-				getManager().setEnabled(absolute, false);
-				//set repository to system to hide from users
-				getManager().setRepositoryProperty(absolute, IRepository.PROP_SYSTEM, String.valueOf(true));
-				if (propagateException)
+
+		// repositories loaded by this composite, to be removed from the manager if the composite fails to load
+		final List<URI> repositoriesToBeRemovedOnFailure = Collections.synchronizedList(new ArrayList<URI>());
+		List<Result<IMetadataRepository>> results = CompositeChildLoader.load(toLoad, new IChildLoader<IMetadataRepository>() {
+			public IMetadataRepository load(URI absolute, IProgressMonitor childMonitor) throws ProvisionException {
+				boolean currentLoaded = getManager().contains(absolute);
+				IMetadataRepository currentRepo = getManager().loadRepository(absolute, childMonitor);
+				if (!currentLoaded) {
+					//set enabled to false so repositories do not polled twice
+					getManager().setEnabled(absolute, false);
+					//set repository to system to hide from users
+					getManager().setRepositoryProperty(absolute, IRepository.PROP_SYSTEM, String.valueOf(true));
 					repositoriesToBeRemovedOnFailure.add(absolute);
+				}
+				return currentRepo;
+			}
+		}, monitor);
+
+		for (Result<IMetadataRepository> result : results) {
+			IMetadataRepository currentRepo = result.getRepository();
+			if (currentRepo == null) {
+				//repository failed to load. fall through
+				LogHelper.log(result.getFailure());
+				if (propagateException) {
+					removeFromRepoManager(repositoriesToBeRemovedOnFailure);
+					String msg = NLS.bind(Messages.io_failedRead, getLocation());
+					throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, msg, result.getFailure()));
+				}
+				continue;
 			}
 			currentRepo.compress(iuPool); // Share IUs across this CompositeMetadataRepository
 			// we successfully loaded the repo so remember it
 			loadedRepos.add(currentRepo);
-
-		} catch (ProvisionException e) {
-			//repository failed to load. fall through
-			LogHelper.log(e);
-			if (propagateException) {
-				removeFromRepoManager(repositoriesToBeRemovedOnFailure);
-				String msg = NLS.bind(Messages.io_failedRead, getLocation());
-				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, msg, e));
-			}
 		}
+		if (Tracing.DEBUG_METADATA_PARSING)
+			Tracing.debug("Compressed the children of " + getLocation() + ", " + iuPool.getStatistics()); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
 	/* (non-Javadoc)
@@ -191,7 +208,7 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 	 */
 	public void addChild(URI childURI) {
 		try {
-			addChild(childURI, true, null, false, null);
+			addChildren(new URI[] {childURI}, true, null, false);
 		} catch (ProvisionException e) {
 			//already logged
 		}
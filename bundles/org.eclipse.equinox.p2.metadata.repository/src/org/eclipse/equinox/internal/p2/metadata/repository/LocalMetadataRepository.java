@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2011 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -46,6 +46,13 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	static final private Integer REPOSITORY_VERSION = new Integer(1);
 	static final private String JAR_EXTENSION = ".jar"; //$NON-NLS-1$
 	static final private String XML_EXTENSION = ".xml"; //$NON-NLS-1$
+	static final private String BINARY_EXTENSION = ".bin"; //$NON-NLS-1$
+
+	/**
+	 * Repository property specifying whether a binary form of the repository is written next to its content file.
+	 * The binary form is read instead of the content file when it is present and up to date.
+	 */
+	public static final String PROP_BINARY = "p2.binary"; //$NON-NLS-1$
 
 	protected IUMap units = new IUMap();
 	protected HashSet<IRepositoryReference> repositories = new HashSet<IRepositoryReference>();
@@ -54,6 +61,8 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	private TranslationSupport translationSupport;
 	private boolean snapshotNeeded = false;
 	private boolean disableSave = false;
+	// the units not created yet when the repository was read from its binary form
+	private BinaryMetadataRepositoryIO.BinaryUnits binaryUnits;
 
 	private static File getActualLocation(URI location, String extension) {
 		File spec = URIUtil.toFile(location);
@@ -74,6 +83,10 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 		return getActualLocation(location, XML_EXTENSION);
 	}
 
+	public static File getBinaryLocation(URI location) {
+		return getActualLocation(location, BINARY_EXTENSION);
+	}
+
 	/**
 	 * This no argument constructor is called when restoring an existing repository.
 	 */
@@ -101,6 +114,7 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	public synchronized void addInstallableUnits(Collection<IInstallableUnit> installableUnits) {
 		if (installableUnits == null || installableUnits.isEmpty())
 			return;
+		createBinaryUnits();
 		if (snapshotNeeded) {
 			units = units.clone();
 			idIndex = null; // Backed by units
@@ -134,6 +148,8 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	 */
 	public synchronized IIndex<IInstallableUnit> getIndex(String memberName) {
 		if (InstallableUnit.MEMBER_ID.equals(memberName)) {
+			if (binaryUnits != null)
+				return new BinaryIdIndex(binaryUnits);
 			snapshotNeeded = true;
 			if (idIndex == null)
 				idIndex = new IdIndex(units);
@@ -141,6 +157,11 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 		}
 
 		if (InstallableUnit.MEMBER_PROVIDED_CAPABILITIES.equals(memberName)) {
+			if (binaryUnits != null) {
+				if (capabilityIndex == null)
+					capabilityIndex = new BinaryCapabilityIndex(binaryUnits);
+				return capabilityIndex;
+			}
 			snapshotNeeded = true;
 			if (capabilityIndex == null)
 				capabilityIndex = new CapabilityIndex(units.iterator());
@@ -201,6 +222,26 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 		return new ArrayList<IRepositoryReference>(repositories);
 	}
 
+	/**
+	 * Sets the units of a repository read from its binary form. The units are only created when a query needs them.
+	 */
+	synchronized void setBinaryUnits(BinaryMetadataRepositoryIO.BinaryUnits binaryUnits) {
+		this.binaryUnits = binaryUnits;
+	}
+
+	// creates all the units still held by the binary form of the repository, caller should be synchronized
+	private void createBinaryUnits() {
+		if (binaryUnits == null)
+			return;
+		try {
+			units.addAll(binaryUnits.getAllUnits());
+		} catch (ProvisionException e) {
+			LogHelper.log(e);
+		}
+		binaryUnits = null;
+		capabilityIndex = null;
+	}
+
 	// use this method to setup any transient fields etc after the object has been restored from a stream
 	public synchronized void initializeAfterLoad(URI aLocation) {
 		setLocation(aLocation);
@@ -225,6 +266,8 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	 * @see org.eclipse.equinox.p2.metadata.index.IIndexProvider#everything()
 	 */
 	public synchronized Iterator<IInstallableUnit> everything() {
+		if (binaryUnits != null)
+			return binaryUnits.iterator();
 		snapshotNeeded = true;
 		return units.iterator();
 	}
@@ -234,6 +277,7 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	 */
 	@Override
 	public synchronized void removeAll() {
+		binaryUnits = null;
 		if (snapshotNeeded) {
 			units = new IUMap();
 			idIndex = null; // Backed by units
@@ -252,6 +296,7 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 		boolean changed = false;
 		if (installableUnits != null && !installableUnits.isEmpty()) {
 			changed = true;
+			createBinaryUnits();
 			if (snapshotNeeded) {
 				units = units.clone();
 				idIndex = null; // Backed by units
@@ -305,6 +350,11 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 			}
 			super.setProperty(IRepository.PROP_TIMESTAMP, Long.toString(System.currentTimeMillis()), new NullProgressMonitor());
 			new MetadataRepositoryIO(getProvisioningAgent()).write(this, output);
+			File binaryFile = getBinaryLocation(getLocation());
+			if ("true".equalsIgnoreCase(getProperty(PROP_BINARY))) //$NON-NLS-1$
+				new BinaryMetadataRepositoryIO(getProvisioningAgent()).write(this, compress ? jarFile : file, binaryFile);
+			else if (binaryFile.exists())
+				binaryFile.delete();
 		} catch (IOException e) {
 			LogHelper.log(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_WRITE, "Error saving metadata repository: " + getLocation(), e)); //$NON-NLS-1$
 		}
@@ -364,7 +414,10 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	/* (non-Javadoc)
 	 * @see org.eclipse.equinox.p2.repository.metadata.IMetadataRepository#compress(IPool<IInstallableUnit> iuPool)
 	 */
-	public void compress(IPool<IInstallableUnit> iuPool) {
+	public synchronized void compress(IPool<IInstallableUnit> iuPool) {
+		// units still held by the binary form are not shared, creating them all would defeat the purpose of that form
+		if (binaryUnits != null)
+			return;
 		units.compress(iuPool);
 	}
 }
@@ -21,6 +21,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.internal.p2.core.helpers.OrderedProperties;
+import org.eclipse.equinox.internal.p2.core.helpers.Tracing;
 import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataParser;
 import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataWriter;
 import org.eclipse.equinox.internal.p2.persistence.XMLWriter;
@@ -60,7 +61,7 @@ public class MetadataRepositoryIO {
 
 				Parser repositoryParser = new Parser(Activator.getContext(), Activator.ID);
 				repositoryParser.setErrorContext(location.toExternalForm());
-				repositoryParser.parse(input, monitor);
+				repositoryParser.parse(bufferedInput, monitor);
 				IStatus result = repositoryParser.getStatus();
 				switch (result.getSeverity()) {
 					case IStatus.CANCEL :
@@ -86,11 +87,20 @@ public class MetadataRepositoryIO {
 	 *
 	 */
 	public void write(IMetadataRepository repository, OutputStream output) throws IOException {
+		write(repository, output, true);
+	}
+
+	/**
+	 * Writes the given repository to the given stream, leaving out its installable units
+	 * if <code>includeUnits</code> is <code>false</code>.
+	 * This method performs buffering, and closes the stream when finished.
+	 */
+	public void write(IMetadataRepository repository, OutputStream output, boolean includeUnits) throws IOException {
 		OutputStream bufferedOutput = null;
 		try {
 			bufferedOutput = new BufferedOutputStream(output);
 			Writer repositoryWriter = new Writer(bufferedOutput, repository.getClass());
-			repositoryWriter.write(repository);
+			repositoryWriter.write(repository, includeUnits);
 		} finally {
 			if (bufferedOutput != null) {
 				bufferedOutput.close();
@@ -131,6 +141,13 @@ public class MetadataRepositoryIO {
 		 * Write the given metadata repository to the output stream.
 		 */
 		public void write(IMetadataRepository repository) {
+			write(repository, true);
+		}
+
+		/**
+		 * Write the given metadata repository to the output stream, with or without its installable units.
+		 */
+		public void write(IMetadataRepository repository, boolean includeUnits) {
 			start(REPOSITORY_ELEMENT);
 			attribute(NAME_ATTRIBUTE, repository.getName());
 			attribute(TYPE_ATTRIBUTE, repository.getType());
@@ -143,9 +160,11 @@ public class MetadataRepositoryIO {
 				Set<IRepositoryReference> references = ((LocalMetadataRepository) repository).repositories;
 				writeRepositoryReferences(references.iterator(), references.size());
 			}
-			// The size attribute is a problematic since it forces the use of a collection.
-			Set<IInstallableUnit> units = repository.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
-			writeInstallableUnits(units.iterator(), units.size());
+			if (includeUnits) {
+				// The size attribute is a problematic since it forces the use of a collection.
+				Set<IInstallableUnit> units = repository.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+				writeInstallableUnits(units.iterator(), units.size());
+			}
 
 			end(REPOSITORY_ELEMENT);
 			flush();
@@ -201,6 +220,7 @@ public class MetadataRepositoryIO {
 			setProgressMonitor(monitor);
 			monitor.beginTask(Messages.repo_loading, IProgressMonitor.UNKNOWN);
 			try {
+				long start = System.currentTimeMillis();
 				// TODO: currently not caching the parser since we make no assumptions
 				//		 or restrictions on concurrent parsing
 				getParser();
@@ -210,6 +230,10 @@ public class MetadataRepositoryIO {
 				if (isValidXML()) {
 					theRepository = repositoryHandler.getRepository();
 				}
+				if (Tracing.DEBUG_METADATA_PARSING) {
+					long time = Math.max(System.currentTimeMillis() - start, 1);
+					Tracing.debug("Parsed " + errorContext + " in " + time + "ms (" + (getElementCount() * 1000L / time) + " elements/s): " + getParseStatistics()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				}
 			} catch (SAXException e) {
 				if (!(e.getException() instanceof OperationCanceledException))
 					throw new IOException(e.getMessage());
@@ -86,6 +86,20 @@ public class SimpleMetadataRepositoryFactory extends MetadataRepositoryFactory {
 		SubMonitor sub = SubMonitor.convert(monitor, 400);
 		try {
 			File localFile = getLocalFile(location, sub.newChild(300));
+			if (PROTOCOL_FILE.equals(location.getScheme())) {
+				//an up to date binary form of a local repository is read instead of its content file
+				IMetadataRepository result = new BinaryMetadataRepositoryIO(getAgent()).read(localFile.toURL(), localFile, LocalMetadataRepository.getBinaryLocation(location), sub.newChild(100));
+				if (result != null) {
+					if ((flags & IRepositoryManager.REPOSITORY_HINT_MODIFIABLE) > 0 && !result.isModifiable())
+						return null;
+					((LocalMetadataRepository) result).initializeAfterLoad(location);
+					if (Tracing.DEBUG_METADATA_PARSING) {
+						time += System.currentTimeMillis();
+						Tracing.debug(debugMsg + "time (ms): " + time); //$NON-NLS-1$ 
+					}
+					return result;
+				}
+			}
 			InputStream inStream = new BufferedInputStream(new FileInputStream(localFile));
 			JarInputStream jarStream = null;
 			try {
@@ -471,6 +471,7 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 
 	protected class ProvidedCapabilitiesHandler extends AbstractMetadataHandler {
 		private List<IProvidedCapability> providedCapabilities;
+		private ProvidedCapabilityHandler capabilityHandler = null;
 
 		public ProvidedCapabilitiesHandler(AbstractHandler parentHandler, Attributes attributes) {
 			super(parentHandler, PROVIDED_CAPABILITIES_ELEMENT);
@@ -483,7 +484,10 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 
 		public void startElement(String name, Attributes attributes) {
 			if (name.equals(PROVIDED_CAPABILITY_ELEMENT)) {
-				new ProvidedCapabilityHandler(this, attributes, providedCapabilities);
+				if (capabilityHandler == null)
+					capabilityHandler = new ProvidedCapabilityHandler(this, attributes, providedCapabilities);
+				else
+					capabilityHandler.handle(attributes);
 			} else {
 				invalidElement(name, attributes);
 			}
@@ -491,9 +495,23 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 	}
 
 	protected class ProvidedCapabilityHandler extends AbstractHandler {
+		private final List<IProvidedCapability> capabilities;
 
 		public ProvidedCapabilityHandler(AbstractHandler parentHandler, Attributes attributes, List<IProvidedCapability> capabilities) {
 			super(parentHandler, PROVIDED_CAPABILITY_ELEMENT);
+			this.capabilities = capabilities;
+			addCapability(attributes);
+		}
+
+		/**
+		 * Handles the next provided capability element with this handler.
+		 */
+		public void handle(Attributes attributes) {
+			restart();
+			addCapability(attributes);
+		}
+
+		private void addCapability(Attributes attributes) {
 			String[] values = parseRequiredAttributes(attributes, REQUIRED_PROVIDED_CAPABILITY_ATTRIBUTES);
 			Version version = checkVersion(PROVIDED_CAPABILITY_ELEMENT, VERSION_ATTRIBUTE, values[2]);
 			capabilities.add(MetadataFactory.createProvidedCapability(values[0], values[1], version));
@@ -506,6 +524,7 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 
 	protected class HostRequiredCapabilitiesHandler extends AbstractMetadataHandler {
 		private List<IRequirement> requiredCapabilities;
+		private RequirementHandler requirementHandler = null;
 
 		public HostRequiredCapabilitiesHandler(AbstractHandler parentHandler, Attributes attributes) {
 			super(parentHandler, HOST_REQUIREMENTS_ELEMENT);
@@ -518,7 +537,10 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 
 		public void startElement(String name, Attributes attributes) {
 			if (name.equals(REQUIREMENT_ELEMENT)) {
-				new RequirementHandler(this, attributes, requiredCapabilities);
+				if (requirementHandler == null)
+					requirementHandler = new RequirementHandler(this, attributes, requiredCapabilities);
+				else
+					requirementHandler.handle(attributes);
 			} else {
 				invalidElement(name, attributes);
 			}
@@ -527,6 +549,7 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 
 	protected class MetaRequiredCapabilitiesHandler extends AbstractMetadataHandler {
 		private List<IRequirement> requiredCapabilities;
+		private RequirementHandler requirementHandler = null;
 
 		public MetaRequiredCapabilitiesHandler(AbstractHandler parentHandler, Attributes attributes) {
 			super(parentHandler, META_REQUIREMENTS_ELEMENT);
@@ -539,7 +562,10 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 
 		public void startElement(String name, Attributes attributes) {
 			if (name.equals(REQUIREMENT_ELEMENT)) {
-				new RequirementHandler(this, attributes, requiredCapabilities);
+				if (requirementHandler == null)
+					requirementHandler = new RequirementHandler(this, attributes, requiredCapabilities);
+				else
+					requirementHandler.handle(attributes);
 			} else {
 				invalidElement(name, attributes);
 			}
@@ -548,6 +574,7 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 
 	protected class RequiredCapabilitiesHandler extends AbstractMetadataHandler {
 		private List<IRequirement> requiredCapabilities;
+		private RequirementHandler requirementHandler = null;
 
 		public RequiredCapabilitiesHandler(AbstractHandler parentHandler, Attributes attributes) {
 			super(parentHandler, REQUIREMENTS_ELEMENT);
@@ -560,7 +587,10 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 
 		public void startElement(String name, Attributes attributes) {
 			if (name.equals(REQUIREMENT_ELEMENT)) {
-				new RequirementHandler(this, attributes, requiredCapabilities);
+				if (requirementHandler == null)
+					requirementHandler = new RequirementHandler(this, attributes, requiredCapabilities);
+				else
+					requirementHandler.handle(attributes);
 			} else {
 				invalidElement(name, attributes);
 			}
@@ -585,6 +615,25 @@ public abstract class MetadataParser extends XMLParser implements XMLConstants {
 		public RequirementHandler(AbstractHandler parentHandler, Attributes attributes, List<IRequirement> capabilities) {
 			super(parentHandler, REQUIREMENT_ELEMENT);
 			this.capabilities = capabilities;
+			initialize(attributes);
+		}
+
+		/**
+		 * Handles the next requirement element with this handler.
+		 */
+		public void handle(Attributes attributes) {
+			restart();
+			match = null;
+			matchParams = null;
+			namespace = null;
+			name = null;
+			range = null;
+			filterHandler = null;
+			descriptionHandler = null;
+			initialize(attributes);
+		}
+
+		private void initialize(Attributes attributes) {
 			if (attributes.getIndex(NAMESPACE_ATTRIBUTE) >= 0) {
 				String[] values = parseAttributes(attributes, REQIURED_CAPABILITY_ATTRIBUTES, OPTIONAL_CAPABILITY_ATTRIBUTES);
 				namespace = values[0];
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata;
+
+import org.eclipse.equinox.p2.core.IPool;
+import org.eclipse.equinox.p2.core.WeakPool;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+
+/**
+ * A pool of installable units that also shares the parts of the units it keeps. The same
+ * requirements, capabilities, filters, touchpoint data, artifact keys, versions and property
+ * strings appear in many units, especially across the children of a composite repository.
+ * When a unit is added to this pool and no equal unit is in the pool yet, the parts of the
+ * unit are replaced by the equal parts of the units already in the pool.
+ * <p>
+ * Like {@link WeakPool}, this pool only holds weak references, the shared parts are garbage
+ * collected once no unit uses them anymore.
+ * </p>
+ */
+public class CompactingPool implements IPool<IInstallableUnit> {
+	private final IPool<IInstallableUnit> units = new WeakPool<IInstallableUnit>();
+	private final IPool<IRequirement> requirements = new WeakPool<IRequirement>();
+	private final IPool<IProvidedCapability> capabilities = new WeakPool<IProvidedCapability>();
+	private final IPool<IMatchExpression<IInstallableUnit>> filters = new WeakPool<IMatchExpression<IInstallableUnit>>();
+	private final IPool<ITouchpointData> touchpointData = new WeakPool<ITouchpointData>();
+	private final IPool<IArtifactKey> artifacts = new WeakPool<IArtifactKey>();
+	private final IPool<Version> versions = new WeakPool<Version>();
+	private final IPool<String> strings = new WeakPool<String>();
+
+	// the number of instances that were replaced by a shared instance
+	private int sharedUnits;
+	private int sharedRequirements;
+	private int sharedCapabilities;
+	private int sharedFilters;
+	private int sharedTouchpointData;
+	private int sharedArtifacts;
+	private int sharedVersions;
+	private int sharedStrings;
+
+	public synchronized IInstallableUnit add(IInstallableUnit unit) {
+		IInstallableUnit shared = units.add(unit);
+		if (shared != unit)
+			sharedUnits++;
+		else if (unit instanceof InstallableUnit)
+			((InstallableUnit) unit).compact(this);
+		return shared;
+	}
+
+	IRequirement share(IRequirement requirement) {
+		IRequirement shared = requirements.add(requirement);
+		// the description is not part of the equality of requirements
+		if (shared == requirement || shared.getClass() != requirement.getClass() || !equals(shared.getDescription(), requirement.getDescription()))
+			return requirement;
+		sharedRequirements++;
+		return shared;
+	}
+
+	IProvidedCapability share(IProvidedCapability capability) {
+		IProvidedCapability shared = capabilities.add(capability);
+		if (shared == capability || shared.getClass() != capability.getClass())
+			return capability;
+		sharedCapabilities++;
+		return shared;
+	}
+
+	IMatchExpression<IInstallableUnit> share(IMatchExpression<IInstallableUnit> filter) {
+		IMatchExpression<IInstallableUnit> shared = filters.add(filter);
+		if (shared == filter)
+			return filter;
+		sharedFilters++;
+		return shared;
+	}
+
+	ITouchpointData share(ITouchpointData data) {
+		ITouchpointData shared = touchpointData.add(data);
+		if (shared == data || shared.getClass() != data.getClass())
+			return data;
+		sharedTouchpointData++;
+		return shared;
+	}
+
+	IArtifactKey share(IArtifactKey key) {
+		IArtifactKey shared = artifacts.add(key);
+		if (shared == key || shared.getClass() != key.getClass())
+			return key;
+		sharedArtifacts++;
+		return shared;
+	}
+
+	Version share(Version version) {
+		Version shared = versions.add(version);
+		if (shared == version || shared.getClass() != version.getClass())
+			return version;
+		sharedVersions++;
+		return shared;
+	}
+
+	String share(String string) {
+		String shared = strings.add(string);
+		if (shared == string)
+			return string;
+		sharedStrings++;
+		return shared;
+	}
+
+	private static boolean equals(Object o1, Object o2) {
+		return o1 == null ? o2 == null : o1.equals(o2);
+	}
+
+	/**
+	 * Returns the number of instances of each kind that were replaced by an equal instance
+	 * already in this pool. The replaced instances can be garbage collected.
+	 */
+	public synchronized String getStatistics() {
+		StringBuffer result = new StringBuffer();
+		result.append("shared units: ").append(sharedUnits); //$NON-NLS-1$
+		result.append(", requirements: ").append(sharedRequirements); //$NON-NLS-1$
+		result.append(", capabilities: ").append(sharedCapabilities); //$NON-NLS-1$
+		result.append(", filters: ").append(sharedFilters); //$NON-NLS-1$
+		result.append(", touchpoint data: ").append(sharedTouchpointData); //$NON-NLS-1$
+		result.append(", artifact keys: ").append(sharedArtifacts); //$NON-NLS-1$
+		result.append(", versions: ").append(sharedVersions); //$NON-NLS-1$
+		result.append(", strings: ").append(sharedStrings); //$NON-NLS-1$
+		return result.toString();
+	}
+
+	/**
+	 * Returns the total number of instances that were replaced by an equal instance already in this pool.
+	 */
+	public synchronized int getSharedCount() {
+		return sharedUnits + sharedRequirements + sharedCapabilities + sharedFilters + sharedTouchpointData + sharedArtifacts + sharedVersions + sharedStrings;
+	}
+}
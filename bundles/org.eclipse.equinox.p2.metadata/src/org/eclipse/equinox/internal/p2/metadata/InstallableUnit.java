@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -94,6 +94,33 @@ public class InstallableUnit implements IInstallableUnit, IMemberProvider {
 		}
 	}
 
+	/**
+	 * Replaces the parts of this unit by the equal parts already in the given pool.
+	 */
+	void compact(CompactingPool pool) {
+		id = pool.share(id);
+		version = pool.share(version);
+		if (filter != null)
+			filter = pool.share(filter);
+		for (int i = 0; i < requires.length; i++)
+			requires[i] = pool.share(requires[i]);
+		for (int i = 0; i < metaRequires.length; i++)
+			metaRequires[i] = pool.share(metaRequires[i]);
+		for (int i = 0; i < providedCapabilities.length; i++)
+			providedCapabilities[i] = pool.share(providedCapabilities[i]);
+		for (int i = 0; i < artifacts.length; i++)
+			artifacts[i] = pool.share(artifacts[i]);
+		for (int i = 0; i < touchpointData.length; i++)
+			touchpointData[i] = pool.share(touchpointData[i]);
+		if (properties != null) {
+			// the properties can be changed so they are not shared, only their keys and values are
+			OrderedProperties compacted = new OrderedProperties(properties.size());
+			for (Map.Entry<String, String> entry : properties.entrySet())
+				compacted.put(pool.share(entry.getKey()), pool.share(entry.getValue()));
+			properties = compacted;
+		}
+	}
+
 	public int compareTo(IInstallableUnit other) {
 		int cmp = getId().compareTo(other.getId());
 		if (cmp == 0)
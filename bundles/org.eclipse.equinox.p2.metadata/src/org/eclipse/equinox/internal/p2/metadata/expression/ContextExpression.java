@@ -71,6 +71,31 @@ public class ContextExpression<T> extends Unary implements IContextExpression<T>
 		return parameters;
 	}
 
+	/**
+	 * Returns <code>true</code> if the result of this expression over a concatenation of collections
+	 * can be obtained by evaluating it over each collection and then over the concatenation of those
+	 * results. This is the case for a selection of everything that does not otherwise refer to everything,
+	 * optionally restricted to the latest units or limited to a number of elements.
+	 */
+	public boolean isDistributive() {
+		Expression expr = operand;
+		if (expr instanceof Latest)
+			expr = ((Latest) expr).operand;
+		else if (expr instanceof Limit) {
+			Limit limit = (Limit) expr;
+			if (!(limit.rhs instanceof Literal || limit.rhs instanceof Parameter))
+				return false;
+			expr = limit.lhs;
+		}
+		if (expr == ExpressionFactory.EVERYTHING)
+			return true;
+		if (!(expr instanceof Select) || ((Select) expr).operand != ExpressionFactory.EVERYTHING)
+			return false;
+		VariableFinder finder = new VariableFinder(ExpressionFactory.EVERYTHING);
+		((Select) expr).lambda.accept(finder);
+		return !finder.isFound();
+	}
+
 	public int hashCode() {
 		return operand.hashCode();
 	}
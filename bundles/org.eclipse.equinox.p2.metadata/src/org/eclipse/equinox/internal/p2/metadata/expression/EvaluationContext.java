@@ -130,6 +130,10 @@ public class EvaluationContext implements IEvaluationContext {
 		return parameters[position];
 	}
 
+	final Object[] getParameters() {
+		return parameters;
+	}
+
 	public Object getValue(IExpression variable) {
 		if (parentContext == null)
 			throw new IllegalArgumentException("No such variable: " + variable); //$NON-NLS-1$
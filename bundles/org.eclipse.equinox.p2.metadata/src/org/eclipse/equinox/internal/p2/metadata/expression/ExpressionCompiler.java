@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.expression;
+
+import java.util.Collection;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.ProvidedCapability;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.metadata.expression.IMemberProvider;
+
+/**
+ * Compiles the shapes of match expressions that the planner evaluates the most into evaluators that
+ * read the installable units and their capabilities directly, without an evaluation context. The
+ * recognized shapes are the ones created by requirements and by the IU queries:
+ * <pre>
+ * providedCapabilities.exists(x | x.name == $0 &amp;&amp; x.namespace == $1 &amp;&amp; x.version &gt;= $2 &amp;&amp; x.version &lt; $3)
+ * id == $0 &amp;&amp; version ~= $1
+ * </pre>
+ * A compiled match gives up on values it is not sure to handle exactly like the interpreter
+ * (coercions, unexpected member providers, <code>null</code> comparisons) and the expression is
+ * then interpreted.
+ */
+final class ExpressionCompiler {
+	// results of a test
+	static final int FALSE = 0;
+	static final int TRUE = 1;
+	static final int UNKNOWN = -1;
+
+	// the members a compiled test can read
+	static final int MEMBER_ID = 0;
+	static final int MEMBER_VERSION = 1;
+	static final int MEMBER_NAME = 2;
+	static final int MEMBER_NAMESPACE = 3;
+
+	private static final Object NO_VALUE = new Object();
+
+	/**
+	 * A match expression compiled for one shape.
+	 */
+	static abstract class CompiledMatch {
+		/**
+		 * Matches the candidate using the given parameters.
+		 * @return the result of the match, or <code>null</code> if the expression must be interpreted for this candidate
+		 */
+		abstract Boolean match(Object candidate, Object[] parameters);
+	}
+
+	/**
+	 * A test comparing a member of the candidate with a parameter or a constant.
+	 */
+	static abstract class Test {
+		final int member;
+		final String memberName;
+		private final int position;
+		private final Object constant;
+
+		Test(int member, String memberName, Expression value) {
+			this.member = member;
+			this.memberName = memberName;
+			if (value instanceof Parameter) {
+				position = ((Parameter) value).position;
+				constant = null;
+			} else {
+				position = -1;
+				constant = ((Literal) value).value;
+			}
+		}
+
+		final int test(Object target, Object[] parameters) {
+			Object lval = getMember(target, member, memberName);
+			if (lval == NO_VALUE)
+				return UNKNOWN;
+			Object rval;
+			if (position < 0)
+				rval = constant;
+			else if (position < parameters.length)
+				rval = parameters[position];
+			else
+				return UNKNOWN;
+			return test(lval, rval);
+		}
+
+		abstract int test(Object lval, Object rval);
+	}
+
+	static final class EqualsTest extends Test {
+		private final boolean negate;
+
+		EqualsTest(int member, String memberName, Expression value, boolean negate) {
+			super(member, memberName, value);
+			this.negate = negate;
+		}
+
+		int test(Object lval, Object rval) {
+			boolean result;
+			if (lval == rval)
+				result = true;
+			else if (lval == null || rval == null)
+				result = false;
+			else if (lval.getClass() == rval.getClass() || (lval instanceof Version && rval instanceof Version))
+				result = lval.equals(rval);
+			else
+				// coercion needed
+				return UNKNOWN;
+			return result != negate ? TRUE : FALSE;
+		}
+	}
+
+	static final class CompareTest extends Test {
+		private final boolean compareLess;
+		private final boolean equalOK;
+
+		CompareTest(int member, String memberName, Expression value, boolean compareLess, boolean equalOK) {
+			super(member, memberName, value);
+			this.compareLess = compareLess;
+			this.equalOK = equalOK;
+		}
+
+		int test(Object lval, Object rval) {
+			if (!(lval instanceof Version && rval instanceof Version))
+				return UNKNOWN;
+			int cmp = ((Version) lval).compareTo((Version) rval);
+			return (cmp == 0 ? equalOK : (cmp < 0 ? compareLess : !compareLess)) ? TRUE : FALSE;
+		}
+	}
+
+	static final class RangeTest extends Test {
+		RangeTest(int member, String memberName, Expression value) {
+			super(member, memberName, value);
+		}
+
+		int test(Object lval, Object rval) {
+			if (lval == null || rval == null)
+				return FALSE;
+			if (!(lval instanceof Version && rval instanceof VersionRange))
+				return UNKNOWN;
+			return ((VersionRange) rval).isIncluded((Version) lval) ? TRUE : FALSE;
+		}
+	}
+
+	/**
+	 * Tests on the members of the candidate itself, such as <code>id == $0 &amp;&amp; version ~= $1</code>.
+	 */
+	static final class UnitMatch extends CompiledMatch {
+		private final Test[] tests;
+
+		UnitMatch(Test[] tests) {
+			this.tests = tests;
+		}
+
+		Boolean match(Object candidate, Object[] parameters) {
+			int result = testAll(tests, candidate, parameters);
+			return result == UNKNOWN ? null : Boolean.valueOf(result == TRUE);
+		}
+	}
+
+	/**
+	 * Tests on the provided capabilities of the candidate, as created by the requirements.
+	 */
+	static final class CapabilityMatch extends CompiledMatch {
+		private final Test[] tests;
+
+		CapabilityMatch(Test[] tests) {
+			this.tests = tests;
+		}
+
+		Boolean match(Object candidate, Object[] parameters) {
+			Object capabilities;
+			if (candidate instanceof IMemberProvider)
+				capabilities = ((IMemberProvider) candidate).getMember(InstallableUnit.MEMBER_PROVIDED_CAPABILITIES);
+			else
+				return null;
+
+			if (capabilities instanceof Object[]) {
+				Object[] array = (Object[]) capabilities;
+				for (int i = 0; i < array.length; i++) {
+					int result = testAll(tests, array[i], parameters);
+					if (result != FALSE)
+						return result == TRUE ? Boolean.TRUE : null;
+				}
+				return Boolean.FALSE;
+			}
+			if (capabilities instanceof Collection<?>) {
+				for (Object capability : (Collection<?>) capabilities) {
+					int result = testAll(tests, capability, parameters);
+					if (result != FALSE)
+						return result == TRUE ? Boolean.TRUE : null;
+				}
+				return Boolean.FALSE;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a compiled form of the given predicate, or <code>null</code> if the predicate does not have a shape
+	 * that can be compiled.
+	 */
+	static CompiledMatch compile(Expression predicate) {
+		if (predicate instanceof Exists) {
+			Exists exists = (Exists) predicate;
+			if (!isMember(exists.operand, ExpressionFactory.THIS, InstallableUnit.MEMBER_PROVIDED_CAPABILITIES))
+				return null;
+			LambdaExpression lambda = exists.lambda;
+			// curried lambdas have assignments
+			if (lambda.getClass() != LambdaExpression.class)
+				return null;
+			Test[] tests = compileTests(lambda.operand, lambda.getItemVariable(), false);
+			return tests == null ? null : new CapabilityMatch(tests);
+		}
+		Test[] tests = compileTests(predicate, ExpressionFactory.THIS, true);
+		return tests == null ? null : new UnitMatch(tests);
+	}
+
+	private static Test[] compileTests(Expression expression, Variable variable, boolean unit) {
+		Expression[] terms = expression instanceof And ? ((And) expression).operands : new Expression[] {expression};
+		Test[] tests = new Test[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			tests[i] = compileTest(terms[i], variable, unit);
+			if (tests[i] == null)
+				return null;
+		}
+		return tests;
+	}
+
+	private static Test compileTest(Expression term, Variable variable, boolean unit) {
+		if (!(term instanceof Binary))
+			return null;
+		Binary binary = (Binary) term;
+		if (!(binary.lhs instanceof Member.DynamicMember) || !((Member) binary.lhs).operand.equals(variable))
+			return null;
+		if (!(binary.rhs instanceof Parameter || binary.rhs instanceof Literal))
+			return null;
+
+		String name = ((Member) binary.lhs).getName();
+		int member;
+		if (name.equals(InstallableUnit.MEMBER_VERSION))
+			member = MEMBER_VERSION;
+		else if (unit && name.equals(InstallableUnit.MEMBER_ID))
+			member = MEMBER_ID;
+		else if (!unit && name.equals(ProvidedCapability.MEMBER_NAME))
+			member = MEMBER_NAME;
+		else if (!unit && name.equals(ProvidedCapability.MEMBER_NAMESPACE))
+			member = MEMBER_NAMESPACE;
+		else
+			return null;
+
+		if (term instanceof Equals)
+			return new EqualsTest(member, name, binary.rhs, ((Equals) term).negate);
+		if (member == MEMBER_VERSION && term instanceof Compare)
+			return new CompareTest(member, name, binary.rhs, ((Compare) term).compareLess, ((Compare) term).equalOK);
+		if (member == MEMBER_VERSION && term.getClass() == Matches.class)
+			return new RangeTest(member, name, binary.rhs);
+		return null;
+	}
+
+	static boolean isMember(Expression expression, Variable variable, String name) {
+		return expression instanceof Member.DynamicMember && ((Member) expression).operand.equals(variable) && ((Member) expression).getName().equals(name);
+	}
+
+	// evaluates the tests in order, stopping at the first one that does not succeed, like And
+	static int testAll(Test[] tests, Object target, Object[] parameters) {
+		for (int i = 0; i < tests.length; i++) {
+			int result = tests[i].test(target, parameters);
+			if (result != TRUE)
+				return result;
+		}
+		return TRUE;
+	}
+
+	static Object getMember(Object target, int member, String memberName) {
+		if (target instanceof ProvidedCapability) {
+			ProvidedCapability capability = (ProvidedCapability) target;
+			switch (member) {
+				case MEMBER_NAME :
+					return capability.getName();
+				case MEMBER_NAMESPACE :
+					return capability.getNamespace();
+				case MEMBER_VERSION :
+					return capability.getVersion();
+			}
+			return NO_VALUE;
+		}
+		if (target instanceof InstallableUnit) {
+			InstallableUnit unit = (InstallableUnit) target;
+			switch (member) {
+				case MEMBER_ID :
+					return unit.getId();
+				case MEMBER_VERSION :
+					return unit.getVersion();
+			}
+			return NO_VALUE;
+		}
+		// the interpreter also uses the member provider, other objects are accessed through reflection
+		if (target instanceof IMemberProvider)
+			return ((IMemberProvider) target).getMember(memberName);
+		return NO_VALUE;
+	}
+}
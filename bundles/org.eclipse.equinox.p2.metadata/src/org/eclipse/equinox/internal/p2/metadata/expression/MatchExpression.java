@@ -23,6 +23,10 @@ public class MatchExpression<T> extends Unary implements IMatchExpression<T> {
 	private static final Object[] noParams = new Object[0];
 	private final Object[] parameters;
 
+	// the compiled form of the predicate, created on the first match
+	private transient ExpressionCompiler.CompiledMatch compiled;
+	private transient boolean compileAttempted;
+
 	MatchExpression(Expression expression, Object[] parameters) {
 		super(expression);
 		this.parameters = parameters == null ? noParams : parameters;
@@ -73,12 +77,35 @@ public class MatchExpression<T> extends Unary implements IMatchExpression<T> {
 	}
 
 	public boolean isMatch(IEvaluationContext context, T value) {
+		// the compiled form uses the parameters of this expression, other contexts are interpreted
+		if (context instanceof EvaluationContext && ((EvaluationContext) context).getParameters() == parameters) {
+			Boolean result = compiledMatch(value);
+			if (result != null)
+				return result.booleanValue();
+		}
+		return interpret(context, value);
+	}
+
+	public boolean isMatch(T value) {
+		Boolean result = compiledMatch(value);
+		if (result != null)
+			return result.booleanValue();
+		return interpret(createContext(), value);
+	}
+
+	private boolean interpret(IEvaluationContext context, T value) {
 		ExpressionFactory.THIS.setValue(context, value);
 		return Boolean.TRUE == operand.evaluate(context);
 	}
 
-	public boolean isMatch(T value) {
-		return isMatch(createContext(), value);
+	private Boolean compiledMatch(T value) {
+		// concurrent compilations are harmless, a thread that does not see the compiled form interprets the expression
+		if (!compileAttempted) {
+			compiled = ExpressionCompiler.compile(operand);
+			compileAttempted = true;
+		}
+		ExpressionCompiler.CompiledMatch match = compiled;
+		return match == null ? null : match.match(value, parameters);
 	}
 
 	public void toLDAPString(StringBuffer bld) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010 Cloudsmith Inc. and others.
+ * Copyright (c) 2010, 2012 Cloudsmith Inc. and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,20 +18,107 @@ import org.eclipse.equinox.p2.metadata.*;
 import org.eclipse.equinox.p2.metadata.expression.*;
 
 /**
- * An in-memory implementation of a CapabilityIndex based on a Map.
+ * An in-memory implementation of a CapabilityIndex based on a Map. In addition to the
+ * capability name, the index keeps the capabilities keyed by namespace and name, sorted
+ * by version, so that simple requirements are answered by a binary search on their range.
+ * Subclasses may look up the providers on their own by overriding {@link #getProviders(String)}
+ * and {@link #getProviders(String, String, VersionRange)}.
  */
 @SuppressWarnings("unchecked")
 public class CapabilityIndex extends Index<IInstallableUnit> {
 
+	/**
+	 * The providers of a capability with a given namespace and name, sorted by the version
+	 * of the provided capability.
+	 */
+	private static class VersionedProviders {
+		final Version[] versions;
+		final IInstallableUnit[] ius;
+
+		VersionedProviders(List<Object[]> entries) {
+			Collections.sort(entries, ENTRY_COMPARATOR);
+			int top = entries.size();
+			versions = new Version[top];
+			ius = new IInstallableUnit[top];
+			for (int idx = 0; idx < top; ++idx) {
+				Object[] entry = entries.get(idx);
+				versions[idx] = (Version) entry[0];
+				ius[idx] = (IInstallableUnit) entry[1];
+			}
+		}
+
+		// Index of the first version that is greater or equal to the given version
+		private int lowerBound(Version version) {
+			return search(version, 0, false);
+		}
+
+		// Index of the first version from the given index on that is greater than the given version
+		private int upperBound(Version version, int low) {
+			return search(version, low, true);
+		}
+
+		private int search(Version version, int low, boolean skipEqual) {
+			int high = versions.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				int cmp = versions[mid].compareTo(version);
+				if (cmp < 0 || (skipEqual && cmp == 0))
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+
+		Collection<IInstallableUnit> getProviders(VersionRange range) {
+			int start = 0;
+			int top = versions.length;
+			if (range != null && !VersionRange.emptyRange.equals(range)) {
+				// The bounds are always considered inclusive, the requirement itself
+				// is still evaluated against each candidate.
+				start = lowerBound(range.getMinimum());
+				Version max = range.getMaximum();
+				if (!Version.MAX_VERSION.equals(max))
+					top = upperBound(max, start);
+			}
+			if (start >= top)
+				return CollectionUtils.<IInstallableUnit> emptySet();
+			if (top - start == 1)
+				return Collections.singleton(ius[start]);
+			// An IU may provide several versions of the same capability
+			LinkedHashSet<IInstallableUnit> result = new LinkedHashSet<IInstallableUnit>(top - start);
+			for (int idx = start; idx < top; ++idx)
+				result.add(ius[idx]);
+			return result;
+		}
+	}
+
+	static final Comparator<Object[]> ENTRY_COMPARATOR = new Comparator<Object[]>() {
+		public int compare(Object[] o1, Object[] o2) {
+			return ((Version) o1[0]).compareTo((Version) o2[0]);
+		}
+	};
+
 	private final Map<String, Object> capabilityMap;
+	private final Map<String, Map<String, VersionedProviders>> namespaceMap;
+
+	/**
+	 * Creates an index that does not hold any provider, for subclasses that look up the providers on their own.
+	 */
+	protected CapabilityIndex() {
+		this.capabilityMap = null;
+		this.namespaceMap = null;
+	}
 
 	public CapabilityIndex(Iterator<IInstallableUnit> itor) {
 		HashMap<String, Object> index = new HashMap<String, Object>(300);
+		HashMap<String, Map<String, List<Object[]>>> versionedEntries = new HashMap<String, Map<String, List<Object[]>>>();
 		while (itor.hasNext()) {
 			IInstallableUnit iu = itor.next();
 			Collection<IProvidedCapability> pcs = iu.getProvidedCapabilities();
 			for (IProvidedCapability pc : pcs) {
 				String name = pc.getName();
+				addVersionedEntry(versionedEntries, pc, iu);
 				Object prev = index.put(name, iu);
 				if (prev == null || prev == iu)
 					continue;
@@ -47,6 +134,70 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 			}
 		}
 		this.capabilityMap = index;
+
+		HashMap<String, Map<String, VersionedProviders>> nsIndex = new HashMap<String, Map<String, VersionedProviders>>(versionedEntries.size());
+		for (Map.Entry<String, Map<String, List<Object[]>>> nsEntry : versionedEntries.entrySet()) {
+			Map<String, List<Object[]>> names = nsEntry.getValue();
+			HashMap<String, VersionedProviders> providers = new HashMap<String, VersionedProviders>(names.size());
+			for (Map.Entry<String, List<Object[]>> nameEntry : names.entrySet())
+				providers.put(nameEntry.getKey(), new VersionedProviders(nameEntry.getValue()));
+			nsIndex.put(nsEntry.getKey(), providers);
+		}
+		this.namespaceMap = nsIndex;
+	}
+
+	private static void addVersionedEntry(Map<String, Map<String, List<Object[]>>> versionedEntries, IProvidedCapability pc, IInstallableUnit iu) {
+		Map<String, List<Object[]>> names = versionedEntries.get(pc.getNamespace());
+		if (names == null) {
+			names = new HashMap<String, List<Object[]>>();
+			versionedEntries.put(pc.getNamespace(), names);
+		}
+		List<Object[]> entries = names.get(pc.getName());
+		if (entries == null) {
+			entries = new ArrayList<Object[]>(2);
+			names.put(pc.getName(), entries);
+		}
+		entries.add(new Object[] {pc.getVersion(), iu});
+	}
+
+	/**
+	 * Returns the IUs that provide a capability in the given namespace with the given name and a
+	 * version within the given range. The range bounds are treated as inclusive so the result
+	 * may contain IUs that do not match an exclusive bound.
+	 * @param namespace The namespace of the capability
+	 * @param name The name of the capability
+	 * @param range The range of versions or <code>null</code> for all versions
+	 * @return The providing IUs, never <code>null</code>
+	 */
+	public Collection<IInstallableUnit> getProviders(String namespace, String name, VersionRange range) {
+		Map<String, VersionedProviders> names = namespaceMap.get(namespace);
+		if (names == null)
+			return CollectionUtils.<IInstallableUnit> emptySet();
+		VersionedProviders providers = names.get(name);
+		if (providers == null)
+			return CollectionUtils.<IInstallableUnit> emptySet();
+		return providers.getProviders(range);
+	}
+
+	/**
+	 * Returns the IUs that provide a capability with the given name, in any namespace.
+	 * @param name The name of the capability
+	 * @return The providing IUs, never <code>null</code>
+	 */
+	protected Collection<IInstallableUnit> getProviders(String name) {
+		Object v = capabilityMap.get(name);
+		if (v == null)
+			return CollectionUtils.<IInstallableUnit> emptySet();
+		if (v instanceof IInstallableUnit)
+			return Collections.singleton((IInstallableUnit) v);
+		return (Collection<IInstallableUnit>) v;
+	}
+
+	// Returns the candidates for a simple requirement or null if the requirement is not simple
+	private Collection<IInstallableUnit> getSimpleRequirementCandidates(IMatchExpression<IInstallableUnit> rm) {
+		if (!RequiredCapability.isSimpleRequirement(rm))
+			return null;
+		return getProviders(RequiredCapability.extractNamespace(rm), RequiredCapability.extractName(rm), RequiredCapability.extractRange(rm));
 	}
 
 	private Object getRequirementIDs(IEvaluationContext ctx, IExpression requirement, Object queriedKeys) {
@@ -122,6 +273,13 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 		//
 		IExpression expr = booleanExpr;
 		int type = booleanExpr.getExpressionType();
+		if (variable == ExpressionFactory.THIS && booleanExpr instanceof IMatchExpression<?>) {
+			// The query is using the match expression of a requirement as its boolean expression.
+			// This is how the slicer and the projector find the IUs that satisfy a requirement.
+			Collection<IInstallableUnit> candidates = getSimpleRequirementCandidates((IMatchExpression<IInstallableUnit>) booleanExpr);
+			if (candidates != null)
+				return candidates.iterator();
+		}
 		if (type == 0) {
 			// wrapper
 			expr = ((Unary) booleanExpr).operand;
@@ -185,7 +343,10 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 				// index usage query
 				//
 				IMatchExpression<IInstallableUnit> rm = ((IRequirement) rhsObj).getMatches();
-				queriedKeys = RequiredCapability.isSimpleRequirement(rm) ? concatenateUnique(queriedKeys, rm.getParameters()[0]) : getRequirementIDs(rm.createContext(), ((Unary) rm).operand, queriedKeys);
+				Collection<IInstallableUnit> candidates = getSimpleRequirementCandidates(rm);
+				if (candidates != null)
+					return candidates.iterator();
+				queriedKeys = getRequirementIDs(rm.createContext(), ((Unary) rm).operand, queriedKeys);
 				break;
 
 			default :
@@ -204,26 +365,11 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 		} else if (queriedKeys instanceof Collection<?>) {
 			matchingIUs = new HashSet<IInstallableUnit>();
 			for (Object key : (Collection<Object>) queriedKeys)
-				collectMatchingIUs((String) key, matchingIUs);
-		} else {
-			Object v = capabilityMap.get(queriedKeys);
-			if (v == null)
-				matchingIUs = CollectionUtils.<IInstallableUnit> emptySet();
-			else if (v instanceof IInstallableUnit)
-				matchingIUs = Collections.singleton((IInstallableUnit) v);
-			else
-				matchingIUs = (Collection<IInstallableUnit>) v;
-		}
-		return matchingIUs.iterator();
-	}
-
-	private void collectMatchingIUs(String name, Collection<IInstallableUnit> collector) {
-		Object v = capabilityMap.get(name);
-		if (v == null)
-			return;
-		if (v instanceof IInstallableUnit)
-			collector.add((IInstallableUnit) v);
+				matchingIUs.addAll(getProviders((String) key));
+		} else if (queriedKeys instanceof String)
+			matchingIUs = getProviders((String) queriedKeys);
 		else
-			collector.addAll((Collection<IInstallableUnit>) v);
+			matchingIUs = CollectionUtils.<IInstallableUnit> emptySet();
+		return matchingIUs.iterator();
 	}
 }
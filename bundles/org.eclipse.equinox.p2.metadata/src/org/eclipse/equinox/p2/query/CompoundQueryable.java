@@ -10,10 +10,11 @@
 package org.eclipse.equinox.p2.query;
 
 import java.util.*;
-import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.CollectionUtils;
 import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
-import org.eclipse.equinox.internal.p2.metadata.expression.CompoundIterator;
+import org.eclipse.equinox.internal.p2.metadata.MetadataActivator;
+import org.eclipse.equinox.internal.p2.metadata.expression.*;
 import org.eclipse.equinox.internal.p2.metadata.index.CompoundIndex;
 import org.eclipse.equinox.internal.p2.metadata.index.IndexProvider;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
@@ -22,6 +23,7 @@ import org.eclipse.equinox.p2.metadata.expression.IEvaluationContext;
 import org.eclipse.equinox.p2.metadata.expression.IExpression;
 import org.eclipse.equinox.p2.metadata.index.IIndex;
 import org.eclipse.equinox.p2.metadata.index.IIndexProvider;
+import org.osgi.framework.BundleContext;
 
 /**
  * A queryable that holds a number of other IQueryables and provides
@@ -42,6 +44,105 @@ public final class CompoundQueryable<T> extends IndexProvider<T> {
 		}
 	}
 
+	/**
+	 * System property giving the number of threads used to query the members of a compound queryable.
+	 * The value "true" uses one thread per available processor. The members are queried one after the
+	 * other by default.
+	 */
+	private static final String PROP_QUERY_THREADS = "eclipse.p2.query.threads"; //$NON-NLS-1$
+
+	/**
+	 * Queries the members on several threads and keeps the results of each member in member order.
+	 */
+	private class MemberQueries implements Runnable {
+		private final IQuery<T> query;
+		private final List<T>[] results;
+		private int next = 0;
+		private int completed = 0;
+		private boolean canceled = false;
+		private Throwable failure;
+
+		@SuppressWarnings("unchecked")
+		MemberQueries(IQuery<T> query) {
+			this.query = query;
+			this.results = new List[queryables.length];
+		}
+
+		public void run() {
+			for (int idx = nextMember(); idx >= 0; idx = nextMember()) {
+				try {
+					IQueryResult<T> result = queryables[idx].query(getMemberQuery(query), new NullProgressMonitor());
+					// results can be lazy, iterating them here is what does the work
+					ArrayList<T> list = new ArrayList<T>();
+					for (Iterator<T> iter = result.iterator(); iter.hasNext();)
+						list.add(iter.next());
+					completed(idx, list);
+				} catch (RuntimeException e) {
+					failed(e);
+				} catch (Error e) {
+					failed(e);
+				}
+			}
+		}
+
+		private synchronized int nextMember() {
+			if (canceled || failure != null || next == results.length)
+				return -1;
+			return next++;
+		}
+
+		private synchronized void completed(int idx, List<T> result) {
+			results[idx] = result;
+			completed++;
+		}
+
+		private synchronized void failed(Throwable e) {
+			if (failure == null)
+				failure = e;
+		}
+
+		synchronized void cancel() {
+			canceled = true;
+		}
+
+		synchronized int getCompleted() {
+			return completed;
+		}
+
+		synchronized List<T>[] getResults() {
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
+			if (canceled)
+				throw new OperationCanceledException();
+			return results;
+		}
+	}
+
+	/**
+	 * The results of all members, queried again to merge them. Managed properties still come from the members.
+	 */
+	private class MergedResults extends IndexProvider<T> {
+		private final List<T> elements;
+
+		MergedResults(List<T> elements) {
+			this.elements = elements;
+		}
+
+		public Iterator<T> everything() {
+			return elements.iterator();
+		}
+
+		public IIndex<T> getIndex(String memberName) {
+			return null;
+		}
+
+		public Object getManagedProperty(Object client, String memberName, Object key) {
+			return CompoundQueryable.this.getManagedProperty(client, memberName, key);
+		}
+	}
+
 	private IQueryable<T>[] queryables;
 
 	public CompoundQueryable(IQueryable<T>[] queryables) {
@@ -105,6 +206,110 @@ public final class CompoundQueryable<T> extends IndexProvider<T> {
 		return indexes.size() == 1 ? indexes.get(0) : new CompoundIndex<T>(indexes);
 	}
 
+	/**
+	 * Performs the query. When the <code>eclipse.p2.query.threads</code> system property allows it, match queries and
+	 * queries selecting everything, possibly restricted to the latest units or to a limit, are performed on all members
+	 * concurrently and their results merged. Other queries are performed over the combined members.
+	 */
+	public IQueryResult<T> query(IQuery<T> query, IProgressMonitor monitor) {
+		if (queryables.length > 1 && isDistributive(query)) {
+			int threads = getQueryThreads();
+			if (threads > 1)
+				return parallelQuery(query, Math.min(threads, queryables.length), monitor);
+		}
+		return super.query(query, monitor);
+	}
+
+	private IQueryResult<T> parallelQuery(IQuery<T> query, int threads, IProgressMonitor monitor) {
+		if (monitor == null)
+			monitor = new NullProgressMonitor();
+		monitor.beginTask(null, queryables.length);
+		try {
+			MemberQueries memberQueries = new MemberQueries(query);
+			Thread[] workers = new Thread[threads];
+			for (int i = 0; i < threads; i++) {
+				workers[i] = new Thread(memberQueries, "Compound query " + i); //$NON-NLS-1$
+				workers[i].setDaemon(true);
+				workers[i].start();
+			}
+			// progress monitors are not thread safe, report from this thread while waiting
+			int reported = 0;
+			for (int i = 0; i < threads; i++) {
+				while (workers[i].isAlive()) {
+					try {
+						workers[i].join(100);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						memberQueries.cancel();
+						break;
+					}
+					if (monitor.isCanceled())
+						memberQueries.cancel();
+					int completed = memberQueries.getCompleted();
+					monitor.worked(completed - reported);
+					reported = completed;
+				}
+			}
+			monitor.worked(memberQueries.getCompleted() - reported);
+			return merge(query, memberQueries.getResults());
+		} finally {
+			monitor.done();
+		}
+	}
+
+	private IQueryResult<T> merge(IQuery<T> query, List<T>[] results) {
+		if (query instanceof ExpressionMatchQuery<?>) {
+			HashSet<T> union = new HashSet<T>();
+			for (List<T> result : results)
+				union.addAll(result);
+			return union.isEmpty() ? Collector.<T> emptyCollector() : new CollectionResult<T>(union);
+		}
+
+		// evaluating the query again over the member results gives the latest units or the limit over all members
+		int size = 0;
+		for (List<T> result : results)
+			size += result.size();
+		ArrayList<T> all = new ArrayList<T>(size);
+		for (List<T> result : results)
+			all.addAll(result);
+		return ((ExpressionQuery<T>) query).perform(new MergedResults(all));
+	}
+
+	private static <T> boolean isDistributive(IQuery<T> query) {
+		// subclasses can hold state or override perform
+		if (query.getClass() == ExpressionMatchQuery.class)
+			return true;
+		if (query.getClass() == ExpressionQuery.class) {
+			IExpression expression = query.getExpression();
+			return expression instanceof ContextExpression<?> && ((ContextExpression<?>) expression).isDistributive();
+		}
+		return false;
+	}
+
+	private static <T> IQuery<T> getMemberQuery(IQuery<T> query) {
+		if (query instanceof ExpressionMatchQuery<?>) {
+			// the evaluation context of a match query is not thread safe, each member gets its own
+			ExpressionMatchQuery<T> matchQuery = (ExpressionMatchQuery<T>) query;
+			MatchExpression<T> expression = (MatchExpression<T>) matchQuery.getExpression();
+			return new ExpressionMatchQuery<T>(matchQuery.getMatchingClass(), expression.operand, expression.getParameters());
+		}
+		return query;
+	}
+
+	private static int getQueryThreads() {
+		BundleContext context = MetadataActivator.getContext();
+		String value = context == null ? System.getProperty(PROP_QUERY_THREADS) : context.getProperty(PROP_QUERY_THREADS);
+		if (value == null)
+			return 1;
+		if (Boolean.TRUE.toString().equalsIgnoreCase(value))
+			return Runtime.getRuntime().availableProcessors();
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
 	public Iterator<T> everything() {
 		if (queryables.length == 0)
 			return CollectionUtils.<T> emptySet().iterator();
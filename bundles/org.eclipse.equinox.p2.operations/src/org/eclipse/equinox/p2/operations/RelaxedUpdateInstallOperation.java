@@ -44,11 +44,13 @@ public class RelaxedUpdateInstallOperation extends ProfileChangeOperation {
 		request = (ProfileChangeRequest) plan.createChangeRequest(prof);
 		Collection<IRequirement> limitingRequirements = new ArrayList<IRequirement>();
 
+		//find all the potential updates for all the roots at once
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> allUpdates = plan.updatesFor(tmpRoots, context, null);
 		for (Iterator<IInstallableUnit> iterator = allRoots.query(QueryUtil.ALL_UNITS, null).iterator(); iterator.hasNext();) {
 			IInstallableUnit currentlyInstalled = iterator.next();
 
-			//find all the potential updates for the currentlyInstalled iu
-			IQueryResult<IInstallableUnit> updatesAvailable = plan.updatesFor(currentlyInstalled, context, null);
+			//the potential updates for the currentlyInstalled iu
+			IQueryResult<IInstallableUnit> updatesAvailable = allUpdates.get(currentlyInstalled);
 			for (Iterator<IInstallableUnit> iterator2 = updatesAvailable.iterator(); iterator2.hasNext();) {
 				IInstallableUnit update = iterator2.next();
 				request.add(update);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2010 IBM Corporation and others.
+ * Copyright (c) 2009, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -141,24 +141,46 @@ public class UpdateOperation extends ProfileChangeOperation {
 		} else {
 			// We must consult the planner
 			IQueryResult<IInstallableUnit> replacements = session.getPlanner().updatesFor(iu, context, monitor);
-			updates = new ArrayList<Update>();
-			for (Iterator<IInstallableUnit> replacementIterator = replacements.iterator(); replacementIterator.hasNext();) {
-				// see https://bugs.eclipse.org/bugs/show_bug.cgi?id=273967
-				// In the case of patches, it's possible that a patch is returned as an available update
-				// even though it is already installed, because we are querying each IU for updates individually.
-				// For now, we ignore any proposed update that is already installed.
-				IInstallableUnit replacementIU = replacementIterator.next();
-				IQueryResult<IInstallableUnit> alreadyInstalled = profile.query(QueryUtil.createIUQuery(replacementIU), null);
-				if (alreadyInstalled.isEmpty()) {
-					Update update = new Update(iu, replacementIU);
-					updates.add(update);
-				}
-			}
+			updates = toUpdates(iu, replacements, profile);
 			possibleUpdatesByIU.put(iu, updates);
 		}
 		return updates.toArray(new Update[updates.size()]);
 	}
 
+	/*
+	 * Looks up the updates of all the IUs that are not in the cache yet with a single
+	 * planner request, rather than consulting the planner for each IU.
+	 */
+	private void cacheUpdatesFor(Collection<IInstallableUnit> ius, IProfile profile, IProgressMonitor monitor) {
+		List<IInstallableUnit> toLookUp = new ArrayList<IInstallableUnit>();
+		for (IInstallableUnit iu : ius) {
+			if (!possibleUpdatesByIU.containsKey(iu))
+				toLookUp.add(iu);
+		}
+		if (toLookUp.isEmpty())
+			return;
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> replacements = session.getPlanner().updatesFor(toLookUp, context, monitor);
+		for (IInstallableUnit iu : toLookUp)
+			possibleUpdatesByIU.put(iu, toUpdates(iu, replacements.get(iu), profile));
+	}
+
+	private List<Update> toUpdates(IInstallableUnit iu, IQueryResult<IInstallableUnit> replacements, IProfile profile) {
+		List<Update> updates = new ArrayList<Update>();
+		for (Iterator<IInstallableUnit> replacementIterator = replacements.iterator(); replacementIterator.hasNext();) {
+			// see https://bugs.eclipse.org/bugs/show_bug.cgi?id=273967
+			// In the case of patches, it's possible that a patch is returned as an available update
+			// even though it is already installed, because we are querying each IU for updates individually.
+			// For now, we ignore any proposed update that is already installed.
+			IInstallableUnit replacementIU = replacementIterator.next();
+			IQueryResult<IInstallableUnit> alreadyInstalled = profile.query(QueryUtil.createIUQuery(replacementIU), null);
+			if (alreadyInstalled.isEmpty()) {
+				Update update = new Update(iu, replacementIU);
+				updates.add(update);
+			}
+		}
+		return updates;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.equinox.p2.operations.ProfileChangeOperation#computeProfileChangeRequest(org.eclipse.core.runtime.IProgressMonitor)
 	 */
@@ -175,8 +197,9 @@ public class UpdateOperation extends ProfileChangeOperation {
 			return;
 
 		SubMonitor sub = SubMonitor.convert(monitor, Messages.UpdateOperation_ProfileChangeRequestProgress, 100 * iusToUpdate.size());
+		cacheUpdatesFor(iusToUpdate, profile, sub.newChild(90 * iusToUpdate.size()));
 		for (IInstallableUnit iuToUpdate : iusToUpdate) {
-			SubMonitor iuMon = sub.newChild(100);
+			SubMonitor iuMon = sub.newChild(10);
 			Update[] updates = updatesFor(iuToUpdate, profile, iuMon);
 			for (int j = 0; j < updates.length; j++) {
 				toBeUpdated.add(iuToUpdate);
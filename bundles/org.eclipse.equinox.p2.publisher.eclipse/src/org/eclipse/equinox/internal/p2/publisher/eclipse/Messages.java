@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2011 IBM Corporation and others.
+ * Copyright (c) 2005, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,6 +22,7 @@ public class Messages extends NLS {
 	public static String exception_featureParse;
 	public static String exception_productParse;
 	public static String exception_invalidProductContentType;
+	public static String exception_invalidThreads;
 
 	// feature parsing
 	public static String feature_parse_invalidIdOrVersion;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2011 Code 9 and others. All rights reserved. This
+ * Copyright (c) 2008, 2012 Code 9 and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -59,6 +59,11 @@ import org.osgi.service.packageadmin.PackageAdmin;
  * <li>{@link IPropertyAdvice}</li>
  * <li>{@link ITouchpointAdvice}</li>
  * </ul>
+ * <p>
+ * The manifests of the bundles can be loaded and the bundle IUs created on several threads,
+ * see {@link #setThreads(int)}. The IUs and artifacts are published in the order of the bundles
+ * on the thread that performs the action, so the result is the same whatever the number of threads.
+ * </p>
  */
 public class BundlesAction extends AbstractPublisherAction {
 
@@ -95,6 +100,8 @@ public class BundlesAction extends AbstractPublisherAction {
 	private static final String FEATURE_FILENAME_DESCRIPTOR = "feature.xml"; //$NON-NLS-1$
 	private static final String PLUGIN_FILENAME_DESCRIPTOR = "plugin.xml"; //$NON-NLS-1$
 	private static final String FRAGMENT_FILENAME_DESCRIPTOR = "fragment.xml"; //$NON-NLS-1$
+	// the plug-in converter keeps the state of the conversion in progress
+	private static final Object converterLock = new Object();
 	public static final String BUNDLE_SHAPE = "Eclipse-BundleShape"; //$NON-NLS-1$
 
 	/**
@@ -115,6 +122,73 @@ public class BundlesAction extends AbstractPublisherAction {
 
 	private File[] locations;
 	private BundleDescription[] bundles;
+	private int threads = 1;
+
+	/**
+	 * Runs a task for each index of a range on the calling thread and on up to <code>threads - 1</code>
+	 * other threads. The first exception thrown by the task is rethrown on the calling thread.
+	 */
+	private abstract class ConcurrentLoop implements Runnable {
+		private final int count;
+		private final IProgressMonitor monitor;
+		private int next = 0;
+		private RuntimeException failure = null;
+
+		ConcurrentLoop(int count, IProgressMonitor monitor) {
+			this.count = count;
+			this.monitor = monitor;
+		}
+
+		abstract void run(int index);
+
+		public void run() {
+			while (true) {
+				int index;
+				synchronized (this) {
+					if (failure != null || next == count || monitor.isCanceled())
+						return;
+					index = next++;
+				}
+				try {
+					run(index);
+				} catch (RuntimeException e) {
+					synchronized (this) {
+						if (failure == null)
+							failure = e;
+					}
+				}
+			}
+		}
+
+		void execute() {
+			Thread[] workers = new Thread[Math.max(0, Math.min(threads, count) - 1)];
+			for (int i = 0; i < workers.length; i++) {
+				workers[i] = new Thread(this, "Bundles publisher " + i); //$NON-NLS-1$
+				workers[i].setDaemon(true);
+				workers[i].start();
+			}
+			// the calling thread runs the task too
+			run();
+			boolean interrupted = false;
+			for (int i = 0; i < workers.length; i++) {
+				while (workers[i].isAlive()) {
+					try {
+						workers[i].join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			synchronized (this) {
+				if (failure != null)
+					throw failure;
+				if (next < count)
+					throw new OperationCanceledException();
+			}
+		}
+	}
 
 	public static IArtifactKey createBundleArtifactKey(String bsn, String version) {
 		return new ArtifactKey(OSGI_BUNDLE_CLASSIFIER, bsn, Version.parseVersion(version));
@@ -523,7 +597,9 @@ public class BundlesAction extends AbstractPublisherAction {
 				LogHelper.log(new Status(IStatus.ERROR, Activator.ID, message));
 				return null;
 			}
-			return converter.convertManifest(bundleLocation, false, null, true, null);
+			synchronized (converterLock) {
+				return converter.convertManifest(bundleLocation, false, null, true, null);
+			}
 		} catch (PluginConversionException convertException) {
 			// only log the exception if we had a plugin.xml or fragment.xml and we failed conversion
 			if (bundleLocation.getName().equals(FEATURE_FILENAME_DESCRIPTOR))
@@ -657,6 +733,16 @@ public class BundlesAction extends AbstractPublisherAction {
 		this.bundles = bundles;
 	}
 
+	/**
+	 * Sets the number of threads that load the bundle manifests, compute the artifact checksums
+	 * and create the bundle IUs. The default is one thread, the thread that performs the action.
+	 * @param threads the number of threads
+	 * @since 1.1
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
 	@Override
 	public IStatus perform(IPublisherInfo publisherInfo, IPublisherResult results, IProgressMonitor monitor) {
 		if (bundles == null && locations == null)
@@ -740,6 +826,10 @@ public class BundlesAction extends AbstractPublisherAction {
 	}
 
 	protected void generateBundleIUs(BundleDescription[] bundleDescriptions, IPublisherInfo info, IPublisherResult result, IProgressMonitor monitor) {
+		if (threads > 1) {
+			generateBundleIUsConcurrently(bundleDescriptions, info, result, monitor);
+			return;
+		}
 
 		// This assumes that hosts are processed before fragments because for each fragment the host
 		// is queried for the strings that should be translated.
@@ -748,7 +838,7 @@ public class BundlesAction extends AbstractPublisherAction {
 				throw new OperationCanceledException();
 
 			BundleDescription bd = bundleDescriptions[i];
-			if (bd != null && bd.getSymbolicName() != null && bd.getVersion() != null) {
+			if (isPublishable(bd)) {
 				//First check to see if there is already an IU around for this
 				IInstallableUnit bundleIU = queryForIU(result, bundleDescriptions[i].getSymbolicName(), PublisherHelper.fromOSGiVersion(bd.getVersion()));
 				IArtifactKey key = createBundleArtifactKey(bd.getSymbolicName(), bd.getVersion().toString());
@@ -760,43 +850,105 @@ public class BundlesAction extends AbstractPublisherAction {
 
 				File location = new File(bd.getLocation());
 				IArtifactDescriptor ad = PublisherHelper.createArtifactDescriptor(info, key, location);
-				processArtifactPropertiesAdvice(bundleIU, ad, info);
+				publishBundle(bd, bundleIU, ad, info, result);
+			}
+		}
+	}
 
-				// Publish according to the shape on disk
-				File bundleLocation = new File(bd.getLocation());
-				if (bundleLocation.isDirectory())
-					publishArtifact(ad, bundleLocation, bundleLocation.listFiles(), info);
-				else
-					publishArtifact(ad, bundleLocation, info);
-
-				IInstallableUnit fragment = null;
-				if (isFragment(bd)) {
-					// TODO: Need a test case for multiple hosts
-					String hostId = bd.getHost().getName();
-					VersionRange hostVersionRange = PublisherHelper.fromOSGiVersionRange(bd.getHost().getVersionRange());
-					IQueryResult<IInstallableUnit> hosts = queryForIUs(result, hostId, hostVersionRange);
-
-					for (Iterator<IInstallableUnit> itor = hosts.iterator(); itor.hasNext();) {
-						IInstallableUnit host = itor.next();
-						String fragmentId = makeHostLocalizationFragmentId(bd.getSymbolicName());
-						fragment = queryForIU(result, fragmentId, PublisherHelper.fromOSGiVersion(bd.getVersion()));
-						if (fragment == null) {
-							String[] externalizedStrings = getExternalizedStrings(host);
-							fragment = createHostLocalizationFragment(bundleIU, bd, hostId, externalizedStrings);
-						}
-					}
+	/*
+	 * Creates the bundle IUs and artifact descriptors on several threads, then publishes them
+	 * in the order of the bundles as the sequential loop does.
+	 */
+	private void generateBundleIUsConcurrently(final BundleDescription[] bundleDescriptions, final IPublisherInfo info, IPublisherResult result, IProgressMonitor monitor) {
+		// The advice files are added in the order of the bundles, before any IU is created. The advice
+		// of a file only applies to its own bundle, so each IU gets the advice it gets sequentially.
+		final boolean[] create = new boolean[bundleDescriptions.length];
+		Set<IVersionedId> seen = new HashSet<IVersionedId>();
+		for (int i = 0; i < bundleDescriptions.length; i++) {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+			BundleDescription bd = bundleDescriptions[i];
+			if (!isPublishable(bd))
+				continue;
+			Version version = PublisherHelper.fromOSGiVersion(bd.getVersion());
+			if (seen.add(new VersionedId(bd.getSymbolicName(), version)) && queryForIU(result, bd.getSymbolicName(), version) == null) {
+				createAdviceFileAdvice(bd, info);
+				create[i] = true;
+			}
+		}
 
-				}
+		final IInstallableUnit[] bundleIUs = new IInstallableUnit[bundleDescriptions.length];
+		final IArtifactDescriptor[] descriptors = new IArtifactDescriptor[bundleDescriptions.length];
+		new ConcurrentLoop(bundleDescriptions.length, monitor) {
+			void run(int index) {
+				BundleDescription bd = bundleDescriptions[index];
+				if (!isPublishable(bd))
+					return;
+				IArtifactKey key = createBundleArtifactKey(bd.getSymbolicName(), bd.getVersion().toString());
+				if (create[index])
+					bundleIUs[index] = doCreateBundleIU(bd, key, info);
+				descriptors[index] = PublisherHelper.createArtifactDescriptor(info, key, new File(bd.getLocation()));
+			}
+		}.execute();
 
-				result.addIU(bundleIU, IPublisherResult.ROOT);
-				if (fragment != null)
-					result.addIU(fragment, IPublisherResult.NON_ROOT);
+		for (int i = 0; i < bundleDescriptions.length; i++) {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+			BundleDescription bd = bundleDescriptions[i];
+			if (!isPublishable(bd))
+				continue;
+			// a bundle with the same id and version may have been published meanwhile
+			IInstallableUnit bundleIU = queryForIU(result, bd.getSymbolicName(), PublisherHelper.fromOSGiVersion(bd.getVersion()));
+			if (bundleIU == null)
+				bundleIU = bundleIUs[i] != null ? bundleIUs[i] : doCreateBundleIU(bd, descriptors[i].getArtifactKey(), info);
+			publishBundle(bd, bundleIU, descriptors[i], info, result);
+		}
+	}
+
+	private static boolean isPublishable(BundleDescription bd) {
+		return bd != null && bd.getSymbolicName() != null && bd.getVersion() != null;
+	}
+
+	/*
+	 * Publishes the artifact of the given bundle and adds its IU to the result, along with the
+	 * localization fragment of a fragment bundle and the additional IUs of the advice.
+	 */
+	private void publishBundle(BundleDescription bd, IInstallableUnit bundleIU, IArtifactDescriptor ad, IPublisherInfo info, IPublisherResult result) {
+		processArtifactPropertiesAdvice(bundleIU, ad, info);
 
-				InstallableUnitDescription[] others = processAdditionalInstallableUnitsAdvice(bundleIU, info);
-				for (int iuIndex = 0; others != null && iuIndex < others.length; iuIndex++) {
-					result.addIU(MetadataFactory.createInstallableUnit(others[iuIndex]), IPublisherResult.ROOT);
+		// Publish according to the shape on disk
+		File bundleLocation = new File(bd.getLocation());
+		if (bundleLocation.isDirectory())
+			publishArtifact(ad, bundleLocation, bundleLocation.listFiles(), info);
+		else
+			publishArtifact(ad, bundleLocation, info);
+
+		IInstallableUnit fragment = null;
+		if (isFragment(bd)) {
+			// TODO: Need a test case for multiple hosts
+			String hostId = bd.getHost().getName();
+			VersionRange hostVersionRange = PublisherHelper.fromOSGiVersionRange(bd.getHost().getVersionRange());
+			IQueryResult<IInstallableUnit> hosts = queryForIUs(result, hostId, hostVersionRange);
+
+			for (Iterator<IInstallableUnit> itor = hosts.iterator(); itor.hasNext();) {
+				IInstallableUnit host = itor.next();
+				String fragmentId = makeHostLocalizationFragmentId(bd.getSymbolicName());
+				fragment = queryForIU(result, fragmentId, PublisherHelper.fromOSGiVersion(bd.getVersion()));
+				if (fragment == null) {
+					String[] externalizedStrings = getExternalizedStrings(host);
+					fragment = createHostLocalizationFragment(bundleIU, bd, hostId, externalizedStrings);
 				}
 			}
+
+		}
+
+		result.addIU(bundleIU, IPublisherResult.ROOT);
+		if (fragment != null)
+			result.addIU(fragment, IPublisherResult.NON_ROOT);
+
+		InstallableUnitDescription[] others = processAdditionalInstallableUnitsAdvice(bundleIU, info);
+		for (int iuIndex = 0; others != null && iuIndex < others.length; iuIndex++) {
+			result.addIU(MetadataFactory.createInstallableUnit(others[iuIndex]), IPublisherResult.ROOT);
 		}
 	}
 
@@ -851,12 +1003,13 @@ public class BundlesAction extends AbstractPublisherAction {
 		}
 		if (scIn)
 			addSimpleConfigurator = false;
-		BundleDescription[] result = new BundleDescription[bundleLocations.length + (addSimpleConfigurator ? 1 : 0)];
-		for (int i = 0; i < bundleLocations.length; i++) {
-			if (monitor.isCanceled())
-				throw new OperationCanceledException();
-			result[i] = createBundleDescription(bundleLocations[i]);
-		}
+		final BundleDescription[] result = new BundleDescription[bundleLocations.length + (addSimpleConfigurator ? 1 : 0)];
+		final File[] files = bundleLocations;
+		new ConcurrentLoop(bundleLocations.length, monitor) {
+			void run(int index) {
+				result[index] = createBundleDescription(files[index]);
+			}
+		}.execute();
 		if (addSimpleConfigurator) {
 			// Add simple configurator to the list of bundles
 			try {
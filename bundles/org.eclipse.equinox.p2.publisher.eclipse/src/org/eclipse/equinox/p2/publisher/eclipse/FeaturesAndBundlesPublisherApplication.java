@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2011 Code 9 and others. All rights reserved. This
+ * Copyright (c) 2008, 2012 Code 9 and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -12,10 +12,12 @@ package org.eclipse.equinox.p2.publisher.eclipse;
 import java.io.File;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import org.eclipse.equinox.internal.p2.publisher.eclipse.Messages;
 import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.publisher.*;
 import org.eclipse.equinox.p2.publisher.actions.RootIUAction;
 import org.eclipse.equinox.p2.publisher.actions.RootIUResultFilterAdvice;
+import org.eclipse.osgi.util.NLS;
 
 /**
  * <p>
@@ -35,6 +37,12 @@ public class FeaturesAndBundlesPublisherApplication extends AbstractPublisherApp
 	protected String rootIU = null;
 	protected String rootVersion = null;
 
+	/**
+	 * The number of threads that publish the bundles.
+	 * @since 1.1
+	 */
+	protected int threads = 1;
+
 	public FeaturesAndBundlesPublisherApplication() {
 		// nothing to do
 	}
@@ -53,6 +61,16 @@ public class FeaturesAndBundlesPublisherApplication extends AbstractPublisherApp
 
 		if (arg.equalsIgnoreCase("-version")) //$NON-NLS-1$
 			rootVersion = parameter;
+
+		if (arg.equalsIgnoreCase("-threads")) { //$NON-NLS-1$
+			try {
+				threads = Integer.parseInt(parameter);
+			} catch (NumberFormatException e) {
+				threads = 0;
+			}
+			if (threads < 1)
+				throw new IllegalArgumentException(NLS.bind(Messages.exception_invalidThreads, parameter));
+		}
 	}
 
 	private File[] createFiles(String parameter) {
@@ -70,7 +88,9 @@ public class FeaturesAndBundlesPublisherApplication extends AbstractPublisherApp
 		result.add(new FeaturesAction(features));
 		if (bundles == null)
 			bundles = new File[] {new File(source, "plugins")}; //$NON-NLS-1$
-		result.add(new BundlesAction(bundles));
+		BundlesAction bundlesAction = new BundlesAction(bundles);
+		bundlesAction.setThreads(threads);
+		result.add(bundlesAction);
 
 		if (rootIU != null) {
 			result.add(new RootIUAction(rootIU, Version.parseVersion(rootVersion), rootIU));
@@ -12,6 +12,8 @@ package org.eclipse.equinox.internal.p2.reconciler.dropins;
 
 import java.io.*;
 import java.net.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.Map.Entry;
 import org.eclipse.core.runtime.*;
@@ -43,6 +45,7 @@ import org.osgi.framework.ServiceReference;
 public class ProfileSynchronizer {
 	private static final String RECONCILER_APPLICATION_ID = "org.eclipse.equinox.p2.reconciler.application"; //$NON-NLS-1$
 	private static final String TIMESTAMPS_FILE_PREFIX = "timestamps"; //$NON-NLS-1$
+	private static final String FINGERPRINTS_FILE_PREFIX = "fingerprints"; //$NON-NLS-1$
 	private static final String PROFILE_TIMESTAMP = "PROFILE"; //$NON-NLS-1$
 	private static final String NO_TIMESTAMP = "-1"; //$NON-NLS-1$
 	private static final String PROP_FROM_DROPINS = "org.eclipse.equinox.p2.reconciler.dropins"; //$NON-NLS-1$
@@ -100,6 +103,13 @@ public class ProfileSynchronizer {
 		if (isUpToDate())
 			return Status.OK_STATUS;
 
+		// repositories are often saved again without any change to the IUs they contain
+		Map<String, String> fingerprints = computeFingerprints();
+		if (isContentUnchanged(fingerprints)) {
+			writeTimestamps();
+			return Status.OK_STATUS;
+		}
+
 		ProvisioningContext context = getContext();
 		context.setProperty(EXPLANATION, new Boolean(Tracing.DEBUG_RECONCILER).toString());
 
@@ -108,11 +118,15 @@ public class ProfileSynchronizer {
 		// figure out if we really have anything to install/uninstall.
 		ReconcilerProfileChangeRequest request = createProfileChangeRequest(context);
 		if (request == null) {
-			if (updatedCacheExtensions == null)
+			if (updatedCacheExtensions == null) {
+				writeFingerprints(fingerprints);
 				return Status.OK_STATUS;
+			}
 			IStatus engineResult = setProperty(CACHE_EXTENSIONS, updatedCacheExtensions, context, null);
-			if (engineResult.getSeverity() != IStatus.ERROR && engineResult.getSeverity() != IStatus.CANCEL)
+			if (engineResult.getSeverity() != IStatus.ERROR && engineResult.getSeverity() != IStatus.CANCEL) {
 				writeTimestamps();
+				writeFingerprints(fingerprints);
+			}
 			return engineResult;
 		}
 		if (updatedCacheExtensions != null)
@@ -128,8 +142,9 @@ public class ProfileSynchronizer {
 		if (addRemoveResult.getSeverity() == IStatus.ERROR || addRemoveResult.getSeverity() == IStatus.CANCEL)
 			return addRemoveResult;
 
-		// write out the new timestamps (for caching) and apply the configuration
+		// write out the new timestamps and fingerprints (for caching) and apply the configuration
 		writeTimestamps();
+		writeFingerprints(fingerprints);
 		IStatus applyResult = applyConfiguration(false);
 
 		// Mark the state update as hidden so it does not appear in the Installation History UI list
@@ -319,7 +334,7 @@ public class ProfileSynchronizer {
 	 */
 	private boolean isUpToDate() {
 		// the user might want to force a reconciliation
-		if ("true".equals(Activator.getContext().getProperty("osgi.checkConfiguration"))) { //$NON-NLS-1$//$NON-NLS-2$
+		if (isReconciliationForced()) {
 			Activator.trace("User requested forced reconciliation via \"osgi.checkConfiguration=true\" System property."); //$NON-NLS-1$
 			Activator.trace("Performing reconciliation."); //$NON-NLS-1$
 			return false;
@@ -380,6 +395,125 @@ public class ProfileSynchronizer {
 		return false;
 	}
 
+	private boolean isReconciliationForced() {
+		return "true".equals(Activator.getContext().getProperty("osgi.checkConfiguration")); //$NON-NLS-1$//$NON-NLS-2$
+	}
+
+	/*
+	 * Return a map of the fingerprints of the content of each repository.
+	 */
+	private Map<String, String> computeFingerprints() {
+		Map<String, String> result = new HashMap<String, String>();
+		for (Entry<String, IMetadataRepository> entry : repositoryMap.entrySet())
+			result.put(entry.getKey(), computeFingerprint(entry.getValue()));
+		return result;
+	}
+
+	/*
+	 * Return a digest of the IUs in the given repository and of the files they were
+	 * created from. Unlike the repository timestamp, the fingerprint does not change
+	 * when the repository is saved without any change to its IUs.
+	 */
+	private static String computeFingerprint(IMetadataRepository repository) {
+		List<String> keys = new ArrayList<String>();
+		for (Iterator<IInstallableUnit> iter = repository.query(QueryUtil.createIUAnyQuery(), null).iterator(); iter.hasNext();) {
+			IInstallableUnit iu = iter.next();
+			keys.add(iu.getId() + '_' + iu.getVersion() + PIPE + iu.getProperty(RepositoryListener.FILE_NAME) + PIPE + iu.getProperty(RepositoryListener.FILE_LAST_MODIFIED));
+		}
+		Collections.sort(keys);
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+			for (String key : keys) {
+				digest.update(key.getBytes("UTF-8")); //$NON-NLS-1$
+				digest.update((byte) '\n');
+			}
+			byte[] bytes = digest.digest();
+			StringBuffer result = new StringBuffer(bytes.length * 2);
+			for (int i = 0; i < bytes.length; i++) {
+				result.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+				result.append(Character.forDigit(bytes[i] & 0xF, 16));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// fall through
+		} catch (UnsupportedEncodingException e) {
+			// fall through
+		}
+		return Integer.toHexString(keys.hashCode());
+	}
+
+	/*
+	 * Check the fingerprints of the repositories and return true if the repositories contain
+	 * the same IUs as when the profile was last reconciled, and the profile did not change since.
+	 */
+	private boolean isContentUnchanged(Map<String, String> fingerprints) {
+		if (isReconciliationForced())
+			return false;
+		Map<String, String> lastKnownFingerprints = readFingerprints();
+		if (lastKnownFingerprints == null)
+			return false;
+		String lastKnownProfileTimeStamp = lastKnownFingerprints.remove(PROFILE_TIMESTAMP);
+		if (!Long.toString(profile.getTimestamp()).equals(lastKnownProfileTimeStamp)) {
+			Activator.trace("Profile changed since the fingerprints were computed."); //$NON-NLS-1$
+			return false;
+		}
+		if (!lastKnownFingerprints.equals(fingerprints)) {
+			Activator.trace("Repository fingerprints not equal."); //$NON-NLS-1$
+			return false;
+		}
+		Activator.trace("Repository fingerprints valid."); //$NON-NLS-1$
+		Activator.trace("Skipping reconciliation."); //$NON-NLS-1$
+		return true;
+	}
+
+	private File getFingerprintsFile() {
+		return Activator.getContext().getDataFile(FINGERPRINTS_FILE_PREFIX + profile.getProfileId().hashCode());
+	}
+
+	/*
+	 * Read the fingerprints of the repositories, or return null if they are not known.
+	 */
+	private Map<String, String> readFingerprints() {
+		File file = getFingerprintsFile();
+		if (!file.exists())
+			return null;
+		try {
+			InputStream is = new BufferedInputStream(new FileInputStream(file));
+			try {
+				return CollectionUtils.loadProperties(is);
+			} finally {
+				is.close();
+			}
+		} catch (IOException e) {
+			Activator.trace("Exception loading fingerprint file: " + e.getMessage()); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	/*
+	 * Write out the fingerprints of the repositories, along with the timestamp of the
+	 * reconciled profile.
+	 */
+	private void writeFingerprints(Map<String, String> fingerprints) {
+		// the profile was changed by the reconciliation, the fingerprints are valid for the new one
+		IProfileRegistry profileRegistry = (IProfileRegistry) agent.getService(IProfileRegistry.SERVICE_NAME);
+		IProfile reconciled = profileRegistry == null ? null : profileRegistry.getProfile(profile.getProfileId());
+		if (reconciled == null)
+			return;
+		Map<String, String> values = new HashMap<String, String>(fingerprints);
+		values.put(PROFILE_TIMESTAMP, Long.toString(reconciled.getTimestamp()));
+		try {
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(getFingerprintsFile()));
+			try {
+				CollectionUtils.storeProperties(values, os, "Fingerprints for " + profile.getProfileId()); //$NON-NLS-1$
+			} finally {
+				os.close();
+			}
+		} catch (IOException e) {
+			//Ignore
+		}
+	}
+
 	/*
 	 * Read the values of the stored timestamps that we use for caching.
 	 */
@@ -543,6 +677,7 @@ public class ProfileSynchronizer {
 		List<IInstallableUnit> toMove = new ArrayList<IInstallableUnit>();
 
 		boolean foundIUsToAdd = false;
+		List<IInstallableUnit> notInstalled = new ArrayList<IInstallableUnit>();
 		Map<IInstallableUnit, IInstallableUnit> profileIUs = getProfileIUs();
 
 		// we use IProfile.available(...) here so that we also gather any shared IUs
@@ -567,6 +702,8 @@ public class ProfileSynchronizer {
 					toMove.add(iu);
 					continue;
 				}
+			} else {
+				notInstalled.add(iu);
 			}
 			// even though we are adding all IUs below, we need to explicitly set the properties for
 			// them as well. Do that here.
@@ -611,8 +748,11 @@ public class ProfileSynchronizer {
 			return null;
 		}
 
-		// everything from the drop-ins must be considered for addition/removal everytime so add all here
-		request.addAll(all);
+		// everything from the drop-ins must be considered for addition/removal everytime. When the profile
+		// does not share IUs with a parent profile, the installed IUs are kept with the properties and
+		// inclusion rules set above, so only the new ones need to be added.
+		boolean sharedIUs = availableProfileIUs.size() != profileIUs.size();
+		request.addAll(resolve || sharedIUs ? all : notInstalled);
 		request.removeAll(toRemove);
 		request.moveAll(toMove);
 
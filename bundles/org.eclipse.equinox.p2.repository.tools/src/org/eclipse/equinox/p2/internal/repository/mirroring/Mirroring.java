@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -39,18 +39,96 @@ public class Mirroring {
 	private boolean raw;
 	private boolean compare = false;
 	private boolean validate = false;
-	private IArtifactComparator comparator;
+	// comparators keep state while comparing, each thread uses its own
+	private final ThreadLocal<IArtifactComparator> comparators = new ThreadLocal<IArtifactComparator>();
 	private IQuery<IArtifactDescriptor> compareExclusionQuery = null;
 	private Set<IArtifactDescriptor> compareExclusions = CollectionUtils.<IArtifactDescriptor> emptySet();
 	private String comparatorID;
 	private List<IArtifactKey> keysToMirror;
 	private IArtifactMirrorLog comparatorLog;
+	private IArtifactMirrorLog mirrorLog;
 	private Transport transport;
 	private boolean includePacked = true;
+	private int threads = 1;
+	/* @GuardedBy("this") */
+	private int copiedArtifacts = 0;
+	/* @GuardedBy("this") */
+	private long copiedBytes = 0;
+
+	/**
+	 * Mirrors a list of descriptors on several threads. When mirroring stops at the first error,
+	 * the descriptors that are not started yet are not mirrored.
+	 */
+	private class ConcurrentMirror implements Runnable {
+		private final List<IArtifactDescriptor> descriptors;
+		private final boolean failOnError;
+		private final boolean verbose;
+		final IStatus[] results;
+		private int next = 0;
+		private boolean stopped = false;
+
+		ConcurrentMirror(List<IArtifactDescriptor> descriptors, boolean failOnError, boolean verbose) {
+			this.descriptors = descriptors;
+			this.failOnError = failOnError;
+			this.verbose = verbose;
+			this.results = new IStatus[descriptors.size()];
+		}
+
+		public void run() {
+			while (true) {
+				int index;
+				synchronized (this) {
+					if (stopped || next == results.length)
+						return;
+					index = next++;
+				}
+				IStatus result;
+				try {
+					result = mirror(descriptors.get(index), verbose);
+				} catch (RuntimeException e) {
+					result = new Status(IStatus.ERROR, Activator.ID, e.getMessage(), e);
+				}
+				synchronized (this) {
+					results[index] = result;
+					if (failOnError && result.getSeverity() == IStatus.ERROR)
+						stopped = true;
+				}
+			}
+		}
+
+		IStatus[] mirror() {
+			Thread[] workers = new Thread[Math.max(0, Math.min(threads, results.length) - 1)];
+			for (int i = 0; i < workers.length; i++) {
+				workers[i] = new Thread(this, "Mirroring " + i); //$NON-NLS-1$
+				workers[i].setDaemon(true);
+				workers[i].start();
+			}
+			// the calling thread mirrors descriptors too
+			run();
+			boolean interrupted = false;
+			for (int i = 0; i < workers.length; i++) {
+				while (workers[i].isAlive()) {
+					try {
+						workers[i].join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			synchronized (this) {
+				return results;
+			}
+		}
+	}
 
 	private IArtifactComparator getComparator() {
-		if (comparator == null)
+		IArtifactComparator comparator = comparators.get();
+		if (comparator == null) {
 			comparator = ArtifactComparatorFactory.getArtifactComparator(comparatorID);
+			comparators.set(comparator);
+		}
 		return comparator;
 	}
 
@@ -80,6 +158,21 @@ public class Mirroring {
 		this.validate = validate;
 	}
 
+	/**
+	 * Sets the log where the throughput of the mirroring is reported.
+	 */
+	public void setMirrorLog(IArtifactMirrorLog mirrorLog) {
+		this.mirrorLog = mirrorLog;
+	}
+
+	/**
+	 * Sets the number of descriptors mirrored at the same time. The comparisons and validations
+	 * of the descriptors are done by the same threads, while other descriptors are copied.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
 	public MultiStatus run(boolean failOnError, boolean verbose) {
 		if (!destination.isModifiable())
 			throw new IllegalStateException(NLS.bind(Messages.exception_destinationNotModifiable, destination.getLocation()));
@@ -99,19 +192,33 @@ public class Mirroring {
 			compareExclusions = exclusions.toUnmodifiableSet();
 		}
 
-		while (keys.hasNext()) {
-			IArtifactKey key = keys.next();
-			IArtifactDescriptor[] descriptors = source.getArtifactDescriptors(key);
-			for (int j = 0; j < descriptors.length; j++) {
-				IStatus result = mirror(descriptors[j], verbose);
-				//Only log INFO and WARNING if we want verbose logging. Always log ERRORs
-				if (!result.isOK() && (verbose || result.getSeverity() == IStatus.ERROR))
-					multiStatus.add(result);
-				//stop mirroring as soon as we have an error
-				if (failOnError && multiStatus.getSeverity() == IStatus.ERROR)
+		long start = System.currentTimeMillis();
+		if (threads > 1) {
+			List<IArtifactDescriptor> descriptors = new ArrayList<IArtifactDescriptor>();
+			while (keys.hasNext())
+				descriptors.addAll(Arrays.asList(source.getArtifactDescriptors(keys.next())));
+			IStatus[] results = new ConcurrentMirror(descriptors, failOnError, verbose).mirror();
+			// the results are reported in the order of the descriptors, up to the first error when mirroring stops there
+			for (int i = 0; i < results.length && results[i] != null; i++) {
+				if (!addResult(multiStatus, results[i], failOnError, verbose)) {
+					logThroughput(start);
 					return multiStatus;
+				}
+			}
+		} else {
+			while (keys.hasNext()) {
+				IArtifactKey key = keys.next();
+				IArtifactDescriptor[] descriptors = source.getArtifactDescriptors(key);
+				for (int j = 0; j < descriptors.length; j++) {
+					IStatus result = mirror(descriptors[j], verbose);
+					if (!addResult(multiStatus, result, failOnError, verbose)) {
+						logThroughput(start);
+						return multiStatus;
+					}
+				}
 			}
 		}
+		logThroughput(start);
 		if (validate) {
 			// Simple validation of the mirror
 			IStatus validation = validateMirror(verbose);
@@ -121,6 +228,43 @@ public class Mirroring {
 		return multiStatus;
 	}
 
+	/*
+	 * Adds the result of mirroring a descriptor and returns whether mirroring goes on.
+	 */
+	private boolean addResult(MultiStatus multiStatus, IStatus result, boolean failOnError, boolean verbose) {
+		//Only log INFO and WARNING if we want verbose logging. Always log ERRORs
+		if (!result.isOK() && (verbose || result.getSeverity() == IStatus.ERROR))
+			multiStatus.add(result);
+		//stop mirroring as soon as we have an error
+		return !(failOnError && multiStatus.getSeverity() == IStatus.ERROR);
+	}
+
+	private void logThroughput(long start) {
+		if (mirrorLog == null)
+			return;
+		long time = Math.max(1, System.currentTimeMillis() - start);
+		int artifacts;
+		long bytes;
+		synchronized (this) {
+			artifacts = copiedArtifacts;
+			bytes = copiedBytes;
+		}
+		String message = NLS.bind(Messages.Mirroring_throughput, new Object[] {Integer.toString(artifacts), Long.toString(bytes), Long.toString(time), Integer.toString(threads), Long.toString(bytes * 1000 / time / 1024)});
+		mirrorLog.log(new Status(IStatus.INFO, Activator.ID, message));
+	}
+
+	private synchronized void recordCopy(IArtifactDescriptor descriptor) {
+		copiedArtifacts++;
+		String size = descriptor.getProperty(IArtifactDescriptor.DOWNLOAD_SIZE);
+		if (size == null)
+			return;
+		try {
+			copiedBytes += Long.parseLong(size);
+		} catch (NumberFormatException e) {
+			// the size is unknown
+		}
+	}
+
 	private IStatus mirror(IArtifactDescriptor sourceDescriptor, boolean verbose) {
 		if (!includePacked && IArtifactDescriptor.FORMAT_PACKED.equals(sourceDescriptor.getProperty(IArtifactDescriptor.FORMAT)))
 			return Status.OK_STATUS;
@@ -190,8 +334,11 @@ public class Mirroring {
 
 	private IStatus compare(IArtifactRepository sourceRepository, IArtifactDescriptor sourceDescriptor, IArtifactRepository destRepository, IArtifactDescriptor destDescriptor) {
 		IStatus comparison = getComparator().compare(sourceRepository, sourceDescriptor, destRepository, destDescriptor);
-		if (comparatorLog != null && !comparison.isOK())
-			comparatorLog.log(sourceDescriptor, comparison);
+		if (comparatorLog != null && !comparison.isOK()) {
+			synchronized (comparatorLog) {
+				comparatorLog.log(sourceDescriptor, comparison);
+			}
+		}
 		return comparison;
 	}
 
@@ -201,8 +348,10 @@ public class Mirroring {
 	private IStatus downloadArtifact(IArtifactRepository sourceRepo, IArtifactDescriptor destDescriptor, IArtifactDescriptor srcDescriptor) {
 		RawMirrorRequest request = new RawMirrorRequest(srcDescriptor, destDescriptor, destination, transport);
 		request.perform(sourceRepo, new NullProgressMonitor());
-
-		return request.getResult();
+		IStatus result = request.getResult();
+		if (result.isOK())
+			recordCopy(srcDescriptor);
+		return result;
 	}
 
 	public void setArtifactKeys(IArtifactKey[] keys) {
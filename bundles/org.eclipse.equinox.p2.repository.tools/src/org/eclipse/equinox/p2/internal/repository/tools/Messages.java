@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2010 IBM Corporation and others.
+ * Copyright (c) 2009, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,7 @@ public class Messages extends NLS {
 	public static String unknown_repository_type;
 
 	public static String MirrorApplication_artifactDestinationNoSource;
+	public static String MirrorApplication_invalidThreads;
 	public static String MirrorApplication_metadataDestinationNoSource;
 	public static String MirrorApplication_no_IUs;
 	public static String MirrorApplication_set_source_repositories;
@@ -61,6 +62,7 @@ public class Messages extends NLS {
 	public static String Mirroring_ValidationError;
 	public static String Mirroring_missingDescriptor;
 	public static String Mirroring_differentDescriptorProperty;
+	public static String Mirroring_throughput;
 
 	public static String invalidComparatorId;
 	public static String info_noMD5Infomation;
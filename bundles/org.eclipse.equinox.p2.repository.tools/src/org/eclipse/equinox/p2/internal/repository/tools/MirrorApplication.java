@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 IBM Corporation and others.
+ * Copyright (c) 2009, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -51,6 +51,7 @@ public class MirrorApplication extends AbstractApplication implements IApplicati
 	private String metadataOrArtifacts = null;
 	private String[] rootIUs = null;
 	private boolean includePacked = true;
+	private int threads = 1;
 
 	private File mirrorLogFile; // file to log mirror output to (optional)
 	private File comparatorLogFile; // file to comparator output to (optional)
@@ -152,6 +153,12 @@ public class MirrorApplication extends AbstractApplication implements IApplicati
 				mirrorLogLocation = new File(arg);
 			} else if (args[i - 1].equalsIgnoreCase("-roots")) { //$NON-NLS-1$
 				rootIUs = getArrayArgsFromString(arg, ","); //$NON-NLS-1$
+			} else if (args[i - 1].equalsIgnoreCase("-threads")) { //$NON-NLS-1$
+				try {
+					threads = Integer.parseInt(arg);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException(NLS.bind(Messages.MirrorApplication_invalidThreads, arg));
+				}
 			} else {
 				try {
 					if (args[i - 1].equalsIgnoreCase("-source")) { //$NON-NLS-1$
@@ -230,6 +237,8 @@ public class MirrorApplication extends AbstractApplication implements IApplicati
 		mirror.setCompareExclusions(compareExclusions);
 		mirror.setTransport((Transport) agent.getService(Transport.SERVICE_NAME));
 		mirror.setIncludePacked(includePacked);
+		mirror.setThreads(threads);
+		mirror.setMirrorLog(mirrorLog);
 
 		// If IUs have been specified then only they should be mirrored, otherwise mirror everything.
 		if (keys.size() > 0)
@@ -461,4 +470,11 @@ public class MirrorApplication extends AbstractApplication implements IApplicati
 	public void setIncludePacked(boolean includePacked) {
 		this.includePacked = includePacked;
 	}
+
+	/*
+	 * Set the number of artifacts mirrored at the same time
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
 }
@@ -16,6 +16,7 @@ import java.io.File;
 import java.net.URI;
 import java.util.*;
 import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.internal.p2.artifact.repository.DigestHelper;
 import org.eclipse.equinox.internal.p2.artifact.repository.simple.SimpleArtifactRepository;
 import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
@@ -101,14 +102,27 @@ public class RecreateRepositoryApplication extends AbstractApplication {
 			throw new ProvisionException(NLS.bind(Messages.exception_notLocalFileRepo, repository.getLocation()));
 
 		IFileArtifactRepository simple = (IFileArtifactRepository) repository;
-		for (IArtifactKey key : repoMap.keySet()) {
-			IArtifactDescriptor[] descriptors = repoMap.get(key);
+		SubMonitor sub = SubMonitor.convert(monitor, 100);
+
+		// the digests are computed up front so that all the files can be read in parallel
+		List<File> artifactFiles = new ArrayList<File>();
+		for (IArtifactDescriptor[] descriptors : repoMap.values()) {
+			for (int i = 0; i < descriptors.length; i++)
+				artifactFiles.add(simple.getArtifactFile(descriptors[i]));
+		}
+		String[] digests = DigestHelper.computeMD5(artifactFiles.toArray(new File[artifactFiles.size()]), sub.newChild(90));
+
+		int index = 0;
+		for (Map.Entry<IArtifactKey, IArtifactDescriptor[]> entry : repoMap.entrySet()) {
+			IArtifactKey key = entry.getKey();
+			IArtifactDescriptor[] descriptors = entry.getValue();
 
 			String unpackedSize = null;
 			File packFile = null;
 			Set<File> files = new HashSet<File>();
 			for (int i = 0; i < descriptors.length; i++) {
-				File artifactFile = simple.getArtifactFile(descriptors[i]);
+				File artifactFile = artifactFiles.get(index);
+				String md5 = digests[index++];
 				files.add(artifactFile);
 
 				String size = Long.toString(artifactFile.length());
@@ -117,7 +131,6 @@ public class RecreateRepositoryApplication extends AbstractApplication {
 				newDescriptor.setProperty(IArtifactDescriptor.ARTIFACT_SIZE, size);
 				newDescriptor.setProperty(IArtifactDescriptor.DOWNLOAD_SIZE, size);
 
-				String md5 = RepositoryUtilities.computeMD5(artifactFile);
 				if (md5 != null)
 					newDescriptor.setProperty(IArtifactDescriptor.DOWNLOAD_MD5, md5);
 
@@ -134,6 +147,7 @@ public class RecreateRepositoryApplication extends AbstractApplication {
 				repository.addDescriptor(packDescriptor, null);
 			}
 		}
+		sub.worked(10);
 	}
 
 	private ArtifactDescriptor createPack200ArtifactDescriptor(IArtifactKey key, File packFile, String installSize) {
@@ -11,8 +11,7 @@
 package org.eclipse.equinox.internal.p2.persistence;
 
 import java.net.*;
-import java.util.List;
-import java.util.StringTokenizer;
+import java.util.*;
 import javax.xml.parsers.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.Activator;
@@ -46,6 +45,20 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 
 	private IProgressMonitor monitor;
 
+	// Ids, namespaces, versions and ranges repeat throughout a document, these pools
+	// share one instance of each value among all the elements of a parse.
+	private final Map<String, String> stringPool = new HashMap<String, String>();
+	private final Map<String, Version> versionPool = new HashMap<String, Version>();
+	private final Map<String, VersionRange> rangePool = new HashMap<String, VersionRange>();
+
+	// statistics of the parse, see getParseStatistics()
+	private int elementCount = 0;
+	private int pooledStrings = 0;
+	private int parsedVersions = 0;
+	private int pooledVersions = 0;
+	private int parsedRanges = 0;
+	private int pooledRanges = 0;
+
 	private static ServiceTracker<SAXParserFactory, SAXParserFactory> xmlTracker = null;
 
 	public XMLParser(BundleContext context, String pluginId) {
@@ -160,6 +173,7 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 
 		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 			finishCharacters();
+			elementCount++;
 			String name = makeSimpleName(localName, qName);
 			trace(name, attributes);
 			startElement(name, attributes);
@@ -180,6 +194,14 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 			xmlReader.setContentHandler(parentHandler);
 		}
 
+		/**
+		 * Makes this handler the content handler again, so that a handler can be reused
+		 * for the consecutive sibling elements it handles.
+		 */
+		protected void restart() {
+			xmlReader.setContentHandler(this);
+		}
+
 		/**
 		 * 	An implementation for startElement when there are no sub-elements
 		 */
@@ -311,7 +333,7 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 			String[] result = new String[required.length + optional.length];
 			for (int i = 0; i < attributes.getLength(); i += 1) {
 				String name = attributes.getLocalName(i);
-				String value = attributes.getValue(i).trim().intern();
+				String value = pool(attributes.getValue(i).trim());
 				int j;
 				if ((j = indexOf(required, name)) >= 0) {
 					result[j] = value;
@@ -459,7 +481,7 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 		}
 
 		protected void processCharacters(String data) {
-			this.text = data == null ? null : data.intern();
+			this.text = data == null ? null : pool(data);
 		}
 
 	}
@@ -658,13 +680,58 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 			throw new OperationCanceledException();
 	}
 
+	/**
+	 * Returns the instance of the given string shared by this parse. The first
+	 * occurrence of a value is interned.
+	 */
+	protected String pool(String value) {
+		String pooled = stringPool.get(value);
+		if (pooled != null) {
+			pooledStrings++;
+			return pooled;
+		}
+		pooled = value.intern();
+		stringPool.put(pooled, pooled);
+		return pooled;
+	}
+
+	/**
+	 * Returns statistics about this parse: the number of elements and the number of
+	 * strings, versions and ranges that were shared rather than created.
+	 */
+	public String getParseStatistics() {
+		StringBuffer result = new StringBuffer();
+		result.append(elementCount).append(" elements, "); //$NON-NLS-1$
+		result.append(stringPool.size()).append(" strings (").append(pooledStrings).append(" reused), "); //$NON-NLS-1$ //$NON-NLS-2$
+		result.append(parsedVersions).append(" versions (").append(pooledVersions).append(" reused), "); //$NON-NLS-1$ //$NON-NLS-2$
+		result.append(parsedRanges).append(" version ranges (").append(pooledRanges).append(" reused)"); //$NON-NLS-1$ //$NON-NLS-2$
+		return result.toString();
+	}
+
+	/**
+	 * Returns the number of elements parsed so far.
+	 */
+	public int getElementCount() {
+		return elementCount;
+	}
+
 	/**
 	 * Converts a version string to a Version object. Returns the version object,
 	 * or {@link Version#emptyVersion} if the value was not a valid version.
 	 */
 	public Version checkVersion(String element, String attribute, String value) {
+		if (value != null) {
+			Version version = versionPool.get(value);
+			if (version != null) {
+				pooledVersions++;
+				return version;
+			}
+		}
 		try {
-			return Version.parseVersion(value);
+			Version version = Version.parseVersion(value);
+			parsedVersions++;
+			versionPool.put(value, version);
+			return version;
 		} catch (IllegalArgumentException iae) {
 			invalidAttributeValue(element, attribute, value);
 		} catch (NullPointerException npe) {
@@ -674,9 +741,20 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 	}
 
 	public VersionRange checkVersionRange(String element, String attribute, String value) {
+		if (value != null) {
+			VersionRange range = rangePool.get(value);
+			if (range != null) {
+				pooledRanges++;
+				return range;
+			}
+		}
 		try {
-			if (value != null)
-				return new VersionRange(value);
+			if (value != null) {
+				VersionRange range = new VersionRange(value);
+				parsedRanges++;
+				rangePool.put(value, range);
+				return range;
+			}
 		} catch (IllegalArgumentException iae) {
 			invalidAttributeValue(element, attribute, value);
 		} catch (NullPointerException npe) {
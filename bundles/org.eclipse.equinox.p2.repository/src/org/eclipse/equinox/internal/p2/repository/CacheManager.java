@@ -14,8 +14,7 @@ package org.eclipse.equinox.internal.p2.repository;
 
 import java.io.*;
 import java.net.*;
-import java.util.EventObject;
-import java.util.HashSet;
+import java.util.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.internal.provisional.p2.core.eventbus.IProvisioningEventBus;
@@ -77,7 +76,7 @@ public class CacheManager {
 	private static final String JAR_EXTENSION = ".jar"; //$NON-NLS-1$
 	private static final String XML_EXTENSION = ".xml"; //$NON-NLS-1$
 
-	private final HashSet<String> knownPrefixes = new HashSet<String>(5);
+	private final Set<String> knownPrefixes = Collections.synchronizedSet(new HashSet<String>(5));
 
 	/**
 	 * Returns a hash of the repository location.
@@ -110,103 +109,48 @@ public class CacheManager {
 		try {
 			knownPrefixes.add(prefix);
 			File cacheFile = getCache(repositoryLocation, prefix);
+			File[] cacheFiles = getCacheFiles(repositoryLocation, prefix);
 			URI jarLocation = URIUtil.append(repositoryLocation, prefix + JAR_EXTENSION);
 			URI xmlLocation = URIUtil.append(repositoryLocation, prefix + XML_EXTENSION);
-			int hashCode = computeHash(repositoryLocation);
-
-			// Knowing if cache is stale is complicated by the fact that a jar could have been 
-			// produced after an xml index (and vice versa), and by the need to capture any
-			// errors, as these needs to be reported to the user as something meaningful - instead of
-			// just a general "can't read repository".
-			// (Previous impl of stale checking ignored errors, and caused multiple round-trips)
-			boolean stale = true;
-			long lastModified = 0L;
-			String name = null;
-			String useExtension = JAR_EXTENSION;
-			URI remoteFile = jarLocation;
-
-			if (cacheFile != null) {
-				lastModified = cacheFile.lastModified();
-				name = cacheFile.getName();
+
+			// A cache is validated by a single conditional download of the index it was created from,
+			// which only transfers the index when it was modified. A cache of the other index is
+			// downloaded again, as a jar could have been produced after an xml index (and vice versa).
+			// The errors need to be captured, as these needs to be reported to the user as something
+			// meaningful - instead of just a general "can't read repository".
+			long lastModified = cacheFile == null ? 0L : cacheFile.lastModified();
+			IStatus result = updateCache(cacheFiles[0], jarLocation, cacheFiles[0].equals(cacheFile) ? lastModified : 0L, submonitor.newChild(500));
+			if (result.isOK()) {
+				safeDelete(cacheFiles[1]);
+				return cacheFiles[0];
 			}
-			// get last modified on jar
-			long lastModifiedRemote = 0L;
-			// bug 269588 - server may return 0 when file exists, so extra flag is needed
-			boolean useJar = true;
-			try {
-				lastModifiedRemote = transport.getLastModified(jarLocation, submonitor.newChild(1));
-				if (lastModifiedRemote <= 0)
-					LogHelper.log(new Status(IStatus.WARNING, Activator.ID, "Server returned lastModified <= 0 for " + jarLocation)); //$NON-NLS-1$
-			} catch (AuthenticationFailedException e) {
+			if (result.getCode() == ProvisionException.REPOSITORY_FAILED_AUTHENTICATION) {
 				// it is not meaningful to continue - the credentials are for the server
 				// do not pass the exception - it gives no additional meaningful user information
 				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_AUTHENTICATION, NLS.bind(Messages.CacheManager_AuthenticationFaileFor_0, repositoryLocation), null));
-			} catch (CoreException e) {
-				useJar = false;
-				// give up on a timeout - if we did not get a 404 on the jar, we will just prolong the pain
-				// by (almost certainly) also timing out on the xml.
-				if (e.getStatus() != null && e.getStatus().getException() != null) {
-					Throwable ex = e.getStatus().getException();
-					if (ex.getClass() == java.net.SocketTimeoutException.class)
-						throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, NLS.bind(Messages.CacheManager_FailedCommunicationWithRepo_0, repositoryLocation), ex));
-				}
-			} catch (OperationCanceledException e) {
-				// must pass this on
-				throw e;
-			} catch (Exception e) {
-				// not ideal, just skip the jar on error, and try the xml instead - report errors for
-				// the xml.
-				useJar = false;
 			}
+			// give up on a timeout - if we did not get a 404 on the jar, we will just prolong the pain
+			// by (almost certainly) also timing out on the xml.
+			Throwable ex = result.getException();
+			if (ex != null && ex.getClass() == java.net.SocketTimeoutException.class)
+				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_READ, NLS.bind(Messages.CacheManager_FailedCommunicationWithRepo_0, repositoryLocation), ex));
 			if (submonitor.isCanceled())
 				throw new OperationCanceledException();
 
-			if (useJar) {
-				// There is a jar, and it should be used - cache is stale if it is xml based or
-				// if older (irrespective of jar or xml).
-				// Bug 269588 - also stale if remote reports 0
-				stale = lastModifiedRemote != lastModified || (name != null && name.endsWith(XML_EXTENSION) || lastModifiedRemote <= 0);
-			} else {
-				// Also need to check remote XML file, and handle cancel, and errors
-				// (Status is reported based on finding the XML file as giving up on certain errors
-				// when checking for the jar may not be correct).
-				try {
-					lastModifiedRemote = transport.getLastModified(xmlLocation, submonitor.newChild(1));
-					// if lastModifiedRemote is 0 - something is wrong in the communication stack, as 
-					// a FileNotFound exception should have been thrown.
-					// bug 269588 - server may return 0 when file exists - site is not correctly configured
-					if (lastModifiedRemote <= 0)
-						LogHelper.log(new Status(IStatus.WARNING, Activator.ID, "Server returned lastModified <= 0 for " + xmlLocation)); //$NON-NLS-1$
-
-				} catch (FileNotFoundException e) {
-					throw new FileNotFoundException(NLS.bind(Messages.CacheManager_Neither_0_nor_1_found, jarLocation, xmlLocation));
-				} catch (AuthenticationFailedException e) {
-					// do not pass the exception, it provides no additional meaningful user information
-					throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_AUTHENTICATION, NLS.bind(Messages.CacheManager_AuthenticationFaileFor_0, repositoryLocation), null));
-				} catch (CoreException e) {
-					IStatus status = e.getStatus();
-					if (status == null)
-						throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_NOT_FOUND, NLS.bind(Messages.CacheManager_FailedCommunicationWithRepo_0, repositoryLocation), e));
-					else if (status.getException() instanceof FileNotFoundException)
-						throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_NOT_FOUND, status.getMessage(), null));
-					throw new ProvisionException(status);
-
-				}
-				// There is an xml, and it should be used - cache is stale if it is jar based or
-				// if older (irrespective of jar or xml).
-				// bug 269588 - server may return 0 when file exists - assume it is stale
-				stale = lastModifiedRemote != lastModified || (name != null && name.endsWith(JAR_EXTENSION) || lastModifiedRemote <= 0);
-				useExtension = XML_EXTENSION;
-				remoteFile = xmlLocation;
+			// not ideal, just skip the jar on error, and try the xml instead - report errors for
+			// the xml.
+			result = updateCache(cacheFiles[1], xmlLocation, cacheFiles[1].equals(cacheFile) ? lastModified : 0L, submonitor.newChild(500));
+			if (result.isOK()) {
+				safeDelete(cacheFiles[0]);
+				return cacheFiles[1];
 			}
-
-			if (!stale)
-				return cacheFile;
-
-			// The cache is stale or missing, so we need to update it from the remote location
-			cacheFile = new File(getCacheDirectory(), prefix + hashCode + useExtension);
-			updateCache(cacheFile, remoteFile, lastModifiedRemote, submonitor);
-			return cacheFile;
+			if (result.getCode() == ProvisionException.REPOSITORY_FAILED_AUTHENTICATION) {
+				// do not pass the exception, it provides no additional meaningful user information
+				throw new ProvisionException(new Status(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_AUTHENTICATION, NLS.bind(Messages.CacheManager_AuthenticationFaileFor_0, repositoryLocation), null));
+			}
+			if (result.getCode() == ProvisionException.ARTIFACT_NOT_FOUND || result.getException() instanceof FileNotFoundException)
+				throw new FileNotFoundException(NLS.bind(Messages.CacheManager_Neither_0_nor_1_found, jarLocation, xmlLocation));
+			throw new ProvisionException(result);
 		} finally {
 			submonitor.done();
 		}
@@ -217,7 +161,8 @@ public class CacheManager {
 	 * @param repositoryLocation
 	 */
 	void deleteCache(URI repositoryLocation) {
-		for (String prefix : knownPrefixes) {
+		String[] prefixes = knownPrefixes.toArray(new String[0]);
+		for (String prefix : prefixes) {
 			File[] cacheFiles = getCacheFiles(repositoryLocation, prefix);
 			for (int i = 0; i < cacheFiles.length; i++) {
 				// delete the cache file if it exists
@@ -321,7 +266,17 @@ public class CacheManager {
 			bus.removeListener(busListener);
 	}
 
-	protected void updateCache(File cacheFile, URI remoteFile, long lastModifiedRemote, SubMonitor submonitor) throws FileNotFoundException, IOException, ProvisionException {
+	/**
+	 * Downloads the remote file into the cache file, unless the remote file was not modified
+	 * since the given date.
+	 * @param cacheFile the cache file to update
+	 * @param remoteFile the remote file to download
+	 * @param lastModified the last modified date of the cache file, or 0 if it must be downloaded
+	 * @param submonitor a progress monitor
+	 * @return the status of the download, which is OK when the cache file is up to date
+	 * @throws OperationCanceledException if the download was canceled
+	 */
+	protected IStatus updateCache(File cacheFile, URI remoteFile, long lastModified, SubMonitor submonitor) throws IOException, ProvisionException {
 		cacheFile.getParentFile().mkdirs();
 		File downloadDir = new File(cacheFile.getParentFile(), DOWNLOADING);
 		if (!downloadDir.exists())
@@ -342,32 +297,41 @@ public class CacheManager {
 		IStatus result = null;
 		try {
 			submonitor.setWorkRemaining(1000);
-			result = transport.download(remoteFile, stream, submonitor.newChild(1000));
+			result = transport.downloadIfModified(remoteFile, stream, lastModified, submonitor.newChild(1000));
 		} catch (OperationCanceledException e) {
 			// need to pick up the status - a new operation canceled exception is thrown at the end
 			// as status will be CANCEL.
 			result = stream.getStatus();
 		} finally {
 			stream.close();
-			// If there was any problem fetching the file, delete the temp file
-			if (result == null || !result.isOK())
+			// If there was any problem fetching the file, or it was not modified, delete the temp file
+			if (result == null || !result.isOK() || result.getCode() == DownloadStatus.NOT_MODIFIED)
 				safeDelete(tempFile);
 		}
+		if (result == null)
+			throw new OperationCanceledException();
 		if (result.isOK()) {
+			if (result.getCode() == DownloadStatus.NOT_MODIFIED)
+				return result;
 			if (cacheFile.exists())
 				safeDelete(cacheFile);
 			if (tempFile.renameTo(cacheFile)) {
+				long lastModifiedRemote = result instanceof DownloadStatus ? ((DownloadStatus) result).getLastModified() : 0L;
 				if (lastModifiedRemote != -1 && lastModifiedRemote != 0) {
 					//local cache file should have the same lastModified as the server's file. bug 324200
 					cacheFile.setLastModified(lastModifiedRemote);
+				} else {
+					// bug 269588 - server may return 0 when file exists, the cache is then downloaded again every time
+					LogHelper.log(new Status(IStatus.WARNING, Activator.ID, "Server returned lastModified <= 0 for " + remoteFile)); //$NON-NLS-1$
 				}
-				return;
+				return result;
 			}
 			result = new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.CacheManage_ErrorRenamingCache, new Object[] {remoteFile.toString(), tempFile.getAbsolutePath(), cacheFile.getAbsolutePath()}));
+			throw new ProvisionException(result);
 		}
 
 		if (result.getSeverity() == IStatus.CANCEL || submonitor.isCanceled())
 			throw new OperationCanceledException();
-		throw new ProvisionException(result);
+		return result;
 	}
 }
@@ -20,6 +20,12 @@ public class DownloadStatus extends Status {
 	public static final long UNKNOWN_RATE = -1;
 	public static final long UNKNOWN_SIZE = -1;
 
+	/**
+	 * The code of a successful status reporting that a file was not downloaded
+	 * because it was not modified.
+	 */
+	public static final int NOT_MODIFIED = 304;
+
 	private long speed = UNKNOWN_RATE;
 	private long fileSize = UNKNOWN_SIZE;
 	private long lastModified = 0;
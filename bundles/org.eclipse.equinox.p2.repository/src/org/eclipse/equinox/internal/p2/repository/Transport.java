@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -15,6 +15,8 @@ import java.io.*;
 import java.net.URI;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.provisional.p2.repository.IStateful;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.osgi.util.NLS;
 
 public abstract class Transport {
 
@@ -48,6 +50,64 @@ public abstract class Transport {
 	 */
 	public abstract IStatus download(URI toDownload, OutputStream target, IProgressMonitor monitor);
 
+	/**
+	 * Perform a download of a file the caller already has a copy of, writing into the target output
+	 * stream only if the remote file was modified. Progress is reported on the monitor. If the
+	 * <code>target</code> is an instance of {@link IStateful} the resulting status is also set on the target.
+	 * <p>
+	 * This implementation asks for the last modified date of the remote file, and downloads it
+	 * when the date differs from <code>ifModifiedSince</code>. Transports that can ask the server
+	 * to send the file only if it was modified should override this method to do it in one request.
+	 * </p>
+	 * 
+	 * @returns IStatus, that is a {@link DownloadStatus} on success. The status has the code
+	 * {@link DownloadStatus#NOT_MODIFIED} when the file was not modified and nothing was written.
+	 * @param toDownload URI of file to download
+	 * @param target OutputStream where result is written
+	 * @param ifModifiedSince the last modified date of the copy, or 0 to always download the file
+	 * @param monitor where progress should be reported
+	 * @throws OperationCanceledException if the operation was canceled.
+	 */
+	public IStatus downloadIfModified(URI toDownload, OutputStream target, long ifModifiedSince, IProgressMonitor monitor) {
+		SubMonitor submonitor = SubMonitor.convert(monitor, 2);
+		long lastModified;
+		try {
+			lastModified = getLastModified(toDownload, submonitor.newChild(1));
+		} catch (FileNotFoundException e) {
+			return statusOn(target, new DownloadStatus(IStatus.ERROR, Activator.ID, ProvisionException.ARTIFACT_NOT_FOUND, NLS.bind(Messages.artifact_not_found, toDownload), e));
+		} catch (AuthenticationFailedException e) {
+			return statusOn(target, new DownloadStatus(IStatus.ERROR, Activator.ID, ProvisionException.REPOSITORY_FAILED_AUTHENTICATION, NLS.bind(Messages.UnableToRead_0_TooManyAttempts, toDownload), null));
+		} catch (CoreException e) {
+			return statusOn(target, e.getStatus());
+		}
+		// bug 269588 - server may return 0 when file exists, so the file is downloaded again
+		if (ifModifiedSince > 0 && lastModified == ifModifiedSince) {
+			DownloadStatus status = new DownloadStatus(IStatus.OK, Activator.ID, DownloadStatus.NOT_MODIFIED, Status.OK_STATUS.getMessage(), null);
+			status.setLastModified(lastModified);
+			return statusOn(target, status);
+		}
+		IStatus result = download(toDownload, target, submonitor.newChild(1));
+		if (!result.isOK())
+			return result;
+		// the cached copy takes the last modified date of the remote file
+		DownloadStatus status;
+		if (result instanceof DownloadStatus)
+			status = (DownloadStatus) result;
+		else {
+			status = new DownloadStatus(result.getSeverity(), Activator.ID, result.getCode(), result.getMessage(), null);
+			statusOn(target, status);
+		}
+		if (status.getLastModified() <= 0)
+			status.setLastModified(lastModified);
+		return status;
+	}
+
+	private static IStatus statusOn(OutputStream target, IStatus status) {
+		if (target instanceof IStateful)
+			((IStateful) target).setStatus(status);
+		return status;
+	}
+
 	/**
 	 * Perform a stream download, writing into an InputStream that is returned. Performs authentication if needed.
 	 * 
@@ -21,8 +21,8 @@ import org.eclipse.core.runtime.preferences.IPreferencesService;
 import org.eclipse.equinox.internal.p2.core.helpers.*;
 import org.eclipse.equinox.internal.p2.repository.Activator;
 import org.eclipse.equinox.internal.p2.repository.Transport;
+import org.eclipse.equinox.internal.provisional.p2.core.eventbus.BatchedProvisioningListener;
 import org.eclipse.equinox.internal.provisional.p2.core.eventbus.IProvisioningEventBus;
-import org.eclipse.equinox.internal.provisional.p2.core.eventbus.ProvisioningListener;
 import org.eclipse.equinox.internal.provisional.p2.repository.RepositoryEvent;
 import org.eclipse.equinox.p2.core.*;
 import org.eclipse.equinox.p2.core.spi.IAgentService;
@@ -37,7 +37,7 @@ import org.osgi.service.prefs.Preferences;
 /**
  * Common code shared between artifact and metadata repository managers.
  */
-public abstract class AbstractRepositoryManager<T> implements IRepositoryManager<T>, IAgentService, ProvisioningListener {
+public abstract class AbstractRepositoryManager<T> implements IRepositoryManager<T>, IAgentService, BatchedProvisioningListener {
 	protected static class RepositoryInfo<R> {
 		public String description;
 		public boolean isEnabled = true;
@@ -90,6 +90,10 @@ public abstract class AbstractRepositoryManager<T> implements IRepositoryManager
 	 * Set used to manage exclusive load locks on repository locations.
 	 */
 	private final Map<URI, Thread> loadLocks = new HashMap<URI, Thread>();
+	/**
+	 * The location each thread waits to load, guarded by loadLocks.
+	 */
+	private final Map<Thread, URI> loadWaits = new HashMap<Thread, URI>();
 	private final IAgentLocation agentLocation;
 	protected final IProvisioningEventBus eventBus;
 	protected final IProvisioningAgent agent;
@@ -324,27 +328,58 @@ public abstract class AbstractRepositoryManager<T> implements IRepositoryManager
 	 * To avoid deadlock between the loadLock and repositoryLock, this method
 	 * must not be called when repositoryLock is held.
 	 * 
+	 * The right is reentrant for the threads loading the children of a composite repository on behalf of
+	 * the thread loading the composite, and it is not waited for when the owner already waits, directly or
+	 * not, for a location locked by the calling thread, so that cyclic composite repositories do not deadlock.
+	 * 
 	 * @param location The location to lock
 	 */
 	private void enterLoad(URI location, IProgressMonitor monitor) {
 		Thread current = Thread.currentThread();
 		synchronized (loadLocks) {
-			while (true) {
-				Thread owner = loadLocks.get(location);
-				if (owner == null || current.equals(owner))
-					break;
-				if (monitor.isCanceled())
-					throw new OperationCanceledException();
-				try {
-					loadLocks.wait(1000);
-				} catch (InterruptedException e) {
-					//keep trying
+			try {
+				while (true) {
+					Thread owner = loadLocks.get(location);
+					if (owner == null || current.equals(owner)) {
+						loadLocks.put(location, current);
+						return;
+					}
+					if (CompositeChildLoader.isLoadingFor(current, owner) || isWaitingFor(owner, current))
+						return;
+					if (monitor.isCanceled())
+						throw new OperationCanceledException();
+					loadWaits.put(current, location);
+					try {
+						loadLocks.wait(1000);
+					} catch (InterruptedException e) {
+						//keep trying
+					}
 				}
+			} finally {
+				loadWaits.remove(current);
 			}
-			loadLocks.put(location, current);
 		}
 	}
 
+	/**
+	 * Returns whether the given thread waits for a location locked by the given owner, or for
+	 * a location locked by a thread that waits for it in turn. Must be called when loadLocks is held.
+	 */
+	private boolean isWaitingFor(Thread thread, Thread owner) {
+		Set<Thread> visited = new HashSet<Thread>();
+		while (visited.add(thread)) {
+			URI awaited = loadWaits.get(thread);
+			if (awaited == null)
+				return false;
+			thread = loadLocks.get(awaited);
+			if (thread == null)
+				return false;
+			if (thread.equals(owner) || CompositeChildLoader.isLoadingFor(owner, thread))
+				return true;
+		}
+		return false;
+	}
+
 	/**
 	 * Relinquishes the exclusive right to load a repository at the given location. Unblocks
 	 * other threads waiting to load at that location.
@@ -811,6 +846,22 @@ public abstract class AbstractRepositoryManager<T> implements IRepositoryManager
 		}
 	}
 
+	/*(non-Javadoc)
+	 * @see org.eclipse.equinox.internal.provisional.p2.core.eventbus.BatchedProvisioningListener#notify(java.util.EventObject[])
+	 */
+	public void notify(EventObject[] events) {
+		for (int i = 0; i < events.length; i++)
+			notify(events[i]);
+	}
+
+	/*(non-Javadoc)
+	 * @see org.eclipse.equinox.internal.provisional.p2.core.eventbus.BatchedProvisioningListener#canCoalesce(java.util.EventObject)
+	 */
+	public boolean canCoalesce(EventObject event) {
+		// only the repository events are handled, the others do not need to be delivered one by one
+		return !(event instanceof RepositoryEvent);
+	}
+
 	/**
 	 * Sets a preference and returns <code>true</code> if the preference
 	 * was actually changed.
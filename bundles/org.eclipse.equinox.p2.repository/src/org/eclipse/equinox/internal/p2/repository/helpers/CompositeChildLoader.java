@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.repository.helpers;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.internal.p2.repository.Activator;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Loads the children of a composite repository, concurrently when more than one loading thread is
+ * configured with {@link #PROP_LOADING_THREADS}. Results are returned in the order of the children,
+ * whatever the order in which the loads complete.
+ */
+public class CompositeChildLoader {
+	/**
+	 * System property giving the maximum number of children of a composite repository loaded at the same time.
+	 * By default, or with a value of 1, the children are loaded one after the other on the calling thread.
+	 */
+	public static final String PROP_LOADING_THREADS = "eclipse.p2.composite.loadingThreads"; //$NON-NLS-1$
+	private static final int DEFAULT_LOADING_THREADS = 1;
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	/**
+	 * Loads one child repository. Implementations are called from several threads at the same time.
+	 */
+	public interface IChildLoader<T> {
+		public T load(URI location, IProgressMonitor monitor) throws ProvisionException;
+	}
+
+	/**
+	 * The outcome of loading one child: either the repository or the reason it failed to load.
+	 */
+	public static class Result<T> {
+		private final URI location;
+		T repository;
+		ProvisionException failure;
+
+		Result(URI location) {
+			this.location = location;
+		}
+
+		public URI getLocation() {
+			return location;
+		}
+
+		public T getRepository() {
+			return repository;
+		}
+
+		public ProvisionException getFailure() {
+			return failure;
+		}
+	}
+
+	/**
+	 * A thread loading children on behalf of the thread loading their composite repository.
+	 */
+	private static class Worker extends Thread {
+		final Thread owner;
+
+		Worker(Runnable runnable, Thread owner) {
+			super(runnable, "Composite repository child loader"); //$NON-NLS-1$
+			this.owner = owner;
+			setDaemon(true);
+		}
+	}
+
+	/**
+	 * The state shared by the calling thread and the workers of one load, guarded by itself.
+	 */
+	private static class Progress {
+		int next; //index of the next child to load
+		int completed; //number of loaded children
+		int work; //work reported by the children and not yet forwarded to the caller
+		String subTask;
+		boolean stopped;
+		RuntimeException failure;
+	}
+
+	/**
+	 * Forwards the progress of one child to the calling thread, which reports it on its own monitor.
+	 */
+	private static class ChildMonitor extends NullProgressMonitor {
+		private final Progress progress;
+		private final IProgressMonitor parent;
+		private double totalWork;
+		private double worked;
+		private int reported;
+
+		ChildMonitor(Progress progress, IProgressMonitor parent) {
+			this.progress = progress;
+			this.parent = parent;
+		}
+
+		public void beginTask(String name, int total) {
+			totalWork = total;
+			subTask(name);
+		}
+
+		public void internalWorked(double work) {
+			if (totalWork <= 0)
+				return;
+			worked += work;
+			report(Math.min(100, (int) (100 * worked / totalWork)));
+		}
+
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		public void subTask(String name) {
+			if (name == null || name.length() == 0)
+				return;
+			synchronized (progress) {
+				progress.subTask = name;
+				progress.notifyAll();
+			}
+		}
+
+		public void done() {
+			report(100);
+		}
+
+		public boolean isCanceled() {
+			return parent != null && parent.isCanceled();
+		}
+
+		void report(int total) {
+			if (total <= reported)
+				return;
+			synchronized (progress) {
+				progress.work += total - reported;
+				progress.notifyAll();
+			}
+			reported = total;
+		}
+	}
+
+	/**
+	 * Returns whether the given thread loads repositories on behalf of the given owner thread, while
+	 * the owner waits for the children of the composite repository it is loading. Such a thread can
+	 * load again a repository the owner is loading, as the owner itself would.
+	 */
+	public static boolean isLoadingFor(Thread thread, Thread owner) {
+		return thread instanceof Worker && ((Worker) thread).owner.equals(owner);
+	}
+
+	/**
+	 * Loads the given children and returns one result per child, in the same order.
+	 *
+	 * @throws OperationCanceledException if the monitor is canceled while children are being loaded
+	 */
+	public static <T> List<Result<T>> load(List<URI> locations, final IChildLoader<T> loader, final IProgressMonitor monitor) {
+		SubMonitor sub = SubMonitor.convert(monitor, 100 * locations.size());
+		final List<Result<T>> results = new ArrayList<Result<T>>(locations.size());
+		for (URI location : locations)
+			results.add(new Result<T>(location));
+
+		//the children of nested composite repositories are loaded by the worker that loads their parent
+		int threads = Thread.currentThread() instanceof Worker ? 1 : Math.min(getLoadingThreads(), locations.size());
+		if (threads <= 1) {
+			for (Result<T> result : results)
+				load(result, loader, sub.newChild(100));
+			return results;
+		}
+
+		final Progress progress = new Progress();
+		Runnable task = new Runnable() {
+			public void run() {
+				while (true) {
+					Result<T> result;
+					synchronized (progress) {
+						if (progress.stopped || progress.next == results.size())
+							return;
+						result = results.get(progress.next++);
+					}
+					ChildMonitor childMonitor = new ChildMonitor(progress, monitor);
+					try {
+						load(result, loader, childMonitor);
+					} catch (RuntimeException e) {
+						synchronized (progress) {
+							if (progress.failure == null)
+								progress.failure = e;
+							progress.stopped = true;
+						}
+					} finally {
+						childMonitor.done();
+						synchronized (progress) {
+							progress.completed++;
+							progress.notifyAll();
+						}
+					}
+				}
+			}
+		};
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(task, Thread.currentThread());
+			workers[i].start();
+		}
+		try {
+			waitFor(results.size(), progress, sub);
+		} finally {
+			synchronized (progress) {
+				progress.stopped = true;
+			}
+		}
+		if (progress.failure != null)
+			throw progress.failure;
+		return results;
+	}
+
+	private static <T> void load(Result<T> result, IChildLoader<T> loader, IProgressMonitor monitor) {
+		try {
+			result.repository = loader.load(result.location, monitor);
+		} catch (ProvisionException e) {
+			result.failure = e;
+		}
+	}
+
+	/**
+	 * Waits until all the children are loaded, reporting their progress on the given monitor of the calling thread.
+	 */
+	private static void waitFor(int count, Progress progress, SubMonitor monitor) {
+		while (true) {
+			int work;
+			String subTask;
+			boolean complete;
+			synchronized (progress) {
+				if (progress.completed < count && progress.work == 0 && progress.subTask == null && !progress.stopped) {
+					try {
+						progress.wait(CANCEL_POLL_INTERVAL);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new OperationCanceledException();
+					}
+				}
+				work = progress.work;
+				progress.work = 0;
+				subTask = progress.subTask;
+				progress.subTask = null;
+				complete = progress.completed == count || (progress.stopped && progress.failure != null);
+			}
+			if (subTask != null)
+				monitor.subTask(subTask);
+			if (work > 0)
+				monitor.worked(work);
+			if (complete)
+				return;
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+		}
+	}
+
+	private static int getLoadingThreads() {
+		BundleContext context = Activator.getContext();
+		String value = context == null ? null : context.getProperty(PROP_LOADING_THREADS);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				//fall through to the default
+			}
+		}
+		return DEFAULT_LOADING_THREADS;
+	}
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
+import org.eclipse.equinox.internal.p2.metadata.index.CapabilityIndex;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.equinox.p2.metadata.expression.*;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the lookup of the units satisfying requirements, through the capability index alone
+ * and through a query as done by the slicer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CapabilityIndexBenchmark {
+	private static final int REQUIREMENTS = 1000;
+
+	@State(Scope.Benchmark)
+	public static class Index {
+		CapabilityIndex index;
+		QueryableArray queryable;
+		List<IMatchExpression<IInstallableUnit>> matches;
+
+		@Setup(Level.Trial)
+		public void setUp(RepositoryState state) {
+			index = new CapabilityIndex(Arrays.asList(state.units).iterator());
+			queryable = new QueryableArray(state.units);
+			// requirements spread over the whole repository
+			matches = new ArrayList<IMatchExpression<IInstallableUnit>>(REQUIREMENTS);
+			int step = Math.max(1, state.units.length / REQUIREMENTS);
+			for (int i = 0; i < state.units.length && matches.size() < REQUIREMENTS; i += step) {
+				for (IRequirement requirement : state.units[i].getRequirements())
+					matches.add(requirement.getMatches());
+			}
+		}
+	}
+
+	@Benchmark
+	public void getCandidates(Index data, Blackhole blackhole) {
+		IExpression thisVariable = ExpressionUtil.getFactory().thisVariable();
+		for (IMatchExpression<IInstallableUnit> match : data.matches) {
+			Iterator<IInstallableUnit> candidates = data.index.getCandidates(match.createContext(), thisVariable, match);
+			while (candidates != null && candidates.hasNext())
+				blackhole.consume(candidates.next());
+		}
+	}
+
+	@Benchmark
+	public void query(Index data, Blackhole blackhole) {
+		for (IMatchExpression<IInstallableUnit> match : data.matches)
+			blackhole.consume(data.queryable.query(QueryUtil.createMatchQuery(match), null));
+	}
+}
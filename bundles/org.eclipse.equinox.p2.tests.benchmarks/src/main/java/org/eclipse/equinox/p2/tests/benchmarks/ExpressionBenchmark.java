@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.metadata.expression.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the parsing of match expressions and their evaluation against every unit of a repository.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExpressionBenchmark {
+	static final String[] EXPRESSIONS = {"id == $0 && version ~= $1", //
+			"providedCapabilities.exists(pc | pc.namespace == 'java.package' && pc.name == $0 && pc.version ~= $1)", //
+			"properties[$0] == 'true'", //
+			"requirements.exists(rc | rc.name == $0)", //
+			"id ~= /org.example.bundle1*/ || version >= $1"};
+
+	@State(Scope.Benchmark)
+	public static class Expressions {
+		IInstallableUnit[] units;
+		IMatchExpression<IInstallableUnit>[] matches;
+
+		@SuppressWarnings("unchecked")
+		@Setup(Level.Trial)
+		public void setUp(RepositoryState state) {
+			units = state.units;
+			IInstallableUnit sample = units[units.length / 2];
+			Object[][] parameters = { {sample.getId(), new VersionRange(sample.getVersion().toString())}, {SyntheticRepository.PACKAGE_PREFIX + (units.length / 2), VersionRange.emptyRange}, {InstallableUnitDescription.PROP_TYPE_GROUP}, {SyntheticRepository.PACKAGE_PREFIX + (units.length / 3)}, {null, sample.getVersion()}};
+			IExpressionFactory factory = ExpressionUtil.getFactory();
+			matches = new IMatchExpression[EXPRESSIONS.length];
+			for (int i = 0; i < EXPRESSIONS.length; i++)
+				matches[i] = factory.<IInstallableUnit> matchExpression(ExpressionUtil.parse(EXPRESSIONS[i]), parameters[i]);
+		}
+	}
+
+	@Benchmark
+	public void parse(Blackhole blackhole) {
+		for (String expression : EXPRESSIONS)
+			blackhole.consume(ExpressionUtil.parse(expression));
+	}
+
+	@Benchmark
+	public void evaluate(Expressions data, Blackhole blackhole) {
+		for (IMatchExpression<IInstallableUnit> match : data.matches) {
+			IEvaluationContext context = match.createContext();
+			int matched = 0;
+			for (IInstallableUnit unit : data.units) {
+				if (match.isMatch(context, unit))
+					matched++;
+			}
+			blackhole.consume(matched);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.equinox.internal.p2.metadata.IUMap;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the lookup of units by identifier and by identifier and version.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IUMapBenchmark {
+	@State(Scope.Benchmark)
+	public static class Units {
+		IUMap map;
+		IInstallableUnit[] units;
+
+		@Setup(Level.Trial)
+		public void setUp(RepositoryState state) {
+			units = state.units;
+			map = new IUMap();
+			map.addAll(units);
+		}
+	}
+
+	@Benchmark
+	public void getById(Units data, Blackhole blackhole) {
+		for (IInstallableUnit unit : data.units)
+			blackhole.consume(data.map.get(unit.getId()));
+	}
+
+	@Benchmark
+	public void getByIdAndVersion(Units data, Blackhole blackhole) {
+		for (IInstallableUnit unit : data.units)
+			blackhole.consume(data.map.get(unit.getId(), unit.getVersion()));
+	}
+}
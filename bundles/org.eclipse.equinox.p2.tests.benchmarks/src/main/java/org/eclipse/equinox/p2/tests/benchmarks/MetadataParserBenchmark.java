@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.*;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataParser;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.openjdk.jmh.annotations.*;
+import org.xml.sax.*;
+
+/**
+ * Measures the parsing of the units of a metadata repository, from the XML to the installable units.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetadataParserBenchmark {
+	@State(Scope.Benchmark)
+	public static class Document {
+		byte[] xml;
+
+		@Setup(Level.Trial)
+		public void setUp(RepositoryState state) throws IOException {
+			xml = state.repository.toXML();
+		}
+	}
+
+	/**
+	 * Parses a <code>units</code> element without a running framework, the SAX parser
+	 * normally comes from a service.
+	 */
+	static class UnitsParser extends MetadataParser {
+		final List<InstallableUnitDescription> descriptions = new ArrayList<InstallableUnitDescription>();
+
+		UnitsParser() {
+			super(null, "org.eclipse.equinox.p2.tests.benchmarks"); //$NON-NLS-1$
+		}
+
+		protected SAXParser getParser() throws ParserConfigurationException, SAXException {
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			factory.setValidating(false);
+			SAXParser parser = factory.newSAXParser();
+			xmlReader = parser.getXMLReader();
+			return parser;
+		}
+
+		IInstallableUnit[] parse(byte[] xml) throws Exception {
+			getParser();
+			xmlReader.setContentHandler(new DocHandler(INSTALLABLE_UNITS_ELEMENT, new UnitsHandler()));
+			xmlReader.parse(new InputSource(new ByteArrayInputStream(xml)));
+			if (!isValidXML())
+				throw new IllegalStateException(getStatus().toString());
+			IInstallableUnit[] result = new IInstallableUnit[descriptions.size()];
+			for (int i = 0; i < result.length; i++)
+				result[i] = MetadataFactory.createInstallableUnit(descriptions.get(i));
+			return result;
+		}
+
+		protected Object getRootObject() {
+			return descriptions;
+		}
+
+		protected String getErrorMessage() {
+			return "Unable to parse the units"; //$NON-NLS-1$
+		}
+
+		private final class UnitsHandler extends RootHandler {
+			protected void handleRootAttributes(Attributes attributes) {
+				// the size is not needed
+			}
+
+			public void startElement(String name, Attributes attributes) {
+				if (name.equals(INSTALLABLE_UNIT_ELEMENT))
+					new InstallableUnitHandler(this, attributes, descriptions);
+				else
+					invalidElement(name, attributes);
+			}
+		}
+	}
+
+	@Benchmark
+	public IInstallableUnit[] parse(Document data) throws Exception {
+		return new UnitsParser().parse(data.xml);
+	}
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.internal.p2.director.*;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.IQueryable;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the steps of the planner: slicing the repository for a product, encoding the slice
+ * into a SAT problem and solving it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PlannerBenchmark {
+	@State(Scope.Benchmark)
+	public static class Plan {
+		IQueryable<IInstallableUnit> available;
+		IQueryable<IInstallableUnit> slice;
+		IQueryable<IInstallableUnit> installed;
+		IInstallableUnit product;
+		Map<String, String> context;
+
+		@Setup(Level.Trial)
+		public void setUp(RepositoryState state) {
+			context = new HashMap<String, String>();
+			IInstallableUnit[] units = new IInstallableUnit[state.units.length + 1];
+			System.arraycopy(state.units, 0, units, 0, state.units.length);
+			product = state.repository.getProduct();
+			units[state.units.length] = product;
+			available = new QueryableArray(units);
+			installed = new QueryableArray(new IInstallableUnit[0]);
+			slice = new Slicer(available, context, false).slice(new IInstallableUnit[] {product}, new NullProgressMonitor());
+			if (slice == null)
+				throw new IllegalStateException("The synthetic repository cannot be sliced"); //$NON-NLS-1$
+		}
+	}
+
+	@Benchmark
+	public IQueryable<IInstallableUnit> slice(Plan data) {
+		return new Slicer(data.available, data.context, false).slice(new IInstallableUnit[] {data.product}, new NullProgressMonitor());
+	}
+
+	@Benchmark
+	public Projector encode(Plan data) {
+		Projector projector = new Projector(data.slice, data.context, new HashSet<IInstallableUnit>(), false);
+		projector.encode(data.product, new IInstallableUnit[0], data.installed, Collections.singletonList(data.product), new NullProgressMonitor());
+		return projector;
+	}
+
+	@Benchmark
+	public Collection<IInstallableUnit> encodeAndSolve(Plan data) {
+		Projector projector = encode(data);
+		IStatus status = projector.invokeSolver(new NullProgressMonitor());
+		if (status.getSeverity() == IStatus.ERROR)
+			throw new IllegalStateException(status.toString());
+		return projector.extractSolution();
+	}
+}
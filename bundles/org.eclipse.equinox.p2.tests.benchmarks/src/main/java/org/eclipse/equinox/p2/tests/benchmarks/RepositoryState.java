@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.benchmarks;
+
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The synthetic repository shared by all the benchmarks of a trial, one per repository size.
+ */
+@State(Scope.Benchmark)
+public class RepositoryState {
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	public SyntheticRepository repository;
+	public IInstallableUnit[] units;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		repository = new SyntheticRepository(size);
+		units = repository.getUnits();
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataWriter;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+
+/**
+ * Generates repositories of installable units shaped like a real bundle repository: every unit
+ * exports a package, imports packages of units generated before it, and every fifth unit is a
+ * second major version of the previous bundle. The generation is deterministic for a given size.
+ */
+public class SyntheticRepository {
+	public static final String BUNDLE_PREFIX = "org.example.bundle"; //$NON-NLS-1$
+	public static final String PACKAGE_PREFIX = "org.example.pkg"; //$NON-NLS-1$
+	public static final String PACKAGE_NAMESPACE = "java.package"; //$NON-NLS-1$
+	public static final String BUNDLE_NAMESPACE = "osgi.bundle"; //$NON-NLS-1$
+	public static final String PRODUCT_ID = "org.example.product"; //$NON-NLS-1$
+
+	private static final int IMPORTS = 4;
+	private static final int IMPORT_WINDOW = 200;
+	private static final int ROOTS = 20;
+
+	private final IInstallableUnit[] units;
+	private final IInstallableUnit product;
+
+	public SyntheticRepository(int size) {
+		Random random = new Random(size);
+		units = new IInstallableUnit[size];
+		for (int i = 0; i < size; i++)
+			units[i] = createUnit(i, random);
+		product = createProduct();
+	}
+
+	private static IInstallableUnit createUnit(int index, Random random) {
+		boolean secondVersion = index % 5 == 4;
+		String id = BUNDLE_PREFIX + (secondVersion ? index - 1 : index);
+		Version version = Version.createOSGi(secondVersion ? 2 : 1, random.nextInt(10), random.nextInt(100), "v2012" + random.nextInt(10000)); //$NON-NLS-1$
+
+		InstallableUnitDescription description = new InstallableUnitDescription();
+		description.setId(id);
+		description.setVersion(version);
+		description.setSingleton(true);
+		if (index % 50 == 0)
+			description.setProperty(InstallableUnitDescription.PROP_TYPE_GROUP, Boolean.TRUE.toString());
+		description.setCapabilities(new IProvidedCapability[] {MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, id, version), MetadataFactory.createProvidedCapability(BUNDLE_NAMESPACE, id, version), MetadataFactory.createProvidedCapability(PACKAGE_NAMESPACE, PACKAGE_PREFIX + index, version)});
+
+		// imports stay within a window of preceding units so that slices grow with the repository
+		int imports = Math.min(index, IMPORTS);
+		List<IRequirement> requirements = new ArrayList<IRequirement>(imports);
+		for (int i = 0; i < imports; i++) {
+			int imported = index - 1 - random.nextInt(Math.min(index, IMPORT_WINDOW));
+			VersionRange range = new VersionRange(Version.createOSGi(1, 0, 0), true, Version.createOSGi(3, 0, 0), false);
+			requirements.add(MetadataFactory.createRequirement(PACKAGE_NAMESPACE, PACKAGE_PREFIX + imported, range, null, i == imports - 1 && index % 3 == 0, false));
+		}
+		description.setRequirements(requirements.toArray(new IRequirement[requirements.size()]));
+		return MetadataFactory.createInstallableUnit(description);
+	}
+
+	private IInstallableUnit createProduct() {
+		InstallableUnitDescription description = new InstallableUnitDescription();
+		description.setId(PRODUCT_ID);
+		description.setVersion(Version.createOSGi(1, 0, 0));
+		IInstallableUnit[] roots = getRoots();
+		IRequirement[] requirements = new IRequirement[roots.length];
+		for (int i = 0; i < roots.length; i++)
+			requirements[i] = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, roots[i].getId(), new VersionRange(roots[i].getVersion(), true, roots[i].getVersion(), true), null, false, false);
+		description.setRequirements(requirements);
+		description.setCapabilities(new IProvidedCapability[] {MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, PRODUCT_ID, description.getVersion())});
+		return MetadataFactory.createInstallableUnit(description);
+	}
+
+	public IInstallableUnit[] getUnits() {
+		return units;
+	}
+
+	/**
+	 * Returns the units the product is made of, the last ones generated since they have the deepest dependencies.
+	 */
+	public IInstallableUnit[] getRoots() {
+		int count = Math.min(ROOTS, units.length);
+		IInstallableUnit[] roots = new IInstallableUnit[count];
+		System.arraycopy(units, units.length - count, roots, 0, count);
+		return roots;
+	}
+
+	/**
+	 * Returns a unit requiring the {@link #getRoots() roots}, playing the role of the profile in a plan.
+	 */
+	public IInstallableUnit getProduct() {
+		return product;
+	}
+
+	/**
+	 * Returns the units as the <code>units</code> element of a metadata repository.
+	 */
+	public byte[] toXML() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(units.length * 1024);
+		MetadataWriter writer = new MetadataWriter(output, null);
+		writer.writeInstallableUnits(Arrays.asList(units).iterator(), units.length);
+		writer.flush();
+		output.close();
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.equinox.p2.metadata.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the parsing of the versions of a repository and the matching of its requirement ranges.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VersionBenchmark {
+	@State(Scope.Benchmark)
+	public static class Versions {
+		String[] strings;
+		Version[] versions;
+		VersionRange[] ranges;
+
+		@Setup(Level.Trial)
+		public void setUp(RepositoryState state) {
+			IInstallableUnit[] units = state.units;
+			strings = new String[units.length];
+			versions = new Version[units.length];
+			List<VersionRange> allRanges = new ArrayList<VersionRange>();
+			for (int i = 0; i < units.length; i++) {
+				versions[i] = units[i].getVersion();
+				strings[i] = versions[i].toString();
+				for (IRequirement requirement : units[i].getRequirements()) {
+					if (requirement instanceof IRequiredCapability)
+						allRanges.add(((IRequiredCapability) requirement).getRange());
+				}
+			}
+			ranges = allRanges.toArray(new VersionRange[allRanges.size()]);
+		}
+	}
+
+	@Benchmark
+	public void parseVersion(Versions data, Blackhole blackhole) {
+		for (String string : data.strings)
+			blackhole.consume(Version.parseVersion(string));
+	}
+
+	@Benchmark
+	public void isIncluded(Versions data, Blackhole blackhole) {
+		Version[] versions = data.versions;
+		VersionRange[] ranges = data.ranges;
+		for (int i = 0; i < ranges.length; i++)
+			blackhole.consume(ranges[i].isIncluded(versions[i % versions.length]));
+	}
+}
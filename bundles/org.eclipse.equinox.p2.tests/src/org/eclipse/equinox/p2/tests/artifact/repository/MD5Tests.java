@@ -15,6 +15,8 @@ import java.io.File;
 import java.util.Iterator;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.internal.p2.artifact.processors.md5.MD5Verifier;
+import org.eclipse.equinox.internal.p2.artifact.repository.DigestHelper;
 import org.eclipse.equinox.internal.p2.metadata.ArtifactKey;
 import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.metadata.Version;
@@ -62,6 +64,40 @@ public class MD5Tests extends AbstractProvisioningTest {
 		}
 	}
 
+	public void testDigestHelper() throws Exception {
+		File folder = getTempFolder();
+		File file = new File(folder, "abc.txt");
+		writeBuffer(file, new StringBuffer("abc"));
+		File empty = new File(folder, "empty.txt");
+		writeBuffer(empty, new StringBuffer());
+
+		assertEquals("1.0", "900150983cd24fb0d6963f7d28e17f72", DigestHelper.computeMD5(file));
+		assertEquals("1.1", "d41d8cd98f00b204e9800998ecf8427e", DigestHelper.computeMD5(empty));
+		assertNull("1.2", DigestHelper.computeMD5(folder));
+		assertNull("1.3", DigestHelper.computeMD5(new File(folder, "missing.txt")));
+
+		String[] digests = DigestHelper.computeDigests(file, new String[] {"MD5", "SHA-1"});
+		assertEquals("2.0", "900150983cd24fb0d6963f7d28e17f72", digests[0]);
+		assertEquals("2.1", "a9993e364706816aba3e25717850c26c9cd0d89d", digests[1]);
+
+		File[] files = new File[10];
+		for (int i = 0; i < files.length; i++)
+			files[i] = i % 2 == 0 ? file : empty;
+		String[] result = DigestHelper.computeMD5(files, new NullProgressMonitor());
+		for (int i = 0; i < files.length; i++)
+			assertEquals("3." + i, DigestHelper.computeMD5(files[i]), result[i]);
+	}
+
+	public void testVerifierBulkWrite() throws Exception {
+		ByteArrayOutputStream destination = new ByteArrayOutputStream();
+		MD5Verifier verifier = new MD5Verifier("900150983cd24fb0d6963f7d28e17f72");
+		verifier.link(destination, new NullProgressMonitor());
+		verifier.write("xabcx".getBytes(), 1, 3);
+		verifier.close();
+		assertOK("1.0", verifier.getStatus());
+		assertEquals("1.1", "abc", destination.toString());
+	}
+
 	protected void tearDown() throws Exception {
 		getArtifactRepositoryManager().removeRepository(testRepo.toURI());
 		super.tearDown();
@@ -11,11 +11,12 @@ package org.eclipse.equinox.p2.tests.core;
 
 import org.eclipse.equinox.p2.query.MatchQuery;
 
-import java.util.Arrays;
-import java.util.Iterator;
+import java.util.*;
 import junit.framework.TestCase;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.tests.harness.TestProgressMonitor;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.query.*;
 import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
 
@@ -286,4 +287,39 @@ public class CompoundQueryableTest extends TestCase {
 		assertTrue("1.0", monitor.isDone());
 		assertTrue("1.1", monitor.isWorkDone());
 	}
+
+	public void testParallelQueries() {
+		List<IQueryable<IInstallableUnit>> members = new ArrayList<IQueryable<IInstallableUnit>>();
+		for (int i = 0; i < 5; i++) {
+			List<IInstallableUnit> units = new ArrayList<IInstallableUnit>();
+			for (int j = 0; j < 20; j++)
+				units.add(AbstractProvisioningTest.createIU("unit" + j % 7, Version.createOSGi(1, i, j))); //$NON-NLS-1$
+			members.add(new CollectionResult<IInstallableUnit>(units));
+		}
+		IQueryable<IInstallableUnit> compound = QueryUtil.compoundQueryable(members);
+
+		List<IQuery<IInstallableUnit>> queries = new ArrayList<IQuery<IInstallableUnit>>();
+		queries.add(QueryUtil.createIUQuery("unit3")); //$NON-NLS-1$
+		queries.add(QueryUtil.createLatestIUQuery());
+		queries.add(QueryUtil.createLatestQuery(QueryUtil.createIUQuery("unit4"))); //$NON-NLS-1$
+		queries.add(QueryUtil.createLimitQuery(QueryUtil.createIUAnyQuery(), 30));
+		queries.add(QueryUtil.createLimitQuery(QueryUtil.createIUQuery("unit5"), 4)); //$NON-NLS-1$
+
+		for (IQuery<IInstallableUnit> query : queries) {
+			List<IInstallableUnit> sequential = new ArrayList<IInstallableUnit>(compound.query(query, null).toUnmodifiableSet());
+			String previous = System.setProperty("eclipse.p2.query.threads", "3"); //$NON-NLS-1$ //$NON-NLS-2$
+			try {
+				CompoundQueryTestProgressMonitor monitor = new CompoundQueryTestProgressMonitor();
+				Set<IInstallableUnit> parallel = compound.query(query, monitor).toUnmodifiableSet();
+				assertEquals(query.toString(), new HashSet<IInstallableUnit>(sequential), parallel);
+				assertTrue(query.toString(), monitor.isDone());
+				assertTrue(query.toString(), monitor.isWorkDone());
+			} finally {
+				if (previous == null)
+					System.getProperties().remove("eclipse.p2.query.threads"); //$NON-NLS-1$
+				else
+					System.setProperty("eclipse.p2.query.threads", previous); //$NON-NLS-1$
+			}
+		}
+	}
 }
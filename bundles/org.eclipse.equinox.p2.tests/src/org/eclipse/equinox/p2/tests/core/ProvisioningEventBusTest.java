@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.core;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.core.ProvisioningEventBus;
+import org.eclipse.equinox.internal.provisional.p2.core.eventbus.BatchedProvisioningListener;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Tests for the delivery of events to {@link BatchedProvisioningListener}s by {@link ProvisioningEventBus}.
+ */
+public class ProvisioningEventBusTest extends AbstractProvisioningTest {
+	static class ProgressEvent extends EventObject {
+		private static final long serialVersionUID = 1L;
+
+		ProgressEvent(Object source) {
+			super(source);
+		}
+	}
+
+	static class BatchCollector implements BatchedProvisioningListener {
+		final List<EventObject> events = new ArrayList<EventObject>();
+		int batches = 0;
+		// whether the dispatcher is kept in the notification of the batch it delivers
+		private boolean held = false;
+
+		public synchronized void notify(EventObject[] batch) {
+			events.addAll(Arrays.asList(batch));
+			batches++;
+			notifyAll();
+			while (held) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		public void notify(EventObject o) {
+			fail("Batched listeners must be notified of batches");
+		}
+
+		public boolean canCoalesce(EventObject event) {
+			return event instanceof ProgressEvent;
+		}
+
+		synchronized void hold() {
+			held = true;
+		}
+
+		synchronized void release() {
+			held = false;
+			notifyAll();
+		}
+
+		synchronized void waitFor(int count) throws InterruptedException {
+			long end = System.currentTimeMillis() + 10000;
+			while (events.size() < count && System.currentTimeMillis() < end)
+				wait(100);
+			assertTrue("Timed out waiting for " + count + " events", events.size() >= count);
+		}
+	}
+
+	private ProvisioningEventBus bus;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		bus = new ProvisioningEventBus();
+	}
+
+	protected void tearDown() throws Exception {
+		bus.close();
+		super.tearDown();
+	}
+
+	/*
+	 * Holds the dispatcher in the delivery of a first event so that the events published
+	 * next are all queued before it can deliver them, and returns the first event.
+	 */
+	private EventObject holdDispatcher(BatchCollector listener) throws InterruptedException {
+		listener.hold();
+		EventObject blocker = new EventObject(this);
+		bus.publishEvent(blocker);
+		listener.waitFor(1);
+		return blocker;
+	}
+
+	public void testBatchOrder() throws InterruptedException {
+		BatchCollector listener = new BatchCollector();
+		bus.addListener(listener);
+		EventObject[] published = new EventObject[10];
+		EventObject blocker;
+		try {
+			blocker = holdDispatcher(listener);
+			for (int i = 0; i < published.length; i++) {
+				published[i] = new EventObject(new Integer(i));
+				bus.publishEvent(published[i]);
+			}
+			assertEquals("1.0", published.length, bus.getQueueDepth(listener));
+		} finally {
+			listener.release();
+		}
+		listener.waitFor(published.length + 1);
+		synchronized (listener) {
+			assertSame("1.1", blocker, listener.events.get(0));
+			assertEquals("1.2", Arrays.asList(published), listener.events.subList(1, listener.events.size()));
+			// the queued events are delivered in a single batch
+			assertEquals("1.3", 2, listener.batches);
+		}
+		assertEquals("1.4", 0, bus.getQueueDepth(listener));
+		assertEquals("1.5", published.length, bus.getMaximumQueueDepth(listener));
+	}
+
+	public void testCoalescing() throws InterruptedException {
+		BatchCollector listener = new BatchCollector();
+		bus.addListener(listener);
+		// publishes many progress events between two events that cannot be coalesced
+		EventObject first = new EventObject("first");
+		EventObject last = new EventObject("last");
+		ProgressEvent progress = null;
+		EventObject blocker;
+		try {
+			blocker = holdDispatcher(listener);
+			bus.publishEvent(first);
+			for (int i = 0; i < 1000; i++) {
+				progress = new ProgressEvent(new Integer(i));
+				bus.publishEvent(progress);
+			}
+			bus.publishEvent(last);
+			assertEquals("1.0", 3, bus.getQueueDepth(listener));
+		} finally {
+			listener.release();
+		}
+		listener.waitFor(4);
+		synchronized (listener) {
+			// only the latest progress event is delivered, in the place of the first one
+			assertEquals("1.1", Arrays.asList(new EventObject[] {blocker, first, progress, last}), listener.events);
+			assertEquals("1.2", 2, listener.batches);
+		}
+	}
+
+	public void testRemoveListener() {
+		BatchCollector listener = new BatchCollector();
+		bus.addListener(listener);
+		bus.removeListener(listener);
+		assertEquals("1.0", -1, bus.getQueueDepth(listener));
+		bus.publishEvent(new EventObject(this));
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -103,4 +103,77 @@ public class DirectoryWatcherTest extends AbstractProvisioningTest {
 		watcher.poll();
 		assertEquals(2, list.size());
 	}
+
+	public void testWatcherThreadNotifiesChanges() throws Exception {
+		File folder = getTempFolder();
+		final Set seen = new HashSet();
+		final List events = new ArrayList();
+		DirectoryChangeListener listener = new DirectoryChangeListener() {
+			public boolean added(File file) {
+				synchronized (events) {
+					seen.add(file);
+					events.add("added " + file.getName());
+					events.notifyAll();
+				}
+				return true;
+			}
+
+			public boolean removed(File file) {
+				synchronized (events) {
+					seen.remove(file);
+					events.add("removed " + file.getName());
+					events.notifyAll();
+				}
+				return true;
+			}
+
+			public boolean isInterested(File file) {
+				return true;
+			}
+
+			public Long getSeenFile(File file) {
+				synchronized (events) {
+					return seen.contains(file) ? new Long(file.lastModified()) : null;
+				}
+			}
+
+			public boolean supportsIncrementalPoll() {
+				return true;
+			}
+		};
+		DirectoryWatcher watcher = new DirectoryWatcher(folder);
+		watcher.addListener(listener);
+		watcher.start(100);
+		try {
+			File file = new File(folder, "a.jar");
+			writeBuffer(file, new StringBuffer("a"));
+			waitFor(events, "added a.jar");
+			file.delete();
+			waitFor(events, "removed a.jar");
+		} finally {
+			watcher.stop();
+		}
+	}
+
+	public void testWatcherThreadStopsPromptly() throws Exception {
+		DirectoryWatcher watcher = new DirectoryWatcher(getTempFolder());
+		// the thread would not wake up by itself before the end of the test
+		DirectoryWatcher.WatcherThread thread = watcher.new WatcherThread(60000);
+		thread.start();
+		Thread.sleep(500);
+		long start = System.currentTimeMillis();
+		thread.done();
+		thread.join(10000);
+		assertFalse("1.0", thread.isAlive());
+		assertTrue("1.1", System.currentTimeMillis() - start < 10000);
+	}
+
+	private void waitFor(List events, String event) throws InterruptedException {
+		long end = System.currentTimeMillis() + 10000;
+		synchronized (events) {
+			while (!events.contains(event) && System.currentTimeMillis() < end)
+				events.wait(100);
+			assertTrue(event, events.contains(event));
+		}
+	}
 }
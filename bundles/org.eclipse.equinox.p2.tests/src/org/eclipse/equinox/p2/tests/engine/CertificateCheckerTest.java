@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2010 IBM Corporation and others.
+ * Copyright (c) 2009, 2012 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -138,6 +138,31 @@ public class CertificateCheckerTest extends AbstractProvisioningTest {
 		}
 	}
 
+	/**
+	 * Tests that the artifacts verified on several threads are all reported.
+	 */
+	public void testConcurrentVerification() {
+		File folder = getTempFolder();
+		File[] copies = new File[20];
+		for (int i = 0; i < copies.length; i++) {
+			copies[i] = new File(folder, "unsigned" + i + ".jar");
+			copy("0.1", unsigned, copies[i]);
+		}
+		try {
+			System.getProperties().setProperty(CertificateChecker.PROP_THREADS, "4");
+			System.getProperties().setProperty(EngineActivator.PROP_UNSIGNED_POLICY, EngineActivator.UNSIGNED_FAIL);
+			checker = new CertificateChecker(testAgent);
+			checker.add(copies);
+			IStatus result = checker.start();
+			assertEquals("1.0", IStatus.ERROR, result.getSeverity());
+			for (int i = 0; i < copies.length; i++)
+				assertTrue("2." + i, result.getMessage().indexOf(copies[i].toString()) >= 0);
+		} finally {
+			System.getProperties().remove(CertificateChecker.PROP_THREADS);
+			System.getProperties().remove(EngineActivator.PROP_UNSIGNED_POLICY);
+		}
+	}
+
 	/**
 	 * Tests that trust checks that occur in a headless environment are properly treated
 	 * as permissive, but not persistent, the same way as it would be if the service registration
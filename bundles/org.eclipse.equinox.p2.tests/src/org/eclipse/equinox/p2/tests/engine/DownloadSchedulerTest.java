@@ -0,0 +1,201 @@
+/*******************************************************************************
+ *  Copyright (c) 2012 IBM Corporation and others.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ * 
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.engine;
+
+import java.net.URI;
+import java.util.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.internal.p2.engine.DownloadScheduler;
+import org.eclipse.equinox.internal.p2.metadata.ArtifactKey;
+import org.eclipse.equinox.p2.metadata.IArtifactKey;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.repository.artifact.*;
+import org.eclipse.equinox.p2.repository.artifact.spi.ArtifactDescriptor;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+import org.eclipse.equinox.p2.tests.TestArtifactRepository;
+
+/**
+ * Tests for {@link DownloadScheduler}.
+ */
+public class DownloadSchedulerTest extends AbstractProvisioningTest {
+
+	class Request implements IArtifactRequest {
+		final IArtifactKey key;
+		IStatus result;
+		List<IArtifactRepository> tried = Collections.synchronizedList(new ArrayList<IArtifactRepository>());
+
+		Request(String id) {
+			key = new ArtifactKey("osgi.bundle", id, Version.create("1.0.0"));
+		}
+
+		public IArtifactKey getArtifactKey() {
+			return key;
+		}
+
+		public void perform(IArtifactRepository sourceRepository, IProgressMonitor monitor) {
+			tried.add(sourceRepository);
+			result = ((Repository) sourceRepository).download(this);
+		}
+
+		public IStatus getResult() {
+			return result;
+		}
+	}
+
+	class Repository extends TestArtifactRepository {
+		final Map<IArtifactKey, Long> sizes = new HashMap<IArtifactKey, Long>();
+		final Set<IArtifactKey> failing = new HashSet<IArtifactKey>();
+		final List<IArtifactKey> downloaded = Collections.synchronizedList(new ArrayList<IArtifactKey>());
+		long delay;
+
+		Repository(String location) throws Exception {
+			super(getAgent(), new URI(location));
+		}
+
+		void add(Request request, long size) {
+			sizes.put(request.key, new Long(size));
+		}
+
+		IStatus download(Request request) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				//ignore
+			}
+			if (failing.contains(request.key))
+				return new Status(IStatus.ERROR, "test", "failed");
+			downloaded.add(request.key);
+			return Status.OK_STATUS;
+		}
+
+		public boolean contains(IArtifactKey key) {
+			return sizes.containsKey(key);
+		}
+
+		public IArtifactDescriptor[] getArtifactDescriptors(IArtifactKey key) {
+			ArtifactDescriptor descriptor = new ArtifactDescriptor(key);
+			descriptor.setProperty(IArtifactDescriptor.DOWNLOAD_SIZE, sizes.get(key).toString());
+			return new IArtifactDescriptor[] {descriptor};
+		}
+
+		public IStatus getArtifacts(IArtifactRequest[] requests, IProgressMonitor monitor) {
+			for (int i = 0; i < requests.length; i++)
+				requests[i].perform(this, monitor);
+			return Status.OK_STATUS;
+		}
+	}
+
+	public void testLargestFirst() throws Exception {
+		Repository repository = new Repository("http://a.example.org/");
+		repository.setProperty(DownloadScheduler.PROP_MAX_THREADS, "1");
+		Request small = new Request("small"), medium = new Request("medium"), large = new Request("large");
+		repository.add(small, 10);
+		repository.add(medium, 100);
+		repository.add(large, 1000);
+
+		IStatus status = new DownloadScheduler(new IArtifactRepository[] {repository}, Arrays.<IArtifactRequest> asList(small, large, medium)).run(new NullProgressMonitor());
+		assertOK("1.0", status);
+		assertEquals(Arrays.asList(large.key, medium.key, small.key), repository.downloaded);
+	}
+
+	public void testRetryFromNextRepository() throws Exception {
+		Repository first = new Repository("http://a.example.org/");
+		Repository second = new Repository("http://b.example.org/");
+		Request request = new Request("bundle");
+		first.add(request, 10);
+		first.failing.add(request.key);
+		second.add(request, 10);
+
+		new DownloadScheduler(new IArtifactRepository[] {first, second}, Collections.<IArtifactRequest> singletonList(request)).run(new NullProgressMonitor());
+		assertOK("1.0", request.getResult());
+		assertEquals(Arrays.asList(first, second), request.tried);
+	}
+
+	public void testFailureFromAllRepositories() throws Exception {
+		Repository first = new Repository("http://a.example.org/");
+		Request request = new Request("bundle");
+		first.add(request, 10);
+		first.failing.add(request.key);
+
+		new DownloadScheduler(new IArtifactRepository[] {first}, Collections.<IArtifactRequest> singletonList(request)).run(new NullProgressMonitor());
+		assertEquals(IStatus.ERROR, request.getResult().getSeverity());
+	}
+
+	public void testIdleWorkerTakesRequestFromSaturatedRepository() throws Exception {
+		Repository slow = new Repository("http://slow.example.org/");
+		slow.setProperty(DownloadScheduler.PROP_MAX_THREADS, "1");
+		slow.delay = 500;
+		Repository other = new Repository("http://other.example.org/");
+		Request first = new Request("first"), second = new Request("second");
+		slow.add(first, 100);
+		slow.add(second, 10);
+		other.add(first, 100);
+		other.add(second, 10);
+
+		new DownloadScheduler(new IArtifactRepository[] {slow, other}, Arrays.<IArtifactRequest> asList(first, second)).run(new NullProgressMonitor());
+		assertOK("1.0", first.getResult());
+		assertOK("1.1", second.getResult());
+		assertEquals(Collections.singletonList(first.key), slow.downloaded);
+		assertEquals(Collections.singletonList(second.key), other.downloaded);
+	}
+
+	public void testRepositoryNotifications() throws Exception {
+		Repository first = new Repository("http://a.example.org/");
+		Repository second = new Repository("http://b.example.org/");
+		Request request = new Request("bundle");
+		first.add(request, 10);
+		first.failing.add(request.key);
+		second.add(request, 10);
+
+		final List<String> notifications = Collections.synchronizedList(new ArrayList<String>());
+		DownloadScheduler scheduler = new DownloadScheduler(new IArtifactRepository[] {first, second}, Collections.<IArtifactRequest> singletonList(request)) {
+			protected void repositoryStarted(IArtifactRepository repository, IArtifactRequest[] requests) {
+				notifications.add("start " + repository.getLocation().getHost() + " " + requests.length);
+			}
+
+			protected void repositoryEnded(IArtifactRepository repository, IArtifactRequest[] requests) {
+				notifications.add("end " + repository.getLocation().getHost() + " " + requests.length);
+			}
+		};
+		assertOK("1.0", scheduler.run(new NullProgressMonitor()));
+		assertOK("1.1", request.getResult());
+		//the retry from the second repository is notified around its own download
+		assertEquals(Arrays.asList("start a.example.org 1", "end a.example.org 1", "start b.example.org 1", "end b.example.org 1"), notifications);
+	}
+
+	public void testProgress() throws Exception {
+		Repository repository = new Repository("http://a.example.org/");
+		List<IArtifactRequest> requests = new ArrayList<IArtifactRequest>();
+		for (int i = 0; i < 5; i++) {
+			Request request = new Request("bundle" + i);
+			repository.add(request, 10);
+			requests.add(request);
+		}
+		final int[] total = new int[1];
+		final int[] worked = new int[1];
+		IProgressMonitor monitor = new NullProgressMonitor() {
+			public void beginTask(String name, int totalWork) {
+				total[0] = totalWork;
+			}
+
+			public void worked(int work) {
+				worked[0] += work;
+			}
+
+			public void internalWorked(double work) {
+				worked[0] += (int) work;
+			}
+		};
+		new DownloadScheduler(new IArtifactRepository[] {repository}, requests).run(monitor);
+		assertTrue(total[0] > 0);
+		assertEquals(total[0], worked[0]);
+	}
+}
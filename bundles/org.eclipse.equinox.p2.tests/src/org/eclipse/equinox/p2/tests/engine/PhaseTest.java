@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -303,4 +303,121 @@ public class PhaseTest extends AbstractProvisioningTest {
 		assertEquals(TestAction.class, ((ParameterizedProvisioningAction) actionsList2.get(0)).getAction().getClass());
 	}
 
+	public static class IndependentAction extends ProvisioningAction {
+		final ConcurrentPhase phase;
+		final IInstallableUnit unit;
+
+		IndependentAction(ConcurrentPhase phase, IInstallableUnit unit) {
+			this.phase = phase;
+			this.unit = unit;
+		}
+
+		public boolean isIndependent() {
+			return true;
+		}
+
+		public IStatus execute(Map parameters) {
+			assertEquals(unit, parameters.get("iu"));
+			phase.threads.add(Thread.currentThread());
+			if (unit.getId().equals(phase.failing))
+				return new Status(IStatus.ERROR, "test", 0, "failing " + unit.getId(), null);
+			phase.executed.add(unit.getId());
+			return null;
+		}
+
+		public IStatus undo(Map parameters) {
+			phase.undone.add(unit.getId());
+			return null;
+		}
+	}
+
+	public static class ConcurrentPhase extends TestPhase {
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		final Set<String> executed = Collections.synchronizedSet(new HashSet<String>());
+		final Set<String> undone = Collections.synchronizedSet(new HashSet<String>());
+		final List<String> completed = new ArrayList<String>();
+		String failing;
+
+		ConcurrentPhase() {
+			super("concurrent", 1);
+		}
+
+		protected boolean supportsConcurrentOperands() {
+			return true;
+		}
+
+		protected List<ProvisioningAction> getActions(InstallableUnitOperand operand) {
+			List<ProvisioningAction> actions = new ArrayList<ProvisioningAction>();
+			actions.add(new IndependentAction(this, operand.second()));
+			actions.add(new IndependentAction(this, operand.second()));
+			return actions;
+		}
+
+		protected IStatus initializeOperand(IProfile profile, InstallableUnitOperand operand, Map parameters, IProgressMonitor monitor) {
+			parameters.put("iu", operand.second());
+			return super.initializeOperand(profile, operand, parameters, monitor);
+		}
+
+		protected IStatus completeOperand(IProfile profile, InstallableUnitOperand operand, Map parameters, IProgressMonitor monitor) {
+			assertTrue(executed.contains(operand.second().getId()));
+			completed.add(operand.second().getId());
+			return super.completeOperand(profile, operand, parameters, monitor);
+		}
+	}
+
+	private IProvisioningPlan createConcurrentPlan(String profileId, int units) {
+		ProvisioningContext context = new ProvisioningContext(getAgent());
+		context.setProperty(Phase.OPERAND_THREADS, "4");
+		IProvisioningPlan plan = engine.createPlan(createProfile(profileId), context);
+		for (int i = 0; i < units; i++)
+			plan.addInstallableUnit(createIU("unit" + i));
+		return plan;
+	}
+
+	public void testConcurrentOperands() {
+		ConcurrentPhase phase = new ConcurrentPhase();
+		IProvisioningPlan plan = createConcurrentPlan("testConcurrentOperands", 20);
+		IStatus status = engine.perform(plan, new TestPhaseSet(phase), new NullProgressMonitor());
+		if (!status.isOK())
+			fail(status.toString());
+
+		assertEquals(20, phase.executed.size());
+		assertEquals(20, phase.completed.size());
+		assertTrue(phase.undone.isEmpty());
+		assertFalse(phase.threads.contains(Thread.currentThread()));
+		// the operands are completed in the order of the plan
+		List<String> expected = new ArrayList<String>();
+		Operand[] operands = ((ProvisioningPlan) plan).getOperands();
+		for (int i = 0; i < operands.length; i++) {
+			Operand operand = operands[i];
+			if (operand instanceof InstallableUnitOperand && ((InstallableUnitOperand) operand).second() != null)
+				expected.add(((InstallableUnitOperand) operand).second().getId());
+		}
+		assertEquals(expected, phase.completed);
+	}
+
+	public void testConcurrentOperandsRollback() {
+		ConcurrentPhase phase = new ConcurrentPhase();
+		phase.failing = "unit10";
+		IProvisioningPlan plan = createConcurrentPlan("testConcurrentOperandsRollback", 20);
+		IStatus status = engine.perform(plan, new TestPhaseSet(phase), new NullProgressMonitor());
+		assertEquals(IStatus.ERROR, status.getSeverity());
+		assertFalse(phase.executed.contains("unit10"));
+		// every executed action is undone
+		assertTrue(phase.undone.containsAll(phase.executed));
+		assertTrue(phase.undone.contains("unit10"));
+	}
+
+	public void testSequentialOperands() {
+		ConcurrentPhase phase = new ConcurrentPhase();
+		IProfile profile = createProfile("testSequentialOperands");
+		IProvisioningPlan plan = engine.createPlan(profile, null);
+		for (int i = 0; i < 5; i++)
+			plan.addInstallableUnit(createIU("unit" + i));
+		IStatus status = engine.perform(plan, new TestPhaseSet(phase), new NullProgressMonitor());
+		if (!status.isOK())
+			fail(status.toString());
+		assertEquals(5, phase.completed.size());
+		assertEquals(Collections.singleton(Thread.currentThread()), phase.threads);
+	}
 }
@@ -691,6 +691,73 @@ public class ProfileRegistryTest extends AbstractProvisioningTest {
 		assertEquals(1, fail);
 	}
 
+	public void testDeltaHistory() throws ProvisionException {
+		System.getProperties().put(EngineActivator.PROP_PROFILE_HISTORY, EngineActivator.PROFILE_HISTORY_DELTA);
+		try {
+			File folder = getTempFolder();
+			folder.mkdirs();
+			SimpleProfileRegistry profileRegistry = new SimpleProfileRegistry(getAgent(), folder, null, false);
+			IInstallableUnit a = createIU("A", Version.create("1.0.0"));
+			IInstallableUnit b = createIU("B", Version.create("1.0.0"));
+			IInstallableUnit b2 = createIU("B", Version.create("2.0.0"));
+
+			Profile profile = (Profile) profileRegistry.addProfile(getName());
+			List<IProfile> states = new ArrayList<IProfile>();
+			states.add(profile.snapshot());
+			profile.setProperty("p", "1");
+			profile.addInstallableUnit(a);
+			profile.setInstallableUnitProperty(a, "root", "true");
+			saveProfile(profileRegistry, profile);
+			states.add(profile.snapshot());
+			profile.addInstallableUnit(b);
+			saveProfile(profileRegistry, profile);
+			states.add(profile.snapshot());
+			profile.removeInstallableUnit(b);
+			profile.addInstallableUnit(b2);
+			profile.removeInstallableUnitProperty(a, "root");
+			profile.setInstallableUnitProperty(b2, "root", "true");
+			profile.removeProperty("p");
+			saveProfile(profileRegistry, profile);
+			states.add(profile.snapshot());
+
+			File profileFolder = new File(folder, getName() + ".profile");
+			File[] deltas = profileFolder.listFiles(new FileFilter() {
+				public boolean accept(File pathname) {
+					return pathname.getName().endsWith(".delta.gz");
+				}
+			});
+			assertEquals(3, deltas.length);
+
+			// read the states back from disk
+			profileRegistry = new SimpleProfileRegistry(getAgent(), folder, null, false);
+			long[] timestamps = profileRegistry.listProfileTimestamps(getName());
+			assertEquals(4, timestamps.length);
+			for (int i = 0; i < timestamps.length; i++)
+				assertSameState(states.get(i), profileRegistry.getProfile(getName(), timestamps[i]));
+			assertSameState(states.get(3), profileRegistry.getProfile(getName()));
+
+			// removing a state must keep the following states readable
+			profileRegistry.removeProfile(getName(), timestamps[0]);
+			profileRegistry.removeProfile(getName(), timestamps[2]);
+			profileRegistry = new SimpleProfileRegistry(getAgent(), folder, null, false);
+			assertEquals(2, profileRegistry.listProfileTimestamps(getName()).length);
+			assertSameState(states.get(1), profileRegistry.getProfile(getName(), timestamps[1]));
+			assertSameState(states.get(3), profileRegistry.getProfile(getName(), timestamps[3]));
+		} finally {
+			System.getProperties().remove(EngineActivator.PROP_PROFILE_HISTORY);
+		}
+	}
+
+	private void assertSameState(IProfile expected, IProfile actual) {
+		assertNotNull(actual);
+		assertEquals(expected.getTimestamp(), actual.getTimestamp());
+		assertEquals(expected.getProperties(), actual.getProperties());
+		Set<IInstallableUnit> ius = expected.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+		assertEquals(ius, actual.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+		for (IInstallableUnit iu : ius)
+			assertEquals(iu.toString(), expected.getInstallableUnitProperties(iu), actual.getInstallableUnitProperties(iu));
+	}
+
 	public void testSetProfileStateProperties() throws ProvisionException {
 		assertNull(registry.getProfile(PROFILE_NAME));
 		Profile profile = (Profile) registry.addProfile(PROFILE_NAME);
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.metadata;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.CompactingPool;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Tests for {@link CompactingPool}.
+ */
+public class CompactingPoolTest extends AbstractProvisioningTest {
+	private IInstallableUnit createUnit(String name, String version) {
+		IRequirement[] requires = new IRequirement[] {MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "org.eclipse.core.runtime", new VersionRange("[3.5.0,4.0.0)"), null, false, false)};
+		IProvidedCapability[] provides = new IProvidedCapability[] {MetadataFactory.createProvidedCapability("org.eclipse.equinox.p2.eclipse.type", "bundle", Version.create("1.0.0"))};
+		Map<String, String> properties = new HashMap<String, String>();
+		properties.put(IInstallableUnit.PROP_PROVIDER, new String("Eclipse.org"));
+		return createIU(name, Version.create(version), InstallableUnit.parseFilter("(osgi.os=linux)"), requires, provides, properties, ITouchpointType.NONE, NO_TP_DATA, false);
+	}
+
+	public void testSharedParts() {
+		CompactingPool pool = new CompactingPool();
+		IInstallableUnit unit1 = createUnit("a", "1.0.0");
+		IInstallableUnit unit2 = createUnit("b", "1.0.0");
+		assertSame("1.0", unit1, pool.add(unit1));
+		assertSame("1.1", unit2, pool.add(unit2));
+
+		assertSame("2.0", unit1.getRequirements().get(0), unit2.getRequirements().get(0));
+		assertSame("2.1", unit1.getProvidedCapabilities().iterator().next(), unit2.getProvidedCapabilities().iterator().next());
+		assertSame("2.2", unit1.getVersion(), unit2.getVersion());
+		assertSame("2.3", unit1.getProperty(IInstallableUnit.PROP_PROVIDER), unit2.getProperty(IInstallableUnit.PROP_PROVIDER));
+		assertTrue("2.4", pool.getSharedCount() > 0);
+	}
+
+	public void testSharedUnit() {
+		CompactingPool pool = new CompactingPool();
+		IInstallableUnit unit1 = createUnit("a", "1.0.0");
+		IInstallableUnit unit2 = createUnit("a", "1.0.0");
+		assertSame("1.0", unit1, pool.add(unit1));
+		assertSame("1.1", unit1, pool.add(unit2));
+		assertNull("1.2", pool.add(null));
+	}
+
+	public void testPropertiesNotShared() {
+		CompactingPool pool = new CompactingPool();
+		InstallableUnit unit1 = (InstallableUnit) createUnit("a", "1.0.0");
+		InstallableUnit unit2 = (InstallableUnit) createUnit("b", "1.0.0");
+		pool.add(unit1);
+		pool.add(unit2);
+
+		unit1.setProperty("key", "value");
+		assertEquals("1.0", "value", unit1.getProperty("key"));
+		assertNull("1.1", unit2.getProperty("key"));
+		assertEquals("1.2", "Eclipse.org", unit2.getProperty(IInstallableUnit.PROP_PROVIDER));
+	}
+
+	public void testEqualsAfterCompaction() {
+		CompactingPool pool = new CompactingPool();
+		IInstallableUnit unit = createUnit("a", "1.0.0");
+		IInstallableUnit copy = createUnit("a", "1.0.0");
+		pool.add(createUnit("b", "1.0.0"));
+		pool.add(unit);
+
+		assertEquals("1.0", copy.getRequirements(), unit.getRequirements());
+		assertEquals("1.1", new ArrayList<IProvidedCapability>(copy.getProvidedCapabilities()), new ArrayList<IProvidedCapability>(unit.getProvidedCapabilities()));
+		assertEquals("1.2", copy.getFilter(), unit.getFilter());
+		assertEquals("1.3", copy.getProperties(), unit.getProperties());
+	}
+}
@@ -404,6 +404,36 @@ public class IUPersistenceTest extends AbstractProvisioningTest {
 		assertTrue("Installable unit write after read after write produced different XML", iuText1.equals(iuText0));
 	}
 
+	public void testSharedValues() throws IOException {
+		IInstallableUnit iu0 = createPersistenceTestIU();
+		ByteArrayOutputStream output0 = new ByteArrayOutputStream(3072);
+		IUStringWriter writer0 = new IUStringWriter(output0);
+		writer0.writeTest(iu0);
+		String iuText0 = output0.toString();
+		output0.close();
+
+		IUStringParser parser = new IUStringParser(TestActivator.context, TestActivator.PI_PROV_TESTS);
+		parser.parse(iuText0);
+		assertTrue("Error parsing test iu: " + parser.getStatus().getMessage(), parser.getStatus().isOK());
+		InstallableUnit iu1 = (InstallableUnit) parser.getRootObject();
+		validateIU(iu1);
+
+		// equal values read from the document are the same instances
+		Map<Version, Version> versions = new HashMap<Version, Version>();
+		Map<String, String> namespaces = new HashMap<String, String>();
+		for (IProvidedCapability capability : iu1.getProvidedCapabilities()) {
+			Version known = versions.put(capability.getVersion(), capability.getVersion());
+			assertTrue(capability.toString(), known == null || known == capability.getVersion());
+			String knownNamespace = namespaces.put(capability.getNamespace(), capability.getNamespace());
+			assertTrue(capability.toString(), knownNamespace == null || knownNamespace == capability.getNamespace());
+		}
+		for (IRequirement requirement : iu1.getRequirements()) {
+			String namespace = RequiredCapability.extractNamespace(requirement.getMatches());
+			assertSame(requirement.toString(), namespaces.get(PackagesNS), namespace);
+		}
+		assertTrue(parser.getParseStatistics(), parser.getElementCount() > 0);
+	}
+
 	private void validateIU(IInstallableUnit iu) {
 		assertTrue("Installable unit id is not correct", id.equals(iu.getId()));
 		assertTrue("Installable unit version is not correct", version.equals(iu.getVersion()));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2008, 2010 IBM Corporation and others.
+ *  Copyright (c) 2008, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -11,9 +11,13 @@
  *******************************************************************************/
 package org.eclipse.equinox.p2.tests.metadata.repository;
 
-import java.io.File;
+import java.io.*;
 import java.net.URI;
 import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.repository.BinaryCapabilityIndex;
+import org.eclipse.equinox.internal.p2.metadata.repository.BinaryIdIndex;
+import org.eclipse.equinox.internal.p2.metadata.repository.LocalMetadataRepository;
 import org.eclipse.equinox.internal.provisional.p2.core.eventbus.*;
 import org.eclipse.equinox.internal.provisional.p2.repository.RepositoryEvent;
 import org.eclipse.equinox.p2.core.ProvisionException;
@@ -81,6 +85,116 @@ public class LocalMetadataRepositoryTest extends AbstractProvisioningTest {
 		}
 	}
 
+	public void testBinaryRepository() throws ProvisionException {
+		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+		Map properties = new HashMap();
+		properties.put(IRepository.PROP_COMPRESSED, "true");
+		properties.put(LocalMetadataRepository.PROP_BINARY, "true");
+		IMetadataRepository repo = manager.createRepository(repoLocation.toURI(), "TestRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, properties);
+		IInstallableUnit b1 = createIU("b", Version.create("1.0.0"));
+		IInstallableUnit b2 = createIU("b", Version.create("2.0.0"));
+		IRequirement requirement = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "b", new VersionRange("[1.0.0, 2.0.0)"), null, false, false);
+		IInstallableUnit a = createIU("a", Version.create("1.0.0"), new IRequirement[] {requirement});
+		repo.addInstallableUnits(Arrays.asList(a, b1, b2));
+		File binaryFile = new File(repoLocation, "content.bin");
+		assertTrue("1.0", binaryFile.exists());
+
+		manager.removeRepository(repoLocation.toURI());
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+		assertEquals("2.0", "TestRepo", repo.getName());
+		assertEquals("2.1", "true", repo.getProperty(LocalMetadataRepository.PROP_BINARY));
+		IQueryResult result = repo.query(QueryUtil.createIUQuery("b"), getMonitor());
+		assertEquals("2.2", 2, queryResultSize(result));
+		IInstallableUnit loaded = (IInstallableUnit) repo.query(QueryUtil.createIUQuery("a"), getMonitor()).iterator().next();
+		assertEquals("2.3", requirement, loaded.getRequirements().iterator().next());
+		assertEquals("2.4", 3, queryResultSize(repo.query(QueryUtil.createIUAnyQuery(), getMonitor())));
+
+		// a content file touched without changes keeps its binary form
+		File contentFile = new File(repoLocation, "content.jar");
+		contentFile.setLastModified(contentFile.lastModified() - 10000);
+		manager.removeRepository(repoLocation.toURI());
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+		assertTrue("3.0", ((LocalMetadataRepository) repo).getIndex(InstallableUnit.MEMBER_ID) instanceof BinaryIdIndex);
+		assertEquals("3.1", 2, queryResultSize(repo.query(QueryUtil.createIUQuery("b"), getMonitor())));
+
+		// the binary file is removed when the repository no longer asks for it
+		repo.setProperty(LocalMetadataRepository.PROP_BINARY, "false");
+		assertFalse("4.0", binaryFile.exists());
+	}
+
+	public void testBinaryRepositoryReplacedContent() throws Exception {
+		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+		Map properties = new HashMap();
+		properties.put(IRepository.PROP_COMPRESSED, "false");
+		properties.put(LocalMetadataRepository.PROP_BINARY, "true");
+		IMetadataRepository repo = manager.createRepository(repoLocation.toURI(), "TestRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, properties);
+		repo.addInstallableUnits(Arrays.asList(createIU("b", Version.create("2.0.0"))));
+		assertTrue("1.0", new File(repoLocation, "content.bin").exists());
+
+		// replace the content file with another one of the same size
+		File contentFile = new File(repoLocation, "content.xml");
+		long lastModified = contentFile.lastModified();
+		byte[] bytes = new byte[(int) contentFile.length()];
+		DataInputStream input = new DataInputStream(new FileInputStream(contentFile));
+		try {
+			input.readFully(bytes);
+		} finally {
+			input.close();
+		}
+		StringBuffer content = new StringBuffer(new String(bytes, "UTF-8"));
+		int index = content.indexOf("version='2.0.0'");
+		assertTrue("1.1", index >= 0);
+		content.replace(index, index + "version='2.0.0'".length(), "version='3.0.0'");
+		long length = contentFile.length();
+		writeBuffer(contentFile, content);
+		contentFile.setLastModified(lastModified + 10000);
+		assertEquals("1.2", length, contentFile.length());
+
+		manager.removeRepository(repoLocation.toURI());
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+		IInstallableUnit loaded = (IInstallableUnit) repo.query(QueryUtil.createIUQuery("b"), getMonitor()).iterator().next();
+		assertEquals("2.0", Version.create("3.0.0"), loaded.getVersion());
+	}
+
+	public void testBinaryRepositoryIndexes() throws ProvisionException {
+		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+		Map properties = new HashMap();
+		properties.put(LocalMetadataRepository.PROP_BINARY, "true");
+		IMetadataRepository repo = manager.createRepository(repoLocation.toURI(), "TestRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, properties);
+		IInstallableUnit b1 = createIU("b", Version.create("1.0.0"));
+		IInstallableUnit b2 = createIU("b", Version.create("2.0.0"));
+		IInstallableUnit c = createIU("c", Version.create("1.0.0"));
+		repo.addInstallableUnits(Arrays.asList(b1, b2, c));
+		manager.removeRepository(repoLocation.toURI());
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+
+		// the capabilities are looked up in the binary form
+		LocalMetadataRepository local = (LocalMetadataRepository) repo;
+		assertTrue("1.0", local.getIndex(InstallableUnit.MEMBER_PROVIDED_CAPABILITIES) instanceof BinaryCapabilityIndex);
+		IRequirement requirement = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "b", new VersionRange("[1.0.0, 2.0.0)"), null, false, false);
+		Set<IInstallableUnit> providers = repo.query(QueryUtil.createMatchQuery(requirement.getMatches()), getMonitor()).toUnmodifiableSet();
+		assertEquals("1.1", Collections.singleton(b1), providers);
+		requirement = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "b", VersionRange.emptyRange, null, false, false);
+		assertEquals("1.2", 2, queryResultSize(repo.query(QueryUtil.createMatchQuery(requirement.getMatches()), getMonitor())));
+		requirement = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "d", VersionRange.emptyRange, null, false, false);
+		assertEquals("1.3", 0, queryResultSize(repo.query(QueryUtil.createMatchQuery(requirement.getMatches()), getMonitor())));
+
+		// the units are the same whatever the index that created them
+		IInstallableUnit provider = providers.iterator().next();
+		assertSame("2.0", provider, repo.query(QueryUtil.createIUQuery(b1), getMonitor()).iterator().next());
+		Set<IInstallableUnit> all = repo.query(QueryUtil.createIUAnyQuery(), getMonitor()).toUnmodifiableSet();
+		assertEquals("2.1", new HashSet<IInstallableUnit>(Arrays.asList(b1, b2, c)), all);
+		for (IInstallableUnit unit : all)
+			if (unit.equals(b1))
+				assertSame("2.2", provider, unit);
+
+		// the binary form is still used after all the units were iterated
+		assertTrue("3.0", local.getIndex(InstallableUnit.MEMBER_PROVIDED_CAPABILITIES) instanceof BinaryCapabilityIndex);
+		repo.addInstallableUnits(Arrays.asList(createIU("d", Version.create("1.0.0"))));
+		assertFalse("3.1", local.getIndex(InstallableUnit.MEMBER_PROVIDED_CAPABILITIES) instanceof BinaryCapabilityIndex);
+		assertEquals("3.2", 1, queryResultSize(repo.query(QueryUtil.createMatchQuery(requirement.getMatches()), getMonitor())));
+	}
+
 	public void testGetProperties() throws ProvisionException {
 		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
 		IMetadataRepository repo = manager.createRepository(repoLocation.toURI(), "TestRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2008, 2010 IBM Corporation and others.
+ *  Copyright (c) 2008, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -21,6 +21,7 @@ import org.eclipse.equinox.internal.p2.artifact.repository.simple.SimpleArtifact
 import org.eclipse.equinox.internal.p2.core.helpers.OrderedProperties;
 import org.eclipse.equinox.internal.p2.core.helpers.ServiceHelper;
 import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.internal.repository.mirroring.IArtifactMirrorLog;
 import org.eclipse.equinox.p2.internal.repository.tools.MirrorApplication;
 import org.eclipse.equinox.p2.internal.repository.tools.RepositoryDescriptor;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
@@ -1454,6 +1455,55 @@ public class NewMirrorApplicationArtifactTest extends AbstractProvisioningTest {
 		}
 	}
 
+	/**
+	 * Tests mirroring the artifacts of a repository on several threads
+	 */
+	public void testArtifactMirrorWithThreads() {
+		final List<IStatus> statuses = new ArrayList<IStatus>();
+		IArtifactMirrorLog log = new IArtifactMirrorLog() {
+			public void log(IArtifactDescriptor descriptor, IStatus status) {
+				statuses.add(status);
+			}
+
+			public void log(IStatus status) {
+				statuses.add(status);
+			}
+
+			public void close() {
+				// nothing to close
+			}
+		};
+		MirrorApplication app = new MirrorApplication();
+		app.addSource(createRepositoryDescriptor(sourceRepoLocation.toURI(), null, null, null));
+		app.addDestination(createRepositoryDescriptor(destRepoLocation.toURI(), null, null, null));
+		app.setLog(log);
+		app.setThreads(4);
+		PrintStream out = System.out;
+		try {
+			System.setOut(new PrintStream(new StringBufferStream()));
+			assertOK("1.0", app.run(null));
+			assertContentEquals("1.1", getArtifactRepositoryManager().loadRepository(sourceRepoLocation.toURI(), null), getArtifactRepositoryManager().loadRepository(destRepoLocation.toURI(), null));
+		} catch (ProvisionException e) {
+			fail("1.2", e);
+		} finally {
+			System.setOut(out);
+		}
+
+		IArtifactRepository source = null;
+		try {
+			source = getArtifactRepositoryManager().loadRepository(sourceRepoLocation.toURI(), null);
+		} catch (ProvisionException e) {
+			fail("2.0", e);
+		}
+		int count = source.descriptorQueryable().query(ArtifactDescriptorQuery.ALL_DESCRIPTORS, null).toUnmodifiableSet().size();
+		String message = NLS.bind(org.eclipse.equinox.p2.internal.repository.tools.Messages.Mirroring_throughput, new Object[] {Integer.toString(count), "", "", "4", ""});
+		String prefix = message.substring(0, message.indexOf('('));
+		boolean found = false;
+		for (IStatus status : statuses)
+			found |= status.getMessage().startsWith(prefix);
+		assertTrue("2.1", found);
+	}
+
 	/**
 	 * Test how the mirror application handles a repository specified as a local path
 	 */
@@ -74,6 +74,7 @@ public class AllTests extends TestCase {
 		suite.addTestSuite(ExplanationSeveralConflictingRoots.class);
 		suite.addTestSuite(FindRootsAfterUpdate.class);
 		suite.addTestSuite(GreedyRequirement.class);
+		suite.addTestSuite(IncrementalPlanningTest.class);
 		suite.addTestSuite(InclusionRuleTest.class);
 		suite.addTestSuite(InclusionRuleTest2.class);
 		suite.addTestSuite(IUProperties.class);
@@ -101,6 +102,7 @@ public class AllTests extends TestCase {
 		suite.addTestSuite(NoRequirements.class);
 		suite.addTestSuite(ORTesting.class);
 		//		suite.addTestSuite(PatchFailingToInstall.class);
+		suite.addTestSuite(ParallelSlicerTest.class);
 		suite.addTestSuite(PatchTest1.class);
 		suite.addTestSuite(PatchTest10.class);
 		suite.addTestSuite(PatchTest11.class);
@@ -151,6 +153,7 @@ public class AllTests extends TestCase {
 		suite.addTestSuite(SimulatedSharedInstallTest.class);
 		suite.addTestSuite(SingletonOptionallyInstalled.class);
 		suite.addTestSuite(SingletonOptionallyInstalled2.class);
+		suite.addTestSuite(SolutionCacheTest.class);
 		suite.addTestSuite(SWTFragment.class);
 		suite.addTestSuite(SynchronizeOperationTest.class);
 		suite.addTestSuite(TestNoopChangeRequest.class);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2009, 2010 IBM Corporation and others.
+ *  Copyright (c) 2009, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -10,7 +10,7 @@
  *******************************************************************************/
 package org.eclipse.equinox.p2.tests.planner;
 
-import java.util.Properties;
+import java.util.*;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.equinox.p2.engine.*;
 import org.eclipse.equinox.p2.metadata.*;
@@ -66,4 +66,15 @@ public class FindingPatchesThroughUpdates extends AbstractProvisioningTest {
 		assertEquals(1, updates.toUnmodifiableSet().size());
 		assertTrue(updates.toUnmodifiableSet().contains(anotherPatch3));
 	}
+
+	public void testBatchUpdates() {
+		ProvisioningContext context = new ProvisioningContext(getAgent());
+		List<IInstallableUnit> ius = Arrays.asList(new IInstallableUnit[] {a1, a120, patchA1, anotherPatch2});
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> updates = planner.updatesFor(ius, context, new NullProgressMonitor());
+		assertEquals(ius.size(), updates.size());
+		for (IInstallableUnit iu : ius)
+			assertEquals(iu.toString(), planner.updatesFor(iu, context, new NullProgressMonitor()).toUnmodifiableSet(), updates.get(iu).toUnmodifiableSet());
+		assertEquals(2, updates.get(a1).toUnmodifiableSet().size());
+		assertTrue(updates.get(anotherPatch2).toUnmodifiableSet().contains(anotherPatch3));
+	}
 }
\ No newline at end of file
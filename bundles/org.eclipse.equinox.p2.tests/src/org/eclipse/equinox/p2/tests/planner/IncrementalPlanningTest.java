@@ -0,0 +1,84 @@
+/*******************************************************************************
+ *  Copyright (c) 2012 IBM Corporation and others.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *      IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.util.Set;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.internal.p2.director.ProfileChangeRequest;
+import org.eclipse.equinox.internal.p2.director.SimplePlanner;
+import org.eclipse.equinox.p2.engine.*;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.planner.IPlanner;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Checks that requests planned through a planning session give the same result as a fresh planner.
+ */
+public class IncrementalPlanningTest extends AbstractProvisioningTest {
+	IInstallableUnit a1, a2, b, c, d, e;
+	IPlanner planner;
+	IProfile profile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		a1 = createIU("A", Version.create("1.0.0"), true);
+		a2 = createIU("A", Version.create("2.0.0"), true);
+
+		IRequirement anyA = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "A", new VersionRange("[1.0.0, 2.0.0]"), null, false, false);
+		b = createIU("B", Version.create("1.0.0"), new IRequirement[] {anyA});
+
+		IRequirement a1Only = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "A", new VersionRange("[1.0.0, 1.0.0]"), null, false, false);
+		c = createIU("C", Version.create("1.0.0"), new IRequirement[] {a1Only});
+
+		IRequirement optionalE = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "E", VersionRange.emptyRange, null, true, false);
+		d = createIU("D", Version.create("1.0.0"), new IRequirement[] {optionalE});
+		e = createIU("E", Version.create("1.0.0"));
+
+		createTestMetdataRepository(new IInstallableUnit[] {a1, a2, b, c, d, e});
+
+		profile = createProfile("TestProfile." + getName());
+		planner = createPlanner();
+	}
+
+	public void testSameResultAsFreshPlanner() {
+		IInstallableUnit[][] requests = new IInstallableUnit[][] { {b}, {c}, {b, c}, {d}, {b}, {b, d}};
+		for (int i = 0; i < requests.length; i++) {
+			Set<IInstallableUnit> expected = plan(requests[i], new ProvisioningContext(getAgent()));
+			ProvisioningContext context = new ProvisioningContext(getAgent());
+			context.setProperty(SimplePlanner.INCREMENTAL_PLANNING, Boolean.TRUE.toString());
+			Set<IInstallableUnit> actual = plan(requests[i], context);
+			assertEquals("Request " + i, expected, actual);
+		}
+	}
+
+	public void testUnsatisfiableRequestDoesNotPoisonSession() {
+		ProvisioningContext context = new ProvisioningContext(getAgent());
+		context.setProperty(SimplePlanner.INCREMENTAL_PLANNING, Boolean.TRUE.toString());
+
+		ProfileChangeRequest req = new ProfileChangeRequest(profile);
+		req.addInstallableUnits(new IInstallableUnit[] {a2, c});
+		assertEquals(IStatus.ERROR, planner.getProvisioningPlan(req, context, null).getStatus().getSeverity());
+
+		Set<IInstallableUnit> state = plan(new IInstallableUnit[] {b}, context);
+		assertTrue(state.contains(a2));
+		assertFalse(state.contains(a1));
+		assertFalse(state.contains(c));
+	}
+
+	private Set<IInstallableUnit> plan(IInstallableUnit[] toInstall, ProvisioningContext context) {
+		ProfileChangeRequest req = new ProfileChangeRequest(profile);
+		req.addInstallableUnits(toInstall);
+		IProvisioningPlan plan = planner.getProvisioningPlan(req, context, null);
+		assertOK("Plan failed", plan.getStatus());
+		return plan.getFutureState().query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+	}
+}
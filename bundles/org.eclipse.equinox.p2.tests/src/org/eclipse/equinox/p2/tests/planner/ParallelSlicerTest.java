@@ -0,0 +1,65 @@
+/*******************************************************************************
+ *  Copyright (c) 2012 IBM Corporation and others.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *      IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.io.File;
+import java.util.*;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
+import org.eclipse.equinox.internal.p2.director.Slicer;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.query.*;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Checks that slicing with several threads gives the same slice as the sequential slicer.
+ */
+public class ParallelSlicerTest extends AbstractProvisioningTest {
+
+	public void testChain() {
+		IInstallableUnit[] ius = new IInstallableUnit[50];
+		for (int i = ius.length - 1; i >= 0; i--) {
+			IRequirement[] reqs = i == ius.length - 1 ? NO_REQUIRES : new IRequirement[] {MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "iu" + (i + 1), VersionRange.emptyRange, null, false, false)};
+			ius[i] = createIU("iu" + i, Version.create("1.0.0"), reqs);
+		}
+		IInstallableUnit unrelated = createIU("unrelated");
+		List<IInstallableUnit> all = new ArrayList<IInstallableUnit>(Arrays.asList(ius));
+		all.add(unrelated);
+		IQueryable<IInstallableUnit> queryable = new QueryableArray(all.toArray(new IInstallableUnit[all.size()]));
+
+		Set<IInstallableUnit> sequential = slice(queryable, new IInstallableUnit[] {ius[0]}, 1);
+		assertNotNull(sequential);
+		Set<IInstallableUnit> parallel = slice(queryable, new IInstallableUnit[] {ius[0]}, 4);
+		assertEquals(ius.length, sequential.size());
+		assertEquals(sequential, parallel);
+		assertFalse(parallel.contains(unrelated));
+	}
+
+	public void testRepository() throws Exception {
+		File repoFile = getTestData("Repo for slicer test", "testData/slicerBug365124Test");
+		IMetadataRepository repo = getMetadataRepositoryManager().loadRepository(repoFile.toURI(), new NullProgressMonitor());
+		IInstallableUnit[] roots = repo.query(QueryUtil.createIUGroupQuery(), new NullProgressMonitor()).toArray(IInstallableUnit.class);
+
+		Set<IInstallableUnit> sequential = slice(repo, roots, 1);
+		for (int i = 0; i < 5; i++)
+			assertEquals(sequential, slice(repo, roots, 8));
+	}
+
+	private Set<IInstallableUnit> slice(IQueryable<IInstallableUnit> queryable, IInstallableUnit[] roots, int threads) {
+		Slicer slicer = new Slicer(queryable, new HashMap<String, String>(), false);
+		slicer.setParallelism(threads);
+		IQueryable<IInstallableUnit> slice = slicer.slice(roots, new NullProgressMonitor());
+		if (slice == null)
+			return null;
+		return slice.query(QueryUtil.createIUAnyQuery(), new NullProgressMonitor()).toUnmodifiableSet();
+	}
+}
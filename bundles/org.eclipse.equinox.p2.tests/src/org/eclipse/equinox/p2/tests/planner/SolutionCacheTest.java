@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *  Copyright (c) 2012 IBM Corporation and others.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *      IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Set;
+import org.eclipse.core.runtime.URIUtil;
+import org.eclipse.equinox.internal.p2.director.*;
+import org.eclipse.equinox.p2.core.IAgentLocation;
+import org.eclipse.equinox.p2.engine.*;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.planner.IPlanner;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Checks that the solutions kept by the planner are only reused for identical requests.
+ */
+public class SolutionCacheTest extends AbstractProvisioningTest {
+	IInstallableUnit a1, a2, b;
+	IPlanner planner;
+	IProfile profile;
+	File cacheDirectory;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		a1 = createIU("A", Version.create("1.0.0"), true);
+		a2 = createIU("A", Version.create("2.0.0"), true);
+		IRequirement anyA = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "A", new VersionRange("[1.0.0, 3.0.0]"), null, false, false);
+		b = createIU("B", Version.create("1.0.0"), new IRequirement[] {anyA});
+		createTestMetdataRepository(new IInstallableUnit[] {a1, a2, b});
+
+		profile = createProfile("TestProfile." + getName());
+		planner = createPlanner();
+		IAgentLocation location = (IAgentLocation) getAgent().getService(IAgentLocation.SERVICE_NAME);
+		cacheDirectory = new File(URIUtil.toFile(location.getDataArea(DirectorActivator.PI_DIRECTOR)), "plannerCache");
+		delete(cacheDirectory);
+	}
+
+	protected void tearDown() throws Exception {
+		delete(cacheDirectory);
+		super.tearDown();
+	}
+
+	public void testIdenticalRequest() {
+		Set<IInstallableUnit> expected = plan(new ProvisioningContext(getAgent()));
+		assertEquals(0, countSolutions());
+
+		Set<IInstallableUnit> first = plan(createContext());
+		int solutions = countSolutions();
+		assertTrue(solutions > 0);
+		assertEquals(expected, first);
+
+		Set<IInstallableUnit> second = plan(createContext());
+		assertEquals(solutions, countSolutions());
+		assertEquals(expected, second);
+	}
+
+	public void testRepositoryChange() {
+		Set<IInstallableUnit> first = plan(createContext());
+		assertTrue(first.contains(a2));
+		int solutions = countSolutions();
+
+		IInstallableUnit a3 = createIU("A", Version.create("3.0.0"), true);
+		createTestMetdataRepository(new IInstallableUnit[] {a3});
+		Set<IInstallableUnit> second = plan(createContext());
+		assertTrue(countSolutions() > solutions);
+		assertTrue(second.contains(a3));
+		assertFalse(second.contains(a2));
+	}
+
+	private ProvisioningContext createContext() {
+		ProvisioningContext context = new ProvisioningContext(getAgent());
+		context.setProperty(SimplePlanner.SOLUTION_CACHE, Boolean.TRUE.toString());
+		return context;
+	}
+
+	private int countSolutions() {
+		String[] names = cacheDirectory.list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".solution");
+			}
+		});
+		return names == null ? 0 : names.length;
+	}
+
+	private Set<IInstallableUnit> plan(ProvisioningContext context) {
+		ProfileChangeRequest req = new ProfileChangeRequest(profile);
+		req.addInstallableUnits(new IInstallableUnit[] {b});
+		IProvisioningPlan plan = planner.getProvisioningPlan(req, context, null);
+		assertOK("Plan failed", plan.getStatus());
+		return plan.getFutureState().query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+	}
+}
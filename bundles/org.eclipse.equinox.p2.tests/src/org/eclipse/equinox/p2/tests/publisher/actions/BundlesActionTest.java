@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2011 Code 9 and others. All rights reserved. This
+ * Copyright (c) 2008, 2012 Code 9 and others. All rights reserved. This
  * program and the accompanying materials are made available under the terms of
  * the Eclipse Public License v1.0 which accompanies this distribution, and is
  * available at http://www.eclipse.org/legal/epl-v10.html
@@ -436,6 +436,35 @@ public class BundlesActionTest extends ActionTest {
 		return mockAdvice;
 	}
 
+	public void testThreads() {
+		File fragmentTest = new File(TestActivator.getTestDataFolder(), "FragmentPublisherTest");//$NON-NLS-1$
+		List<File> files = new ArrayList<File>(Arrays.asList(TEST_BASE.listFiles()));
+		files.add(new File(fragmentTest, "foo"));//$NON-NLS-1$
+		files.add(new File(fragmentTest, "foo.fragment"));//$NON-NLS-1$
+
+		PublisherResult sequential = new PublisherResult();
+		BundlesAction bundlesAction = new BundlesAction(files.toArray(new File[files.size()]));
+		assertEquals("1.0", Status.OK_STATUS, bundlesAction.perform(new PublisherInfo(), sequential, new NullProgressMonitor()));
+
+		PublisherResult concurrent = new PublisherResult();
+		bundlesAction = new BundlesAction(files.toArray(new File[files.size()]));
+		bundlesAction.setThreads(4);
+		assertEquals("2.0", Status.OK_STATUS, bundlesAction.perform(new PublisherInfo(), concurrent, new NullProgressMonitor()));
+
+		Collection<IInstallableUnit> expected = sequential.getIUs(null, null);
+		Collection<IInstallableUnit> actual = concurrent.getIUs(null, null);
+		assertEquals("3.0", expected.size(), actual.size());
+		for (IInstallableUnit expectedIU : expected) {
+			IInstallableUnit actualIU = concurrent.getIU(expectedIU.getId(), expectedIU.getVersion(), null);
+			assertNotNull("3.1 " + expectedIU, actualIU);
+			assertEquals("3.2 " + expectedIU, expectedIU.getProperties(), actualIU.getProperties());
+			assertEquals("3.3 " + expectedIU, expectedIU.getRequirements(), actualIU.getRequirements());
+			assertEquals("3.4 " + expectedIU, expectedIU.getProvidedCapabilities(), actualIU.getProvidedCapabilities());
+			assertEquals("3.5 " + expectedIU, expectedIU.getTouchpointData(), actualIU.getTouchpointData());
+			assertEquals("3.6 " + expectedIU, expectedIU.getArtifacts(), actualIU.getArtifacts());
+		}
+	}
+
 	public void testDynamicImport() {
 		File testData = getTestData("dymamicImport", "testData/dynamicImport");
 		IInstallableUnit iu = BundlesAction.createBundleIU(BundlesAction.createBundleDescription(testData), null, new PublisherInfo());
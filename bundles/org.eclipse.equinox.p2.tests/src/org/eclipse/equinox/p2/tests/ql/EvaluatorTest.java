@@ -16,6 +16,7 @@ import java.util.*;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.equinox.internal.p2.director.QueryableArray;
 import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.expression.MatchExpression;
 import org.eclipse.equinox.p2.metadata.*;
 import org.eclipse.equinox.p2.metadata.expression.*;
 import org.eclipse.equinox.p2.publisher.PublisherInfo;
@@ -354,6 +355,41 @@ public class EvaluatorTest extends AbstractProvisioningTest {
 		return metadataManager.loadRepository(metadataRepo, new NullProgressMonitor());
 	}
 
+	public void testCompiledMatchesAgreeWithInterpreter() throws Exception {
+		List<IInstallableUnit> units = new ArrayList<IInstallableUnit>();
+		String[] versions = {"1.0.0", "1.5.0.qualifier", "2.0.0", "raw:3.a", "4.0.0"};
+		for (int i = 0; i < versions.length; i++) {
+			MetadataFactory.InstallableUnitDescription description = new MetadataFactory.InstallableUnitDescription();
+			description.setId("unit" + (i % 2));
+			description.setVersion(Version.create(versions[i]));
+			description.setCapabilities(new IProvidedCapability[] {MetadataFactory.createProvidedCapability("ns", "cap", Version.create(versions[i])), MetadataFactory.createProvidedCapability("other", "cap" + i, Version.create(versions[i]))});
+			units.add(MetadataFactory.createInstallableUnit(description));
+		}
+
+		List<IMatchExpression<IInstallableUnit>> matches = new ArrayList<IMatchExpression<IInstallableUnit>>();
+		VersionRange[] ranges = {null, new VersionRange("1.5.0.qualifier"), new VersionRange("[1.5.0.qualifier,1.5.0.qualifier]"), new VersionRange("[1.0.0,2.0.0]"), new VersionRange("[1.0.0,2.0.0)"), new VersionRange("(1.0.0,2.0.0]"), new VersionRange("(1.0.0,2.0.0)"), new VersionRange("(1.0.0,4.0.0)")};
+		for (int i = 0; i < ranges.length; i++) {
+			matches.add(MetadataFactory.createRequirement("ns", "cap", ranges[i], null, false, false).getMatches());
+			matches.add(MetadataFactory.createRequirement("other", "cap3", ranges[i], null, false, false).getMatches());
+		}
+		matches.add(factory.<IInstallableUnit> matchExpression(parser.parse("id == $0 && version ~= $1"), "unit0", new VersionRange("[1.0.0,3.0.0)")));
+		matches.add(factory.<IInstallableUnit> matchExpression(parser.parse("id == $0 && version == $1"), "unit1", Version.create("raw:3.a")));
+		matches.add(factory.<IInstallableUnit> matchExpression(parser.parse("id != 'unit0' && version >= $0"), Version.create("2.0.0")));
+		// needs a coercion of the string parameter, falls back to the interpreter
+		matches.add(factory.<IInstallableUnit> matchExpression(parser.parse("version == $0"), "2.0.0"));
+
+		IExpression[] thisVariable = new IExpression[] {factory.thisVariable()};
+		for (IMatchExpression<IInstallableUnit> match : matches) {
+			for (IInstallableUnit unit : units) {
+				// a context that does not hold the parameters of the match expression is always interpreted
+				IEvaluationContext context = factory.createContext(thisVariable, ((MatchExpression<IInstallableUnit>) match).getParameters().clone());
+				assertEquals(match + " " + unit, match.isMatch(context, unit), match.isMatch(unit));
+			}
+		}
+		assertTrue(units.get(1).satisfies(MetadataFactory.createRequirement("ns", "cap", new VersionRange("[1.5.0.qualifier,1.5.0.qualifier]"), null, false, false)));
+		assertFalse(units.get(0).satisfies(MetadataFactory.createRequirement("ns", "cap", new VersionRange("(1.0.0,2.0.0)"), null, false, false)));
+	}
+
 	public void testConsistency() throws Exception {
 		IMetadataRepository repo = getMDR("/testData/metadataRepo/qltest");
 
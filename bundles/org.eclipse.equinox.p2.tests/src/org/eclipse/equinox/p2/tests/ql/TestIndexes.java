@@ -11,7 +11,10 @@
 package org.eclipse.equinox.p2.tests.ql;
 
 import java.net.URI;
+import java.util.*;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
+import org.eclipse.equinox.internal.p2.metadata.index.CapabilityIndex;
 import org.eclipse.equinox.p2.metadata.*;
 import org.eclipse.equinox.p2.query.*;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
@@ -63,6 +66,29 @@ public class TestIndexes extends AbstractProvisioningTest {
 		assertEquals(queryResultSize(result), 487);
 	}
 
+	public void testCapabilityIndexVersionRange() throws Exception {
+		IInstallableUnit a1 = createIU("A", Version.create("1.0.0"));
+		IInstallableUnit a2 = createIU("A", Version.create("2.0.0"));
+		IInstallableUnit a3 = createIU("A", Version.create("3.0.0"));
+		IInstallableUnit pkg = createIU("B", Version.create("2.0.0"), new IProvidedCapability[] {MetadataFactory.createProvidedCapability("java.package", "A", Version.create("2.0.0"))});
+		CapabilityIndex index = new CapabilityIndex(Arrays.asList(a3, pkg, a1, a2).iterator());
+
+		Collection<IInstallableUnit> providers = index.getProviders(IInstallableUnit.NAMESPACE_IU_ID, "A", new VersionRange("[1.5.0,3.0.0)"));
+		assertTrue(providers.contains(a2));
+		assertFalse(providers.contains(a1));
+		assertFalse(providers.contains(pkg));
+		assertEquals(3, index.getProviders(IInstallableUnit.NAMESPACE_IU_ID, "A", null).size());
+		assertEquals(Collections.singleton(pkg), index.getProviders("java.package", "A", VersionRange.emptyRange));
+		assertTrue(index.getProviders("java.package", "A", new VersionRange("[3.0.0,4.0.0)")).isEmpty());
+
+		IQueryable<IInstallableUnit> queryable = new QueryableArray(new IInstallableUnit[] {a3, pkg, a1, a2});
+		IRequirement requirement = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "A", new VersionRange("[1.0.0,3.0.0)"), null, false, false);
+		Set<IInstallableUnit> result = queryable.query(QueryUtil.createMatchQuery(requirement.getMatches()), getMonitor()).toUnmodifiableSet();
+		assertEquals(2, result.size());
+		assertTrue(result.contains(a1));
+		assertTrue(result.contains(a2));
+	}
+
 	private IMetadataRepository getMDR(String uri) throws Exception {
 		URI metadataRepo = getTestData("1.1", uri).toURI();
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2010 Sonatype Inc. and others.
+ *  Copyright (c) 2010, 2012 Sonatype Inc. and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -13,19 +13,84 @@ package org.eclipse.equinox.p2.tests.reconciler.dropins;
 
 import java.io.File;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.Set;
+import java.net.URI;
+import java.util.*;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.internal.p2.director.ProfileChangeRequest;
+import org.eclipse.equinox.internal.p2.engine.ISurrogateProfileHandler;
+import org.eclipse.equinox.internal.p2.engine.Profile;
+import org.eclipse.equinox.internal.p2.metadata.repository.MetadataRepositoryManager;
 import org.eclipse.equinox.internal.p2.reconciler.dropins.ProfileSynchronizer;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.engine.*;
 import org.eclipse.equinox.p2.engine.query.IUProfilePropertyQuery;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
-import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.query.*;
+import org.eclipse.equinox.p2.repository.IRepository;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
-import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
-import org.eclipse.equinox.p2.tests.TestActivator;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.equinox.p2.tests.*;
 
 public class ProfileSynchronizerTest extends AbstractProvisioningTest {
+	private static final String PROP_FROM_DROPINS = "org.eclipse.equinox.p2.reconciler.dropins";
+
+	/*
+	 * A repository of dropins that counts how many times its IUs are read.
+	 */
+	static class DropinsRepository extends TestMetadataRepository {
+		int queries = 0;
+		private long timestamp = 1;
+
+		DropinsRepository(IProvisioningAgent agent, URI location, IInstallableUnit... ius) {
+			super(agent, ius);
+			setLocation(location);
+			setProperty(IRepository.PROP_TIMESTAMP, Long.toString(timestamp));
+		}
+
+		public IQueryResult query(IQuery query, IProgressMonitor monitor) {
+			queries++;
+			return super.query(query, monitor);
+		}
+
+		/*
+		 * Changes the timestamp of the repository, as when it is saved again.
+		 */
+		void touch() {
+			setProperty(IRepository.PROP_TIMESTAMP, Long.toString(++timestamp));
+		}
+	}
+
+	/*
+	 * Makes a profile share the IUs of a parent profile, as in a shared install.
+	 */
+	static class SharedProfileHandler implements ISurrogateProfileHandler {
+		private final Collection<IInstallableUnit> sharedIUs;
+
+		SharedProfileHandler(Collection<IInstallableUnit> sharedIUs) {
+			this.sharedIUs = sharedIUs;
+		}
+
+		public IProfile createProfile(String id) {
+			return null;
+		}
+
+		public boolean isSurrogate(IProfile profile) {
+			return false;
+		}
+
+		public IQueryResult<IInstallableUnit> queryProfile(IProfile profile, IQuery<IInstallableUnit> query, IProgressMonitor monitor) {
+			Collection<IInstallableUnit> available = new ArrayList<IInstallableUnit>(sharedIUs);
+			available.addAll(profile.query(QueryUtil.createIUAnyQuery(), monitor).toUnmodifiableSet());
+			return query.perform(available.iterator());
+		}
+
+		public boolean updateProfile(IProfile selfProfile) {
+			return false;
+		}
+	}
+
 	private IProfile sdkProfile;
 	private IProvisioningAgent agent;
 	private IProfileRegistry registry;
@@ -66,6 +131,93 @@ public class ProfileSynchronizerTest extends AbstractProvisioningTest {
 		assertEquals(originalSize - 1, registry.getProfile("SDKProfile").query(QueryUtil.ALL_UNITS, null).toUnmodifiableSet().size());
 	}
 
+	/*
+	 * Tests that a repository saved again with the same IUs does not cause a reconciliation.
+	 */
+	public void testUnchangedFingerprintSkipsReconciliation() {
+		DropinsRepository repository = createDropinsRepository(getDropinsIUs());
+		assertOK("1.0", synchronize(repository));
+		long timestamp = registry.getProfile("SDKProfile").getTimestamp();
+
+		repository.touch();
+		repository.queries = 0;
+		assertOK("2.0", synchronize(repository));
+		// the IUs of the repository are only read to compute its fingerprint
+		assertEquals("2.1", 1, repository.queries);
+		assertEquals("2.2", timestamp, registry.getProfile("SDKProfile").getTimestamp());
+	}
+
+	/*
+	 * Tests that an IU added to a repository is installed, and is the only IU added by the request.
+	 */
+	public void testChangedIUsAreReconciled() {
+		DropinsRepository repository = createDropinsRepository(getDropinsIUs());
+		assertOK("1.0", synchronize(repository));
+
+		IInstallableUnit added = createIU("test.dropin", Version.create("1.0.0"));
+		repository.addInstallableUnits(Collections.singletonList(added));
+		repository.touch();
+		ProfileChangeRequest request = new ProfileSynchronizer(agent, registry.getProfile("SDKProfile"), Collections.<IMetadataRepository> singletonList(repository)).createProfileChangeRequest(new ProvisioningContext(agent));
+		assertEquals("2.0", Collections.singleton(added), new HashSet<IInstallableUnit>(request.getAdditions()));
+
+		repository.queries = 0;
+		assertOK("3.0", synchronize(repository));
+		assertTrue("3.1", repository.queries > 1);
+		assertFalse("3.2", registry.getProfile("SDKProfile").query(QueryUtil.createIUQuery(added), null).isEmpty());
+	}
+
+	/*
+	 * Tests that an IU removed from the dropins after a reconciliation is uninstalled.
+	 */
+	public void testRemovedIUIsUninstalled() {
+		Collection<IInstallableUnit> dropins = getDropinsIUs();
+		DropinsRepository repository = createDropinsRepository(dropins);
+		assertOK("1.0", synchronize(repository));
+		assertFalse("1.1", registry.getProfile("SDKProfile").query(QueryUtil.createIUQuery("aniefer.junit.headless"), null).isEmpty());
+
+		repository.removeInstallableUnits(registry.getProfile("SDKProfile").query(QueryUtil.createIUQuery("aniefer.junit.headless"), null).toUnmodifiableSet());
+		repository.touch();
+		assertOK("2.0", synchronize(repository));
+		assertTrue("2.1", registry.getProfile("SDKProfile").query(QueryUtil.createIUQuery("aniefer.junit.headless"), null).isEmpty());
+	}
+
+	/*
+	 * Tests that all the IUs of the dropins are added to the request of a profile sharing the IUs of a parent profile.
+	 */
+	public void testSharedProfileAddsAllIUs() {
+		Collection<IInstallableUnit> dropins = getDropinsIUs();
+		IInstallableUnit added = createIU("test.dropin", Version.create("1.0.0"));
+		List<IInstallableUnit> all = new ArrayList<IInstallableUnit>(dropins);
+		all.add(added);
+		DropinsRepository repository = createDropinsRepository(all);
+
+		Profile profile = (Profile) registry.getProfile("SDKProfile");
+		profile.setSurrogateProfileHandler(new SharedProfileHandler(Collections.singleton(createIU("test.shared", Version.create("1.0.0")))));
+		ProfileChangeRequest request = new ProfileSynchronizer(agent, profile, Collections.<IMetadataRepository> singletonList(repository)).createProfileChangeRequest(new ProvisioningContext(agent));
+		assertEquals("1.0", new HashSet<IInstallableUnit>(all), new HashSet<IInstallableUnit>(request.getAdditions()));
+
+		// without a parent profile only the IU that is not installed is added
+		request = new ProfileSynchronizer(agent, registry.getProfile("SDKProfile"), Collections.<IMetadataRepository> singletonList(repository)).createProfileChangeRequest(new ProvisioningContext(agent));
+		assertEquals("2.0", Collections.singleton(added), new HashSet<IInstallableUnit>(request.getAdditions()));
+	}
+
+	private Collection<IInstallableUnit> getDropinsIUs() {
+		Set<IInstallableUnit> result = sdkProfile.query(new IUProfilePropertyQuery(PROP_FROM_DROPINS, Boolean.TRUE.toString()), null).toUnmodifiableSet();
+		assertFalse("No IU installed from the dropins", result.isEmpty());
+		return result;
+	}
+
+	private DropinsRepository createDropinsRepository(Collection<IInstallableUnit> ius) {
+		DropinsRepository repository = new DropinsRepository(agent, new File(getTempFolder(), "dropins").toURI(), ius.toArray(new IInstallableUnit[ius.size()]));
+		// the planner finds the IUs of the repository through the repository manager
+		((MetadataRepositoryManager) agent.getService(IMetadataRepositoryManager.SERVICE_NAME)).addRepository(repository);
+		return repository;
+	}
+
+	private IStatus synchronize(IMetadataRepository repository) {
+		return new ProfileSynchronizer(agent, registry.getProfile("SDKProfile"), Collections.singletonList(repository)).synchronize(null);
+	}
+
 	private void initializeReconciler() throws IllegalAccessException {
 		Field[] fields = org.eclipse.equinox.internal.p2.reconciler.dropins.Activator.class.getDeclaredFields();
 		for (int i = 0; i < fields.length; i++) {
@@ -20,6 +20,7 @@ public class AllTests extends TestCase {
 	public static Test suite() {
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		suite.addTestSuite(CacheManagerTest.class);
+		suite.addTestSuite(CompositeChildLoaderTest.class);
 		suite.addTestSuite(RepositoryHelperTest.class);
 		suite.addTestSuite(RepositoryExtensionPointTest.class);
 		suite.addTestSuite(FileReaderTest2.class);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011 EclipseSource.
+ * Copyright (c) 2011, 2012 EclipseSource and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -7,13 +7,14 @@
  ******************************************************************************/
 package org.eclipse.equinox.p2.tests.repository;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.net.URI;
+import java.util.*;
+import junit.framework.AssertionFailedError;
 import junit.framework.TestCase;
 import org.eclipse.core.runtime.*;
-import org.eclipse.equinox.internal.p2.repository.CacheManager;
-import org.eclipse.equinox.internal.p2.repository.Transport;
+import org.eclipse.equinox.internal.p2.repository.*;
+import org.eclipse.equinox.p2.tests.TestActivator;
 import org.eclipse.equinox.p2.core.*;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
@@ -83,6 +84,45 @@ public class CacheManagerTest extends TestCase {
 				lastModifiedInitial == cache2.lastModified());
 	}
 
+	public void testConditionalRequest() throws ProvisionException, IOException {
+		ConditionalTransport transport = new ConditionalTransport();
+		cacheManager = new CacheManager(new AgentLocationMock(), transport);
+		File cache = cacheManager.createCache(repositoryLocation, cachePrefix, new NullProgressMonitor());
+		assertEquals(Arrays.asList(new String[] {"content.jar", "content.xml"}), transport.requests);
+		assertEquals(contentXmlFile.lastModified(), cache.lastModified());
+
+		// the cache of an unchanged index is not downloaded again
+		long lastModified = cache.lastModified();
+		write(cache, "cached");
+		assertTrue(cache.setLastModified(lastModified));
+		transport.requests.clear();
+		assertEquals(cache, cacheManager.createCache(repositoryLocation, cachePrefix, new NullProgressMonitor()));
+		assertEquals(Arrays.asList(new String[] {"content.jar", "content.xml if modified"}), transport.requests);
+		assertEquals("cached".length(), cache.length());
+
+		// a jar index replaces the cache of the xml index
+		write(new File(contentXmlFile.getParentFile(), "content.jar"), "jar");
+		transport.requests.clear();
+		File jarCache = cacheManager.createCache(repositoryLocation, cachePrefix, new NullProgressMonitor());
+		assertTrue(jarCache.getName().endsWith(".jar"));
+		assertFalse("The cache of the xml index was not deleted", cache.exists());
+		assertEquals(Arrays.asList(new String[] {"content.jar"}), transport.requests);
+
+		// the cache of the jar index is validated in a single request
+		transport.requests.clear();
+		assertEquals(jarCache, cacheManager.createCache(repositoryLocation, cachePrefix, new NullProgressMonitor()));
+		assertEquals(Arrays.asList(new String[] {"content.jar if modified"}), transport.requests);
+	}
+
+	private void write(File file, String content) throws IOException {
+		Writer writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
 	private URI createRepistory() throws IOException {
 		File repository = File.createTempFile("remoteFile", ""); //$NON-NLS-1$//$NON-NLS-2$
 		assertTrue(repository.delete());
@@ -105,6 +145,54 @@ public class CacheManagerTest extends TestCase {
 		}
 	}
 
+	/*
+	 * Serves the files of the repository, and answers conditional requests like an HTTP server.
+	 */
+	private static class ConditionalTransport extends Transport {
+		final List<String> requests = new ArrayList<String>();
+
+		public IStatus downloadIfModified(URI toDownload, OutputStream target, long ifModifiedSince, IProgressMonitor monitor) {
+			File file = new File(toDownload);
+			requests.add(file.getName() + (ifModifiedSince > 0 ? " if modified" : ""));
+			if (!file.isFile())
+				return new DownloadStatus(IStatus.ERROR, TestActivator.PI_PROV_TESTS, ProvisionException.ARTIFACT_NOT_FOUND, file.getName(), new FileNotFoundException(file.getName()));
+			if (ifModifiedSince > 0 && file.lastModified() <= ifModifiedSince)
+				return new DownloadStatus(IStatus.OK, TestActivator.PI_PROV_TESTS, DownloadStatus.NOT_MODIFIED, "", null);
+			try {
+				InputStream input = new FileInputStream(file);
+				try {
+					byte[] buffer = new byte[8192];
+					int read;
+					while ((read = input.read(buffer)) != -1)
+						target.write(buffer, 0, read);
+				} finally {
+					input.close();
+				}
+			} catch (IOException e) {
+				return new DownloadStatus(IStatus.ERROR, TestActivator.PI_PROV_TESTS, ProvisionException.REPOSITORY_FAILED_READ, e.getMessage(), e);
+			}
+			DownloadStatus status = new DownloadStatus(IStatus.OK, TestActivator.PI_PROV_TESTS, "");
+			status.setLastModified(file.lastModified());
+			return status;
+		}
+
+		public IStatus download(URI toDownload, OutputStream target, long startPos, IProgressMonitor monitor) {
+			throw new AssertionFailedError("Unconditional download of " + toDownload);
+		}
+
+		public IStatus download(URI toDownload, OutputStream target, IProgressMonitor monitor) {
+			throw new AssertionFailedError("Unconditional download of " + toDownload);
+		}
+
+		public InputStream stream(URI toDownload, IProgressMonitor monitor) {
+			throw new AssertionFailedError("Stream of " + toDownload);
+		}
+
+		public long getLastModified(URI toDownload, IProgressMonitor monitor) {
+			throw new AssertionFailedError("Separate request for the last modified date of " + toDownload);
+		}
+	}
+
 	private void deleteFileOrDirectory(final File path) {
 		if (path.exists()) {
 			if (path.isDirectory()) {
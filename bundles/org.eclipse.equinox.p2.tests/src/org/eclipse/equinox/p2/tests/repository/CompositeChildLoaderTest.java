@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials 
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.repository;
+
+import java.net.URI;
+import java.util.*;
+import junit.framework.TestCase;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader.IChildLoader;
+import org.eclipse.equinox.internal.p2.repository.helpers.CompositeChildLoader.Result;
+import org.eclipse.equinox.p2.core.ProvisionException;
+
+/**
+ * Tests CompositeChildLoader
+ */
+public class CompositeChildLoaderTest extends TestCase {
+	private String previousThreads;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		previousThreads = System.getProperty(CompositeChildLoader.PROP_LOADING_THREADS);
+		System.setProperty(CompositeChildLoader.PROP_LOADING_THREADS, "4");
+	}
+
+	protected void tearDown() throws Exception {
+		if (previousThreads == null)
+			System.getProperties().remove(CompositeChildLoader.PROP_LOADING_THREADS);
+		else
+			System.setProperty(CompositeChildLoader.PROP_LOADING_THREADS, previousThreads);
+		super.tearDown();
+	}
+
+	public void testResultsInChildOrder() throws Exception {
+		List<URI> children = new ArrayList<URI>();
+		for (int i = 0; i < 10; i++)
+			children.add(new URI("memory:/child" + i));
+
+		//later children complete first, and one of them fails
+		List<Result<String>> results = CompositeChildLoader.load(children, new IChildLoader<String>() {
+			public String load(URI location, IProgressMonitor monitor) throws ProvisionException {
+				int index = Integer.parseInt(location.getPath().substring("/child".length()));
+				try {
+					Thread.sleep(10 * (10 - index));
+				} catch (InterruptedException e) {
+					//ignore
+				}
+				if (index == 3)
+					throw new ProvisionException("failed " + location);
+				return location.toString();
+			}
+		}, new NullProgressMonitor());
+
+		assertEquals(children.size(), results.size());
+		for (int i = 0; i < children.size(); i++) {
+			Result<String> result = results.get(i);
+			assertEquals(children.get(i), result.getLocation());
+			if (i == 3) {
+				assertNull(result.getRepository());
+				assertNotNull(result.getFailure());
+			} else {
+				assertEquals(children.get(i).toString(), result.getRepository());
+				assertNull(result.getFailure());
+			}
+		}
+	}
+
+	public void testCancel() throws Exception {
+		List<URI> children = new ArrayList<URI>();
+		for (int i = 0; i < 10; i++)
+			children.add(new URI("memory:/child" + i));
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		try {
+			CompositeChildLoader.load(children, new IChildLoader<String>() {
+				public String load(URI location, IProgressMonitor childMonitor) {
+					monitor.setCanceled(true);
+					assertTrue(childMonitor.isCanceled());
+					return location.toString();
+				}
+			}, monitor);
+			fail("Loading should have been canceled");
+		} catch (OperationCanceledException e) {
+			//expected
+		}
+	}
+
+	public void testProgress() throws Exception {
+		List<URI> children = new ArrayList<URI>();
+		for (int i = 0; i < 10; i++)
+			children.add(new URI("memory:/child" + i));
+		final int[] worked = new int[1];
+		final int[] total = new int[1];
+		IProgressMonitor monitor = new NullProgressMonitor() {
+			public void beginTask(String name, int totalWork) {
+				total[0] = totalWork;
+			}
+
+			public void worked(int work) {
+				worked[0] += work;
+			}
+
+			public void internalWorked(double work) {
+				worked[0] += (int) work;
+			}
+		};
+		CompositeChildLoader.load(children, new IChildLoader<String>() {
+			public String load(URI location, IProgressMonitor childMonitor) {
+				childMonitor.beginTask(location.toString(), 4);
+				for (int i = 0; i < 4; i++)
+					childMonitor.worked(1);
+				childMonitor.done();
+				return location.toString();
+			}
+		}, monitor);
+		assertTrue(total[0] > 0);
+		assertEquals(total[0], worked[0]);
+	}
+
+	public void testLoadingFor() throws Exception {
+		List<URI> children = new ArrayList<URI>();
+		for (int i = 0; i < 4; i++)
+			children.add(new URI("memory:/child" + i));
+		final Thread caller = Thread.currentThread();
+		assertFalse(CompositeChildLoader.isLoadingFor(caller, caller));
+		final List<Thread> loaders = Collections.synchronizedList(new ArrayList<Thread>());
+		CompositeChildLoader.load(children, new IChildLoader<String>() {
+			public String load(URI location, IProgressMonitor childMonitor) {
+				loaders.add(Thread.currentThread());
+				return location.toString();
+			}
+		}, new NullProgressMonitor());
+		assertEquals(children.size(), loaders.size());
+		for (Thread loader : loaders) {
+			assertNotSame(caller, loader);
+			assertTrue(CompositeChildLoader.isLoadingFor(loader, caller));
+			assertFalse(CompositeChildLoader.isLoadingFor(loader, new Thread()));
+		}
+	}
+
+	public void testSequentialByDefault() throws Exception {
+		System.getProperties().remove(CompositeChildLoader.PROP_LOADING_THREADS);
+		List<URI> children = new ArrayList<URI>();
+		for (int i = 0; i < 4; i++)
+			children.add(new URI("memory:/child" + i));
+		final Thread caller = Thread.currentThread();
+		CompositeChildLoader.load(children, new IChildLoader<String>() {
+			public String load(URI location, IProgressMonitor childMonitor) {
+				assertSame(caller, Thread.currentThread());
+				return location.toString();
+			}
+		}, new NullProgressMonitor());
+	}
+}
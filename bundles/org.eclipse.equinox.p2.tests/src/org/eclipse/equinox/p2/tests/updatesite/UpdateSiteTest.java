@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2008, 2010 IBM Corporation and others.
+ *  Copyright (c) 2008, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -25,11 +25,13 @@ import org.eclipse.equinox.internal.p2.artifact.repository.RawMirrorRequest;
 import org.eclipse.equinox.internal.p2.artifact.repository.simple.SimpleArtifactRepository;
 import org.eclipse.equinox.internal.p2.metadata.ArtifactKey;
 import org.eclipse.equinox.internal.p2.metadata.IRequiredCapability;
+import org.eclipse.equinox.internal.p2.repository.Transport;
 import org.eclipse.equinox.internal.p2.updatesite.SiteFeature;
 import org.eclipse.equinox.internal.p2.updatesite.UpdateSite;
 import org.eclipse.equinox.internal.p2.updatesite.artifact.UpdateSiteArtifactRepository;
-import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.core.*;
 import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.publisher.eclipse.Feature;
 import org.eclipse.equinox.p2.query.*;
 import org.eclipse.equinox.p2.repository.IRepository;
 import org.eclipse.equinox.p2.repository.IRepositoryManager;
@@ -38,8 +40,7 @@ import org.eclipse.equinox.p2.repository.artifact.spi.ArtifactDescriptor;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
 import org.eclipse.equinox.p2.repository.spi.AbstractRepository;
-import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
-import org.eclipse.equinox.p2.tests.StringBufferStream;
+import org.eclipse.equinox.p2.tests.*;
 import org.w3c.dom.*;
 
 /**
@@ -417,6 +418,129 @@ public class UpdateSiteTest extends AbstractProvisioningTest {
 		}
 	}
 
+	public void testIncludedFeatureLoadThreads() throws ProvisionException {
+		File site = getTestData("0.1", "/testData/updatesite/includedfeature");
+		Set<String> loaded = new HashSet<String>();
+		Feature[] features = UpdateSite.load(site.toURI(), getTransport(), getMonitor()).loadFeatures(new NullProgressMonitor());
+		for (int i = 0; i < features.length; i++)
+			loaded.add(features[i].getId() + '_' + features[i].getVersion());
+		assertEquals(2, loaded.size());
+
+		String previous = System.getProperty(UpdateSite.PROP_LOAD_THREADS);
+		System.setProperty(UpdateSite.PROP_LOAD_THREADS, "4");
+		try {
+			features = UpdateSite.load(site.toURI(), getTransport(), getMonitor()).loadFeatures(new NullProgressMonitor());
+		} finally {
+			if (previous == null)
+				System.getProperties().remove(UpdateSite.PROP_LOAD_THREADS);
+			else
+				System.setProperty(UpdateSite.PROP_LOAD_THREADS, previous);
+		}
+		Set<String> parallel = new HashSet<String>();
+		for (int i = 0; i < features.length; i++)
+			parallel.add(features[i].getId() + '_' + features[i].getVersion());
+		assertEquals(loaded, parallel);
+	}
+
+	/*
+	 * Tests that the features of a remote site are kept in the data area of the agent, that a corrupt
+	 * cached feature is downloaded again and that the files of the sites not loaded for a long time are deleted.
+	 */
+	public void testRemoteSiteCache() throws Exception {
+		File agentLocation = getTempFolder();
+		IProvisioningAgent agent = getAgentProvider().createAgent(agentLocation.toURI());
+		FileTransport transport = new FileTransport(getTestData("0.1", "/testData/updatesite/includedfeature"));
+		agent.registerService(Transport.SERVICE_NAME, transport);
+		try {
+			File cacheRoot = new File(URIUtil.toFile(((IAgentLocation) agent.getService(IAgentLocation.SERVICE_NAME)).getDataArea("org.eclipse.equinox.p2.updatesite")), "cache");
+			File staleSite = new File(cacheRoot, "stale");
+			assertTrue("0.2", new File(staleSite, "0").mkdirs());
+			staleSite.setLastModified(0);
+
+			Feature[] features = UpdateSite.load(new URI(FileTransport.BASE), agent, getMonitor()).loadFeatures(getMonitor());
+			assertEquals("1.0", 2, features.length);
+			assertEquals("1.1", 3, transport.downloads.size());
+			assertFalse("1.2", staleSite.exists());
+
+			File[] cached = findFiles(cacheRoot, ".jar");
+			assertEquals("2.0", 2, cached.length);
+			File original = getTestData("2.1", "/testData/updatesite/includedfeature/features/test.feature_1.0.0.jar");
+			File corrupt = cached[0].getName().endsWith("test.feature_1.0.0.jar") ? cached[0] : cached[1];
+			writeBuffer(corrupt, new StringBuffer("corrupt"));
+
+			// the site is loaded through its site file so that the site loaded above is not reused
+			transport.downloads.clear();
+			features = UpdateSite.load(new URI(FileTransport.BASE + "site.xml"), agent, getMonitor()).loadFeatures(getMonitor());
+			assertEquals("3.0", 2, features.length);
+			assertEquals("3.1", Arrays.asList(new String[] {FileTransport.BASE + "site.xml", FileTransport.BASE + "features/test.feature_1.0.0.jar"}), transport.downloads);
+			assertEquals("3.2", original.length(), corrupt.length());
+		} finally {
+			agent.stop();
+		}
+	}
+
+	private static File[] findFiles(File directory, String suffix) {
+		List<File> result = new ArrayList<File>();
+		File[] children = directory.listFiles();
+		for (int i = 0; children != null && i < children.length; i++) {
+			if (children[i].isDirectory())
+				result.addAll(Arrays.asList(findFiles(children[i], suffix)));
+			else if (children[i].getName().endsWith(suffix))
+				result.add(children[i]);
+		}
+		return result.toArray(new File[result.size()]);
+	}
+
+	/*
+	 * Serves the files of a local directory as a remote site and records the downloads.
+	 */
+	private static class FileTransport extends Transport {
+		static final String BASE = "http://updatesite.test/site/";
+		final File root;
+		final List<String> downloads = Collections.synchronizedList(new ArrayList<String>());
+
+		FileTransport(File root) {
+			this.root = root;
+		}
+
+		private File getFile(URI uri) throws FileNotFoundException {
+			String name = uri.toString();
+			if (!name.startsWith(BASE) || !new File(root, name.substring(BASE.length())).isFile())
+				throw new FileNotFoundException(name);
+			return new File(root, name.substring(BASE.length()));
+		}
+
+		public IStatus download(URI toDownload, OutputStream target, long startPos, IProgressMonitor monitor) {
+			return download(toDownload, target, monitor);
+		}
+
+		public IStatus download(URI toDownload, OutputStream target, IProgressMonitor monitor) {
+			downloads.add(toDownload.toString());
+			try {
+				InputStream input = stream(toDownload, monitor);
+				try {
+					byte[] buffer = new byte[8192];
+					int read;
+					while ((read = input.read(buffer)) != -1)
+						target.write(buffer, 0, read);
+				} finally {
+					input.close();
+				}
+			} catch (IOException e) {
+				return new Status(IStatus.ERROR, TestActivator.PI_PROV_TESTS, ProvisionException.ARTIFACT_NOT_FOUND, e.getMessage(), e);
+			}
+			return Status.OK_STATUS;
+		}
+
+		public InputStream stream(URI toDownload, IProgressMonitor monitor) throws FileNotFoundException {
+			return new BufferedInputStream(new FileInputStream(getFile(toDownload)));
+		}
+
+		public long getLastModified(URI toDownload, IProgressMonitor monitor) throws FileNotFoundException {
+			return getFile(toDownload).lastModified();
+		}
+	}
+
 	public void testIncludedFeatureArchive() {
 		File site = getTestData("0.1", "/testData/updatesite/includedfeaturearchive");
 		UpdateSite updatesite = null;
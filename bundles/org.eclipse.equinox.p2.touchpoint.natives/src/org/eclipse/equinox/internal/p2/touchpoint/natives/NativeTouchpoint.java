@@ -55,6 +55,14 @@ public class NativeTouchpoint extends Touchpoint {
 		return null;
 	}
 
+	/**
+	 * The backup store is synchronized and the actions only record properties of their own unit
+	 * in the profile.
+	 */
+	public boolean isIndependent() {
+		return true;
+	}
+
 	public String qualifyAction(String actionId) {
 		return Activator.ID + "." + actionId; //$NON-NLS-1$
 	}
@@ -25,6 +25,10 @@ public class CleanupcopyAction extends ProvisioningAction {
 
 	public static final String ACTION_CLEANUPCOPY = "cleanupcopy"; //$NON-NLS-1$
 
+	public boolean isIndependent() {
+		return true;
+	}
+
 	public IStatus execute(Map<String, Object> parameters) {
 		return cleanupcopy(parameters, true);
 	}
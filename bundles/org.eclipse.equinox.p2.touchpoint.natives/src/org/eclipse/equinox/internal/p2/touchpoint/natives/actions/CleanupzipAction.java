@@ -26,6 +26,10 @@ public class CleanupzipAction extends ProvisioningAction {
 	private static final String UNZIPPED = "unzipped"; //$NON-NLS-1$
 	public static final String ACTION_CLEANUPZIP = "cleanupzip"; //$NON-NLS-1$
 
+	public boolean isIndependent() {
+		return true;
+	}
+
 	public IStatus execute(Map<String, Object> parameters) {
 		return cleanupzip(parameters, true);
 	}
@@ -28,6 +28,10 @@ public class CollectAction extends ProvisioningAction {
 
 	public static final String ACTION_COLLECT = "collect"; //$NON-NLS-1$
 
+	public boolean isIndependent() {
+		return true;
+	}
+
 	public IStatus execute(Map<String, Object> parameters) {
 		IProfile profile = (IProfile) parameters.get(ActionConstants.PARM_PROFILE);
 		IProvisioningAgent agent = (IProvisioningAgent) parameters.get(ActionConstants.PARM_AGENT);
@@ -35,6 +35,10 @@ import org.eclipse.osgi.util.NLS;
 public class CopyAction extends ProvisioningAction {
 	public static final String ID = "cp"; //$NON-NLS-1$
 
+	public boolean isIndependent() {
+		return true;
+	}
+
 	public IStatus execute(Map<String, Object> parameters) {
 		return copy(parameters, true);
 	}
@@ -20,7 +20,12 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -37,6 +42,7 @@ import org.eclipse.ecf.filetransfer.IFileTransferListener;
 import org.eclipse.ecf.filetransfer.IFileTransferPausable;
 import org.eclipse.ecf.filetransfer.IIncomingFileTransfer;
 import org.eclipse.ecf.filetransfer.IRetrieveFileTransferContainerAdapter;
+import org.eclipse.ecf.filetransfer.IRetrieveFileTransferOptions;
 import org.eclipse.ecf.filetransfer.IncomingFileTransferException;
 import org.eclipse.ecf.filetransfer.UserCancelledException;
 import org.eclipse.ecf.filetransfer.events.IFileTransferConnectStartEvent;
@@ -105,6 +111,8 @@ public final class FileReader extends FileTransferJob implements IFileTransferLi
 	private boolean isPause = false;
 	private boolean hasPaused = false;
 	private IFileTransferPausable pasuable = null;
+	private long ifModifiedSince = 0;
+	private boolean notModified = false;
 
 
 	/**
@@ -343,6 +351,24 @@ public final class FileReader extends FileTransferJob implements IFileTransferLi
 		readInto(uri, anOutputStream, -1, monitor);
 	}
 
+	/**
+	 * Reads the given URI into the stream if the remote file was modified after the given date,
+	 * by sending the date with the request. Only HTTP servers answer that a file was not modified,
+	 * other protocols always send the file.
+	 * @return <code>false</code> if the server answered that the file was not modified, and
+	 * nothing was written to the stream
+	 */
+	public boolean readIntoIfModified(URI uri, OutputStream anOutputStream, long modifiedSince, IProgressMonitor monitor) //
+			throws CoreException, FileNotFoundException, AuthenticationFailedException, JREHttpClientRequiredException {
+		ifModifiedSince = modifiedSince;
+		try {
+			readInto(uri, anOutputStream, -1, monitor);
+		} finally {
+			ifModifiedSince = 0;
+		}
+		return !notModified;
+	}
+
 	public boolean belongsTo(Object family) {
 		return family == this;
 	}
@@ -409,6 +435,15 @@ public final class FileReader extends FileTransferJob implements IFileTransferLi
 		this.monitorStarted = false;
 		this.theOutputStream = outputStream;
 		this.requestUri = uri;
+		this.notModified = false;
+
+		Map<String, Object> options = null;
+		if (ifModifiedSince > 0) {
+			Map<String, String> headers = new HashMap<String, String>(1);
+			headers.put("If-Modified-Since", formatHttpDate(ifModifiedSince)); //$NON-NLS-1$
+			options = new HashMap<String, Object>(1);
+			options.put(IRetrieveFileTransferOptions.REQUEST_HEADERS, headers);
+		}
 
 		for (int retryCount = 0;; retryCount++) {
 			if (monitor != null && monitor.isCanceled())
@@ -417,9 +452,9 @@ public final class FileReader extends FileTransferJob implements IFileTransferLi
 			try {
 				IFileID fileID = FileIDFactory.getDefault().createFileID(adapter.getRetrieveNamespace(), uri.toString());
 				if (range != null)
-					adapter.sendRetrieveRequest(fileID, range, this, null);
+					adapter.sendRetrieveRequest(fileID, range, this, options);
 				else
-					adapter.sendRetrieveRequest(fileID, this, null);
+					adapter.sendRetrieveRequest(fileID, this, options);
 			} catch (IncomingFileTransferException e) {
 				exception = e;
 			} catch (FileCreateException e) {
@@ -464,6 +499,13 @@ public final class FileReader extends FileTransferJob implements IFileTransferLi
 	private boolean checkException(URI uri, int attemptCounter) throws CoreException, FileNotFoundException, AuthenticationFailedException, JREHttpClientRequiredException {
 		// note that 'exception' could have been captured in a callback
 		if (exception != null) {
+			// a conditional request for a file that was not modified is not an error
+			if (ifModifiedSince > 0 && RepositoryStatusHelper.isNotModified(exception)) {
+				exception = null;
+				notModified = true;
+				return true;
+			}
+
 			// check if HTTP client needs to be changed
 			RepositoryStatusHelper.checkJREHttpClientRequired(exception);
 
@@ -502,6 +544,12 @@ public final class FileReader extends FileTransferJob implements IFileTransferLi
 		return true;
 	}
 
+	private static String formatHttpDate(long date) {
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US); //$NON-NLS-1$
+		format.setTimeZone(TimeZone.getTimeZone("GMT")); //$NON-NLS-1$
+		return format.format(new Date(date));
+	}
+
 	protected Exception getException() {
 		return exception;
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2011 Cloudsmith Inc, and other.
+ * Copyright (c) 2009, 2012 Cloudsmith Inc, and other.
  * The code, documentation and other materials contained herein have been
  * licensed under the Eclipse Public License - v 1.0 by the individual
  * copyright holders listed above, as Initial Contributors under such license.
@@ -284,6 +284,14 @@ public abstract class RepositoryStatusHelper {
 			throw new AuthenticationFailedException();
 	}
 
+	/**
+	 * Check if the given exception represents that the requested file was not modified
+	 * since the date sent with the request (304 for HTTP).
+	 */
+	public static boolean isNotModified(Throwable t) {
+		return t instanceof IncomingFileTransferException && ((IncomingFileTransferException) t).getErrorCode() == 304;
+	}
+
 	/**
 	 * Translates exceptions representing "FileNotFound" into FileNotFoundException.
 	 * @param t the throwable to check
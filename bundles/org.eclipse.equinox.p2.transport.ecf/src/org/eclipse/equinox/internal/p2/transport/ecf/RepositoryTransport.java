@@ -66,6 +66,21 @@ public class RepositoryTransport extends Transport {
 	}
 
 	public IStatus download(URI toDownload, OutputStream target, long startPos, IProgressMonitor monitor) {
+		return download(toDownload, target, startPos, 0, monitor);
+	}
+
+	/**
+	 * Sends the date with the request to HTTP servers, which answer in the same request if
+	 * the file was not modified. Other protocols use the last modified date of the file.
+	 */
+	public IStatus downloadIfModified(URI toDownload, OutputStream target, long ifModifiedSince, IProgressMonitor monitor) {
+		String scheme = toDownload.getScheme();
+		if (!("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) //$NON-NLS-1$ //$NON-NLS-2$
+			return super.downloadIfModified(toDownload, target, ifModifiedSince, monitor);
+		return download(toDownload, target, -1, ifModifiedSince, monitor);
+	}
+
+	private IStatus download(URI toDownload, OutputStream target, long startPos, long ifModifiedSince, IProgressMonitor monitor) {
 
 		boolean promptUser = false;
 		boolean useJREHttp = false;
@@ -80,6 +95,7 @@ public class RepositoryTransport extends Transport {
 				reader = new FileReader(agent, context);
 				ProvisioningListener listener = null;
 				IProvisioningEventBus eventBus = null;
+				boolean modified = true;
 				try {
 					if (agent != null) {
 						eventBus = (IProvisioningEventBus) agent.getService(IProvisioningEventBus.SERVICE_NAME);
@@ -98,13 +114,22 @@ public class RepositoryTransport extends Transport {
 							eventBus.addListener(listener);
 						}
 					}
-					reader.readInto(toDownload, target, startPos, monitor);
+					if (ifModifiedSince > 0)
+						modified = reader.readIntoIfModified(toDownload, target, ifModifiedSince, monitor);
+					else
+						reader.readInto(toDownload, target, startPos, monitor);
 				} finally {
 					if (eventBus != null) {
 						eventBus.removeListener(listener);
 					}
 				}
 
+				if (!modified) {
+					DownloadStatus status = new DownloadStatus(IStatus.OK, Activator.ID, DownloadStatus.NOT_MODIFIED, Status.OK_STATUS.getMessage(), null);
+					status.setLastModified(ifModifiedSince);
+					return statusOn(target, status, reader);
+				}
+
 				// check that job ended ok - throw exceptions otherwise
 				IStatus result = reader.getResult();
 				if (result == null) {
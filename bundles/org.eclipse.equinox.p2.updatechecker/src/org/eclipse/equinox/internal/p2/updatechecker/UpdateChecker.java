@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2010 IBM Corporation and others.
+ *  Copyright (c) 2007, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -128,11 +128,11 @@ public class UpdateChecker implements IUpdateChecker {
 		context.setMetadataRepositories(getAvailableRepositories());
 		if (query == null)
 			query = QueryUtil.createIUAnyQuery();
-		Iterator<IInstallableUnit> iter = profile.query(query, null).iterator();
-		while (iter.hasNext()) {
-			IInstallableUnit iu = iter.next();
-			IQueryResult<IInstallableUnit> replacements = getPlanner().updatesFor(iu, context, null);
-			if (!replacements.isEmpty())
+		Set<IInstallableUnit> ius = profile.query(query, null).toUnmodifiableSet();
+		// the planner looks up the updates of all the units at once
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> replacements = getPlanner().updatesFor(ius, context, null);
+		for (IInstallableUnit iu : ius) {
+			if (!replacements.get(iu).isEmpty())
 				iusWithUpdates.add(iu);
 		}
 		return iusWithUpdates;
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2012 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.updatesite;
+
+import java.util.LinkedList;
+import org.eclipse.core.runtime.*;
+
+/**
+ * Loads the items of a queue on a bounded number of threads. Loading an item can add
+ * more items to the queue, the queue is done when it is empty and no item is being loaded.
+ */
+abstract class LoadQueue<T> {
+	private static final long WAIT_INTERVAL = 100;
+
+	private final String name;
+	private final LinkedList<T> items = new LinkedList<T>();
+	private final Object lock = new Object();
+	private int loading = 0;
+	private int running = 0;
+	private boolean stopped = false;
+	private RuntimeException failure;
+
+	LoadQueue(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Adds an item to load. This method can be called while the queue is running.
+	 */
+	void add(T item) {
+		synchronized (lock) {
+			items.add(item);
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Loads the given item. The monitor can only be used to check for cancellation.
+	 */
+	protected abstract void load(T item, IProgressMonitor monitor);
+
+	/**
+	 * Loads all the items on the given number of threads and returns when the queue is done.
+	 * The first exception thrown while loading an item stops the queue and is thrown again.
+	 */
+	void run(int threads, final IProgressMonitor monitor) {
+		final IProgressMonitor cancelMonitor = new NullProgressMonitor() {
+			public boolean isCanceled() {
+				return isStopped() || monitor.isCanceled();
+			}
+		};
+		if (threads <= 1) {
+			T item;
+			while ((item = next()) != null) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				load(item, cancelMonitor);
+			}
+			return;
+		}
+
+		running = threads;
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(name + ' ' + i) {
+				public void run() {
+					work(cancelMonitor);
+				}
+			};
+			worker.setDaemon(true);
+			worker.start();
+		}
+		synchronized (lock) {
+			while (running > 0) {
+				if (!stopped && monitor.isCanceled()) {
+					stopped = true;
+					lock.notifyAll();
+				}
+				try {
+					lock.wait(WAIT_INTERVAL);
+				} catch (InterruptedException e) {
+					stopped = true;
+				}
+			}
+		}
+		if (failure != null)
+			throw failure;
+		if (monitor.isCanceled())
+			throw new OperationCanceledException();
+	}
+
+	private T next() {
+		synchronized (lock) {
+			return items.isEmpty() ? null : items.removeFirst();
+		}
+	}
+
+	boolean isStopped() {
+		synchronized (lock) {
+			return stopped;
+		}
+	}
+
+	void work(IProgressMonitor monitor) {
+		try {
+			while (true) {
+				T item;
+				synchronized (lock) {
+					// the items being loaded can still add items
+					while (items.isEmpty() && loading > 0 && !stopped)
+						lock.wait(WAIT_INTERVAL);
+					if (stopped || items.isEmpty())
+						return;
+					item = items.removeFirst();
+					loading++;
+				}
+				try {
+					load(item, monitor);
+				} finally {
+					synchronized (lock) {
+						loading--;
+						lock.notifyAll();
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			synchronized (lock) {
+				if (failure == null)
+					failure = e;
+				stopped = true;
+			}
+		} catch (InterruptedException e) {
+			synchronized (lock) {
+				stopped = true;
+			}
+		} finally {
+			synchronized (lock) {
+				running--;
+				lock.notifyAll();
+			}
+		}
+	}
+}
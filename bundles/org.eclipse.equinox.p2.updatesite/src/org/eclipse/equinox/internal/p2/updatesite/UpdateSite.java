@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2008, 2010 IBM Corporation and others.
+ *  Copyright (c) 2008, 2012 IBM Corporation and others.
  *  All rights reserved. This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License v1.0
  *  which accompanies this distribution, and is available at
@@ -14,17 +14,17 @@ package org.eclipse.equinox.internal.p2.updatesite;
 import java.io.*;
 import java.lang.ref.SoftReference;
 import java.net.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.zip.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.internal.p2.publisher.eclipse.FeatureParser;
 import org.eclipse.equinox.internal.p2.repository.Transport;
-import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.core.*;
 import org.eclipse.equinox.p2.publisher.eclipse.*;
 import org.eclipse.osgi.service.resolver.BundleDescription;
 import org.eclipse.osgi.util.NLS;
+import org.osgi.framework.BundleContext;
 import org.xml.sax.SAXException;
 
 /**
@@ -42,6 +42,15 @@ public class UpdateSite {
 	private static final int RETRY_COUNT = 2;
 	private static final String DOT_XML = ".xml"; //$NON-NLS-1$
 	private static final String SITE = "site"; //$NON-NLS-1$
+	private static final String CACHE_DIR = "cache"; //$NON-NLS-1$
+	// the cached files of a site that is not loaded for this long are deleted
+	private static final long MAX_CACHE_AGE = 30L * 24 * 60 * 60 * 1000;
+	/**
+	 * System property giving the number of threads used to fetch and parse the features and
+	 * bundles of a site that has no digest. By default they are loaded one at a time.
+	 */
+	public static final String PROP_LOAD_THREADS = "eclipse.p2.updatesite.threads"; //$NON-NLS-1$
+	private static final int DEFAULT_LOAD_THREADS = 1;
 	private String checksum;
 	private URI location;
 	private URI rootLocation;
@@ -59,6 +68,11 @@ public class UpdateSite {
 	// map of String (bundleID_featureVersion) to BundleDescriptr
 	private Map<String, BundleDescription> bundleCache = new HashMap<String, BundleDescription>();
 	private Transport transport;
+	// the directory keeping the remote files of all sites, null if they are not kept
+	private File cacheRoot;
+	// the directory keeping the remote files of this site, see getCacheDirectory()
+	private File cacheDirectory;
+	private boolean cacheInitialized;
 
 	/*
 	 * Return a URI based on the given URI, which points to a site.xml file.
@@ -104,7 +118,7 @@ public class UpdateSite {
 			input = new CheckedInputStream(new BufferedInputStream(new FileInputStream(siteFile)), checksum);
 			SiteModel siteModel = siteParser.parse(input);
 			String checksumString = Long.toString(checksum.getValue());
-			result = new UpdateSite(siteModel, location, transport, checksumString);
+			result = new UpdateSite(siteModel, location, transport, checksumString, null);
 			if (!PROTOCOL_FILE.equals(location.getScheme()))
 				categoryCache.put(location.toString(), new SoftReference<UpdateSite>(result));
 			return result;
@@ -129,7 +143,20 @@ public class UpdateSite {
 	/*
 	 * Load and return an update site object from the given location.
 	 */
-	public static synchronized UpdateSite load(URI location, Transport transport, IProgressMonitor monitor) throws ProvisionException {
+	public static UpdateSite load(URI location, Transport transport, IProgressMonitor monitor) throws ProvisionException {
+		return load(location, transport, null, monitor);
+	}
+
+	/**
+	 * Load and return an update site object from the given location. The features and bundles
+	 * fetched from a remote site are kept in the data area of the given agent, they are not
+	 * downloaded again while the site file is unchanged.
+	 */
+	public static UpdateSite load(URI location, IProvisioningAgent agent, IProgressMonitor monitor) throws ProvisionException {
+		return load(location, (Transport) agent.getService(Transport.SERVICE_NAME), getCacheRoot(agent), monitor);
+	}
+
+	private static synchronized UpdateSite load(URI location, Transport transport, File cacheRoot, IProgressMonitor monitor) throws ProvisionException {
 		if (location == null)
 			return null;
 
@@ -151,7 +178,7 @@ public class UpdateSite {
 			input = new CheckedInputStream(new BufferedInputStream(new FileInputStream(siteFile)), checksum);
 			SiteModel siteModel = siteParser.parse(input);
 			String checksumString = Long.toString(checksum.getValue());
-			result = new UpdateSite(siteModel, getSiteURI(location), transport, checksumString);
+			result = new UpdateSite(siteModel, getSiteURI(location), transport, checksumString, cacheRoot);
 			if (!PROTOCOL_FILE.equals(location.getScheme()))
 				siteCache.put(location.toString(), new SoftReference<UpdateSite>(result));
 			return result;
@@ -250,26 +277,58 @@ public class UpdateSite {
 	 * In case of failure, the failure is logged and null is returned
 	 */
 	private Feature parseFeature(FeatureParser featureParser, URI featureURI, IProgressMonitor monitor) {
+		if (PROTOCOL_FILE.equals(featureURI.getScheme()))
+			return featureParser.parse(URIUtil.toFile(featureURI));
 		File featureFile = null;
-		if (PROTOCOL_FILE.equals(featureURI.getScheme())) {
-			featureFile = URIUtil.toFile(featureURI);
-			return featureParser.parse(featureFile);
+		try {
+			// a cached copy that cannot be parsed is deleted and downloaded again
+			for (boolean cached = isCached(featureURI);; cached = false) {
+				featureFile = fetch(featureURI, FEATURE_TEMP_FILE, monitor);
+				if (featureFile == null)
+					return null;
+				Feature feature = featureParser.parse(featureFile);
+				if (feature != null)
+					return feature;
+				featureFile.delete();
+				if (!cached)
+					return null;
+			}
+		} catch (IOException e) {
+			LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, featureURI), e));
+		} finally {
+			release(featureFile, featureURI);
 		}
+		return null;
+	}
+
+	/*
+	 * Returns a local copy of the given remote file. The copy is taken from the cache of this site
+	 * if it is there, otherwise the file is downloaded and kept in the cache. Copies that are not
+	 * in the cache must be released with release(File, URI). In case of failure, the failure is
+	 * logged and null is returned.
+	 */
+	private File fetch(URI uri, String prefix, IProgressMonitor monitor) throws IOException {
+		File cached = getCachedFile(uri);
+		if (isCached(uri))
+			return cached;
+
+		// the temporary file is created next to the cached file so that it can be renamed
+		File file = cached == null ? File.createTempFile(prefix, JAR_EXTENSION) : File.createTempFile(prefix, JAR_EXTENSION, cached.getParentFile());
+		boolean keep = false;
 		try {
-			featureFile = File.createTempFile(FEATURE_TEMP_FILE, JAR_EXTENSION);
 			IStatus transferResult = null;
 			//try the download twice in case of transient network problems
 			for (int i = 0; i < RETRY_COUNT; i++) {
 				if (monitor.isCanceled())
 					throw new OperationCanceledException();
-				OutputStream destination = new BufferedOutputStream(new FileOutputStream(featureFile));
+				OutputStream destination = new BufferedOutputStream(new FileOutputStream(file));
 				try {
-					transferResult = transport.download(featureURI, destination, monitor);
+					transferResult = transport.download(uri, destination, monitor);
 				} finally {
 					try {
 						destination.close();
 					} catch (IOException e) {
-						LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, featureURI), e));
+						LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, uri), e));
 						return null;
 					}
 				}
@@ -282,26 +341,123 @@ public class UpdateSite {
 				LogHelper.log(new ProvisionException(transferResult));
 				return null;
 			}
-			return featureParser.parse(featureFile);
-		} catch (IOException e) {
-			LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, featureURI), e));
+			keep = true;
+			if (cached == null || file.renameTo(cached))
+				return cached == null ? file : cached;
+			if (cached.isFile()) {
+				// another thread has cached the same file
+				keep = false;
+				return cached;
+			}
+			return file;
 		} finally {
-			if (featureFile != null)
-				featureFile.delete();
+			if (!keep)
+				file.delete();
+		}
+	}
+
+	/*
+	 * Deletes the given local copy unless it is kept in the cache.
+	 */
+	private void release(File file, URI uri) {
+		if (file != null && !file.equals(getCachedFile(uri)))
+			file.delete();
+	}
+
+	/*
+	 * Returns whether the cache of this site has a copy of the given remote file.
+	 */
+	private boolean isCached(URI uri) {
+		File cached = getCachedFile(uri);
+		return cached != null && cached.isFile();
+	}
+
+	/*
+	 * Returns the file caching the given remote file, or null if this site has no cache.
+	 */
+	private File getCachedFile(URI uri) {
+		File directory = getCacheDirectory();
+		if (directory == null)
+			return null;
+		String name = URIUtil.lastSegment(uri);
+		return new File(directory, Integer.toHexString(uri.toString().hashCode()) + VERSION_SEPARATOR + (name == null ? JAR_EXTENSION : name));
+	}
+
+	/*
+	 * Returns the directory keeping the remote features and bundles of this site across sessions, or
+	 * null if the site is local or there is no persistent storage. The directory is keyed by the checksum
+	 * of the site file, the files of a previous version of the site are deleted when the site changes.
+	 * The files of the other sites that were not loaded for a long time are deleted as well.
+	 */
+	private synchronized File getCacheDirectory() {
+		if (cacheInitialized)
+			return cacheDirectory;
+		cacheInitialized = true;
+		if (cacheRoot == null || checksum == null || PROTOCOL_FILE.equals(location.getScheme()))
+			return null;
+		File siteDirectory = new File(cacheRoot, Integer.toHexString(location.toString().hashCode()));
+		long oldest = System.currentTimeMillis() - MAX_CACHE_AGE;
+		File[] sites = cacheRoot.listFiles();
+		for (int i = 0; sites != null && i < sites.length; i++) {
+			if (!sites[i].equals(siteDirectory) && sites[i].lastModified() < oldest)
+				delete(sites[i]);
+		}
+		File[] versions = siteDirectory.listFiles();
+		for (int i = 0; versions != null && i < versions.length; i++) {
+			if (!versions[i].getName().equals(checksum))
+				delete(versions[i]);
+		}
+		File directory = new File(siteDirectory, checksum);
+		if (directory.isDirectory() || directory.mkdirs()) {
+			// marks the site as recently loaded
+			siteDirectory.setLastModified(System.currentTimeMillis());
+			cacheDirectory = directory;
+		}
+		return cacheDirectory;
+	}
+
+	/*
+	 * Returns the directory keeping the remote files of the sites loaded by the given agent,
+	 * or null if the agent has no local data area.
+	 */
+	private static File getCacheRoot(IProvisioningAgent agent) {
+		IAgentLocation agentLocation = (IAgentLocation) agent.getService(IAgentLocation.SERVICE_NAME);
+		if (agentLocation == null)
+			return null;
+		File dataArea = URIUtil.toFile(agentLocation.getDataArea(Activator.ID));
+		return dataArea == null ? null : new File(dataArea, CACHE_DIR);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		for (int i = 0; children != null && i < children.length; i++)
+			delete(children[i]);
+		file.delete();
+	}
+
+	private static int getLoadThreads() {
+		BundleContext context = Activator.getBundleContext();
+		String value = context == null ? null : context.getProperty(PROP_LOAD_THREADS);
+		if (value == null)
+			return DEFAULT_LOAD_THREADS;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return DEFAULT_LOAD_THREADS;
 		}
-		return null;
 	}
 
 	/*
 	 * Constructor for the class.
 	 */
-	private UpdateSite(SiteModel site, URI location, Transport transport, String checksum) {
+	private UpdateSite(SiteModel site, URI location, Transport transport, String checksum, File cacheRoot) {
 		super();
 		this.site = site;
 		this.location = location;
 		this.checksum = checksum;
 		this.rootLocation = getRootLocation();
 		this.transport = transport;
+		this.cacheRoot = cacheRoot;
 	}
 
 	private URI getRootLocation() {
@@ -556,100 +712,127 @@ public class UpdateSite {
 
 	/*
 	 * Load and return the features that are referenced by this update site. Note this
-	 * requires downloading and parsing the feature manifest locally.
+	 * requires downloading and parsing the feature manifest locally. The features are
+	 * fetched and parsed on several threads.
 	 */
 	private Feature[] loadFeaturesFromSite(IProgressMonitor monitor) throws ProvisionException {
 		SiteFeature[] siteFeatures = site.getFeatures();
-		FeatureParser featureParser = new FeatureParser();
-		Map<String, Feature> tmpFeatureCache = new HashMap<String, Feature>(siteFeatures.length);
+		final Map<String, Feature> tmpFeatureCache = new HashMap<String, Feature>(siteFeatures.length);
+		// the keys of the features that are loaded or being loaded
+		final Set<String> requested = new HashSet<String>();
+		final ThreadLocal<FeatureParser> featureParsers = new ThreadLocal<FeatureParser>() {
+			protected FeatureParser initialValue() {
+				return new FeatureParser();
+			}
+		};
+
+		LoadQueue<Object> queue = new LoadQueue<Object>("Update site feature loader") { //$NON-NLS-1$
+			protected void load(Object item, IProgressMonitor cancelMonitor) {
+				FeatureParser featureParser = featureParsers.get();
+				if (item instanceof SiteFeature) {
+					SiteFeature siteFeature = (SiteFeature) item;
+					URI featureURI = getSiteFeatureURI(siteFeature);
+					Feature feature = parseFeature(featureParser, featureURI, cancelMonitor);
+					if (feature == null) {
+						LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, featureURI)));
+						return;
+					}
+					synchronized (requested) {
+						if (siteFeature.getFeatureIdentifier() == null || siteFeature.getFeatureVersion() == null) {
+							siteFeature.setFeatureIdentifier(feature.getId());
+							siteFeature.setFeatureVersion(feature.getVersion());
+						}
+						String key = siteFeature.getFeatureIdentifier() + VERSION_SEPARATOR + siteFeature.getFeatureVersion();
+						requested.add(key);
+						tmpFeatureCache.put(key, feature);
+					}
+					addIncludedFeatures(feature, this, requested);
+				} else {
+					FeatureEntry entry = (FeatureEntry) item;
+					URI includedFeatureURI = getFeatureURI(entry.getId(), entry.getVersion());
+					Feature includedFeature = parseFeature(featureParser, includedFeatureURI, cancelMonitor);
+					if (includedFeature == null) {
+						LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, includedFeatureURI)));
+						return;
+					}
+					synchronized (requested) {
+						tmpFeatureCache.put(entry.getId() + VERSION_SEPARATOR + entry.getVersion(), includedFeature);
+					}
+					addIncludedFeatures(includedFeature, this, requested);
+				}
+			}
+		};
 
 		for (int i = 0; i < siteFeatures.length; i++) {
-			if (monitor.isCanceled()) {
-				throw new OperationCanceledException();
-			}
 			SiteFeature siteFeature = siteFeatures[i];
-			String key = null;
 			if (siteFeature.getFeatureIdentifier() != null && siteFeature.getFeatureVersion() != null) {
-				key = siteFeature.getFeatureIdentifier() + VERSION_SEPARATOR + siteFeature.getFeatureVersion();
-				if (tmpFeatureCache.containsKey(key))
+				String key = siteFeature.getFeatureIdentifier() + VERSION_SEPARATOR + siteFeature.getFeatureVersion();
+				if (!requested.add(key))
 					continue;
 			}
-			URI featureURI = getSiteFeatureURI(siteFeature);
-			Feature feature = parseFeature(featureParser, featureURI, new NullProgressMonitor());
-			if (feature == null) {
-				LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, featureURI)));
-			} else {
-				if (key == null) {
-					siteFeature.setFeatureIdentifier(feature.getId());
-					siteFeature.setFeatureVersion(feature.getVersion());
-					key = siteFeature.getFeatureIdentifier() + VERSION_SEPARATOR + siteFeature.getFeatureVersion();
-				}
-				tmpFeatureCache.put(key, feature);
-				loadIncludedFeatures(feature, featureParser, tmpFeatureCache, monitor);
-			}
+			queue.add(siteFeature);
 		}
+		queue.run(getLoadThreads(), monitor);
 		featureCache = tmpFeatureCache;
 		return featureCache.values().toArray(new Feature[featureCache.size()]);
 	}
 
 	/*
-	 * Load the features that are included by the given feature.
+	 * Adds the features that are included by the given feature and not requested yet to the queue.
 	 */
-	private void loadIncludedFeatures(Feature feature, FeatureParser featureParser, Map<String, Feature> features, IProgressMonitor monitor) throws ProvisionException {
+	private void addIncludedFeatures(Feature feature, LoadQueue<Object> queue, Set<String> requested) {
 		FeatureEntry[] featureEntries = feature.getEntries();
 		for (int i = 0; i < featureEntries.length; i++) {
-			if (monitor.isCanceled())
-				throw new OperationCanceledException();
 			FeatureEntry entry = featureEntries[i];
 			if (entry.isRequires() || entry.isPlugin())
 				continue;
 			String key = entry.getId() + VERSION_SEPARATOR + entry.getVersion();
-			if (features.containsKey(key))
-				continue;
-
-			URI includedFeatureURI = getFeatureURI(entry.getId(), entry.getVersion());
-			Feature includedFeature = parseFeature(featureParser, includedFeatureURI, monitor);
-			if (includedFeature == null) {
-				LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, includedFeatureURI)));
-			} else {
-				features.put(key, includedFeature);
-				loadIncludedFeatures(includedFeature, featureParser, features, monitor);
+			synchronized (requested) {
+				if (!requested.add(key))
+					continue;
 			}
+			queue.add(entry);
 		}
 	}
 
 	/*
 	 * Load and return the bundles that are referenced by this update site. Note this
-	 * requires downloading and parsing the feature manifest locally.
+	 * requires downloading and parsing the feature manifest locally. The bundles are
+	 * fetched and parsed on several threads.
 	 */
 	private BundleDescription[] loadBundlesFromSite(IProgressMonitor monitor) throws ProvisionException {
 		SiteBundle[] siteBundles = site.getBundles();
-		Map<String, BundleDescription> tmpBundleCache = new HashMap<String, BundleDescription>(siteBundles.length);
+		final Map<String, BundleDescription> tmpBundleCache = new HashMap<String, BundleDescription>(siteBundles.length);
+
+		LoadQueue<SiteBundle> queue = new LoadQueue<SiteBundle>("Update site bundle loader") { //$NON-NLS-1$
+			protected void load(SiteBundle siteBundle, IProgressMonitor cancelMonitor) {
+				URI bundleURI = getSiteBundleURI(siteBundle);
+				BundleDescription bundle = parseBundleDescription(bundleURI, cancelMonitor);
+				if (bundle == null) {
+					LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingBundle, bundleURI)));
+					return;
+				}
+				synchronized (tmpBundleCache) {
+					if (siteBundle.getBundleIdentifier() == null || siteBundle.getBundleVersion() == null) {
+						siteBundle.setBundleIdentifier(bundle.getSymbolicName());
+						siteBundle.setBundleVersion(bundle.getVersion().toString());
+					}
+					tmpBundleCache.put(siteBundle.getBundleIdentifier() + VERSION_SEPARATOR + siteBundle.getBundleVersion(), bundle);
+				}
+			}
+		};
 
+		Set<String> requested = new HashSet<String>(siteBundles.length);
 		for (int i = 0; i < siteBundles.length; i++) {
-			if (monitor.isCanceled()) {
-				throw new OperationCanceledException();
-			}
 			SiteBundle siteBundle = siteBundles[i];
-			String key = null;
 			if (siteBundle.getBundleIdentifier() != null && siteBundle.getBundleVersion() != null) {
-				key = siteBundle.getBundleIdentifier() + VERSION_SEPARATOR + siteBundle.getBundleVersion();
-				if (tmpBundleCache.containsKey(key))
+				String key = siteBundle.getBundleIdentifier() + VERSION_SEPARATOR + siteBundle.getBundleVersion();
+				if (!requested.add(key))
 					continue;
 			}
-			URI bundleURI = getSiteBundleURI(siteBundle);
-			BundleDescription bundle = parseBundleDescription(bundleURI, monitor);
-			if (bundle == null) {
-				LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingBundle, bundleURI)));
-			} else {
-				if (key == null) {
-					siteBundle.setBundleIdentifier(bundle.getSymbolicName());
-					siteBundle.setBundleVersion(bundle.getVersion().toString());
-					key = siteBundle.getBundleIdentifier() + VERSION_SEPARATOR + siteBundle.getBundleVersion().toString();
-				}
-				tmpBundleCache.put(key, bundle);
-			}
+			queue.add(siteBundle);
 		}
+		queue.run(Math.min(getLoadThreads(), siteBundles.length), monitor);
 		bundleCache = tmpBundleCache;
 		return bundleCache.values().toArray(new BundleDescription[bundleCache.size()]);
 	}
@@ -659,43 +842,26 @@ public class UpdateSite {
 	 * In case of failure, the failure is logged and null is returned
 	 */
 	private BundleDescription parseBundleDescription(URI bundleURI, IProgressMonitor monitor) {
+		if (PROTOCOL_FILE.equals(bundleURI.getScheme()))
+			return BundlesAction.createBundleDescription(URIUtil.toFile(bundleURI));
 		File bundleFile = null;
-		if (PROTOCOL_FILE.equals(bundleURI.getScheme())) {
-			bundleFile = URIUtil.toFile(bundleURI);
-		}
 		try {
-			bundleFile = File.createTempFile("bundle", JAR_EXTENSION); //$NON-NLS-1$
-			IStatus transferResult = null;
-			//try the download twice in case of transient network problems
-			for (int i = 0; i < RETRY_COUNT; i++) {
-				if (monitor.isCanceled())
-					throw new OperationCanceledException();
-				OutputStream destination = new BufferedOutputStream(new FileOutputStream(bundleFile));
-				try {
-					transferResult = transport.download(bundleURI, destination, monitor);
-				} finally {
-					try {
-						destination.close();
-					} catch (IOException e) {
-						LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingFeature, bundleURI), e));
-						return null;
-					}
-				}
-				if (transferResult.isOK())
-					break;
-			}
-			if (monitor.isCanceled())
-				throw new OperationCanceledException();
-			if (!transferResult.isOK()) {
-				LogHelper.log(new ProvisionException(transferResult));
-				return null;
+			// a cached copy that cannot be parsed is deleted and downloaded again
+			for (boolean cached = isCached(bundleURI);; cached = false) {
+				bundleFile = fetch(bundleURI, "bundle", monitor); //$NON-NLS-1$
+				if (bundleFile == null)
+					return null;
+				BundleDescription bundle = BundlesAction.createBundleDescription(bundleFile);
+				if (bundle != null)
+					return bundle;
+				bundleFile.delete();
+				if (!cached)
+					return null;
 			}
-			return BundlesAction.createBundleDescription(bundleFile);
 		} catch (IOException e) {
 			LogHelper.log(new Status(IStatus.ERROR, Activator.ID, NLS.bind(Messages.ErrorReadingBundle, bundleURI), e));
 		} finally {
-			if (bundleFile != null)
-				bundleFile.delete();
+			release(bundleFile, bundleURI);
 		}
 		return null;
 	}